@@ -0,0 +1,180 @@
+/*
+ *    Copyright 2017 David Tesler
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.protobufel.multikeymap;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * The Java Flight Recorder events of the MultiKeyMap, loaded by the {@link JfrSupport} only if
+ * jdk.jfr is available. An event is only created if its type is enabled in a running recording,
+ * so the operations allocate nothing while not being recorded, and the default thresholds make a
+ * continuous recording keep the slow operations only; both can be overridden by the recording
+ * settings as for any JFR event.
+ *
+ * @author David Tesler
+ */
+final class FlightRecorderEvents implements JfrEvents {
+    static final String CATEGORY = "MultiKeyMap";
+
+    private final EventType partialQueryType = EventType.getEventType(PartialQueryEvent.class);
+    private final EventType indexUpdateType = EventType.getEventType(IndexUpdateEvent.class);
+    private final EventType bulkOperationType = EventType.getEventType(BulkOperationEvent.class);
+
+    FlightRecorderEvents() {
+        super();
+    }
+
+    @Override
+    public Object beginPartialQuery() {
+        if (!partialQueryType.isEnabled()) {
+            return null;
+        }
+
+        final PartialQueryEvent event = new PartialQueryEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void commitPartialQuery(
+            final Object event,
+            final Iterable<?> partialKey,
+            final int subKeyCount,
+            final boolean positional,
+            final int smallestPostingSetSize,
+            final int resultSize) {
+        final PartialQueryEvent queryEvent = (PartialQueryEvent) event;
+        queryEvent.end();
+
+        if (queryEvent.shouldCommit()) {
+            queryEvent.partialKey = String.valueOf(partialKey);
+            queryEvent.subKeyCount = subKeyCount;
+            queryEvent.positional = positional;
+            queryEvent.smallestPostingSetSize = smallestPostingSetSize;
+            queryEvent.resultSize = resultSize;
+            queryEvent.commit();
+        }
+    }
+
+    @Override
+    public Object beginIndexUpdate() {
+        if (!indexUpdateType.isEnabled()) {
+            return null;
+        }
+
+        final IndexUpdateEvent event = new IndexUpdateEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void commitIndexUpdate(final Object event, final boolean added, final int subKeyCount) {
+        final IndexUpdateEvent updateEvent = (IndexUpdateEvent) event;
+        updateEvent.end();
+
+        if (updateEvent.shouldCommit()) {
+            updateEvent.added = added;
+            updateEvent.subKeyCount = subKeyCount;
+            updateEvent.commit();
+        }
+    }
+
+    @Override
+    public Object beginBulkOperation() {
+        if (!bulkOperationType.isEnabled()) {
+            return null;
+        }
+
+        final BulkOperationEvent event = new BulkOperationEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void commitBulkOperation(
+            final Object event, final String operation, final int entryCount) {
+        final BulkOperationEvent bulkEvent = (BulkOperationEvent) event;
+        bulkEvent.end();
+
+        if (bulkEvent.shouldCommit()) {
+            bulkEvent.operation = operation;
+            bulkEvent.entryCount = entryCount;
+            bulkEvent.commit();
+        }
+    }
+
+    @Name("com.github.protobufel.multikeymap.PartialQuery")
+    @Label("Partial Key Query")
+    @Description("The intersection of the posting sets of a partial key query")
+    @Category(CATEGORY)
+    @Threshold("10 ms")
+    static final class PartialQueryEvent extends Event {
+        @Label("Partial Key")
+        String partialKey;
+
+        @Label("Sub-Key Count")
+        @Description("The number of the distinct sub-keys of the partial key")
+        int subKeyCount;
+
+        @Label("Positional")
+        boolean positional;
+
+        @Label("Smallest Posting Set Size")
+        @Description("The number of the candidates, or 0 if a sub-key is absent")
+        int smallestPostingSetSize;
+
+        @Label("Result Size")
+        @Description("The size of the intersection, before the positional matching if any")
+        int resultSize;
+    }
+
+    @Name("com.github.protobufel.multikeymap.IndexUpdate")
+    @Label("Index Update")
+    @Description("The indexing or un-indexing of the sub-keys of a full key")
+    @Category(CATEGORY)
+    @Threshold("1 ms")
+    @StackTrace(false)
+    static final class IndexUpdateEvent extends Event {
+        @Label("Added")
+        @Description("True if the full key has been indexed, false if un-indexed")
+        boolean added;
+
+        @Label("Sub-Key Count")
+        int subKeyCount;
+    }
+
+    @Name("com.github.protobufel.multikeymap.BulkOperation")
+    @Label("Bulk Operation")
+    @Description("An operation on many entries, such as clear, putAll, replaceAll, or deserialization")
+    @Category(CATEGORY)
+    @Threshold("10 ms")
+    static final class BulkOperationEvent extends Event {
+        @Label("Operation")
+        String operation;
+
+        @Label("Entry Count")
+        int entryCount;
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ *    Copyright 2017 David Tesler
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.protobufel.multikeymap;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the allocation rates of the MultiKeyMap's put, remove, and partial queries with the GC
+ * profiler, i.e. run it with {@code -prof gc} and compare the {@code gc.alloc.rate.norm} bytes
+ * per operation, which unlike the time are stable across the machines. The retained bytes are
+ * reported by {@link MemoryFootprint} instead.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JMHAllocationRate {
+    private static final int QUERY_COUNT = 1024;
+
+    @Param({"100000"})
+    public int mapSize = 100_000;
+
+    @Param({"4", "10"})
+    public int arity = 4;
+
+    @Param({"0", "1.2"})
+    public double skew = 0;
+
+    private MultiKeyMap<String, List<String>, Integer> multiKeyMap;
+    private List<List<String>> keys;
+    private List<List<String>> newKeys;
+    private List<Set<String>> partialKeys;
+    private List<List<String>> positionalKeys;
+    private List<Integer> positions;
+    private int cursor;
+
+    public static void main(final String[] args) throws RunnerException {
+        final Options opt =
+                new OptionsBuilder()
+                        .include(JMHAllocationRate.class.getSimpleName())
+                        .addProfiler(GCProfiler.class)
+                        .build();
+        new Runner(opt).run();
+    }
+
+    @Setup(Level.Trial)
+    public void trialSetup() {
+        final List<List<String>> allKeys =
+                MultiKeyMapGenerators.newZipfKeys(mapSize + QUERY_COUNT, arity, 1000, skew, 42);
+        multiKeyMap = MultiKeyMaps.newMultiKeyMap(HashMap::new, false);
+        keys = new ArrayList<>(QUERY_COUNT);
+        partialKeys = new ArrayList<>(QUERY_COUNT);
+        positionalKeys = new ArrayList<>(QUERY_COUNT);
+
+        for (int i = 0; i < mapSize; i++) {
+            multiKeyMap.put(allKeys.get(i), i);
+        }
+
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            final List<String> key = allKeys.get((int) ((long) i * mapSize / QUERY_COUNT));
+            keys.add(key);
+            partialKeys.add(new HashSet<>(Arrays.asList(key.get(0), key.get(1))));
+            positionalKeys.add(Arrays.asList(key.get(0), key.get(1)));
+        }
+
+        newKeys = new ArrayList<>(allKeys.subList(mapSize, allKeys.size()));
+        positions = Arrays.asList(0, 1);
+    }
+
+    private int next() {
+        return cursor = (cursor + 1) & (QUERY_COUNT - 1);
+    }
+
+    @Benchmark
+    public Integer putAndRemove() {
+        final List<String> key = newKeys.get(next());
+        multiKeyMap.put(key, 0);
+        return multiKeyMap.remove(key);
+    }
+
+    @Benchmark
+    public Integer replace() {
+        return multiKeyMap.put(keys.get(next()), 0);
+    }
+
+    @Benchmark
+    public long partialQuery() {
+        return multiKeyMap.getFullKeysByPartialKey(partialKeys.get(next())).count();
+    }
+
+    @Benchmark
+    public long positionalPartialQuery() {
+        return multiKeyMap.getFullKeysByPartialKey(positionalKeys.get(next()), positions).count();
+    }
+}
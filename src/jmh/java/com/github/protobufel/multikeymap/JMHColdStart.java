@@ -0,0 +1,130 @@
+/*
+ *    Copyright 2017 David Tesler
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.protobufel.multikeymap;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cold start of a MultiKeyMap, i.e. its serialization, its deserialization, which
+ * rebuilds the whole sub-key index, and the index rebuild alone off a plain Map, as the single
+ * shots on the freshly prepared data. The serialized size is reported as the {@code
+ * serializedBytes} secondary result of the serializedBytes benchmark.
+ *
+ * <p>The {@code jmhRegressionCheck} Gradle task compares these, or any other, JMH JSON results
+ * against the committed baseline, see {@code src/jmh/baseline/README.md}.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, batchSize = 1)
+@Measurement(iterations = 10, batchSize = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JMHColdStart {
+
+    @Param({"10000", "100000", "1000000"})
+    public int mapSize = 10_000;
+
+    @Param({"4"})
+    public int arity = 4;
+
+    private MultiKeyMap<String, List<String>, Integer> multiKeyMap;
+    private Map<List<String>, Integer> plainMap;
+    private byte[] serialized;
+
+    public static void main(final String[] args) throws RunnerException {
+        final Options opt =
+                new OptionsBuilder().include(JMHColdStart.class.getSimpleName()).build();
+        new Runner(opt).run();
+    }
+
+    @Setup(Level.Trial)
+    public void trialSetup() throws IOException {
+        final List<List<String>> keys =
+                MultiKeyMapGenerators.newZipfKeys(mapSize, arity, 1000, 0.8, 42);
+        plainMap = new HashMap<>();
+
+        for (int i = 0; i < keys.size(); i++) {
+            plainMap.put(keys.get(i), i);
+        }
+
+        multiKeyMap = MultiKeyMaps.of(plainMap);
+        serialized = serialize(multiKeyMap).toByteArray();
+    }
+
+    private static ByteArrayOutputStream serialize(final Object object) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(object);
+        }
+
+        return bytes;
+    }
+
+    @Benchmark
+    public int serialize() throws IOException {
+        return serialize(multiKeyMap).size();
+    }
+
+    /**
+     * Serializes repeatedly, in the average time mode, since the single shot mode doesn't report
+     * the secondary results, such as the bytes written.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+    @Measurement(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+    public int serializedBytes(final SerializedBytes counters) throws IOException {
+        final int size = serialize(multiKeyMap).size();
+        counters.serializedBytes = size;
+        return size;
+    }
+
+    @Benchmark
+    public Object deserialize() throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(serialized))) {
+            return in.readObject();
+        }
+    }
+
+    @Benchmark
+    public MultiKeyMap<String, List<String>, Integer> rebuildIndex() {
+        return MultiKeyMaps.of(plainMap);
+    }
+
+    /** The secondary results of the serializedBytes benchmark. */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class SerializedBytes {
+        public long serializedBytes;
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ *    Copyright 2017 David Tesler
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.protobufel.multikeymap;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the concurrent MultiKeyMap, as in {@code MultiKeyMaps.newMultiKeyMap(supplier, true)},
+ * under the mixed read/write load of the shared instance, against the ConcurrentHashMap baseline
+ * with the same mix less the partial queries. Both the throughput and the sampled latency
+ * percentiles are reported per operation.
+ *
+ * <p>The thread mix of a group is get, put, remove, and partial query threads, in this order, and
+ * is configurable by {@code -tg}, e.g. {@code -tg 48,6,6,4} for 64 threads; the baseline group has
+ * no partial query threads, so give it the same number of the first three, e.g. {@code
+ * JMHConcurrentMixed.baseline -tg 48,6,6}.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+@State(Scope.Group)
+public class JMHConcurrentMixed {
+    private static final int QUERY_COUNT = 1024;
+
+    @Param({"100000"})
+    public int mapSize = 100_000;
+
+    @Param({"4"})
+    public int arity = 4;
+
+    @Param({"0.8"})
+    public double skew = 0.8;
+
+    private List<List<String>> keys;
+    private List<Set<String>> partialKeys;
+    private MultiKeyMap<String, List<String>, Integer> multiKeyMap;
+    private Map<List<String>, Integer> baselineMap;
+
+    public static void main(final String[] args) throws RunnerException {
+        final Options opt =
+                new OptionsBuilder().include(JMHConcurrentMixed.class.getSimpleName()).build();
+        new Runner(opt).run();
+    }
+
+    @Setup(Level.Trial)
+    public void trialSetup() {
+        // the writers put and remove the random keys of the twice as large universe, so the map
+        // stays about its initial, half full size
+        keys = MultiKeyMapGenerators.newZipfKeys(mapSize * 2, arity, 1000, skew, 42);
+        multiKeyMap = MultiKeyMaps.newMultiKeyMap(ConcurrentHashMap::new, true);
+        baselineMap = new ConcurrentHashMap<>();
+
+        for (int i = 0; i < keys.size(); i += 2) {
+            multiKeyMap.put(keys.get(i), i);
+            baselineMap.put(keys.get(i), i);
+        }
+
+        partialKeys = new ArrayList<>(QUERY_COUNT);
+
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            final List<String> key = keys.get((i * 2) % keys.size());
+            partialKeys.add(new HashSet<>(Arrays.asList(key.get(0), key.get(1))));
+        }
+    }
+
+    private List<String> randomKey() {
+        return keys.get(ThreadLocalRandom.current().nextInt(keys.size()));
+    }
+
+    @Benchmark
+    @Group("multiKeyMap")
+    @GroupThreads(4)
+    public Integer get() {
+        return multiKeyMap.get(randomKey());
+    }
+
+    @Benchmark
+    @Group("multiKeyMap")
+    @GroupThreads(1)
+    public Integer put() {
+        return multiKeyMap.put(randomKey(), 0);
+    }
+
+    @Benchmark
+    @Group("multiKeyMap")
+    @GroupThreads(1)
+    public Integer remove() {
+        return multiKeyMap.remove(randomKey());
+    }
+
+    @Benchmark
+    @Group("multiKeyMap")
+    @GroupThreads(1)
+    public long partialQuery() {
+        return multiKeyMap
+                .getFullKeysByPartialKey(
+                        partialKeys.get(ThreadLocalRandom.current().nextInt(QUERY_COUNT)))
+                .count();
+    }
+
+    @Benchmark
+    @Group("baseline")
+    @GroupThreads(4)
+    public Integer baselineGet() {
+        return baselineMap.get(randomKey());
+    }
+
+    @Benchmark
+    @Group("baseline")
+    @GroupThreads(1)
+    public Integer baselinePut() {
+        return baselineMap.put(randomKey(), 0);
+    }
+
+    @Benchmark
+    @Group("baseline")
+    @GroupThreads(1)
+    public Integer baselineRemove() {
+        return baselineMap.remove(randomKey());
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ *    Copyright 2017 David Tesler
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.protobufel.multikeymap;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static java.util.stream.Collectors.toList;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JMHIntMultiKeyMapVsMultiKeyMap {
+
+    @Param({"1000", "100000"})
+    public int containerSize = 1000;
+
+    @Param({"10"})
+    public int keySize = 10;
+
+    @Param({"1000"})
+    public int subKeyRange = 1000;
+
+    private Random random;
+
+    private MultiKeyMap<Integer, List<Integer>, Integer> multiKeyMap;
+    private IntMultiKeyMap<Integer> intMultiKeyMap;
+
+    private int[] searchKey;
+    private List<Integer> boxedSearchKey;
+
+    private int[] addKey;
+    private List<Integer> boxedAddKey;
+
+    private int[] partialKey;
+    private List<Integer> boxedPartialKey;
+
+    private int[] partialKeyPositions;
+    private List<Integer> boxedPartialKeyPositions;
+
+    public static void main(final String[] args) throws RunnerException {
+        final Options opt =
+                new OptionsBuilder()
+                        .include(JMHIntMultiKeyMapVsMultiKeyMap.class.getSimpleName())
+                        .build();
+        new Runner(opt).run();
+    }
+
+    @Setup(Level.Trial)
+    public void trialSetup() {
+        random = new Random(containerSize);
+        multiKeyMap = MultiKeyMaps.newMultiKeyMap();
+        intMultiKeyMap = MultiKeyMaps.newIntMultiKeyMap();
+
+        for (int i = 0; i < containerSize; i++) {
+            final int[] key = generateKey();
+            multiKeyMap.put(boxed(key), i);
+            intMultiKeyMap.put(key, i);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void iterationSetup() {
+        searchKey = intMultiKeyMap.getFullKeysByPartialKey(random.nextInt(subKeyRange))
+                .findAny()
+                .orElseGet(this::generateKey);
+        boxedSearchKey = boxed(searchKey);
+        addKey = generateKey();
+        boxedAddKey = boxed(addKey);
+        partialKey = new int[]{searchKey[0], searchKey[keySize / 2]};
+        boxedPartialKey = boxed(partialKey);
+        partialKeyPositions = new int[]{0, -1};
+        boxedPartialKeyPositions = boxed(partialKeyPositions);
+    }
+
+    int[] generateKey() {
+        return random.ints(keySize, 0, subKeyRange).toArray();
+    }
+
+    List<Integer> boxed(final int[] key) {
+        return IntStream.of(key).boxed().collect(toList());
+    }
+
+    @Benchmark
+    public Integer baseline_getValue() {
+        return multiKeyMap.get(boxedSearchKey);
+    }
+
+    @Benchmark
+    public Integer getValue() {
+        return intMultiKeyMap.get(searchKey);
+    }
+
+    @Benchmark
+    public Integer baseline_putRemove() {
+        multiKeyMap.put(boxedAddKey, 1);
+        return multiKeyMap.remove(boxedAddKey);
+    }
+
+    @Benchmark
+    public Integer putRemove() {
+        intMultiKeyMap.put(addKey, 1);
+        return intMultiKeyMap.remove(addKey);
+    }
+
+    @Benchmark
+    public List<Integer> baseline_getValuesByPartialKey() {
+        return multiKeyMap.getValuesByPartialKey(boxedPartialKey).collect(toList());
+    }
+
+    @Benchmark
+    public List<Integer> getValuesByPartialKey() {
+        return intMultiKeyMap.getValuesByPartialKey(partialKey).collect(toList());
+    }
+
+    @Benchmark
+    public List<Integer> baseline_getValuesByPartialKeyWithPositions() {
+        return multiKeyMap
+                .getValuesByPartialKey(boxedPartialKey, boxedPartialKeyPositions)
+                .collect(toList());
+    }
+
+    @Benchmark
+    public List<Integer> getValuesByPartialKeyWithPositions() {
+        return intMultiKeyMap
+                .getValuesByPartialKey(partialKey, partialKeyPositions)
+                .collect(toList());
+    }
+}
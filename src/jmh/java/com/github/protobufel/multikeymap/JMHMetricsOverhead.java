@@ -0,0 +1,98 @@
+/*
+ *    Copyright 2017 David Tesler
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.protobufel.multikeymap;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the overhead of the StandardMultiKeyMapMetrics against no metrics at all, which is
+ * expected to stay within 5% for both the modifications and the partial key queries.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JMHMetricsOverhead {
+
+    @Param({"false", "true"})
+    public boolean metricsEnabled;
+
+    @Param({"100000"})
+    public int containerSize = 100_000;
+
+    private MultiKeyMap<String, List<String>, Integer> multiKeyMap;
+    private List<String> addKey;
+    private Set<String> partialKey;
+    private List<String> positionalKey;
+    private List<Integer> positions;
+
+    public static void main(final String[] args) throws RunnerException {
+        final Options opt =
+                new OptionsBuilder().include(JMHMetricsOverhead.class.getSimpleName()).build();
+        new Runner(opt).run();
+    }
+
+    @Setup(Level.Trial)
+    public void trialSetup() {
+        final MultiKeyMapBuilder<String, List<String>, Integer> builder = MultiKeyMaps.builder();
+
+        if (metricsEnabled) {
+            builder.metrics(new StandardMultiKeyMapMetrics());
+        }
+
+        multiKeyMap = builder.build();
+
+        for (int i = 0; i < containerSize; i++) {
+            multiKeyMap.put(
+                    Arrays.asList("a" + (i % 100), "b" + (i % 37), "c" + (i % 11), "id" + i), i);
+        }
+
+        addKey = Arrays.asList("a1", "b1", "c1", "new");
+        partialKey = new HashSet<>(Arrays.asList("a1", "c1"));
+        positionalKey = Arrays.asList("b1", "a1");
+        positions = Arrays.asList(1, -1);
+    }
+
+    @Benchmark
+    public Integer putRemove() {
+        multiKeyMap.put(addKey, 1);
+        return multiKeyMap.remove(addKey);
+    }
+
+    @Benchmark
+    public long getFullKeysByPartialKey() {
+        return multiKeyMap.getFullKeysByPartialKey(partialKey).count();
+    }
+
+    @Benchmark
+    public long getFullKeysByPartialKeyWithPositions() {
+        return multiKeyMap.getFullKeysByPartialKey(positionalKey, positions).count();
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ *    Copyright 2017 David Tesler
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.protobufel.multikeymap;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static java.util.stream.Collectors.toSet;
+
+/**
+ * Compares the sequential, the shared ConcurrentHashMap based, and the partitioned parallel
+ * intersections of the large sets. Vary the common pool's parallelism to see the scaling, e.g.
+ * {@code -Djava.util.concurrent.ForkJoinPool.common.parallelism=4}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JMHParallelIntersection {
+
+    @Param({"1000000"})
+    public int setSize = 1_000_000;
+
+    private List<Set<Integer>> sets;
+    private Set<Integer> smallestSet;
+
+    public static void main(final String[] args) throws RunnerException {
+        final Options opt =
+                new OptionsBuilder().include(JMHParallelIntersection.class.getSimpleName()).build();
+        new Runner(opt).run();
+    }
+
+    @Setup(Level.Trial)
+    public void trialSetup() {
+        smallestSet = IntStream.range(0, setSize).boxed().collect(toSet());
+        sets =
+                Arrays.asList(
+                        IntStream.range(0, setSize * 2).filter(i -> i % 2 == 0).boxed().collect(toSet()),
+                        smallestSet,
+                        IntStream.range(0, setSize * 3).filter(i -> i % 3 != 1).boxed().collect(toSet()));
+    }
+
+    @Benchmark
+    public int sequential() {
+        return Collectors.intersectSets(sets, false).size();
+    }
+
+    @Benchmark
+    public int sharedConcurrentSet() {
+        return Collectors.streamOf(sets, true)
+                .collect(Collectors.setIntersecting(smallestSet, true))
+                .size();
+    }
+
+    @Benchmark
+    public int partitioned() {
+        return Collectors.intersectSetsInParallel(sets, ForkJoinPool.commonPool()).size();
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ *    Copyright 2017 David Tesler
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.protobufel.multikeymap;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finds the crossover number of the candidates, i.e. the size of the smallest posting set, at
+ * which the parallel intersection outruns the sequential one, so as to tune the {@link
+ * ExecutionPolicy#DEFAULT_PARALLEL_THRESHOLD} for the actual hardware.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JMHParallelIntersectionThreshold {
+
+    @Param({"10", "1000", "10000", "100000", "1000000"})
+    public int candidates = 1000;
+
+    private MultiKeyMap<String, List<String>, Integer> multiKeyMap;
+    private Set<String> partialKey;
+    private ExecutionPolicy parallelPolicy;
+
+    public static void main(final String[] args) throws RunnerException {
+        final Options opt =
+                new OptionsBuilder()
+                        .include(JMHParallelIntersectionThreshold.class.getSimpleName())
+                        .build();
+        new Runner(opt).run();
+    }
+
+    @Setup(Level.Trial)
+    public void trialSetup() {
+        multiKeyMap = MultiKeyMaps.newMultiKeyMap(HashMap::new, false, ExecutionPolicy.sequential());
+
+        for (int i = 0; i < candidates * 2; i++) {
+            multiKeyMap.put(
+                    Arrays.asList(
+                            "all", (i % 2 == 0) ? "even" : "odd", (i % 4 < 2) ? "low" : "high", "key" + i),
+                    i);
+        }
+
+        partialKey = new HashSet<>(Arrays.asList("all", "even", "low"));
+        parallelPolicy = ExecutionPolicy.parallel(ForkJoinPool.commonPool(), 0);
+    }
+
+    @Benchmark
+    public long sequential() {
+        return multiKeyMap
+                .getFullKeysByPartialKey(partialKey, ExecutionPolicy.sequential())
+                .count();
+    }
+
+    @Benchmark
+    public long parallel() {
+        return multiKeyMap.getFullKeysByPartialKey(partialKey, parallelPolicy).count();
+    }
+}
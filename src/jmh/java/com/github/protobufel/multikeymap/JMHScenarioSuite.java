@@ -0,0 +1,177 @@
+/*
+ *    Copyright 2017 David Tesler
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.protobufel.multikeymap;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Measures the MultiKeyMap on the production like workloads: the map size, the key arity, the
+ * Zipfian skew of the sub-keys, the query selectivity, i.e. the number of the sub-keys in the
+ * partial key, and the query shape, i.e. a Set, an any-position, or a positional partial key, each
+ * run both sequentially and in parallel. The keys are generated by {@link
+ * MultiKeyMapGenerators#newZipfKeys(int, int, int, double, long)} with the fixed seed, so that the
+ * runs are comparable. The full cross product is large, so narrow it down with {@code -p}, e.g.
+ * {@code -p mapSize=10000000 -p arity=10 -p skew=1.2} for the 10M entries, which also needs a
+ * large heap, as in {@code -jvmArgsAppend -Xmx16g}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JMHScenarioSuite {
+    private static final int QUERY_COUNT = 1024;
+    private static final long SEED = 42;
+
+    @Param({"1000", "100000", "1000000"})
+    public int mapSize = 1000;
+
+    @Param({"4", "10"})
+    public int arity = 4;
+
+    @Param({"1000"})
+    public int vocabulary = 1000;
+
+    @Param({"0", "0.8", "1.2"})
+    public double skew = 0.8;
+
+    @Param({"1", "2", "3"})
+    public int partialKeySize = 2;
+
+    @Param({"SET", "ANY_POSITION", "POSITIONAL"})
+    public QueryShape queryShape = QueryShape.SET;
+
+    @Param({"sequential", "parallel"})
+    public String policy = "sequential";
+
+    private MultiKeyMap<String, List<String>, Integer> multiKeyMap;
+    private ExecutionPolicy executionPolicy;
+    private List<List<String>> fullKeys;
+    private List<Iterable<String>> partialKeys;
+    private List<List<Integer>> positions;
+    private List<List<String>> newKeys;
+    private int cursor;
+
+    public static void main(final String[] args) throws RunnerException {
+        final Options opt =
+                new OptionsBuilder().include(JMHScenarioSuite.class.getSimpleName()).build();
+        new Runner(opt).run();
+    }
+
+    @Setup(Level.Trial)
+    public void trialSetup() {
+        if (partialKeySize >= arity) {
+            throw new IllegalArgumentException(
+                    String.format("partialKeySize %s must be less than arity %s", partialKeySize, arity));
+        }
+
+        executionPolicy =
+                "parallel".equals(policy)
+                        ? ExecutionPolicy.parallel(ForkJoinPool.commonPool(), 0)
+                        : ExecutionPolicy.sequential();
+        multiKeyMap = MultiKeyMaps.newMultiKeyMap(HashMap::new, false, ExecutionPolicy.sequential());
+        fullKeys = MultiKeyMapGenerators.newZipfKeys(mapSize, arity, vocabulary, skew, SEED);
+
+        for (int i = 0; i < fullKeys.size(); i++) {
+            multiKeyMap.put(fullKeys.get(i), i);
+        }
+
+        final Random random = new Random(SEED);
+        partialKeys = new ArrayList<>(QUERY_COUNT);
+        positions = new ArrayList<>(QUERY_COUNT);
+        newKeys = new ArrayList<>(QUERY_COUNT);
+
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            final List<String> fullKey = fullKeys.get(random.nextInt(fullKeys.size()));
+            // the partial key is made of the distinct, non-unique sub-keys, like a typical filter
+            final List<Integer> subKeyPositions =
+                    IntStream.range(0, arity - 1).boxed().collect(Collectors.toList());
+            Collections.shuffle(subKeyPositions, random);
+            final List<String> partialKey = new ArrayList<>(partialKeySize);
+            final List<Integer> partialKeyPositions = new ArrayList<>(partialKeySize);
+
+            for (final int position : subKeyPositions) {
+                if (partialKey.size() == partialKeySize) {
+                    break;
+                } else if (!partialKey.contains(fullKey.get(position))) {
+                    partialKey.add(fullKey.get(position));
+                    partialKeyPositions.add(position);
+                }
+            }
+
+            partialKeys.add(queryShape == QueryShape.SET ? new HashSet<>(partialKey) : partialKey);
+            positions.add(
+                    queryShape == QueryShape.POSITIONAL ? partialKeyPositions : Collections.emptyList());
+            final List<String> newKey = new ArrayList<>(fullKey);
+            newKey.set(arity - 1, "new" + i);
+            newKeys.add(newKey);
+        }
+    }
+
+    @Benchmark
+    public long getFullKeysByPartialKey() {
+        final int i = next();
+        return (queryShape == QueryShape.SET)
+                ? multiKeyMap.getFullKeysByPartialKey(partialKeys.get(i), executionPolicy).count()
+                : multiKeyMap
+                .getFullKeysByPartialKey(partialKeys.get(i), positions.get(i), executionPolicy)
+                .count();
+    }
+
+    @Benchmark
+    public Integer get() {
+        return multiKeyMap.get(fullKeys.get(next() % fullKeys.size()));
+    }
+
+    @Benchmark
+    public Integer putAndRemove() {
+        final List<String> key = newKeys.get(next());
+        multiKeyMap.put(key, -1);
+        return multiKeyMap.remove(key);
+    }
+
+    private int next() {
+        return cursor = (cursor + 1) & (QUERY_COUNT - 1);
+    }
+
+    /** The shape of the partial key. */
+    public enum QueryShape {
+        /** A Set partial key, i.e. the pure intersection. */
+        SET,
+        /** A List partial key without positions, i.e. the sub-keys at any positions. */
+        ANY_POSITION,
+        /** A List partial key with the actual positions of its sub-keys. */
+        POSITIONAL
+    }
+}
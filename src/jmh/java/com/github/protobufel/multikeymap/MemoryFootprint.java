@@ -0,0 +1,93 @@
+/*
+ *    Copyright 2017 David Tesler
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.protobufel.multikeymap;
+
+import org.openjdk.jol.info.GraphLayout;
+import org.openjdk.jol.vm.VM;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reports the retained bytes per entry of the BaseMultiKeyMap by walking its object graph with
+ * JOL, across the key arities and the sub-key skews. The bytes are split into the full keys with
+ * their values, the fullMap's own structure, and the partMap, i.e. the sub-key index, less the
+ * objects it shares with the fullMap. The last column is the {@link IndexStats} estimate of the
+ * index, for comparison.
+ *
+ * <p>Run it as {@code MemoryFootprint [mapSize [arity,... [skew,...]]]}, e.g. {@code
+ * MemoryFootprint 100000 4,10 0,1.2}; the output is tab separated, so that the runs of the
+ * different releases, index modes, and VMs can be diffed. The allocation rates are measured by
+ * {@link JMHAllocationRate} instead.
+ */
+public final class MemoryFootprint {
+    private static final long SEED = 42;
+    private static final int VOCABULARY = 1000;
+
+    private MemoryFootprint() {
+    }
+
+    public static void main(final String[] args) {
+        final int mapSize = (args.length > 0) ? Integer.parseInt(args[0]) : 100_000;
+        final String[] arities = ((args.length > 1) ? args[1] : "2,4,10").split(",");
+        final String[] skews = ((args.length > 2) ? args[2] : "0,0.8,1.2").split(",");
+
+        System.out.println(VM.current().details());
+        System.out.println(
+                "entries\tarity\tskew\tkeysAndValues/entry\tfullMap/entry\tpartMap/entry"
+                        + "\testimatedPartMap/entry");
+
+        for (final String arity : arities) {
+            for (final String skew : skews) {
+                System.out.println(
+                        measure(mapSize, Integer.parseInt(arity.trim()), Double.parseDouble(skew.trim())));
+            }
+        }
+    }
+
+    static String measure(final int mapSize, final int arity, final double skew) {
+        final BaseMultiKeyMap<String, List<String>, Integer> multiKeyMap = new BaseMultiKeyMap<>();
+        final List<List<String>> keys =
+                MultiKeyMapGenerators.newZipfKeys(mapSize, arity, VOCABULARY, skew, SEED);
+
+        for (int i = 0; i < keys.size(); i++) {
+            multiKeyMap.put(keys.get(i), i);
+        }
+
+        // the sizes are subtracted rather than the layouts, since the latter match the objects by
+        // their addresses, which may move with GC in between the walks
+        final List<Object> keysAndValues = new ArrayList<>(multiKeyMap.keySet());
+        keysAndValues.addAll(multiKeyMap.values());
+        final long keysAndValuesBytes = GraphLayout.parseInstance(keysAndValues.toArray()).totalSize();
+        final long fullMapBytes = GraphLayout.parseInstance(multiKeyMap.getFullMap()).totalSize();
+        final long bothMapsBytes =
+                GraphLayout.parseInstance(multiKeyMap.getFullMap(), multiKeyMap.getPartMap())
+                        .totalSize();
+        final int entries = multiKeyMap.size();
+
+        return String.format(
+                "%d\t%d\t%s\t%.1f\t%.1f\t%.1f\t%.1f",
+                entries,
+                arity,
+                skew,
+                (double) keysAndValuesBytes / entries,
+                (double) (fullMapBytes - keysAndValuesBytes) / entries,
+                (double) (bothMapsBytes - fullMapBytes) / entries,
+                (double) multiKeyMap.indexStats(0).getEstimatedIndexBytes() / entries);
+    }
+}
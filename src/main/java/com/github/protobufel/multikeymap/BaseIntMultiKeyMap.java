@@ -0,0 +1,111 @@
+/*
+ *    Copyright 2017 David Tesler
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.protobufel.multikeymap;
+
+import java.util.Arrays;
+import java.util.Map.Entry;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+
+/**
+ * The default implementation of the {@link IntMultiKeyMap}.
+ *
+ * <p>NOTE: This class is not thread-safe.
+ *
+ * @param <V> the type of a value
+ * @author David Tesler
+ */
+class BaseIntMultiKeyMap<V> extends BasePrimitiveMultiKeyMap<int[], V>
+        implements IntMultiKeyMap<V> {
+    private static final long serialVersionUID = 7730436412785839530L;
+
+    BaseIntMultiKeyMap() {
+        super();
+    }
+
+    @Override
+    int length(final int[] key) {
+        return key.length;
+    }
+
+    @Override
+    long subKeyAt(final int[] key, final int index) {
+        return key[index];
+    }
+
+    @Override
+    int hash(final int[] key) {
+        return IntHashSet.mix(Arrays.hashCode(key));
+    }
+
+    @Override
+    boolean keyEquals(final int[] key1, final int[] key2) {
+        return Arrays.equals(key1, key2);
+    }
+
+    @Override
+    int[] copyOf(final int[] key) {
+        return key.clone();
+    }
+
+    @Override
+    String keyToString(final int[] key) {
+        return Arrays.toString(key);
+    }
+
+    @Override
+    public boolean containsKey(final int... key) {
+        return containsFullKey(key);
+    }
+
+    @Override
+    public V get(final int... key) {
+        return getValue(key);
+    }
+
+    @Override
+    public V put(final int[] key, final V value) {
+        return putValue(key, value);
+    }
+
+    @Override
+    public V remove(final int... key) {
+        return removeKey(key);
+    }
+
+    @Override
+    public void forEach(final BiConsumer<? super int[], ? super V> action) {
+        forEachEntry(action, this::copyOf);
+    }
+
+    @Override
+    public Stream<int[]> getFullKeysByPartialKey(final int[] partialKey, final int[] positions) {
+        return fullKeysOf(findByPartialKey(widen(partialKey), positions));
+    }
+
+    @Override
+    public Stream<V> getValuesByPartialKey(final int[] partialKey, final int[] positions) {
+        return valuesOf(findByPartialKey(widen(partialKey), positions));
+    }
+
+    @Override
+    public Stream<Entry<int[], V>> getEntriesByPartialKey(
+            final int[] partialKey, final int[] positions) {
+        return entriesOf(findByPartialKey(widen(partialKey), positions));
+    }
+}
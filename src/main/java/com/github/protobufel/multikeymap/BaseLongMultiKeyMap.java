@@ -0,0 +1,111 @@
+/*
+ *    Copyright 2017 David Tesler
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.protobufel.multikeymap;
+
+import java.util.Arrays;
+import java.util.Map.Entry;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+
+/**
+ * The default implementation of the {@link LongMultiKeyMap}.
+ *
+ * <p>NOTE: This class is not thread-safe.
+ *
+ * @param <V> the type of a value
+ * @author David Tesler
+ */
+class BaseLongMultiKeyMap<V> extends BasePrimitiveMultiKeyMap<long[], V>
+        implements LongMultiKeyMap<V> {
+    private static final long serialVersionUID = -3625617009512437915L;
+
+    BaseLongMultiKeyMap() {
+        super();
+    }
+
+    @Override
+    int length(final long[] key) {
+        return key.length;
+    }
+
+    @Override
+    long subKeyAt(final long[] key, final int index) {
+        return key[index];
+    }
+
+    @Override
+    int hash(final long[] key) {
+        return IntHashSet.mix(Arrays.hashCode(key));
+    }
+
+    @Override
+    boolean keyEquals(final long[] key1, final long[] key2) {
+        return Arrays.equals(key1, key2);
+    }
+
+    @Override
+    long[] copyOf(final long[] key) {
+        return key.clone();
+    }
+
+    @Override
+    String keyToString(final long[] key) {
+        return Arrays.toString(key);
+    }
+
+    @Override
+    public boolean containsKey(final long... key) {
+        return containsFullKey(key);
+    }
+
+    @Override
+    public V get(final long... key) {
+        return getValue(key);
+    }
+
+    @Override
+    public V put(final long[] key, final V value) {
+        return putValue(key, value);
+    }
+
+    @Override
+    public V remove(final long... key) {
+        return removeKey(key);
+    }
+
+    @Override
+    public void forEach(final BiConsumer<? super long[], ? super V> action) {
+        forEachEntry(action, this::copyOf);
+    }
+
+    @Override
+    public Stream<long[]> getFullKeysByPartialKey(final long[] partialKey, final int[] positions) {
+        return fullKeysOf(findByPartialKey(partialKey, positions));
+    }
+
+    @Override
+    public Stream<V> getValuesByPartialKey(final long[] partialKey, final int[] positions) {
+        return valuesOf(findByPartialKey(partialKey, positions));
+    }
+
+    @Override
+    public Stream<Entry<long[], V>> getEntriesByPartialKey(
+            final long[] partialKey, final int[] positions) {
+        return entriesOf(findByPartialKey(partialKey, positions));
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ *    Copyright 2017 David Tesler
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.protobufel.multikeymap;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The MaterializedView kept up to date by a partial key subscription of its MultiKeyMap. The
+ * entries are stored in a ConcurrentHashMap, so reading is safe while the MultiKeyMap is modified
+ * by other threads.
+ *
+ * <p>The subscription events are dispatched outside the MultiKeyMap's lock of the key, so those of
+ * the concurrent writers of the same key may arrive in any order. Hence, every event just refreshes
+ * the entry of its key from the MultiKeyMap, under the ConcurrentHashMap's lock of the key, so that
+ * the last refresh always sees the latest modification. The view subscribes first and then loads
+ * the current matching entries the same way, so that no modification concurrent with the loading
+ * is lost either.
+ *
+ * @param <T> the type of a sub-key
+ * @param <K> the type of a full key
+ * @param <V> the type of a value
+ * @author David Tesler
+ */
+final class BaseMaterializedView<T, K extends Iterable<T>, V> extends AbstractMap<K, V>
+        implements MaterializedView<K, V> {
+    private final Map<K, V> entries = new ConcurrentHashMap<>();
+    private final Set<Entry<K, V>> entrySet = Collections.unmodifiableMap(entries).entrySet();
+    /** The key being refreshed by the current thread, if any, see {@link #refresh(Object)}. */
+    private final ThreadLocal<K> refreshing = new ThreadLocal<>();
+    private final MultiKeyMap<T, K, V> multiKeyMap;
+    private final PartialKeySubscription subscription;
+
+    BaseMaterializedView(
+            final MultiKeyMap<T, K, V> multiKeyMap,
+            final Iterable<? extends T> partialKey,
+            final Iterable<Integer> positions) {
+        super();
+        this.multiKeyMap = Objects.requireNonNull(multiKeyMap);
+        subscription =
+                multiKeyMap.subscribe(
+                        partialKey,
+                        positions,
+                        new PartialKeyListener<K, V>() {
+                            @Override
+                            public void onAdded(final K key, final V value) {
+                                refresh(key);
+                            }
+
+                            @Override
+                            public void onRemoved(final K key, final V value) {
+                                refresh(key);
+                            }
+
+                            @Override
+                            public void onUpdated(final K key, final V oldValue, final V newValue) {
+                                refresh(key);
+                            }
+                        });
+
+        multiKeyMap
+                .getFullKeysByPartialKey(partialKey, positions)
+                .forEach(this::refresh);
+    }
+
+    /**
+     * Sets the entry of the key to its current value in the MultiKeyMap, or removes it if none.
+     * Reading an expired entry expires it, which notifies this view of its removal on the spot, so
+     * such a nested refresh of the same key is skipped, as the outer one applies it anyway.
+     *
+     * @param key the full key matching the partial key of the view
+     */
+    private void refresh(final K key) {
+        final K outer = refreshing.get();
+
+        if (key.equals(outer)) {
+            return;
+        }
+
+        refreshing.set(key);
+
+        try {
+            entries.compute(key, (k, old) -> multiKeyMap.get(k));
+        } finally {
+            refreshing.set(outer);
+        }
+    }
+
+    @Override
+    public boolean isClosed() {
+        return subscription.isClosed();
+    }
+
+    @Override
+    public void close() {
+        subscription.close();
+        entries.clear();
+    }
+
+    @Override
+    public int size() {
+        return entries.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        return entries.containsKey(Objects.requireNonNull(key));
+    }
+
+    @Override
+    public boolean containsValue(final Object value) {
+        return entries.containsValue(Objects.requireNonNull(value));
+    }
+
+    @Override
+    public V get(final Object key) {
+        return entries.get(Objects.requireNonNull(key));
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return entrySet;
+    }
+}
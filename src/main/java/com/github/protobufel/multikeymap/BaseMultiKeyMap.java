@@ -18,17 +18,23 @@
 package com.github.protobufel.multikeymap;
 
 import java.io.IOException;
+import java.io.NotSerializableException;
 import java.io.ObjectStreamException;
 import java.io.Serializable;
+import java.lang.ref.WeakReference;
 import java.util.*;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
 import java.util.function.Consumer;
 import java.util.stream.Stream;
-
-import static com.github.protobufel.multikeymap.Collectors.intersectSets;
+import java.util.stream.StreamSupport;
 
 class BaseMultiKeyMap<T, K extends Iterable<T>, V> implements MultiKeyMap<T, K, V>, Serializable {
     private static final long serialVersionUID = 995884597801625434L;
-    static boolean enableParallelStreaming = false;
     /**
      * The base map holding all the Map data
      *
@@ -37,6 +43,22 @@ class BaseMultiKeyMap<T, K extends Iterable<T>, V> implements MultiKeyMap<T, K,
     private Map<K, V> fullMap;
 
     private transient LiteSetMultimap<T, K> partMap;
+    private transient ExecutionPolicy executionPolicy;
+    private transient SubscriptionRegistry<T, K, V> subscriptions;
+    /** The optional metrics, null if none, so that there is no overhead at all. */
+    private transient MultiKeyMapMetrics metrics;
+    /** The optional eviction policy, null if unbounded. */
+    private transient WindowTinyLfuPolicy<K, V> eviction;
+    private transient EvictionListener<? super K, ? super V> evictionListener;
+    /** The optional expiration, null if the entries never expire. */
+    private transient TimerWheel<K> expiration;
+    private transient long expireAfterWriteNanos;
+    /** The optional selection of the indexed sub-keys, null if all of them are indexed. */
+    private transient IndexFilter<T> indexFilter;
+    /** The optional state of the lazily built index, null if the index is always maintained. */
+    private transient LazyIndex lazyIndex;
+    /** The optional pending changes of the asynchronously maintained index, null if synchronous. */
+    private transient IndexDeltas<K> deltas;
     private transient Set<K> keySet;
     private transient Collection<V> values;
     private transient Set<Entry<K, V>> entrySet;
@@ -50,20 +72,61 @@ class BaseMultiKeyMap<T, K extends Iterable<T>, V> implements MultiKeyMap<T, K,
     }
 
     BaseMultiKeyMap(final Map<K, V> fullMap, final LiteSetMultimap<T, K> partMap) {
+        this(fullMap, partMap, ExecutionPolicy.sequential());
+    }
+
+    BaseMultiKeyMap(
+            final Map<K, V> fullMap,
+            final LiteSetMultimap<T, K> partMap,
+            final ExecutionPolicy executionPolicy) {
         super();
         this.fullMap = Objects.requireNonNull(fullMap);
         this.partMap = Objects.requireNonNull(partMap);
+        this.executionPolicy = Objects.requireNonNull(executionPolicy);
+        this.subscriptions = new SubscriptionRegistry<>();
+    }
+
+    BaseMultiKeyMap(final MultiKeyMapBuilder<T, K, V> builder) {
+        this(
+                builder.newMap(),
+                LiteSetMultimap.newInstance(builder.isConcurrent(), builder.isTrackingIndexStats()),
+                builder.getExecutionPolicy());
+        this.metrics = builder.getMetrics();
+        this.eviction = builder.newEvictionPolicy();
+        this.evictionListener = builder.getEvictionListener();
+        this.expiration = builder.newTimerWheel();
+        this.expireAfterWriteNanos = builder.getExpireAfterWriteNanos();
+        this.indexFilter = builder.newIndexFilter();
+        this.lazyIndex = builder.newLazyIndex();
+
+        if (builder.getIndexExecutor() != null) {
+            this.deltas = new IndexDeltas<>(builder.getIndexExecutor(), this::applyDeltas);
+        }
+
+        if (builder.getExpirationExecutor() != null) {
+            Maintenance.schedule(this, builder.getExpirationExecutor());
+        }
     }
 
-    static boolean isEnableParallelStreaming() {
-        return enableParallelStreaming;
+    ExecutionPolicy getExecutionPolicy() {
+        return executionPolicy;
     }
 
-    static void setEnableParallelStreaming(final boolean enableParallelStreaming) {
-        BaseMultiKeyMap.enableParallelStreaming = enableParallelStreaming;
+    Map<K, V> getFullMap() {
+        return fullMap;
+    }
+
+    LiteSetMultimap<T, K> getPartMap() {
+        return partMap;
     }
 
     private void writeObject(java.io.ObjectOutputStream out) throws IOException {
+        if (eviction != null || expiration != null) {
+            // the copy would silently be unbounded and never expire
+            throw new NotSerializableException(
+                    getClass().getName() + " with the eviction or the expiration");
+        }
+
         out.writeObject(fullMap);
         out.writeBoolean(partMap.isConcurrent());
     }
@@ -72,12 +135,21 @@ class BaseMultiKeyMap<T, K extends Iterable<T>, V> implements MultiKeyMap<T, K,
         in.defaultReadObject();
         final boolean concurrent = in.readBoolean();
         partMap = LiteSetMultimap.newInstance(concurrent);
+        executionPolicy = ExecutionPolicy.sequential();
+        subscriptions = new SubscriptionRegistry<>();
+        final Object event = JfrSupport.ENABLED ? JfrSupport.EVENTS.beginBulkOperation() : null;
         fullMap.forEach((k, v) -> putPartial(k));
+
+        if (event != null) {
+            JfrSupport.EVENTS.commitBulkOperation(event, "readObject", fullMap.size());
+        }
     }
 
     private void readObjectNoData() throws ObjectStreamException {
         fullMap = new HashMap<>();
         partMap = LiteSetMultimap.newInstance();
+        executionPolicy = ExecutionPolicy.sequential();
+        subscriptions = new SubscriptionRegistry<>();
     }
 
     @Override
@@ -135,114 +207,872 @@ class BaseMultiKeyMap<T, K extends Iterable<T>, V> implements MultiKeyMap<T, K,
 
     @Override
     public Stream<K> getFullKeysByPartialKey(final Iterable<? extends T> partialKey) {
+        return getFullKeysByPartialKey(partialKey, executionPolicy);
+    }
+
+    @Override
+    public Stream<K> getFullKeysByPartialKey(
+            final Iterable<? extends T> partialKey, final Iterable<Integer> positions) {
+        return getFullKeysByPartialKey(partialKey, positions, executionPolicy);
+    }
+
+    @Override
+    public Stream<K> getFullKeysByPartialKey(
+            final Iterable<? extends T> partialKey,
+            final Iterable<Integer> positions,
+            final ExecutionPolicy policy) {
         Objects.requireNonNull(partialKey);
+        Objects.requireNonNull(positions);
+        Objects.requireNonNull(policy);
+
+        if (indexFilter != null) {
+            return filteredQuery(partialKey, positions, policy);
+        }
+
+        final Iterator<Integer> it = positions.iterator();
+        boolean positional = false;
+
+        for (final T ignored : partialKey) {
+            if (!it.hasNext()) {
+                break;
+            }
+
+            positional |= it.next() >= 0;
+        }
+
+        final Collection<K> candidates =
+                query(
+                        Collectors.streamOf(partialKey, false)
+                                .collect(java.util.stream.Collectors.toSet()),
+                        policy,
+                        positional);
 
-        if (partMap.isEmpty()) {
+        return filter(candidates, new PartialKeyMatcher<>(partialKey, positions));
+    }
+
+    /**
+     * Filters the candidates by the matcher, recording the rejected ones, if the metrics are on.
+     * The stream splits as the candidates' spliterator does, with their count as the estimated
+     * size, see {@link FilteringSpliterator}.
+     *
+     * @param candidates the candidate full keys
+     * @param matcher    the matcher of the partial key
+     * @return the stream of the matching candidates
+     */
+    private Stream<K> filter(final Collection<K> candidates, final PartialKeyMatcher<T> matcher) {
+        if (candidates.isEmpty()) {
             return Stream.empty();
         }
 
-        if (!(partialKey instanceof Set)) {
-            return getFullKeysByPartialKey(partialKey, Collections.emptyList());
+        final MultiKeyMapMetrics metrics = this.metrics;
+        final Spliterator<K> spliterator =
+                (metrics == null)
+                        ? new FilteringSpliterator<>(candidates.spliterator(), matcher::matches)
+                        : new FilteringSpliterator<>(
+                                candidates.spliterator(),
+                                key -> {
+                                    if (matcher.matches(key)) {
+                                        return true;
+                                    }
+
+                                    metrics.recordRejectedCandidate();
+                                    return false;
+                                });
+        return StreamSupport.stream(spliterator, false);
+    }
+
+    @Override
+    public Stream<K> getFullKeysByPartialKey(
+            final Iterable<? extends T> partialKey, final ExecutionPolicy policy) {
+        Objects.requireNonNull(partialKey);
+        Objects.requireNonNull(policy);
+
+        if (!(partialKey instanceof Set) || (indexFilter != null)) {
+            return getFullKeysByPartialKey(partialKey, Collections.emptyList(), policy);
+        }
+
+        @SuppressWarnings("unchecked") final Set<? extends T> subKeys = (Set<? extends T>) partialKey;
+        final Collection<K> result = query(subKeys, policy, false);
+        return result.isEmpty() ? Stream.empty() : result.stream();
+    }
+
+    /**
+     * Runs the partial key query of the selectively indexed MultiKeyMap, see {@link IndexFilter}.
+     * Intersects the postings of the queryable sub-keys, and filters the candidates by the full
+     * partial key, unless all sub-keys are queryable, distinct and non-positional; scans the whole
+     * map, if none of the sub-keys is queryable.
+     *
+     * @param partialKey the combination of the sub-keys to search for
+     * @param positions  the sequence of positions corresponding to the sequence of partialKey's
+     *                   sub-keys
+     * @param policy     the execution policy of the query
+     * @return the stream of the matching full keys
+     */
+    private Stream<K> filteredQuery(
+            final Iterable<? extends T> partialKey,
+            final Iterable<Integer> positions,
+            final ExecutionPolicy policy) {
+        // the queryable sub-keys depend on the unindexed ones, which are only known once indexed
+        final long stamp = ensureIndexed();
+        final PartialKeyMatcher<T> matcher = new PartialKeyMatcher<>(partialKey, positions);
+        final Iterator<Integer> it = positions.iterator();
+        final Set<T> queryable = new HashSet<>();
+        boolean positional = false;
+        int terms = 0;
+
+        for (final T subKey : partialKey) {
+            final int position = it.hasNext() ? it.next() : -1;
+            terms++;
+            positional |= position >= 0;
+
+            if (indexFilter.isQueryable(Objects.requireNonNull(subKey), position)) {
+                queryable.add(subKey);
+            }
+        }
+
+        if (terms == 0) {
+            return Stream.empty();
+        } else if (queryable.isEmpty()) {
+            final List<K> scan = new ArrayList<>(fullMap.keySet());
+            return filter(unexpired(scan), matcher);
+        }
+
+        final Collection<K> candidates = query(queryable, policy, positional);
+
+        if (!isCurrent(stamp)) {
+            // the index has been dropped meanwhile, so the queryable sub-keys may be wrong
+            return filteredQuery(partialKey, positions, policy);
+        }
+
+        return (positional || (queryable.size() < terms))
+                ? filter(candidates, matcher)
+                : candidates.stream();
+    }
+
+    /**
+     * Intersects the posting sets of the distinct sub-keys, merging the pending index changes, if
+     * any, and recording the metrics and the JFR event, if any.
+     *
+     * @param subKeys    the distinct sub-keys of the partial key
+     * @param policy     the execution policy of the query
+     * @param positional whether the query is positional, just for the JFR event
+     * @return the intersection, possibly empty
+     */
+    private Collection<K> query(
+            final Set<? extends T> subKeys, final ExecutionPolicy policy, final boolean positional) {
+        final long stamp = ensureIndexed();
+        // the changes must be taken before the index is read, see IndexDeltas
+        final Map<K, Boolean> changes =
+                (deltas == null) ? Collections.emptyMap() : deltas.snapshot();
+
+        if (partMap.isEmpty() && changes.isEmpty() && isCurrent(stamp)) {
+            return Collections.emptyList();
         }
 
+        final Object event = JfrSupport.ENABLED ? JfrSupport.EVENTS.beginPartialQuery() : null;
+        final long start = (metrics == null) ? 0L : System.nanoTime();
+
         // Java 8 doesn't allow to break the processing and also discourages stateful functions
         // untill Java 9 takeWhile!
         // final Set<Set<K>> sets = ((Set<? extends T>) partialKey).stream().unordered()
         // .map(subKey -> partMap.get(Objects.requireNonNull(subKey))).collect(toSet());
 
         final List<Set<K>> sets = new ArrayList<>();
+        int candidates = Integer.MAX_VALUE;
 
-        for (final T subKey : partialKey) {
+        for (final T subKey : subKeys) {
             final Set<K> set = partMap.get(Objects.requireNonNull(subKey));
 
             if (set == null) {
-                return Stream.empty();
+                candidates = 0;
+                break;
             }
 
             sets.add(set);
+            candidates = Math.min(candidates, set.size());
         }
 
         if (sets.isEmpty()) {
-            return Stream.empty();
+            candidates = 0;
         }
 
-        final Set<K> result = intersectSets(sets, isEnableParallelStreaming());
-        return result.isEmpty() ? Stream.empty() : result.stream();
+        final Collection<K> intersection =
+                (candidates == 0) ? Collections.emptyList() : intersect(sets, policy, candidates);
+        final Collection<K> found =
+                (changes.isEmpty() || subKeys.isEmpty())
+                        ? intersection
+                        : merge(intersection, changes, subKeys);
+
+        if (!isCurrent(stamp)) {
+            // the index has been dropped while read, so the postings read may be incomplete
+            return query(subKeys, policy, positional);
+        }
+
+        final Collection<K> result = unexpired(found);
+
+        if (metrics != null) {
+            metrics.recordPartialQuery(System.nanoTime() - start, candidates, result.size());
+        }
+
+        if (event != null) {
+            JfrSupport.EVENTS.commitPartialQuery(
+                    event, subKeys, subKeys.size(), positional, candidates, result.size());
+        }
+
+        return result;
+    }
+
+    /**
+     * Drops the expired full keys from the query's result, and expires them on the spot, as {@link
+     * #get(Object)} does.
+     *
+     * @param keys the full keys found, not backed by the index
+     * @return the full keys which are not expired
+     */
+    private Collection<K> unexpired(final Collection<K> keys) {
+        if (expiration == null || keys.isEmpty()) {
+            return keys;
+        }
+
+        final List<K> expired = new ArrayList<>();
+
+        for (final K key : keys) {
+            if (expiration.isExpired(key)) {
+                expired.add(key);
+            }
+        }
+
+        if (expired.isEmpty()) {
+            return keys;
+        }
+
+        final Set<K> skipped = new HashSet<>(expired);
+        final List<K> result = new ArrayList<>(keys.size() - skipped.size());
+
+        for (final K key : keys) {
+            if (!skipped.contains(key)) {
+                result.add(key);
+            }
+        }
+
+        expire(expired);
+        return result;
+    }
+
+    /**
+     * Expires all the entries expired by now, if any, before the whole map is read, so that its
+     * size and views don't count them. The read never waits for the wheel's lock; if it is busy,
+     * the concurrent advance is expiring the due entries anyway, so that only the ones expiring
+     * meanwhile may still be seen.
+     */
+    private void expireDue() {
+        if (expiration != null) {
+            expire(expiration.tryAdvanceExactly());
+        }
+    }
+
+    /**
+     * Merges the pending index changes into the intersection of the sub-keys' postings.
+     *
+     * @param intersection the full keys of all sub-keys, as per the index
+     * @param changes      the pending changes by the full key, true if added, false if removed
+     * @param subKeys      the distinct sub-keys of the partial key
+     * @return the full keys of all sub-keys
+     */
+    private Collection<K> merge(
+            final Collection<K> intersection,
+            final Map<K, Boolean> changes,
+            final Set<? extends T> subKeys) {
+        final Set<K> result = new HashSet<>(intersection);
+
+        changes.forEach(
+                (key, add) -> {
+                    if (!add) {
+                        result.remove(key);
+                    } else {
+                        final Set<T> keySubKeys = new HashSet<>();
+                        key.forEach(keySubKeys::add);
+
+                        if (keySubKeys.containsAll(subKeys)) {
+                            result.add(key);
+                        }
+                    }
+                });
+
+        return result;
+    }
+
+    private Collection<K> intersect(
+            final List<Set<K>> sets, final ExecutionPolicy policy, final int candidates) {
+        if (!policy.isParallelFor(candidates)) {
+            return Collectors.intersectSetsToList(sets);
+        }
+
+        return Collectors.intersectSetsInParallel(sets, policy.getPool());
+    }
+
+    @Override
+    public IndexStats<T> indexStats(final int topN) {
+        if (topN < 0) {
+            throw new IllegalArgumentException(String.format("negative topN %s", topN));
+        }
+
+        return new IndexStats<>(
+                fullMap.size(),
+                partMap.size(),
+                partMap.valueCount(),
+                partMap.setSizeHistogram(),
+                partMap.heaviestKeys(topN),
+                (indexFilter == null) ? Collections.emptySet() : indexFilter.getStopSubKeys());
+    }
+
+    @Override
+    public PartialKeySubscription subscribe(
+            final Iterable<? extends T> partialKey,
+            final Iterable<Integer> positions,
+            final PartialKeyListener<? super K, ? super V> listener) {
+        Objects.requireNonNull(partialKey);
+        Objects.requireNonNull(positions);
+        Objects.requireNonNull(listener);
+        return subscriptions.register(
+                partialKey,
+                positions,
+                subKey -> {
+                    if (indexFilter != null && !indexFilter.isQueryable(subKey, -1)) {
+                        return Integer.MAX_VALUE;
+                    }
+
+                    final Set<K> set = partMap.get(subKey);
+                    return (set == null) ? 0 : set.size();
+                },
+                listener);
+    }
+
+    /**
+     * Gets the Iterator of the entries which does the intersection lazily, as {@link
+     * #lazyFullKeysByPartialKey(Iterable, Iterable)} does, reading the values on the way, and
+     * skipping the entries removed by then.
+     *
+     * @param partialKey the combination of the sub-keys to search for
+     * @param positions  the sequence of positions corresponding to the sequence of partialKey's
+     *                   sub-keys, or null for the same semantics as of {@link
+     *                   #getFullKeysByPartialKey(Iterable)}
+     * @return the lazy Iterator of the entries satisfying the partial key criteria
+     */
+    Iterator<Entry<K, V>> lazyEntriesByPartialKey(
+            final Iterable<? extends T> partialKey, final Iterable<Integer> positions) {
+        return new EntryIterator(lazyFullKeysByPartialKey(partialKey, positions));
+    }
+
+    /**
+     * Gets the Iterator of the full keys which does the intersection lazily, one candidate of the
+     * smallest posting set at a time, so that nothing is computed beyond what is consumed.
+     *
+     * @param partialKey the combination of the sub-keys to search for
+     * @param positions  the sequence of positions corresponding to the sequence of partialKey's
+     *                   sub-keys, or null for the same semantics as of {@link
+     *                   #getFullKeysByPartialKey(Iterable)}
+     * @return the lazy Iterator of the full keys satisfying the partial key criteria
+     */
+    Iterator<K> lazyFullKeysByPartialKey(
+            final Iterable<? extends T> partialKey, final Iterable<Integer> positions) {
+        Objects.requireNonNull(partialKey);
+
+        if (deltas != null) {
+            return ((positions == null)
+                    ? getFullKeysByPartialKey(partialKey)
+                    : getFullKeysByPartialKey(partialKey, positions))
+                    .iterator();
+        } else if (indexFilter != null) {
+            return filteredQuery(
+                    partialKey,
+                    (positions == null) ? Collections.emptyList() : positions,
+                    executionPolicy)
+                    .iterator();
+        }
+
+        final PartialKeyMatcher<T> matcher =
+                ((positions == null) && (partialKey instanceof Set))
+                        ? null
+                        : new PartialKeyMatcher<>(
+                        partialKey, (positions == null) ? Collections.emptyList() : positions);
+        final Set<T> subKeys = new HashSet<>();
+        final List<Set<K>> sets = new ArrayList<>();
+        final long stamp = ensureIndexed();
+
+        for (final T subKey : partialKey) {
+            if (subKeys.add(Objects.requireNonNull(subKey))) {
+                final Set<K> set = partMap.get(subKey);
+
+                if (set == null) {
+                    break;
+                }
+
+                sets.add(set);
+            }
+        }
+
+        if (!isCurrent(stamp)) {
+            // the index has been dropped while read, so some posting sets may be missing
+            return lazyFullKeysByPartialKey(partialKey, positions);
+        } else if (sets.size() < subKeys.size()) {
+            return Collections.emptyIterator();
+        } else if (sets.isEmpty()) {
+            return Collections.emptyIterator();
+        }
+
+        sets.sort(Comparator.comparingInt(Set::size));
+        return new IntersectionIterator(sets, matcher);
     }
 
     @Override
     public int size() {
+        expireDue();
         return fullMap.size();
     }
 
     @Override
     public boolean isEmpty() {
+        expireDue();
         return fullMap.isEmpty();
     }
 
     @Override
     public boolean containsKey(final Object key) {
-        return fullMap.containsKey(key);
+        return fullMap.containsKey(key) && (expiration == null || !expiration.isExpired(key));
     }
 
     @Override
     public boolean containsValue(final Object value) {
+        expireDue();
         return fullMap.containsValue(value);
     }
 
     @Override
     public V get(final Object key) {
-        return fullMap.get(Objects.requireNonNull(key));
+        final V value = fullMap.get(Objects.requireNonNull(key));
+
+        if (eviction != null) {
+            eviction.recordRead(key);
+        }
+
+        if (value != null && expiration != null && expiration.isExpired(key)) {
+            @SuppressWarnings("unchecked") final K fullKey = (K) key;
+            expire(Collections.singletonList(fullKey));
+            return null;
+        }
+
+        return value;
     }
 
     @Override
     public V put(final K key, final V value) {
+        return put(key, value, expireAfterWriteNanos);
+    }
+
+    @Override
+    public V put(final K key, final V value, final long duration, final TimeUnit unit) {
+        if (expiration == null) {
+            throw new UnsupportedOperationException("expiration is not enabled");
+        }
+
+        if (duration < 0) {
+            throw new IllegalArgumentException(String.format("negative duration %s", duration));
+        }
+
+        return put(key, value, Objects.requireNonNull(unit).toNanos(duration));
+    }
+
+    private V put(final K key, final V value, final long timeToLiveNanos) {
         Objects.requireNonNull(value);
-        final Object[] oldValue = {null};
+        final Object[] oldValue = {null, null};
+        final boolean indexing = (lazyIndex == null) || lazyIndex.isIndexing();
+        final long weight = (eviction == null) ? 0L : eviction.weigh(key, value);
 
         fullMap.compute(
                 key,
                 (k, v) -> {
                     if (v == null) {
-                        putPartial(k);
+                        if (indexing) {
+                            putPartial(k);
+                        }
+                    } else if (expiration != null && expiration.isExpired(k)) {
+                        // the expired entry is replaced by the new one, keeping the same postings
+                        oldValue[1] = v;
                     } else {
                         oldValue[0] = v;
                     }
 
+                    if (expiration != null) {
+                        expiration.schedule(k, timeToLiveNanos);
+                    }
+
+                    if (eviction != null) {
+                        // under the key's lock, lest a concurrent removal be buffered before it
+                        eviction.recordWrite(k, value, weight);
+                    }
+
                     return value;
                 });
 
         @SuppressWarnings("unchecked") final V oldV = (V) oldValue[0];
+
+        if (lazyIndex != null) {
+            lazilyIndexed(key, !indexing && (oldV == null) && (oldValue[1] == null));
+        }
+
+        if (oldValue[1] != null) {
+            @SuppressWarnings("unchecked") final V expiredValue = (V) oldValue[1];
+            evicted(key, expiredValue, EvictionCause.EXPIRED);
+        }
+
+        if (metrics != null) {
+            metrics.recordPut(oldV == null);
+        }
+
+        if (subscriptions.isActive()) {
+            if (oldV == null) {
+                subscriptions.added(key, value);
+            } else {
+                subscriptions.updated(key, oldV, value);
+            }
+        }
+
+        if (eviction != null) {
+            evict(eviction.drain());
+        }
+
+        if (expiration != null) {
+            expire(expiration.advance(false));
+        }
+
         return oldV;
     }
 
     @Override
     public V remove(final Object key) {
+        return removeMapping(key, null);
+    }
+
+    /**
+     * Removes the entry of the key, if present, and, unless the expected value is null, mapped to
+     * it. The postings, the eviction policy's node, and the expiration of the entry are dropped
+     * under the key's lock, if concurrent, along with the entry itself, so that a concurrent put of
+     * the same key cannot interleave with them.
+     *
+     * @param key           the full key of the entry to remove
+     * @param expectedValue the value the key must be mapped to, or null for any
+     * @return the removed value, or null if none, or if the removed entry has expired
+     */
+    private V removeMapping(final Object key, final Object expectedValue) {
         @SuppressWarnings("unchecked") final K fullKey = (K) key;
-        final Object[] oldValue = {null};
+        final Object[] oldEntry = {null, null, null};
         fullMap.computeIfPresent(
                 fullKey,
                 (k, v) -> {
+                    if (expectedValue != null && !expectedValue.equals(v)) {
+                        return v;
+                    }
+
                     deletePartial(k);
-                    oldValue[0] = v;
+                    oldEntry[0] = k;
+
+                    if (expiration != null && expiration.isExpired(k)) {
+                        oldEntry[2] = v;
+                    } else {
+                        oldEntry[1] = v;
+                    }
+
+                    if (expiration != null) {
+                        expiration.deschedule(k);
+                    }
+
+                    if (eviction != null) {
+                        eviction.recordRemove(k);
+                    }
+
                     return null;
                 });
 
-        @SuppressWarnings("unchecked") final V oldV = (V) oldValue[0];
+        @SuppressWarnings("unchecked") final V oldV = (V) oldEntry[1];
+
+        if (oldEntry[2] != null) {
+            @SuppressWarnings("unchecked") final K oldKey = (K) oldEntry[0];
+            @SuppressWarnings("unchecked") final V expiredValue = (V) oldEntry[2];
+            evicted(oldKey, expiredValue, EvictionCause.EXPIRED);
+        } else if (oldV != null) {
+            @SuppressWarnings("unchecked") final K oldKey = (K) oldEntry[0];
+
+            if (metrics != null) {
+                metrics.recordRemove();
+            }
+
+            subscriptions.removed(oldKey, oldV);
+        }
+
+        if (eviction != null) {
+            evict(eviction.drain());
+        }
+
+        if (expiration != null) {
+            expire(expiration.advance(false));
+        }
+
         return oldV;
     }
 
     @Override
     public void putAll(final Map<? extends K, ? extends V> m) {
+        final Object event = JfrSupport.ENABLED ? JfrSupport.EVENTS.beginBulkOperation() : null;
+
         for (final Map.Entry<? extends K, ? extends V> entry : Objects.requireNonNull(m).entrySet()) {
             put(entry.getKey(), entry.getValue());
         }
+
+        if (event != null) {
+            JfrSupport.EVENTS.commitBulkOperation(event, "putAll", m.size());
+        }
     }
 
     @Override
     public void clear() {
-        fullMap.clear();
-        partMap.clear();
+        final Object event = JfrSupport.ENABLED ? JfrSupport.EVENTS.beginBulkOperation() : null;
+        final int size = fullMap.size();
+
+        if (subscriptions.isActive()) {
+            final List<Entry<K, V>> removed = new ArrayList<>(size);
+            fullMap.forEach((k, v) -> removed.add(new SimpleImmutableEntry<>(k, v)));
+            fullMap.clear();
+            partMap.clear();
+            removed.forEach(entry -> subscriptions.removed(entry.getKey(), entry.getValue()));
+        } else {
+            fullMap.clear();
+            partMap.clear();
+        }
+
+        if (eviction != null) {
+            eviction.clear();
+        }
+
+        if (expiration != null) {
+            expiration.clear();
+        }
+
+        if (indexFilter != null) {
+            indexFilter.clear();
+        }
+
+        if (deltas != null) {
+            // the batch being applied may have re-added some postings
+            deltas.clear(partMap::clear);
+        }
+
+        if (event != null) {
+            JfrSupport.EVENTS.commitBulkOperation(event, "clear", size);
+        }
+    }
+
+    @Override
+    public void replaceAll(final BiFunction<? super K, ? super V, ? extends V> function) {
+        Objects.requireNonNull(function);
+        final Object event = JfrSupport.ENABLED ? JfrSupport.EVENTS.beginBulkOperation() : null;
+
+        if (!subscriptions.isActive() && (eviction == null || !eviction.isWeighted())) {
+            fullMap.replaceAll(function);
+        } else {
+            final List<Object[]> updates = new ArrayList<>();
+            fullMap.replaceAll(
+                    (k, v) -> {
+                        final V newValue = function.apply(k, v);
+                        updates.add(new Object[]{k, v, newValue});
+                        return newValue;
+                    });
+
+            for (final Object[] update : updates) {
+                @SuppressWarnings("unchecked") final K key = (K) update[0];
+                @SuppressWarnings("unchecked") final V oldValue = (V) update[1];
+                @SuppressWarnings("unchecked") final V newValue = (V) update[2];
+                subscriptions.updated(key, oldValue, newValue);
+
+                if (eviction != null) {
+                    eviction.recordUpdate(key, newValue);
+                }
+            }
+
+            if (eviction != null) {
+                evict(eviction.drain());
+            }
+        }
+
+        if (event != null) {
+            JfrSupport.EVENTS.commitBulkOperation(event, "replaceAll", fullMap.size());
+        }
+    }
+
+    @Override
+    public int removeByPartialKey(final Iterable<? extends T> partialKey) {
+        return removeAll(
+                getFullKeysByPartialKey(partialKey).collect(java.util.stream.Collectors.toList()));
+    }
+
+    @Override
+    public int removeByPartialKey(
+            final Iterable<? extends T> partialKey, final Iterable<Integer> positions) {
+        return removeAll(
+                getFullKeysByPartialKey(partialKey, positions)
+                        .collect(java.util.stream.Collectors.toList()));
+    }
+
+    /**
+     * Removes the entries of the full keys in one pass. The postings of a regular, i.e. not
+     * concurrent, MultiKeyMap are removed in one batch per sub-key, so that the posting sets of the
+     * queried sub-keys, when entirely removed, are dropped at once, see {@link
+     * #deletePartials(List)}; the concurrent one removes them within the atomic removal of every
+     * entry, as usual, lest a concurrent put of the same key lose its postings.
+     *
+     * @param keys the full keys to remove
+     * @return the number of the removed entries, not counting the expired ones
+     */
+    private int removeAll(final List<K> keys) {
+        if (keys.isEmpty()) {
+            return 0;
+        }
+
+        final Object event = JfrSupport.ENABLED ? JfrSupport.EVENTS.beginBulkOperation() : null;
+        final boolean batch = (keys.size() > 1) && !partMap.isConcurrent();
+        final List<Entry<K, V>> removed = new ArrayList<>(keys.size());
+        final List<Entry<K, V>> expired = new ArrayList<>();
+
+        for (final K key : keys) {
+            fullMap.computeIfPresent(
+                    key,
+                    (k, v) -> {
+                        if (!batch) {
+                            deletePartial(k);
+                        }
+
+                        if (expiration != null && expiration.isExpired(k)) {
+                            expired.add(new SimpleImmutableEntry<>(k, v));
+                        } else {
+                            removed.add(new SimpleImmutableEntry<>(k, v));
+                        }
+
+                        if (expiration != null) {
+                            expiration.deschedule(k);
+                        }
+
+                        if (eviction != null) {
+                            eviction.recordRemove(k);
+                        }
+
+                        return null;
+                    });
+        }
+
+        if (batch) {
+            deletePartials(removed);
+            deletePartials(expired);
+        }
+
+        for (final Entry<K, V> entry : removed) {
+            if (metrics != null) {
+                metrics.recordRemove();
+            }
+
+            subscriptions.removed(entry.getKey(), entry.getValue());
+        }
+
+        for (final Entry<K, V> entry : expired) {
+            evicted(entry.getKey(), entry.getValue(), EvictionCause.EXPIRED);
+        }
+
+        if (eviction != null) {
+            evict(eviction.drain());
+        }
+
+        if (expiration != null) {
+            expire(expiration.advance(false));
+        }
+
+        if (event != null) {
+            JfrSupport.EVENTS.commitBulkOperation(event, "removeByPartialKey", keys.size());
+        }
+
+        return removed.size();
+    }
+
+    @Override
+    public int replaceAllByPartialKey(
+            final Iterable<? extends T> partialKey,
+            final BiFunction<? super K, ? super V, ? extends V> function) {
+        Objects.requireNonNull(function);
+        return replaceAll(
+                getFullKeysByPartialKey(partialKey).collect(java.util.stream.Collectors.toList()),
+                function);
+    }
+
+    @Override
+    public int replaceAllByPartialKey(
+            final Iterable<? extends T> partialKey,
+            final Iterable<Integer> positions,
+            final BiFunction<? super K, ? super V, ? extends V> function) {
+        Objects.requireNonNull(function);
+        return replaceAll(
+                getFullKeysByPartialKey(partialKey, positions)
+                        .collect(java.util.stream.Collectors.toList()),
+                function);
+    }
+
+    /**
+     * Replaces the values of the full keys, skipping the expired ones, without touching the index,
+     * as the full keys stay the same.
+     *
+     * @param keys     the full keys to replace the values of
+     * @param function the function computing the new non-null value
+     * @return the number of the replaced values
+     */
+    private int replaceAll(
+            final List<K> keys, final BiFunction<? super K, ? super V, ? extends V> function) {
+        final Object event = JfrSupport.ENABLED ? JfrSupport.EVENTS.beginBulkOperation() : null;
+        int replaced = 0;
+
+        for (final K key : keys) {
+            final Object[] update = {null, null};
+            fullMap.computeIfPresent(
+                    key,
+                    (k, v) -> {
+                        if (expiration != null && expiration.isExpired(k)) {
+                            return v;
+                        }
+
+                        final V newValue = Objects.requireNonNull(function.apply(k, v));
+
+                        if (eviction != null) {
+                            eviction.recordUpdate(k, newValue);
+                        }
+
+                        update[0] = v;
+                        update[1] = newValue;
+                        return newValue;
+                    });
+
+            if (update[1] != null) {
+                @SuppressWarnings("unchecked") final V oldValue = (V) update[0];
+                @SuppressWarnings("unchecked") final V newValue = (V) update[1];
+                replaced++;
+                subscriptions.updated(key, oldValue, newValue);
+            }
+        }
+
+        if (eviction != null) {
+            evict(eviction.drain());
+        }
+
+        if (event != null) {
+            JfrSupport.EVENTS.commitBulkOperation(event, "replaceAllByPartialKey", keys.size());
+        }
+
+        return replaced;
     }
 
     @Override
@@ -264,17 +1094,467 @@ class BaseMultiKeyMap<T, K extends Iterable<T>, V> implements MultiKeyMap<T, K,
     }
 
     private void putPartial(final K key) {
+        if (deltas != null) {
+            deltas.added(key);
+            return;
+        }
+
+        if (indexFilter != null) {
+            final Object event = JfrSupport.ENABLED ? JfrSupport.EVENTS.beginIndexUpdate() : null;
+            final int subKeyCount =
+                    indexFilter.hasStopSubKeys()
+                            ? indexFilter.forEachIndexed(key, true, this::index)
+                            : indexFilter.forEachIndexed(key, true, partMap::put);
+
+            if (event != null) {
+                JfrSupport.EVENTS.commitIndexUpdate(event, true, subKeyCount);
+            }
+
+            return;
+        }
+
+        final Object event = JfrSupport.ENABLED ? JfrSupport.EVENTS.beginIndexUpdate() : null;
+
+        if (event != null) {
+            int subKeyCount = 0;
+
+            for (final T subKey : key) {
+                partMap.put(subKey, key);
+                subKeyCount++;
+            }
+
+            JfrSupport.EVENTS.commitIndexUpdate(event, true, subKeyCount);
+            return;
+        }
+
         for (final T subKey : key) {
             partMap.put(subKey, key);
         }
     }
 
+    /**
+     * Indexes the sub-key, and drops its postings if it becomes a stop one. The number of the
+     * entries includes the key being added, which is not in the fullMap yet.
+     */
+    private void index(final T subKey, final K key) {
+        final int postings = partMap.putAndGetSize(subKey, key);
+
+        if (indexFilter.stopIfHeavy(subKey, postings, () -> fullMap.size() + 1)) {
+            dropPostings(subKey);
+        }
+    }
+
+    /** Drops the postings of the just stopped sub-key. */
+    private void dropPostings(final T subKey) {
+        final Set<K> set = partMap.get(subKey);
+
+        if (set != null) {
+            // the concurrent writers, which have missed the stop, may leave a few postings
+            partMap.removeAll(subKey, new ArrayList<>(set));
+        }
+    }
+
+    /**
+     * Applies the batch of the pending index changes, grouped by the sub-key, so that each posting
+     * set is updated once per batch, see {@link IndexDeltas}.
+     *
+     * @param batch the changes by the full key, true if added, false if removed
+     */
+    private void applyDeltas(final Map<K, Boolean> batch) {
+        final Object event = JfrSupport.ENABLED ? JfrSupport.EVENTS.beginBulkOperation() : null;
+        final Map<T, List<K>> added = new HashMap<>();
+        final Map<T, List<K>> removed = new HashMap<>();
+        batch.forEach((key, add) -> collectPostings(add ? added : removed, key, add));
+        removed.forEach(partMap::removeAll);
+
+        added.forEach(
+                (subKey, keys) -> {
+                    final int postings = partMap.putAll(subKey, keys);
+
+                    if ((indexFilter != null)
+                            && indexFilter.stopIfHeavy(subKey, postings, fullMap::size)) {
+                        dropPostings(subKey);
+                    }
+                });
+
+        if (event != null) {
+            JfrSupport.EVENTS.commitBulkOperation(event, "applyIndexDeltas", batch.size());
+        }
+    }
+
+    /**
+     * Adds the full key to the lists of its indexed sub-keys, once per sub-key.
+     *
+     * @param postings the full keys by the sub-key
+     * @param key      the full key
+     * @param adding   whether the key is being added rather than removed
+     */
+    private void collectPostings(
+            final Map<T, List<K>> postings, final K key, final boolean adding) {
+        final BiConsumer<T, K> collector =
+                (subKey, k) -> {
+                    final List<K> keys = postings.computeIfAbsent(subKey, s -> new ArrayList<>());
+
+                    // the repeated sub-keys of the key come one after another
+                    if (keys.isEmpty() || (keys.get(keys.size() - 1) != k)) {
+                        keys.add(k);
+                    }
+                };
+
+        if (indexFilter == null) {
+            for (final T subKey : key) {
+                collector.accept(subKey, key);
+            }
+        } else {
+            indexFilter.forEachIndexed(key, adding, collector);
+        }
+    }
+
+    /**
+     * Builds the lazy index, if not yet, see {@link LazyIndex}.
+     *
+     * @return the stamp of the index, to validate its reads by, see {@link #isCurrent(long)}
+     */
+    private long ensureIndexed() {
+        return (lazyIndex == null) ? 0L : lazyIndex.query(this::clearIndex, this::buildIndex);
+    }
+
+    /**
+     * Tells whether the lazy index, if any, has not been dropped since the stamp was taken, so that
+     * the reads of the index since then are complete.
+     */
+    private boolean isCurrent(final long stamp) {
+        return (lazyIndex == null) || lazyIndex.isCurrent(stamp);
+    }
+
+    /**
+     * Indexes the new key, which the lazy index build may have missed, if it has started since
+     * the put; and drops the index, if idle for too long.
+     *
+     * @param key    the put full key
+     * @param missed whether the key is new, and has not been indexed, as the index was not built
+     */
+    private void lazilyIndexed(final K key, final boolean missed) {
+        if (missed && lazyIndex.isIndexing()) {
+            fullMap.computeIfPresent(
+                    key,
+                    (k, v) -> {
+                        putPartial(k);
+                        return v;
+                    });
+        }
+
+        if (lazyIndex.isCheckDue()) {
+            lazyIndex.dropIfIdle(this::clearIndex);
+        }
+    }
+
+    private void clearIndex() {
+        partMap.clear();
+
+        if (indexFilter != null) {
+            indexFilter.clear();
+        }
+    }
+
+    /**
+     * Indexes all full keys of the lazily indexed MultiKeyMap, in parallel, if concurrent, and
+     * large enough for the execution policy. The concurrent MultiKeyMap indexes each key under
+     * its fullMap lock, so that the racing removals never leave its postings behind.
+     */
+    private void buildIndex() {
+        final Object event = JfrSupport.ENABLED ? JfrSupport.EVENTS.beginBulkOperation() : null;
+
+        if (partMap.isConcurrent()) {
+            final Consumer<K> indexer =
+                    key ->
+                            fullMap.computeIfPresent(
+                                    key,
+                                    (k, v) -> {
+                                        putPartial(k);
+                                        return v;
+                                    });
+
+            if (executionPolicy.isParallelFor(fullMap.size())) {
+                executionPolicy
+                        .getPool()
+                        .submit(() -> fullMap.keySet().parallelStream().forEach(indexer))
+                        .join();
+            } else {
+                fullMap.keySet().forEach(indexer);
+            }
+        } else {
+            fullMap.keySet().forEach(this::putPartial);
+        }
+
+        if (event != null) {
+            JfrSupport.EVENTS.commitBulkOperation(event, "buildIndex", fullMap.size());
+        }
+    }
+
     private void deletePartial(final K key) {
+        if ((lazyIndex != null) && !lazyIndex.isIndexing()) {
+            return;
+        }
+
+        if (deltas != null) {
+            deltas.removed(key);
+            return;
+        }
+
+        if (indexFilter != null) {
+            final Object event = JfrSupport.ENABLED ? JfrSupport.EVENTS.beginIndexUpdate() : null;
+            final int subKeyCount = indexFilter.forEachIndexed(key, false, partMap::remove);
+
+            if (event != null) {
+                JfrSupport.EVENTS.commitIndexUpdate(event, false, subKeyCount);
+            }
+
+            return;
+        }
+
+        final Object event = JfrSupport.ENABLED ? JfrSupport.EVENTS.beginIndexUpdate() : null;
+
+        if (event != null) {
+            int subKeyCount = 0;
+
+            for (final T subKey : key) {
+                partMap.remove(subKey, key);
+                subKeyCount++;
+            }
+
+            JfrSupport.EVENTS.commitIndexUpdate(event, false, subKeyCount);
+            return;
+        }
+
         for (final T subKey : key) {
             partMap.remove(subKey, key);
         }
     }
 
+    /**
+     * Un-indexes the entry removed from the fullMap by one of the views, and notifies the
+     * subscriptions.
+     */
+    private void removed(final K key, final V value) {
+        deletePartial(key);
+
+        if (metrics != null) {
+            metrics.recordRemove();
+        }
+
+        if (eviction != null) {
+            eviction.recordRemove(key);
+        }
+
+        if (expiration != null) {
+            expiration.deschedule(key);
+        }
+
+        if (value != null) {
+            subscriptions.removed(key, value);
+        }
+    }
+
+    /**
+     * Removes the current entry of the fullMap view's iterator. The concurrent MultiKeyMap removes
+     * it atomically with its postings and its eviction policy's node, see {@link
+     * #removeMapping(Object, Object)}, while the regular one cannot without breaking the iterator,
+     * yet needs not either.
+     *
+     * @param it    the fullMap view's iterator
+     * @param key   the full key of the current entry
+     * @param value the value of the current entry, if known, just for the subscriptions
+     */
+    private void removeCurrent(final Iterator<?> it, final K key, final V value) {
+        if (partMap.isConcurrent()) {
+            removeMapping(key, null);
+        } else {
+            it.remove();
+            removed(key, value);
+        }
+    }
+
+    /**
+     * Removes the entries selected by the eviction policy, along with their postings, and notifies
+     * the eviction listener and the subscriptions. The entry written since its selection, even
+     * with the same value, is kept, and recorded to the policy again, which has already dropped it.
+     *
+     * @param victims the selected keys, with the stamps of their last writes as of the selection
+     */
+    private void evict(final List<Entry<K, Long>> victims) {
+        for (final Entry<K, Long> victim : victims) {
+            final Object[] evicted = {null, null};
+            fullMap.computeIfPresent(
+                    victim.getKey(),
+                    (k, v) -> {
+                        if (!eviction.isLastWrite(k, victim.getValue())) {
+                            eviction.recordWrite(k, v, eviction.weigh(k, v));
+                            return v;
+                        }
+
+                        deletePartial(k);
+                        evicted[0] = k;
+                        evicted[1] = v;
+
+                        if (expiration != null) {
+                            expiration.deschedule(k);
+                        }
+
+                        // forgets the stamp, as the policy has already dropped the key
+                        eviction.recordRemove(k);
+                        return null;
+                    });
+
+            @SuppressWarnings("unchecked") final V value = (V) evicted[1];
+
+            if (value != null) {
+                @SuppressWarnings("unchecked") final K evictedKey = (K) evicted[0];
+                evicted(evictedKey, value, EvictionCause.SIZE);
+            }
+        }
+    }
+
+    /**
+     * Removes the entries, which are still expired, along with their postings, and notifies the
+     * eviction listener and the subscriptions. The postings of a regular, i.e. not concurrent,
+     * MultiKeyMap are removed in one batch per sub-key, instead of one by one; the concurrent one
+     * removes them within the atomic removal of every entry, as usual, lest a concurrent put of the
+     * same key lose its postings.
+     */
+    private void expire(final List<K> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+
+        final Object event = JfrSupport.ENABLED ? JfrSupport.EVENTS.beginBulkOperation() : null;
+        final boolean batch = (keys.size() > 1) && !partMap.isConcurrent();
+        final List<Entry<K, V>> expired = new ArrayList<>(keys.size());
+
+        for (final K key : keys) {
+            fullMap.compute(
+                    key,
+                    (k, v) -> {
+                        if (v == null) {
+                            // already removed, so just forget it
+                            expiration.deschedule(k);
+                            return null;
+                        } else if (!expiration.isExpired(k)) {
+                            return v;
+                        }
+
+                        if (!batch) {
+                            deletePartial(k);
+                        }
+
+                        expiration.deschedule(k);
+
+                        if (eviction != null) {
+                            eviction.recordRemove(k);
+                        }
+
+                        expired.add(new SimpleImmutableEntry<>(k, v));
+                        return null;
+                    });
+        }
+
+        if (batch) {
+            deletePartials(expired);
+        }
+
+        for (final Entry<K, V> entry : expired) {
+            evicted(entry.getKey(), entry.getValue(), EvictionCause.EXPIRED);
+        }
+
+        if (event != null) {
+            JfrSupport.EVENTS.commitBulkOperation(event, "expire", expired.size());
+        }
+    }
+
+    /**
+     * Removes the postings of the just removed entries of the regular, i.e. not concurrent,
+     * MultiKeyMap, grouped by their sub-keys. The keys of a sub-key are distinct and all in its
+     * posting set, so that the set is dropped at once if they are all of it.
+     */
+    private void deletePartials(final List<Entry<K, V>> entries) {
+        if ((lazyIndex != null) && !lazyIndex.isIndexing()) {
+            return;
+        }
+
+        if (deltas != null) {
+            entries.forEach(entry -> deltas.removed(entry.getKey()));
+            return;
+        }
+
+        final Map<T, List<K>> postings = new HashMap<>();
+
+        for (final Entry<K, V> entry : entries) {
+            collectPostings(postings, entry.getKey(), false);
+        }
+
+        postings.forEach(partMap::removeAllPresent);
+    }
+
+    /** Notifies the metrics, the eviction listener, and the subscriptions of the evicted entry. */
+    private void evicted(final K key, final V value, final EvictionCause cause) {
+        if (metrics != null) {
+            metrics.recordEviction(cause);
+        }
+
+        if (evictionListener != null) {
+            evictionListener.onEviction(key, value, cause);
+        }
+
+        subscriptions.removed(key, value);
+    }
+
+    @Override
+    public void cleanUp() {
+        if (expiration != null) {
+            expire(expiration.advance(true));
+        }
+
+        if (lazyIndex != null) {
+            lazyIndex.dropIfIdle(this::clearIndex);
+        }
+
+        if (deltas != null) {
+            deltas.flush();
+        }
+    }
+
+    /**
+     * Runs {@link #cleanUp()} periodically, holding the MultiKeyMap weakly, so that it stops once
+     * the MultiKeyMap is garbage collected.
+     */
+    static final class Maintenance implements Runnable {
+        private final WeakReference<BaseMultiKeyMap<?, ?, ?>> multiKeyMap;
+        private volatile ScheduledFuture<?> future;
+
+        private Maintenance(final BaseMultiKeyMap<?, ?, ?> multiKeyMap) {
+            super();
+            this.multiKeyMap = new WeakReference<>(multiKeyMap);
+        }
+
+        static void schedule(
+                final BaseMultiKeyMap<?, ?, ?> multiKeyMap, final ScheduledExecutorService executor) {
+            final Maintenance maintenance = new Maintenance(multiKeyMap);
+            maintenance.future =
+                    executor.scheduleWithFixedDelay(maintenance, 1, 1, TimeUnit.SECONDS);
+        }
+
+        @Override
+        public void run() {
+            final BaseMultiKeyMap<?, ?, ?> multiKeyMap = this.multiKeyMap.get();
+
+            if (multiKeyMap != null) {
+                multiKeyMap.cleanUp();
+            } else if (future != null) {
+                future.cancel(false);
+            }
+        }
+    }
+
     @Override
     public Collection<V> values() {
         if (values == null) {
@@ -302,31 +1582,136 @@ class BaseMultiKeyMap<T, K extends Iterable<T>, V> implements MultiKeyMap<T, K,
         return entrySet;
     }
 
+    /**
+     * Intersects the posting sets lazily, skipping the expired full keys, which are expired once
+     * the candidates are exhausted, lest the posting sets change while iterated.
+     */
+    final class IntersectionIterator implements Iterator<K> {
+        private final Iterator<K> candidates;
+        private final List<Set<K>> others;
+        private final PartialKeyMatcher<T> matcher;
+        private final List<K> expired;
+        private K next;
+
+        IntersectionIterator(final List<Set<K>> sets, final PartialKeyMatcher<T> matcher) {
+            super();
+            this.candidates = sets.get(0).iterator();
+            this.others = sets.subList(1, sets.size());
+            this.matcher = matcher;
+            this.expired = new ArrayList<>();
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && candidates.hasNext()) {
+                final K candidate = candidates.next();
+
+                if (containedInOthers(candidate) && (matcher == null || matcher.matches(candidate))) {
+                    if (expiration != null && expiration.isExpired(candidate)) {
+                        expired.add(candidate);
+                    } else {
+                        next = candidate;
+                    }
+                }
+            }
+
+            if (next == null && !expired.isEmpty()) {
+                final List<K> keys = new ArrayList<>(expired);
+                expired.clear();
+                expire(keys);
+            }
+
+            return next != null;
+        }
+
+        private boolean containedInOthers(final K candidate) {
+            for (final Set<K> set : others) {
+                if (!set.contains(candidate)) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        @Override
+        public K next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            final K result = next;
+            next = null;
+            return result;
+        }
+    }
+
+    /**
+     * Maps the full keys to their current entries, skipping the ones which are gone.
+     */
+    final class EntryIterator implements Iterator<Entry<K, V>> {
+        private final Iterator<K> keys;
+        private Entry<K, V> next;
+
+        EntryIterator(final Iterator<K> keys) {
+            super();
+            this.keys = keys;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && keys.hasNext()) {
+                final K key = keys.next();
+                final V value = fullMap.get(key);
+
+                if (value != null) {
+                    next = new SimpleImmutableEntry<>(key, value);
+                }
+            }
+
+            return next != null;
+        }
+
+        @Override
+        public Entry<K, V> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            final Entry<K, V> result = next;
+            next = null;
+            return result;
+        }
+    }
+
     final class Values extends AbstractCollection<V> {
 
         @Override
         public Iterator<V> iterator() {
+            expireDue();
             return new ValueIterator(fullMap.entrySet().iterator());
         }
 
         @Override
         public int size() {
-            return fullMap.size();
+            return BaseMultiKeyMap.this.size();
         }
 
         @Override
         public Spliterator<V> spliterator() {
+            expireDue();
             return fullMap.values().spliterator();
         }
 
         @Override
         public void forEach(final Consumer<? super V> action) {
+            expireDue();
             fullMap.values().forEach(action);
         }
 
         @Override
         public boolean contains(final Object o) {
-            return fullMap.values().contains(o);
+            return containsValue(o);
         }
 
         @Override
@@ -357,8 +1742,13 @@ class BaseMultiKeyMap<T, K extends Iterable<T>, V> implements MultiKeyMap<T, K,
 
         @Override
         public void remove() {
-            it.remove();
-            deletePartial(current.getKey());
+            if (current == null) {
+                throw new IllegalStateException();
+            }
+
+            final Entry<K, V> entry = current;
+            current = null;
+            removeCurrent(it, entry.getKey(), entry.getValue());
         }
     }
 
@@ -366,38 +1756,35 @@ class BaseMultiKeyMap<T, K extends Iterable<T>, V> implements MultiKeyMap<T, K,
 
         @Override
         public Iterator<K> iterator() {
+            expireDue();
             return new KeySetIterator(fullMap.keySet().iterator());
         }
 
         @Override
         public int size() {
-            return fullMap.size();
+            return BaseMultiKeyMap.this.size();
         }
 
         @Override
         public Spliterator<K> spliterator() {
+            expireDue();
             return fullMap.keySet().spliterator();
         }
 
         @Override
         public void forEach(final Consumer<? super K> action) {
+            expireDue();
             fullMap.keySet().forEach(action);
         }
 
         @Override
         public boolean contains(final Object o) {
-            return fullMap.keySet().contains(o);
+            return containsKey(o);
         }
 
         @Override
         public boolean remove(final Object o) {
-            if (fullMap.keySet().remove(o)) {
-                @SuppressWarnings("unchecked") final K key = (K) o;
-                deletePartial(key);
-                return true;
-            }
-
-            return false;
+            return removeMapping(o, null) != null;
         }
 
         @Override
@@ -428,8 +1815,14 @@ class BaseMultiKeyMap<T, K extends Iterable<T>, V> implements MultiKeyMap<T, K,
 
         @Override
         public void remove() {
-            it.remove();
-            deletePartial(current);
+            if (current == null) {
+                throw new IllegalStateException();
+            }
+
+            final K key = current;
+            final V value = subscriptions.isActive() ? fullMap.get(key) : null;
+            current = null;
+            removeCurrent(it, key, value);
         }
     }
 
@@ -437,38 +1830,47 @@ class BaseMultiKeyMap<T, K extends Iterable<T>, V> implements MultiKeyMap<T, K,
 
         @Override
         public Iterator<Entry<K, V>> iterator() {
+            expireDue();
             return new EntrySetIterator(fullMap.entrySet().iterator());
         }
 
         @Override
         public int size() {
-            return fullMap.size();
+            return BaseMultiKeyMap.this.size();
         }
 
         @Override
         public Spliterator<Entry<K, V>> spliterator() {
+            expireDue();
             return fullMap.entrySet().spliterator();
         }
 
         @Override
         public void forEach(final Consumer<? super Entry<K, V>> action) {
+            expireDue();
             fullMap.entrySet().forEach(action);
         }
 
         @Override
         public boolean contains(final Object o) {
-            return fullMap.entrySet().contains(o);
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+
+            final Entry<?, ?> entry = (Entry<?, ?>) o;
+            final Object value = (entry.getKey() == null) ? null : get(entry.getKey());
+            return (value != null) && value.equals(entry.getValue());
         }
 
         @Override
         public boolean remove(final Object o) {
-            if (fullMap.entrySet().remove(o)) {
-                @SuppressWarnings("unchecked") final Entry<K, V> entry = (Entry<K, V>) o;
-                deletePartial(entry.getKey());
-                return true;
+            if (!(o instanceof Entry)) {
+                return false;
             }
 
-            return false;
+            final Entry<?, ?> entry = (Entry<?, ?>) o;
+            return (entry.getValue() != null)
+                    && (removeMapping(entry.getKey(), entry.getValue()) != null);
         }
 
         @Override
@@ -499,8 +1901,13 @@ class BaseMultiKeyMap<T, K extends Iterable<T>, V> implements MultiKeyMap<T, K,
 
         @Override
         public void remove() {
-            it.remove();
-            deletePartial(current.getKey());
+            if (current == null) {
+                throw new IllegalStateException();
+            }
+
+            final Entry<K, V> entry = current;
+            current = null;
+            removeCurrent(it, entry.getKey(), entry.getValue());
         }
   }
 }
@@ -0,0 +1,494 @@
+/*
+ *    Copyright 2017 David Tesler
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.protobufel.multikeymap;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.Arrays;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * The base of the MultiKeyMaps with the primitive sub-keys. The full keys are the primitive
+ * arrays, stored in the slots addressed by their int entry ids. The full key index is an
+ * open-addressing table of the entry ids, and the partial key index maps every sub-key to the
+ * {@link IntHashSet} of the entry ids, so neither of them boxes anything.
+ *
+ * <p>NOTE: This class is not thread-safe.
+ *
+ * @param <A> the type of a full key, a primitive array
+ * @param <V> the type of a value
+ * @author David Tesler
+ */
+abstract class BasePrimitiveMultiKeyMap<A, V> implements Serializable {
+    private static final long serialVersionUID = -2431264097356815713L;
+    private static final int MIN_CAPACITY = 16;
+    private static final int[] NO_IDS = {};
+
+    private transient Object[] keys;
+    private transient Object[] values;
+    private transient int[] hashes;
+    private transient int[] table;
+    private transient int[] freeIds;
+    private transient int freeCount;
+    private transient int highId;
+    private transient int size;
+    private transient LongPostingMap partMap;
+
+    BasePrimitiveMultiKeyMap() {
+        init();
+    }
+
+    /**
+     * Gets the number of the sub-keys of the full key.
+     */
+    abstract int length(A key);
+
+    /**
+     * Gets the sub-key at the index widened to long.
+     */
+    abstract long subKeyAt(A key, int index);
+
+    abstract int hash(A key);
+
+    abstract boolean keyEquals(A key1, A key2);
+
+    abstract A copyOf(A key);
+
+    abstract String keyToString(A key);
+
+    private void init() {
+        keys = new Object[MIN_CAPACITY];
+        values = new Object[MIN_CAPACITY];
+        hashes = new int[MIN_CAPACITY];
+        table = new int[MIN_CAPACITY << 1];
+        freeIds = new int[MIN_CAPACITY];
+        freeCount = 0;
+        highId = 0;
+        size = 0;
+        partMap = new LongPostingMap();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        init();
+    }
+
+    final boolean containsFullKey(final A key) {
+        return indexOf(Objects.requireNonNull(key), hash(key)) >= 0;
+    }
+
+    final V getValue(final A key) {
+        final int i = indexOf(Objects.requireNonNull(key), hash(key));
+        return (i < 0) ? null : valueAt(table[i] - 1);
+    }
+
+    final V putValue(final A key, final V value) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(value);
+        final int hash = hash(key);
+        final int i = indexOf(key, hash);
+
+        if (i >= 0) {
+            final int id = table[i] - 1;
+            final V oldValue = valueAt(id);
+            values[id] = value;
+            return oldValue;
+        }
+
+        final A storedKey = copyOf(key);
+        final int id = newId();
+        keys[id] = storedKey;
+        values[id] = value;
+        hashes[id] = hash;
+        table[~i] = id + 1;
+
+        for (int j = 0, length = length(storedKey); j < length; j++) {
+            partMap.put(subKeyAt(storedKey, j), id);
+        }
+
+        if (++size << 1 > table.length) {
+            rehash(table.length << 1);
+        }
+
+        return null;
+    }
+
+    final V removeKey(final A key) {
+        final int i = indexOf(Objects.requireNonNull(key), hash(key));
+
+        if (i < 0) {
+            return null;
+        }
+
+        final int id = table[i] - 1;
+        final A storedKey = keyAt(id);
+        final V oldValue = valueAt(id);
+
+        for (int j = 0, length = length(storedKey); j < length; j++) {
+            partMap.remove(subKeyAt(storedKey, j), id);
+        }
+
+        shiftBack(i);
+        keys[id] = null;
+        values[id] = null;
+        freeId(id);
+        size--;
+        return oldValue;
+    }
+
+    final <R> void forEachEntry(
+            final BiConsumer<? super R, ? super V> action,
+            final Function<? super A, ? extends R> mapper) {
+        Objects.requireNonNull(action);
+
+        for (int id = 0; id < highId; id++) {
+            if (keys[id] != null) {
+                action.accept(mapper.apply(keyAt(id)), valueAt(id));
+            }
+        }
+    }
+
+    final Stream<A> fullKeysOf(final int[] ids) {
+        return fullKeysOf(ids, this::copyOf);
+    }
+
+    final <R> Stream<R> fullKeysOf(final int[] ids, final Function<? super A, ? extends R> mapper) {
+        final Object[] result = new Object[ids.length];
+
+        for (int i = 0; i < ids.length; i++) {
+            result[i] = mapper.apply(keyAt(ids[i]));
+        }
+
+        @SuppressWarnings("unchecked") final Stream<R> stream = (Stream<R>) Arrays.stream(result);
+        return stream;
+    }
+
+    final Stream<V> valuesOf(final int[] ids) {
+        final Object[] result = new Object[ids.length];
+
+        for (int i = 0; i < ids.length; i++) {
+            result[i] = values[ids[i]];
+        }
+
+        @SuppressWarnings("unchecked") final Stream<V> stream = (Stream<V>) Arrays.stream(result);
+        return stream;
+    }
+
+    final Stream<Entry<A, V>> entriesOf(final int[] ids) {
+        return entriesOf(ids, this::copyOf);
+    }
+
+    final <R> Stream<Entry<R, V>> entriesOf(
+            final int[] ids, final Function<? super A, ? extends R> mapper) {
+        @SuppressWarnings("unchecked") final Entry<R, V>[] result =
+                (Entry<R, V>[]) new Entry<?, ?>[ids.length];
+
+        for (int i = 0; i < ids.length; i++) {
+            result[i] = new SimpleImmutableEntry<>(mapper.apply(keyAt(ids[i])), valueAt(ids[i]));
+        }
+
+        return Arrays.stream(result);
+    }
+
+    /**
+     * Gets the ids of all entries which full keys contain the partial key according to the
+     * specified positions, with the same semantics as {@link
+     * MultiKeyMap#getFullKeysByPartialKey(Iterable, Iterable)}.
+     *
+     * @param partialKey the combination of the sub-keys to search for
+     * @param positions  the positions corresponding to the partialKey's sub-keys, wherein the
+     *                   negative position signifies a non-positional sub-key; can be shorter than the
+     *                   partialKey
+     * @return the ids of the matching entries, or the empty array
+     */
+    final int[] findByPartialKey(final long[] partialKey, final int[] positions) {
+        Objects.requireNonNull(partialKey);
+        Objects.requireNonNull(positions);
+        final Matcher matcher = new Matcher(partialKey, positions);
+
+        if (partialKey.length == 0 || partMap.isEmpty()) {
+            return NO_IDS;
+        }
+
+        final long[] distinct = partialKey.clone();
+        Arrays.sort(distinct);
+        final IntHashSet[] sets = new IntHashSet[distinct.length];
+        int count = 0;
+
+        for (int i = 0; i < distinct.length; i++) {
+            if (i > 0 && distinct[i] == distinct[i - 1]) {
+                continue;
+            }
+
+            final IntHashSet set = partMap.get(distinct[i]);
+
+            if (set == null) {
+                return NO_IDS;
+            }
+
+            sets[count++] = set;
+        }
+
+        Arrays.sort(sets, 0, count, (set1, set2) -> Integer.compare(set1.size(), set2.size()));
+        final int[] candidates = new int[sets[0].size()];
+        sets[0].copyTo(candidates, 0);
+        int resultSize = 0;
+
+        nextCandidate:
+        for (final int id : candidates) {
+            for (int i = 1; i < count; i++) {
+                if (!sets[i].contains(id)) {
+                    continue nextCandidate;
+                }
+            }
+
+            if (matcher.matches(keyAt(id))) {
+                candidates[resultSize++] = id;
+            }
+        }
+
+        return (resultSize == candidates.length) ? candidates : Arrays.copyOf(candidates, resultSize);
+    }
+
+    static long[] widen(final int[] partialKey) {
+        final long[] result = new long[partialKey.length];
+
+        for (int i = 0; i < partialKey.length; i++) {
+            result[i] = partialKey[i];
+        }
+
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private A keyAt(final int id) {
+        return (A) keys[id];
+    }
+
+    @SuppressWarnings("unchecked")
+    private V valueAt(final int id) {
+        return (V) values[id];
+    }
+
+    /**
+     * Finds the table index of the full key.
+     *
+     * @return the table index if found, otherwise, the bitwise complement of the free table index
+     * to insert the key to
+     */
+    private int indexOf(final A key, final int hash) {
+        final int mask = table.length - 1;
+
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            final int stored = table[i];
+
+            if (stored == 0) {
+                return ~i;
+            }
+
+            final int id = stored - 1;
+
+            if (hashes[id] == hash && keyEquals(keyAt(id), key)) {
+                return i;
+            }
+        }
+    }
+
+    private int newId() {
+        if (freeCount > 0) {
+            return freeIds[--freeCount];
+        }
+
+        if (highId == keys.length) {
+            final int newLength = keys.length << 1;
+            keys = Arrays.copyOf(keys, newLength);
+            values = Arrays.copyOf(values, newLength);
+            hashes = Arrays.copyOf(hashes, newLength);
+        }
+
+        return highId++;
+    }
+
+    private void freeId(final int id) {
+        if (freeCount == freeIds.length) {
+            freeIds = Arrays.copyOf(freeIds, freeIds.length << 1);
+        }
+
+        freeIds[freeCount++] = id;
+    }
+
+    private void shiftBack(int i) {
+        final int mask = table.length - 1;
+
+        for (int j = (i + 1) & mask, stored; (stored = table[j]) != 0; j = (j + 1) & mask) {
+            final int ideal = hashes[stored - 1] & mask;
+
+            if ((j > i) ? (ideal <= i || ideal > j) : (ideal <= i && ideal > j)) {
+                table[i] = stored;
+                i = j;
+            }
+        }
+
+        table[i] = 0;
+    }
+
+    private void rehash(final int newCapacity) {
+        final int[] oldTable = table;
+        final int mask = newCapacity - 1;
+        table = new int[newCapacity];
+
+        for (final int stored : oldTable) {
+            if (stored != 0) {
+                int i = hashes[stored - 1] & mask;
+
+                while (table[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+
+                table[i] = stored;
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("{");
+
+        for (int id = 0; id < highId; id++) {
+            if (keys[id] != null) {
+                if (sb.length() > 1) {
+                    sb.append(", ");
+                }
+
+                sb.append(keyToString(keyAt(id))).append('=').append(values[id]);
+            }
+        }
+
+        return sb.append('}').toString();
+    }
+
+    private void writeObject(final java.io.ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(size);
+
+        for (int id = 0; id < highId; id++) {
+            if (keys[id] != null) {
+                out.writeObject(keys[id]);
+                out.writeObject(values[id]);
+            }
+        }
+    }
+
+    private void readObject(final java.io.ObjectInputStream in)
+            throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        init();
+
+        for (int i = in.readInt(); i > 0; i--) {
+            @SuppressWarnings("unchecked") final A key = (A) in.readObject();
+            @SuppressWarnings("unchecked") final V value = (V) in.readObject();
+            putValue(key, value);
+        }
+    }
+
+    /**
+     * The primitive counterpart of the MultiKeyMap's positional matcher.
+     */
+    private final class Matcher {
+        private final long[] fixedSubKeys;
+        private final boolean[] fixed;
+        private final long[] floating;
+        private final int totalCount;
+
+        Matcher(final long[] partialKey, final int[] positions) {
+            int maxPosition = -1;
+
+            for (int i = 0; i < Math.min(partialKey.length, positions.length); i++) {
+                maxPosition = Math.max(maxPosition, positions[i]);
+            }
+
+            fixedSubKeys = new long[maxPosition + 1];
+            fixed = new boolean[maxPosition + 1];
+            final long[] floating = new long[partialKey.length];
+            int floatingCount = 0;
+
+            for (int i = 0; i < partialKey.length; i++) {
+                final int position = (i < positions.length) ? positions[i] : -1;
+
+                if (position >= 0) {
+                    if (fixed[position]) {
+                        throw new IllegalArgumentException(
+                                String.format("duplicate positive position %s", position));
+                    }
+
+                    fixed[position] = true;
+                    fixedSubKeys[position] = partialKey[i];
+                } else {
+                    floating[floatingCount++] = partialKey[i];
+                }
+            }
+
+            this.floating = Arrays.copyOf(floating, floatingCount);
+            this.totalCount = partialKey.length;
+        }
+
+        boolean matches(final A fullKey) {
+            final long[] pending = (floating.length == 0) ? floating : floating.clone();
+            int pendingCount = pending.length;
+            int totalCount = this.totalCount;
+
+            for (int i = 0, length = length(fullKey); i < length; i++) {
+                final long subKey = subKeyAt(fullKey, i);
+
+                if (i < fixed.length && fixed[i]) {
+                    if (fixedSubKeys[i] != subKey) {
+                        return false;
+                    } else if (--totalCount == 0) {
+                        return true;
+                    }
+                } else {
+                    for (int j = 0; j < pendingCount; j++) {
+                        if (pending[j] == subKey) {
+                            pending[j] = pending[--pendingCount];
+
+                            if (--totalCount == 0) {
+                                return true;
+                            }
+
+                            break;
+                        }
+                    }
+                }
+            }
+
+            return totalCount == 0;
+        }
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ *    Copyright 2017 David Tesler
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.protobufel.multikeymap;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+
+/**
+ * The default implementation of the {@link StringMultiKeyMap}. The full keys are stored as the int
+ * arrays of the {@link Utf8Dictionary} ids of their sub-keys, and the index is keyed by these ids.
+ *
+ * <p>NOTE: This class is not thread-safe.
+ *
+ * @param <V> the type of a value
+ * @author David Tesler
+ */
+class BaseStringMultiKeyMap<V> extends BasePrimitiveMultiKeyMap<int[], V>
+        implements StringMultiKeyMap<V> {
+    private static final long serialVersionUID = -8165232467734591367L;
+    private static final int[] NO_IDS = {};
+
+    /**
+     * The dictionary of all sub-keys
+     *
+     * @serial
+     */
+    private final Utf8Dictionary dictionary;
+
+    BaseStringMultiKeyMap() {
+        super();
+        dictionary = new Utf8Dictionary();
+    }
+
+    @Override
+    int length(final int[] key) {
+        return key.length;
+    }
+
+    @Override
+    long subKeyAt(final int[] key, final int index) {
+        return key[index];
+    }
+
+    @Override
+    int hash(final int[] key) {
+        return IntHashSet.mix(Arrays.hashCode(key));
+    }
+
+    @Override
+    boolean keyEquals(final int[] key1, final int[] key2) {
+        return Arrays.equals(key1, key2);
+    }
+
+    /**
+     * The id arrays never escape this class, so there is no need to copy them.
+     */
+    @Override
+    int[] copyOf(final int[] key) {
+        return key;
+    }
+
+    @Override
+    String keyToString(final int[] key) {
+        return decode(key).toString();
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        dictionary.clear();
+    }
+
+    @Override
+    public boolean containsKey(final Iterable<? extends CharSequence> key) {
+        final int[] ids = find(key);
+        return ids != null && containsFullKey(ids);
+    }
+
+    @Override
+    public V get(final Iterable<? extends CharSequence> key) {
+        final int[] ids = find(key);
+        return (ids == null) ? null : getValue(ids);
+    }
+
+    @Override
+    public V put(final Iterable<? extends CharSequence> key, final V value) {
+        Objects.requireNonNull(value);
+        int[] ids = new int[sizeHint(Objects.requireNonNull(key))];
+        int length = 0;
+
+        for (final CharSequence subKey : key) {
+            if (length == ids.length) {
+                ids = Arrays.copyOf(ids, Math.max(4, length << 1));
+            }
+
+            ids[length++] = dictionary.intern(subKey);
+        }
+
+        if (length < ids.length) {
+            ids = Arrays.copyOf(ids, length);
+        }
+
+        final V oldValue = putValue(ids, value);
+
+        if (oldValue != null) {
+            // the stored key already holds the references to its sub-keys
+            release(ids);
+        }
+
+        return oldValue;
+    }
+
+    @Override
+    public V remove(final Iterable<? extends CharSequence> key) {
+        final int[] ids = find(key);
+
+        if (ids == null) {
+            return null;
+        }
+
+        final V oldValue = removeKey(ids);
+
+        if (oldValue != null) {
+            release(ids);
+        }
+
+        return oldValue;
+    }
+
+    @Override
+    public void forEach(final BiConsumer<? super List<String>, ? super V> action) {
+        forEachEntry(action, this::decode);
+    }
+
+    @Override
+    public Stream<List<String>> getFullKeysByPartialKey(
+            final Iterable<? extends CharSequence> partialKey, final Iterable<Integer> positions) {
+        return fullKeysOf(findByPartialKey(partialKey, positions), this::decode);
+    }
+
+    @Override
+    public Stream<V> getValuesByPartialKey(
+            final Iterable<? extends CharSequence> partialKey, final Iterable<Integer> positions) {
+        return valuesOf(findByPartialKey(partialKey, positions));
+    }
+
+    @Override
+    public Stream<Entry<List<String>, V>> getEntriesByPartialKey(
+            final Iterable<? extends CharSequence> partialKey, final Iterable<Integer> positions) {
+        return entriesOf(findByPartialKey(partialKey, positions), this::decode);
+    }
+
+    private int[] findByPartialKey(
+            final Iterable<? extends CharSequence> partialKey, final Iterable<Integer> positions) {
+        Objects.requireNonNull(positions);
+        final int[] ids = find(partialKey);
+
+        if (ids == null) {
+            return NO_IDS;
+        }
+
+        int[] intPositions = new int[sizeHint(positions)];
+        int count = 0;
+
+        for (final Integer position : positions) {
+            if (count == intPositions.length) {
+                intPositions = Arrays.copyOf(intPositions, Math.max(4, count << 1));
+            }
+
+            intPositions[count++] = position;
+        }
+
+        if (count < intPositions.length) {
+            intPositions = Arrays.copyOf(intPositions, count);
+        }
+
+        return findByPartialKey(widen(ids), intPositions);
+    }
+
+    /**
+     * Finds the dictionary ids of the sub-keys.
+     *
+     * @return the ids of the sub-keys, or null if any of them is not in the dictionary
+     */
+    private int[] find(final Iterable<? extends CharSequence> key) {
+        int[] ids = new int[sizeHint(Objects.requireNonNull(key))];
+        int length = 0;
+        boolean found = true;
+
+        for (final CharSequence subKey : key) {
+            final int id = dictionary.find(Objects.requireNonNull(subKey));
+
+            if (id < 0) {
+                found = false;
+            } else if (found) {
+                if (length == ids.length) {
+                    ids = Arrays.copyOf(ids, Math.max(4, length << 1));
+                }
+
+                ids[length++] = id;
+            }
+        }
+
+        return !found ? null : (length == ids.length) ? ids : Arrays.copyOf(ids, length);
+    }
+
+    private void release(final int[] ids) {
+        for (final int id : ids) {
+            dictionary.release(id);
+        }
+    }
+
+    /**
+     * Gets the dictionary of the sub-keys, for testing.
+     */
+    Utf8Dictionary dictionary() {
+        return dictionary;
+    }
+
+    private List<String> decode(final int[] ids) {
+        final String[] subKeys = new String[ids.length];
+
+        for (int i = 0; i < ids.length; i++) {
+            subKeys[i] = dictionary.get(ids[i]);
+        }
+
+        return Collections.unmodifiableList(Arrays.asList(subKeys));
+    }
+
+    private static int sizeHint(final Iterable<?> iterable) {
+        return (iterable instanceof Collection) ? ((Collection<?>) iterable).size() : 4;
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ *    Copyright 2017 David Tesler
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.protobufel.multikeymap;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Encodes and decodes the sub-keys, the full keys, or the values of the partitioned MultiKeyMap
+ * on the wire, see {@link ShardServer} and {@link PartitionedMultiKeyMap}. The codec must decode
+ * exactly the bytes it has encoded, and the decoded object must be equal to the encoded one.
+ *
+ * @param <E> the type of the encoded objects
+ * @author David Tesler
+ */
+public interface Codec<E> {
+
+    /**
+     * Gets the codec of the strings as their UTF-8 bytes.
+     *
+     * @return the codec of the strings
+     */
+    static Codec<String> utf8() {
+        return new Codec<String>() {
+            @Override
+            public void encode(final String value, final DataOutput out) throws IOException {
+                final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+
+            @Override
+            public String decode(final DataInput in) throws IOException {
+                final byte[] bytes = new byte[ShardProtocol.readLength(in, 1)];
+                in.readFully(bytes);
+                return new String(bytes, StandardCharsets.UTF_8);
+            }
+        };
+    }
+
+    /**
+     * Gets the codec of the integers as their 4 bytes.
+     *
+     * @return the codec of the integers
+     */
+    static Codec<Integer> int32() {
+        return new Codec<Integer>() {
+            @Override
+            public void encode(final Integer value, final DataOutput out) throws IOException {
+                out.writeInt(value);
+            }
+
+            @Override
+            public Integer decode(final DataInput in) throws IOException {
+                return in.readInt();
+            }
+        };
+    }
+
+    /**
+     * Gets the codec of the longs as their 8 bytes.
+     *
+     * @return the codec of the longs
+     */
+    static Codec<Long> int64() {
+        return new Codec<Long>() {
+            @Override
+            public void encode(final Long value, final DataOutput out) throws IOException {
+                out.writeLong(value);
+            }
+
+            @Override
+            public Long decode(final DataInput in) throws IOException {
+                return in.readLong();
+            }
+        };
+    }
+
+    /**
+     * Gets the codec of the lists, such as the full keys, as the size followed by the elements. The
+     * decoded lists are unmodifiable.
+     *
+     * @param elementCodec the codec of the elements
+     * @param <E>          the type of the elements
+     * @return the codec of the lists
+     */
+    static <E> Codec<List<E>> listOf(final Codec<E> elementCodec) {
+        Objects.requireNonNull(elementCodec);
+        return new Codec<List<E>>() {
+            @Override
+            public void encode(final List<E> value, final DataOutput out) throws IOException {
+                out.writeInt(value.size());
+
+                for (final E element : value) {
+                    elementCodec.encode(element, out);
+                }
+            }
+
+            @Override
+            public List<E> decode(final DataInput in) throws IOException {
+                final int size = ShardProtocol.readLength(in, 0);
+                final List<E> list = new ArrayList<>(ShardProtocol.initialCapacity(in, size));
+
+                for (int i = 0; i < size; i++) {
+                    list.add(elementCodec.decode(in));
+                }
+
+                return Collections.unmodifiableList(list);
+            }
+        };
+    }
+
+    /**
+     * Writes the object.
+     *
+     * @param value the non-null object to encode
+     * @param out   the output to write to
+     * @throws IOException if the output fails
+     */
+    void encode(E value, DataOutput out) throws IOException;
+
+    /**
+     * Reads the object.
+     *
+     * @param in the input to read from
+     * @return the decoded object
+     * @throws IOException if the input fails or is malformed
+     */
+    E decode(DataInput in) throws IOException;
+}
@@ -20,7 +20,11 @@ package com.github.protobufel.multikeymap;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentHashMap.KeySetView;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
 import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
 import java.util.function.BinaryOperator;
 import java.util.function.Function;
 import java.util.function.Supplier;
@@ -49,6 +53,22 @@ public final class Collectors {
      */
     public static <T> Set<T> intersectSets(
             final Iterable<? extends Set<T>> source, final boolean parallel) {
+        if (parallel) {
+            final List<Set<T>> sets = new ArrayList<>();
+
+            for (final Set<T> set : Objects.requireNonNull(source)) {
+                sets.add(Objects.requireNonNull(set));
+            }
+
+            if (sets.isEmpty()) {
+                return Collections.emptySet();
+            }
+
+            final ForkJoinPool pool =
+                    ForkJoinTask.inForkJoinPool() ? ForkJoinTask.getPool() : ForkJoinPool.commonPool();
+            return new HashSet<>(intersectSetsInParallel(sets, pool));
+        }
+
         return streamOf(Objects.requireNonNull(source), parallel)
                 .min(comparingInt(set -> Objects.requireNonNull(set).size()))
                 .map(
@@ -57,6 +77,86 @@ public final class Collectors {
                 .orElse(Collections.emptySet());
     }
 
+    /**
+     * Intersects the sets sequentially by probing each element of the smallest set against the
+     * other ones, from the smallest to the largest, straight into an array-backed list, whose
+     * spliterator is SIZED and SUBSIZED, and splits in balanced halves.
+     *
+     * @param sets the non-empty list of the sets to intersect with each other
+     * @param <T>  the type of the elements of the sets
+     * @return the list of the distinct elements of the intersection, in no particular order
+     */
+    static <T> List<T> intersectSetsToList(final List<? extends Set<T>> sets) {
+        final List<Set<T>> ordered = bySize(sets);
+        final Set<T> smallestSet = ordered.get(0);
+
+        if (smallestSet.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        final List<Set<T>> others = ordered.subList(1, ordered.size());
+        final List<T> result = new ArrayList<>(smallestSet.size());
+
+        candidates:
+        for (final T candidate : smallestSet) {
+            for (final Set<T> set : others) {
+                if (!set.contains(candidate)) {
+                    continue candidates;
+                }
+            }
+
+            result.add(candidate);
+        }
+
+        return result;
+    }
+
+    /**
+     * Intersects the sets in the provided ForkJoinPool by splitting the smallest set into chunks,
+     * each probed against the other sets independently into its own buffer, and concatenating the
+     * buffers at the end. Unlike {@link ConcurrentSetIntersecting}, the workers share no mutable
+     * state.
+     *
+     * @param sets the non-empty list of the sets to intersect with each other
+     * @param pool the ForkJoinPool to run in
+     * @param <T>  the type of the elements of the sets
+     * @return the list of the distinct elements of the intersection, in no particular order
+     */
+    static <T> List<T> intersectSetsInParallel(
+            final List<? extends Set<T>> sets, final ForkJoinPool pool) {
+        final List<Set<T>> ordered = bySize(sets);
+        final Set<T> smallestSet = ordered.get(0);
+
+        if (smallestSet.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        final List<Set<T>> others = ordered.subList(1, ordered.size());
+        final Object[] candidates = smallestSet.toArray();
+        final int chunkSize =
+                Math.max(
+                        PartitionedIntersecting.MIN_CHUNK_SIZE,
+                        candidates.length / (pool.getParallelism() << 2));
+        final PartitionedIntersecting.Chunk chunk =
+                pool.invoke(
+                        new PartitionedIntersecting(candidates, 0, candidates.length, others, chunkSize));
+        final Object[] result = new Object[chunk.size];
+        chunk.copyTo(result, 0);
+        @SuppressWarnings("unchecked") final List<T> list = (List<T>) Arrays.asList(result);
+        return list;
+    }
+
+    /**
+     * Orders the sets to intersect for probing: the smallest one, whose elements are the
+     * candidates, first, and then the other ones from the smallest to the largest, so that most of
+     * the candidates not in the intersection are rejected by the first probe.
+     */
+    private static <T> List<Set<T>> bySize(final List<? extends Set<T>> sets) {
+        final List<Set<T>> ordered = new ArrayList<>(sets);
+        ordered.sort(comparingInt(Set::size));
+        return ordered;
+    }
+
     static <T> Stream<T> streamOf(final Iterable<T> source, final boolean parallel) {
         if (source instanceof Collection) {
             final Collection<T> collection = (Collection<T>) source;
@@ -67,6 +167,53 @@ public final class Collectors {
         }
     }
 
+    /**
+     * Removes the full keys from the map one by one, after collecting all of them, so that the
+     * removals don't affect the query producing the keys.
+     *
+     * @param map      the map to remove from
+     * @param fullKeys the full keys to remove
+     * @param <K>      the type of the full keys
+     * @return the number of the removed entries
+     */
+    static <K> int removeAll(final Map<K, ?> map, final Stream<K> fullKeys) {
+        int removed = 0;
+
+        for (final K key : fullKeys.collect(java.util.stream.Collectors.toList())) {
+            if (map.remove(key) != null) {
+                removed++;
+            }
+        }
+
+        return removed;
+    }
+
+    /**
+     * Replaces the values of the full keys one by one, after collecting all of them.
+     *
+     * @param map      the map to replace the values of
+     * @param fullKeys the full keys to replace the values of
+     * @param function the function computing the new non-null value
+     * @param <K>      the type of the full keys
+     * @param <V>      the type of the values
+     * @return the number of the replaced values
+     */
+    static <K, V> int replaceAll(
+            final Map<K, V> map,
+            final Stream<K> fullKeys,
+            final BiFunction<? super K, ? super V, ? extends V> function) {
+        int replaced = 0;
+
+        for (final K key : fullKeys.collect(java.util.stream.Collectors.toList())) {
+            if (map.computeIfPresent(key, (k, v) -> Objects.requireNonNull(function.apply(k, v)))
+                    != null) {
+                replaced++;
+            }
+        }
+
+        return replaced;
+    }
+
     /**
      * Gets a collector which intersects the stream of sets and returns the resulting set.
      *
@@ -165,6 +312,102 @@ public final class Collectors {
                 keyMapper, valueMapper, mergeFunction, multiKeyMapSupplier);
     }
 
+    /**
+     * Probes a range of the candidates against the other sets, splitting it in halves down to the
+     * chunk size. The result is a tree of the per-leaf buffers, concatenated once by the caller.
+     */
+    @SuppressWarnings("serial")
+    static final class PartitionedIntersecting extends RecursiveTask<PartitionedIntersecting.Chunk> {
+        static final int MIN_CHUNK_SIZE = 1 << 10;
+
+        private final Object[] candidates;
+        private final int from;
+        private final int to;
+        private final List<? extends Set<?>> others;
+        private final int chunkSize;
+
+        PartitionedIntersecting(
+                final Object[] candidates,
+                final int from,
+                final int to,
+                final List<? extends Set<?>> others,
+                final int chunkSize) {
+            super();
+            this.candidates = candidates;
+            this.from = from;
+            this.to = to;
+            this.others = others;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        protected Chunk compute() {
+            if (to - from <= chunkSize) {
+                final Object[] buffer = new Object[to - from];
+                int size = 0;
+
+                for (int i = from; i < to; i++) {
+                    if (containedInOthers(candidates[i])) {
+                        buffer[size++] = candidates[i];
+                    }
+                }
+
+                return new Chunk(buffer, size, null, null);
+            }
+
+            final int middle = (from + to) >>> 1;
+            final PartitionedIntersecting left =
+                    new PartitionedIntersecting(candidates, from, middle, others, chunkSize);
+            left.fork();
+            final Chunk right =
+                    new PartitionedIntersecting(candidates, middle, to, others, chunkSize).compute();
+            return Chunk.of(left.join(), right);
+        }
+
+        private boolean containedInOthers(final Object candidate) {
+            for (final Set<?> set : others) {
+                if (!set.contains(candidate)) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        static final class Chunk {
+            final int size;
+            private final Object[] buffer;
+            private final Chunk left;
+            private final Chunk right;
+
+            private Chunk(final Object[] buffer, final int size, final Chunk left, final Chunk right) {
+                this.buffer = buffer;
+                this.size = size;
+                this.left = left;
+                this.right = right;
+            }
+
+            static Chunk of(final Chunk left, final Chunk right) {
+                if (left.size == 0) {
+                    return right;
+                } else if (right.size == 0) {
+                    return left;
+                }
+
+                return new Chunk(null, left.size + right.size, left, right);
+            }
+
+            int copyTo(final Object[] dest, final int offset) {
+                if (buffer != null) {
+                    System.arraycopy(buffer, 0, dest, offset, size);
+                    return offset + size;
+                }
+
+                return right.copyTo(dest, left.copyTo(dest, offset));
+            }
+        }
+    }
+
     static final class ConcurrentSetIntersecting<K> implements Collector<Set<K>, Set<K>, Set<K>> {
         private final Supplier<Set<K>> smallestSetSupplier;
 
@@ -0,0 +1,36 @@
+/*
+ *    Copyright 2017 David Tesler
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.protobufel.multikeymap;
+
+/**
+ * The reason the MultiKeyMap has removed an entry on its own, see {@link EvictionListener}.
+ *
+ * @author David Tesler
+ */
+public enum EvictionCause {
+    /**
+     * The entry was evicted by the size or weight bound, see {@link
+     * MultiKeyMapBuilder#maximumSize(long)}.
+     */
+    SIZE,
+    /**
+     * The entry's time to live has passed, see {@link
+     * MultiKeyMapBuilder#expireAfterWrite(long, java.util.concurrent.TimeUnit)}.
+     */
+    EXPIRED
+}
@@ -0,0 +1,42 @@
+/*
+ *    Copyright 2017 David Tesler
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.protobufel.multikeymap;
+
+/**
+ * Receives the entries the MultiKeyMap has removed on its own, e.g. evicted by its size bound, or
+ * expired, see {@link MultiKeyMapBuilder#evictionListener(EvictionListener)}. The entry is already
+ * gone from both the MultiKeyMap and its sub-key index by the time of the call. The method is
+ * called synchronously by the thread whose operation caused the eviction, so it should be fast and
+ * must not modify the same MultiKeyMap.
+ *
+ * @param <K> the type of a full key
+ * @param <V> the type of a value
+ * @author David Tesler
+ */
+@FunctionalInterface
+public interface EvictionListener<K, V> {
+
+    /**
+     * Called when the entry has been evicted.
+     *
+     * @param key   the full key of the entry
+     * @param value the value of the entry
+     * @param cause the reason of the eviction
+     */
+    void onEviction(K key, V value, EvictionCause cause);
+}
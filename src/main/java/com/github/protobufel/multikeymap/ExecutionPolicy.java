@@ -0,0 +1,133 @@
+/*
+ *    Copyright 2017 David Tesler
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.protobufel.multikeymap;
+
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+/**
+ * Tells a MultiKeyMap whether and where to run its partial key intersections in parallel. The
+ * parallel policy only goes parallel when the number of the candidates, i.e. the size of the
+ * smallest posting set, reaches its threshold, as the small intersections are much faster done
+ * sequentially. The policy is set per map, see {@link MultiKeyMaps#newMultiKeyMap(Supplier,
+ * boolean, ExecutionPolicy)}, and can be overridden per query, see {@link
+ * MultiKeyMap#getFullKeysByPartialKey(Iterable, ExecutionPolicy)}.
+ *
+ * <p>The instances are immutable and thread-safe.
+ *
+ * @author David Tesler
+ */
+public final class ExecutionPolicy {
+    /**
+     * The default minimal number of the candidates to go parallel with, a conservative value, see
+     * the JMHParallelIntersectionThreshold benchmark to tune it for the actual hardware and data.
+     */
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 1 << 16;
+
+    private static final ExecutionPolicy SEQUENTIAL = new ExecutionPolicy(null, Integer.MAX_VALUE);
+
+    private final ForkJoinPool pool;
+    private final int threshold;
+
+    private ExecutionPolicy(final ForkJoinPool pool, final int threshold) {
+        super();
+        this.pool = pool;
+        this.threshold = threshold;
+    }
+
+    /**
+     * Gets the policy which never goes parallel, the default one.
+     *
+     * @return the sequential policy
+     */
+    public static ExecutionPolicy sequential() {
+        return SEQUENTIAL;
+    }
+
+    /**
+     * Gets the policy which goes parallel on the common ForkJoinPool for the intersections of at
+     * least {@link #DEFAULT_PARALLEL_THRESHOLD} candidates.
+     *
+     * @return the parallel policy with the default settings
+     */
+    public static ExecutionPolicy parallel() {
+        return parallel(ForkJoinPool.commonPool(), DEFAULT_PARALLEL_THRESHOLD);
+    }
+
+    /**
+     * Gets the policy which goes parallel on the provided ForkJoinPool for the intersections of at
+     * least the threshold candidates.
+     *
+     * @param pool      the ForkJoinPool to run the parallel intersections in
+     * @param threshold the minimal number of the candidates to go parallel with, zero for always
+     * @return the parallel policy
+     * @throws IllegalArgumentException if the threshold is negative
+     */
+    public static ExecutionPolicy parallel(final ForkJoinPool pool, final int threshold) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException(String.format("negative threshold %s", threshold));
+        }
+
+        return new ExecutionPolicy(Objects.requireNonNull(pool), threshold);
+    }
+
+    /**
+     * Tells whether this policy ever goes parallel.
+     *
+     * @return true if parallel, false if sequential
+     */
+    public boolean isParallel() {
+        return pool != null;
+    }
+
+    /**
+     * Gets the ForkJoinPool to run the parallel intersections in.
+     *
+     * @return the pool, or null for the sequential policy
+     */
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Gets the minimal number of the candidates to go parallel with.
+     *
+     * @return the threshold, {@link Integer#MAX_VALUE} for the sequential policy
+     */
+    public int getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Tells whether the intersection of the provided number of the candidates should go parallel.
+     *
+     * @param candidates the number of the candidates, i.e. the size of the smallest set
+     * @return true if parallel, false if sequential
+     */
+    public boolean isParallelFor(final int candidates) {
+        return (pool != null) && (candidates >= threshold);
+    }
+
+    @Override
+    public String toString() {
+        return isParallel()
+                ? String.format("ExecutionPolicy[parallel, threshold=%s, pool=%s]", threshold, pool)
+                : "ExecutionPolicy[sequential]";
+    }
+}
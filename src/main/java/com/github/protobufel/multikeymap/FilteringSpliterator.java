@@ -0,0 +1,102 @@
+/*
+ *    Copyright 2017 David Tesler
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.protobufel.multikeymap;
+
+import java.util.Comparator;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * The spliterator of the source's elements matching the predicate, with no intermediate copy.
+ * Unlike {@code Stream.filter}, which leaves the source's size behind, it keeps splitting as the
+ * source does, e.g. in balanced halves of the array-backed candidates of a partial key query, and
+ * reports the source's remaining elements as its estimated size, neither SIZED nor SUBSIZED.
+ *
+ * @param <E> the type of the elements
+ * @author David Tesler
+ */
+final class FilteringSpliterator<E> implements Spliterator<E>, Consumer<E> {
+    private final Spliterator<E> source;
+    private final Predicate<? super E> predicate;
+    private E current;
+
+    /**
+     * Creates the filtering spliterator.
+     *
+     * @param source    the spliterator of the candidate elements
+     * @param predicate the predicate of the elements to keep
+     */
+    FilteringSpliterator(final Spliterator<E> source, final Predicate<? super E> predicate) {
+        super();
+        this.source = source;
+        this.predicate = predicate;
+    }
+
+    /** Holds the element advanced to by the source, internal. */
+    @Override
+    public void accept(final E element) {
+        current = element;
+    }
+
+    @Override
+    public boolean tryAdvance(final Consumer<? super E> action) {
+        while (source.tryAdvance(this)) {
+            final E element = current;
+            current = null;
+
+            if (predicate.test(element)) {
+                action.accept(element);
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    @Override
+    public void forEachRemaining(final Consumer<? super E> action) {
+        source.forEachRemaining(
+                element -> {
+                    if (predicate.test(element)) {
+                        action.accept(element);
+                    }
+                });
+    }
+
+    @Override
+    public Spliterator<E> trySplit() {
+        final Spliterator<E> prefix = source.trySplit();
+        return (prefix == null) ? null : new FilteringSpliterator<>(prefix, predicate);
+    }
+
+    @Override
+    public long estimateSize() {
+        return source.estimateSize();
+    }
+
+    @Override
+    public int characteristics() {
+        return source.characteristics() & ~(SIZED | SUBSIZED);
+    }
+
+    @Override
+    public Comparator<? super E> getComparator() {
+        return source.getComparator();
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ *    Copyright 2017 David Tesler
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ *    This file is derived from the FrequencySketch of Caffeine,
+ *    https://github.com/ben-manes/caffeine, Copyright 2015 Ben Manes,
+ *    licensed under the Apache License, Version 2.0; see the NOTICE file.
+ *
+ */
+
+package com.github.protobufel.multikeymap;
+
+/**
+ * The 4-bit Count-Min sketch estimating the recent access frequency of the elements, for the
+ * TinyLFU admission of {@link WindowTinyLfuPolicy}. Each long holds sixteen 4-bit counters, and an
+ * element has one counter in each of 4 longs. All the counters are halved once the number of the
+ * increments reaches 10 times the capacity, so that the sketch ages the old history out. The seeds,
+ * the counter indexing, and the reset are those of Caffeine's FrequencySketch by Ben Manes.
+ *
+ * <p>NOTE: This class is not thread-safe.
+ *
+ * @author David Tesler
+ */
+final class FrequencySketch {
+    private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    private long[] table = new long[0];
+    private int tableMask;
+    private int sampleSize;
+    private int size;
+
+    /**
+     * Grows the sketch, if needed, for the given number of the elements, discarding the history.
+     *
+     * @param maximumSize the expected maximum number of the elements
+     */
+    void ensureCapacity(final long maximumSize) {
+        final int capacity = (int) Math.min(Math.max(maximumSize, 8), MAXIMUM_CAPACITY);
+
+        if (table.length >= capacity) {
+            return;
+        }
+
+        table = new long[(capacity == 1) ? 1 : Integer.highestOneBit(capacity - 1) << 1];
+        tableMask = table.length - 1;
+        sampleSize = (int) Math.min(10L * table.length, Integer.MAX_VALUE);
+        size = 0;
+    }
+
+    /**
+     * Gets the estimated frequency of the element, from 0 to 15.
+     *
+     * @param element the element
+     * @return the estimated frequency of the element
+     */
+    int frequency(final Object element) {
+        final int hash = spread(element.hashCode());
+        final int start = (hash & 3) << 2;
+        int frequency = Integer.MAX_VALUE;
+
+        for (int i = 0; i < 4; i++) {
+            final int index = indexOf(hash, i);
+            final int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+            frequency = Math.min(frequency, count);
+        }
+
+        return frequency;
+    }
+
+    /**
+     * Increments the estimated frequency of the element, unless saturated.
+     *
+     * @param element the element
+     */
+    void increment(final Object element) {
+        final int hash = spread(element.hashCode());
+        final int start = (hash & 3) << 2;
+        boolean added = false;
+
+        for (int i = 0; i < 4; i++) {
+            added |= incrementAt(indexOf(hash, i), start + i);
+        }
+
+        if (added && (++size == sampleSize)) {
+            reset();
+        }
+    }
+
+    private boolean incrementAt(final int index, final int counter) {
+        final int offset = counter << 2;
+        final long mask = 0xfL << offset;
+
+        if ((table[index] & mask) != mask) {
+            table[index] += 1L << offset;
+            return true;
+        }
+
+        return false;
+    }
+
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+
+        size >>>= 1;
+    }
+
+    private int indexOf(final int hash, final int i) {
+        long h = (hash + SEEDS[i]) * SEEDS[i];
+        h += h >>> 32;
+        return ((int) h) & tableMask;
+    }
+
+    private static int spread(final int hashCode) {
+        int h = hashCode * 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+}
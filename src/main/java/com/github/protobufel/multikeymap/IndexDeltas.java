@@ -0,0 +1,163 @@
+/*
+ *    Copyright 2017 David Tesler
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.protobufel.multikeymap;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * The pending changes of the sub-key index, applied in batches off the write path, see {@link
+ * MultiKeyMapBuilder#asyncIndex(Executor)}. The writes record the net change per full key
+ * relative to the index, so that a put followed by a remove of the same key cancels out; an
+ * applier task, scheduled on the executor whenever there are pending changes, claims them in
+ * batches and applies each batch at once.
+ *
+ * <p>The partial key queries merge the {@link #snapshot()} of the changes, taken before reading
+ * the index, into their results: a change is claimed into the in-flight batch before it leaves
+ * the pending ones, and the batch is retired only once applied, so every change is seen either in
+ * the snapshot or in the index.
+ *
+ * @param <K> the type of a full key
+ * @author David Tesler
+ */
+final class IndexDeltas<K> {
+    /** The maximum number of the full keys per applied batch. */
+    static final int MAXIMUM_BATCH = 4096;
+
+    /** The net changes, true to add the full key's postings, false to remove them. */
+    private final ConcurrentHashMap<K, Boolean> pending = new ConcurrentHashMap<>();
+    private final Executor executor;
+    private final Consumer<Map<K, Boolean>> applier;
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final Object lock = new Object();
+    private volatile Map<K, Boolean> inflight = Collections.emptyMap();
+
+    /**
+     * Creates the empty changes.
+     *
+     * @param executor the executor of the applier task
+     * @param applier  the action applying a batch of the changes to the index
+     */
+    IndexDeltas(final Executor executor, final Consumer<Map<K, Boolean>> applier) {
+        super();
+        this.executor = executor;
+        this.applier = applier;
+    }
+
+    /**
+     * Records the addition of the full key, under its fullMap lock, if concurrent.
+     *
+     * @param key the added full key
+     */
+    void added(final K key) {
+        pending.compute(key, (k, add) -> Boolean.FALSE.equals(add) ? null : Boolean.TRUE);
+        schedule();
+    }
+
+    /**
+     * Records the removal of the full key, under its fullMap lock, if concurrent.
+     *
+     * @param key the removed full key
+     */
+    void removed(final K key) {
+        pending.compute(key, (k, add) -> Boolean.TRUE.equals(add) ? null : Boolean.FALSE);
+        schedule();
+    }
+
+    /**
+     * Gets the changes not yet seen in the index, to be taken before the index is read.
+     *
+     * @return the changes by the full key, true if added, false if removed
+     */
+    Map<K, Boolean> snapshot() {
+        if (pending.isEmpty() && inflight.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        final Map<K, Boolean> snapshot = new HashMap<>(pending);
+        inflight.forEach(snapshot::putIfAbsent);
+        return snapshot;
+    }
+
+    /** Applies all pending changes on the caller. */
+    void flush() {
+        synchronized (lock) {
+            while (!pending.isEmpty()) {
+                final Map<K, Boolean> batch = new ConcurrentHashMap<>();
+                inflight = batch;
+
+                for (final K key : pending.keySet()) {
+                    pending.computeIfPresent(
+                            key,
+                            (k, add) -> {
+                                batch.put(k, add);
+                                return null;
+                            });
+
+                    if (batch.size() >= MAXIMUM_BATCH) {
+                        break;
+                    }
+                }
+
+                try {
+                    applier.accept(batch);
+                } finally {
+                    inflight = Collections.emptyMap();
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops all pending changes along with the index.
+     *
+     * @param clear the action clearing the index
+     */
+    void clear(final Runnable clear) {
+        synchronized (lock) {
+            pending.clear();
+            clear.run();
+        }
+    }
+
+    private void schedule() {
+        if (!scheduled.get() && scheduled.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                drain();
+            }
+        }
+    }
+
+    private void drain() {
+        do {
+            try {
+                flush();
+            } finally {
+                scheduled.set(false);
+            }
+        } while (!pending.isEmpty() && scheduled.compareAndSet(false, true));
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ *    Copyright 2017 David Tesler
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.protobufel.multikeymap;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiConsumer;
+import java.util.function.IntSupplier;
+import java.util.function.Predicate;
+
+/**
+ * Selects the sub-keys the MultiKeyMap indexes, by their positions within the full keys and by
+ * the predicate of the excluded sub-keys, see {@link MultiKeyMapBuilder#indexPositions(int...)}.
+ * The partial key queries look up only the queryable sub-keys, and filter the candidates by the
+ * rest, or scan the whole map if none of the sub-keys is queryable.
+ *
+ * <p>The positional sub-key is queryable if its position is indexed and the sub-key is not
+ * excluded. The non-positional one is queryable only if no full key has it at the unindexed
+ * positions, since its postings would miss the full keys having it only there; so this filter
+ * counts the occurrences of the sub-keys at the unindexed positions, and forgets the sub-key once
+ * the last full key having it there is removed.
+ *
+ * <p>The stop sub-keys, see {@link MultiKeyMapBuilder#stopSubKeys(double, int)}, are the ones
+ * whose posting lists have grown beyond the share of the map; their postings are dropped, and they
+ * are neither indexed nor queryable any more, until the MultiKeyMap is cleared.
+ *
+ * @param <T> the type of a sub-key
+ * @author David Tesler
+ */
+final class IndexFilter<T> {
+    /** The indexed positions, or null if all of them. */
+    private final BitSet includedPositions;
+    /** The unindexed positions, or null if none. */
+    private final BitSet excludedPositions;
+    /** The predicate of the unindexed sub-keys, or null if none. */
+    private final Predicate<? super T> excludedSubKeys;
+    /** The number of the occurrences at the unindexed positions by the sub-key. */
+    private final ConcurrentMap<T, Integer> unindexedSubKeys;
+    /** The maximum share of the entries per posting list, or zero if there are no stop sub-keys. */
+    private final double stopShare;
+    /** The minimum size of the posting list to become a stop sub-key. */
+    private final int stopMinimum;
+    private final Set<T> stopSubKeys;
+
+    IndexFilter(
+            final BitSet includedPositions,
+            final BitSet excludedPositions,
+            final Predicate<? super T> excludedSubKeys,
+            final double stopShare,
+            final int stopMinimum) {
+        super();
+        this.includedPositions =
+                (includedPositions == null) ? null : (BitSet) includedPositions.clone();
+        this.excludedPositions =
+                (excludedPositions == null) ? null : (BitSet) excludedPositions.clone();
+        this.excludedSubKeys = excludedSubKeys;
+        this.unindexedSubKeys = new ConcurrentHashMap<>();
+        this.stopShare = stopShare;
+        this.stopMinimum = stopMinimum;
+        this.stopSubKeys = ConcurrentHashMap.newKeySet();
+    }
+
+    boolean isIndexedPosition(final int position) {
+        return ((includedPositions == null) || includedPositions.get(position))
+                && ((excludedPositions == null) || !excludedPositions.get(position));
+    }
+
+    boolean isExcluded(final T subKey) {
+        return (excludedSubKeys != null) && excludedSubKeys.test(subKey);
+    }
+
+    boolean isStopped(final T subKey) {
+        return !stopSubKeys.isEmpty() && stopSubKeys.contains(subKey);
+    }
+
+    boolean hasStopSubKeys() {
+        return stopShare > 0;
+    }
+
+    /**
+     * Turns the sub-key into a stop sub-key, if its posting list has become too large.
+     *
+     * @param subKey     the just indexed sub-key
+     * @param postings   the size of its posting list
+     * @param entryCount the number of the entries in the MultiKeyMap, read only if the posting list
+     *                   is large enough, and as late as possible, lest the concurrent writers make
+     *                   it stale
+     * @return true if the sub-key has just become a stop one, and its postings are to be dropped
+     */
+    boolean stopIfHeavy(final T subKey, final int postings, final IntSupplier entryCount) {
+        return (stopShare > 0)
+                && (postings >= stopMinimum)
+                && (postings > stopShare * entryCount.getAsInt())
+                && stopSubKeys.add(subKey);
+    }
+
+    Set<T> getStopSubKeys() {
+        return stopSubKeys.isEmpty()
+                ? Collections.emptySet()
+                : Collections.unmodifiableSet(new HashSet<>(stopSubKeys));
+    }
+
+    /**
+     * Tells whether the postings of the sub-key are complete for the query term.
+     *
+     * @param subKey   the sub-key of the partial key
+     * @param position its position, or negative if non-positional
+     * @return true if the sub-key can be looked up in the index
+     */
+    boolean isQueryable(final T subKey, final int position) {
+        if (isExcluded(subKey) || isStopped(subKey)) {
+            return false;
+        }
+
+        return (position >= 0)
+                ? isIndexedPosition(position)
+                : !unindexedSubKeys.containsKey(subKey);
+    }
+
+    /**
+     * Calls the action for each indexed sub-key of the full key, but the stop ones, and counts
+     * the unindexed ones of the added key, or discounts the ones of the removed key, including the
+     * stop ones, so that the counts stay exact as long as every key is removed once per addition.
+     *
+     * @param key    the full key
+     * @param adding whether the key is being added rather than removed
+     * @param action the action on the sub-key and the full key
+     * @param <K>    the type of the full key
+     * @return the number of the indexed sub-keys
+     */
+    <K extends Iterable<T>> int forEachIndexed(
+            final K key, final boolean adding, final BiConsumer<? super T, ? super K> action) {
+        int position = 0;
+        int count = 0;
+
+        for (final T subKey : key) {
+            if (!isExcluded(subKey)) {
+                if (isIndexedPosition(position)) {
+                    if (!isStopped(subKey)) {
+                        action.accept(subKey, key);
+                        count++;
+                    }
+                } else if (adding) {
+                    unindexedSubKeys.merge(subKey, 1, Integer::sum);
+                } else {
+                    unindexedSubKeys.computeIfPresent(
+                            subKey, (k, occurrences) -> (occurrences > 1) ? occurrences - 1 : null);
+                }
+            }
+
+            position++;
+        }
+
+        return count;
+    }
+
+    /** Forgets the sub-keys of the unindexed positions and the stop ones, once the map is empty. */
+    void clear() {
+        unindexedSubKeys.clear();
+        stopSubKeys.clear();
+    }
+}
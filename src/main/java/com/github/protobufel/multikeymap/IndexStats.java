@@ -0,0 +1,242 @@
+/*
+ *    Copyright 2017 David Tesler
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.protobufel.multikeymap;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * The snapshot of the statistics of a MultiKeyMap's sub-key index, see {@link
+ * MultiKeyMap#indexStats(int)}. The statistics are either computed by a scan of the posting lists
+ * on request, or maintained incrementally, see {@link MultiKeyMapBuilder#trackIndexStats(boolean)};
+ * they are approximate while the MultiKeyMap is modified concurrently.
+ *
+ * <p>The estimated bytes assume a 64-bit JVM with the compressed oops, and the Hash based maps and
+ * sets; they only count the structures themselves, not the full keys, the sub-keys, or the values,
+ * which are shared between the fullMap and the index.
+ *
+ * @param <T> the type of a sub-key
+ * @author David Tesler
+ */
+public final class IndexStats<T> {
+    /** The estimated bytes per map entry: the node plus its share of the table. */
+    static final long ENTRY_BYTES = 40;
+    /** The estimated bytes per posting set, excluding its entries. */
+    static final long SET_BYTES = 80;
+
+    private final int entryCount;
+    private final int subKeyCount;
+    private final long postingCount;
+    private final SortedMap<Integer, Long> postingListSizeHistogram;
+    private final List<Map.Entry<T, Integer>> heaviestSubKeys;
+    private final Set<T> stopSubKeys;
+
+    IndexStats(
+            final int entryCount,
+            final int subKeyCount,
+            final long postingCount,
+            final long[] setSizeHistogram,
+            final List<Map.Entry<T, Integer>> heaviestSubKeys,
+            final Set<T> stopSubKeys) {
+        super();
+        this.entryCount = entryCount;
+        this.subKeyCount = subKeyCount;
+        this.postingCount = postingCount;
+        final SortedMap<Integer, Long> histogram = new TreeMap<>();
+
+        for (int i = 1; i < setSizeHistogram.length; i++) {
+            if (setSizeHistogram[i] > 0) {
+                histogram.put(1 << (i - 1), setSizeHistogram[i]);
+            }
+        }
+
+        this.postingListSizeHistogram = Collections.unmodifiableSortedMap(histogram);
+        this.heaviestSubKeys = Collections.unmodifiableList(heaviestSubKeys);
+        this.stopSubKeys = Collections.unmodifiableSet(stopSubKeys);
+    }
+
+    /**
+     * Sums up the statistics of the separately indexed parts of a MultiKeyMap, such as its shards.
+     * The sub-key and the posting list counts are those of all parts' posting lists, so that the
+     * sub-key shared by the parts counts once per part; the heaviest sub-keys have their sizes
+     * summed up over the parts' own heaviest sub-keys, so that the sub-key among the heaviest of
+     * some parts only is under-counted.
+     *
+     * @param parts the statistics of the parts
+     * @param topN  the maximum number of the heaviest sub-keys to include
+     * @param <T>   the type of a sub-key
+     * @return the statistics of the whole MultiKeyMap
+     */
+    static <T> IndexStats<T> sum(final List<IndexStats<T>> parts, final int topN) {
+        long entryCount = 0;
+        long subKeyCount = 0;
+        long postingCount = 0;
+        final long[] setSizeHistogram = new long[Integer.SIZE + 1];
+        final Map<T, Long> sizes = new HashMap<>();
+        final Set<T> stopSubKeys = new HashSet<>();
+
+        for (final IndexStats<T> part : parts) {
+            entryCount += part.entryCount;
+            subKeyCount += part.subKeyCount;
+            postingCount += part.postingCount;
+
+            for (final Map.Entry<Integer, Long> bucket : part.postingListSizeHistogram.entrySet()) {
+                setSizeHistogram[Integer.numberOfTrailingZeros(bucket.getKey()) + 1] +=
+                        bucket.getValue();
+            }
+
+            part.heaviestSubKeys.forEach(
+                    entry -> sizes.merge(entry.getKey(), (long) entry.getValue(), Long::sum));
+            stopSubKeys.addAll(part.stopSubKeys);
+        }
+
+        final List<Map.Entry<T, Integer>> heaviestSubKeys = new ArrayList<>(sizes.size());
+        sizes.forEach(
+                (subKey, size) ->
+                        heaviestSubKeys.add(
+                                new SimpleImmutableEntry<>(
+                                        subKey, (int) Math.min(size, Integer.MAX_VALUE))));
+        heaviestSubKeys.sort(Map.Entry.<T, Integer>comparingByValue().reversed());
+        return new IndexStats<>(
+                (int) Math.min(entryCount, Integer.MAX_VALUE),
+                (int) Math.min(subKeyCount, Integer.MAX_VALUE),
+                postingCount,
+                setSizeHistogram,
+                new ArrayList<>(heaviestSubKeys.subList(0, Math.min(topN, heaviestSubKeys.size()))),
+                stopSubKeys);
+    }
+
+    /**
+     * Gets the number of the entries, i.e. the full keys.
+     *
+     * @return the number of the entries
+     */
+    public int getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * Gets the number of the distinct sub-keys, i.e. the posting lists.
+     *
+     * @return the number of the distinct sub-keys
+     */
+    public int getSubKeyCount() {
+        return subKeyCount;
+    }
+
+    /**
+     * Gets the total number of the postings, i.e. the distinct sub-keys of all full keys.
+     *
+     * @return the total number of the postings
+     */
+    public long getPostingCount() {
+        return postingCount;
+    }
+
+    /**
+     * Gets the average number of the postings per full key.
+     *
+     * @return the average number of the postings per full key, zero if empty
+     */
+    public double getAveragePostingsPerKey() {
+        return (entryCount == 0) ? 0.0 : (double) postingCount / entryCount;
+    }
+
+    /**
+     * Gets the average size of the posting lists, i.e. the average number of the full keys per
+     * sub-key.
+     *
+     * @return the average size of the posting lists, zero if empty
+     */
+    public double getAveragePostingListSize() {
+        return (subKeyCount == 0) ? 0.0 : (double) postingCount / subKeyCount;
+    }
+
+    /**
+     * Gets the histogram of the posting list sizes, i.e. the sub-key cardinality distribution,
+     * wherein the key is the lowest size of the power-of-two bucket, and the value is the number of
+     * the posting lists of the size from the key inclusive to twice the key exclusive. The empty
+     * buckets are omitted.
+     *
+     * @return the unmodifiable histogram of the posting list sizes
+     */
+    public SortedMap<Integer, Long> getPostingListSizeHistogram() {
+        return postingListSizeHistogram;
+    }
+
+    /**
+     * Gets the heaviest sub-keys with their posting list sizes, in the descending order of the
+     * size. There are fewer of them than requested only if there are fewer sub-keys.
+     *
+     * @return the unmodifiable list of the heaviest sub-keys and their posting list sizes
+     */
+    public List<Map.Entry<T, Integer>> getHeaviestSubKeys() {
+        return heaviestSubKeys;
+    }
+
+    /**
+     * Gets the stop sub-keys, which are no longer indexed, because of their huge posting lists,
+     * see {@link MultiKeyMapBuilder#stopSubKeys(double, int)}.
+     *
+     * @return the unmodifiable set of the stop sub-keys, empty if none
+     */
+    public Set<T> getStopSubKeys() {
+        return stopSubKeys;
+    }
+
+    /**
+     * Gets the estimated bytes retained by the fullMap's own structure.
+     *
+     * @return the estimated bytes of the fullMap
+     */
+    public long getEstimatedFullMapBytes() {
+        return entryCount * ENTRY_BYTES;
+    }
+
+    /**
+     * Gets the estimated bytes retained by the sub-key index's own structure.
+     *
+     * @return the estimated bytes of the index
+     */
+    public long getEstimatedIndexBytes() {
+        return subKeyCount * (ENTRY_BYTES + SET_BYTES) + postingCount * ENTRY_BYTES;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "IndexStats[entries=%s, subKeys=%s, postings=%s, fullMapBytes~%s, indexBytes~%s, "
+                        + "postingListSizes=%s, heaviest=%s, stop=%s]",
+                entryCount,
+                subKeyCount,
+                postingCount,
+                getEstimatedFullMapBytes(),
+                getEstimatedIndexBytes(),
+                postingListSizeHistogram,
+                heaviestSubKeys,
+                stopSubKeys);
+    }
+}
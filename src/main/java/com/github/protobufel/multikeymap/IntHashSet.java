@@ -0,0 +1,183 @@
+/*
+ *    Copyright 2017 David Tesler
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.protobufel.multikeymap;
+
+import java.util.function.IntConsumer;
+
+/**
+ * An open-addressing set of non-negative ints, used as the posting list of the primitive
+ * MultiKeyMap implementations. It stores the element plus one, so that zero marks an empty slot,
+ * and uses linear probing with the backward-shift deletion, hence no tombstones.
+ *
+ * <p>NOTE: This class is not thread-safe.
+ *
+ * @author David Tesler
+ */
+final class IntHashSet {
+    private static final int MIN_CAPACITY = 4;
+
+    private int[] table;
+    private int size;
+
+    IntHashSet() {
+        this(MIN_CAPACITY);
+    }
+
+    IntHashSet(final int expectedSize) {
+        table = new int[tableSizeFor(expectedSize)];
+    }
+
+    static int tableSizeFor(final int expectedSize) {
+        final int capacity = Math.max(MIN_CAPACITY, expectedSize << 1);
+        return Integer.highestOneBit(capacity - 1) << 1;
+    }
+
+    static int mix(final int value) {
+        final int h = value * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    boolean contains(final int value) {
+        final int stored = value + 1;
+        final int mask = table.length - 1;
+
+        for (int i = mix(stored) & mask; ; i = (i + 1) & mask) {
+            final int e = table[i];
+
+            if (e == stored) {
+                return true;
+            } else if (e == 0) {
+                return false;
+            }
+        }
+    }
+
+    boolean add(final int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException(String.format("negative value %s", value));
+        }
+
+        final int stored = value + 1;
+        final int mask = table.length - 1;
+        int i = mix(stored) & mask;
+
+        for (int e; (e = table[i]) != 0; i = (i + 1) & mask) {
+            if (e == stored) {
+                return false;
+            }
+        }
+
+        table[i] = stored;
+
+        if (++size << 1 > table.length) {
+            rehash(table.length << 1);
+        }
+
+        return true;
+    }
+
+    boolean remove(final int value) {
+        final int stored = value + 1;
+        final int mask = table.length - 1;
+
+        for (int i = mix(stored) & mask; ; i = (i + 1) & mask) {
+            final int e = table[i];
+
+            if (e == stored) {
+                shiftBack(i);
+                size--;
+                return true;
+            } else if (e == 0) {
+                return false;
+            }
+        }
+    }
+
+    void clear() {
+        table = new int[MIN_CAPACITY];
+        size = 0;
+    }
+
+    void forEach(final IntConsumer action) {
+        for (final int e : table) {
+            if (e != 0) {
+                action.accept(e - 1);
+            }
+        }
+    }
+
+    /**
+     * Copies all elements into the provided array starting at the provided offset.
+     *
+     * @param dest   the array to copy to, with enough room for {@link #size()} elements
+     * @param offset the starting index within the dest
+     * @return the index following the last copied element
+     */
+    int copyTo(final int[] dest, final int offset) {
+        int j = offset;
+
+        for (final int e : table) {
+            if (e != 0) {
+                dest[j++] = e - 1;
+            }
+        }
+
+        return j;
+    }
+
+    private void shiftBack(int i) {
+        final int mask = table.length - 1;
+
+        for (int j = (i + 1) & mask, e; (e = table[j]) != 0; j = (j + 1) & mask) {
+            final int ideal = mix(e) & mask;
+
+            if ((j > i) ? (ideal <= i || ideal > j) : (ideal <= i && ideal > j)) {
+                table[i] = e;
+                i = j;
+            }
+        }
+
+        table[i] = 0;
+    }
+
+    private void rehash(final int newCapacity) {
+        final int[] oldTable = table;
+        final int mask = newCapacity - 1;
+        table = new int[newCapacity];
+
+        for (final int e : oldTable) {
+            if (e != 0) {
+                int i = mix(e) & mask;
+
+                while (table[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+
+                table[i] = e;
+            }
+        }
+    }
+}
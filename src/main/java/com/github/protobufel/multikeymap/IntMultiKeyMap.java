@@ -0,0 +1,169 @@
+/*
+ *    Copyright 2017 David Tesler
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.protobufel.multikeymap;
+
+import java.util.Map.Entry;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+
+/**
+ * Represents the int specialization of the {@link MultiKeyMap}, wherein a full key is an int array
+ * of its sub-keys, so neither the sub-keys nor the full keys are boxed. The partial key queries
+ * have the same semantics as the corresponding {@link MultiKeyMap} methods.
+ *
+ * <p>The full keys are copied on the way in and out, so the caller is free to reuse its arrays.
+ *
+ * <p>NOTE: All implementations assumed to support only {@code @NotNullable values} unless
+ * specifically stated!
+ *
+ * @param <V> the type of a value which stored in the IntMultiKeyMap under the corresponding key
+ * @author David Tesler
+ * @see MultiKeyMap
+ */
+public interface IntMultiKeyMap<V> {
+
+    /**
+     * Gets the number of the entries.
+     *
+     * @return the number of the entries
+     */
+    int size();
+
+    /**
+     * Tells whether there are no entries.
+     *
+     * @return true if there are no entries, false, otherwise
+     */
+    boolean isEmpty();
+
+    /**
+     * Tells whether there is an entry with the exact full key.
+     *
+     * @param key the full key to search for
+     * @return true if found, false, otherwise
+     */
+    boolean containsKey(int... key);
+
+    /**
+     * Gets the value corresponding to the exact full key.
+     *
+     * @param key the full key to search for
+     * @return the value if found, null, otherwise
+     */
+    V get(int... key);
+
+    /**
+     * Associates the value with the full key.
+     *
+     * @param key   the full key
+     * @param value the not null value
+     * @return the previous value, or null if there was none
+     */
+    V put(int[] key, V value);
+
+    /**
+     * Removes the entry with the exact full key.
+     *
+     * @param key the full key to search for
+     * @return the removed value, or null if there was none
+     */
+    V remove(int... key);
+
+    /** Clears all data */
+    void clear();
+
+    /**
+     * Performs the action on every entry.
+     *
+     * @param action the action to be performed on every full key and its value
+     */
+    void forEach(BiConsumer<? super int[], ? super V> action);
+
+    /**
+     * Gets all full keys that contain the partial key in any order.
+     *
+     * @param partialKey the combination of the sub-keys to search for.
+     * @return a stream of the full keys satisfying the partial key criteria, otherwise, the empty
+     * stream.
+     * @see MultiKeyMap#getFullKeysByPartialKey(Iterable)
+     */
+    default Stream<int[]> getFullKeysByPartialKey(final int... partialKey) {
+        return getFullKeysByPartialKey(partialKey, new int[0]);
+    }
+
+    /**
+     * Gets all full keys that contain the partial key according to the specified positions.
+     *
+     * @param partialKey the combination of the sub-keys to search for.
+     * @param positions  the sequence of positions corresponding to the sequence of partialKey's
+     *                   sub-keys, wherein the negative position signifies a non-positional sub-key to search for
+     *                   anywhere within the full key, otherwise, its exact position within the full key. The size
+     *                   of this array can be smaller than the partialKey array, meaning the rest of the partialKey
+     *                   sub-keys are non-positional.
+     * @return a stream of the full keys satisfying the partial key criteria, otherwise, the empty
+     * stream.
+     * @see MultiKeyMap#getFullKeysByPartialKey(Iterable, Iterable)
+     */
+    Stream<int[]> getFullKeysByPartialKey(int[] partialKey, int[] positions);
+
+    /**
+     * Gets all values for which their full keys contain the partial key in any order.
+     *
+     * @param partialKey the combination of the sub-keys to search for.
+     * @return a stream of the values satisfying the partial key criteria, otherwise, the empty
+     * stream.
+     */
+    default Stream<V> getValuesByPartialKey(final int... partialKey) {
+        return getValuesByPartialKey(partialKey, new int[0]);
+    }
+
+    /**
+     * Gets all values for which their full keys contain the partial key according to the specified
+     * positions.
+     *
+     * @param partialKey the combination of the sub-keys to search for.
+     * @param positions  the sequence of positions corresponding to the sequence of partialKey's
+     *                   sub-keys, as in {@link #getFullKeysByPartialKey(int[], int[])}
+     * @return a stream of the values satisfying the partial key criteria, otherwise, the empty
+     * stream.
+     */
+    Stream<V> getValuesByPartialKey(int[] partialKey, int[] positions);
+
+    /**
+     * Gets all entries for which their full keys contain the partial key in any order.
+     *
+     * @param partialKey the combination of the sub-keys to search for.
+     * @return a stream of the entries satisfying the partial key criteria, otherwise, the empty
+     * stream.
+     */
+    default Stream<Entry<int[], V>> getEntriesByPartialKey(final int... partialKey) {
+        return getEntriesByPartialKey(partialKey, new int[0]);
+    }
+
+    /**
+     * Gets all entries for which their full keys contain the partial key according to the specified
+     * positions.
+     *
+     * @param partialKey the combination of the sub-keys to search for.
+     * @param positions  the sequence of positions corresponding to the sequence of partialKey's
+     *                   sub-keys, as in {@link #getFullKeysByPartialKey(int[], int[])}
+     * @return a stream of the entries satisfying the partial key criteria, otherwise, the empty
+     * stream.
+     */
+    Stream<Entry<int[], V>> getEntriesByPartialKey(int[] partialKey, int[] positions);
+}
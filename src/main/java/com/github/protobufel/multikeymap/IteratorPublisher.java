@@ -0,0 +1,182 @@
+/*
+ *    Copyright 2017 David Tesler
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.protobufel.multikeymap;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * The cold, synchronous Publisher of the elements of the lazily created Iterator. Every
+ * Subscriber gets its own Iterator, which is created on the first request, and advanced only as
+ * far as the outstanding demand, on the thread calling {@link Subscription#request(long)}. The
+ * cancellation stops the iteration at once.
+ *
+ * @param <T> the type of the elements
+ * @author David Tesler
+ */
+final class IteratorPublisher<T> implements Publisher<T> {
+    private final Supplier<? extends Iterator<? extends T>> iteratorSupplier;
+
+    IteratorPublisher(final Supplier<? extends Iterator<? extends T>> iteratorSupplier) {
+        this.iteratorSupplier = Objects.requireNonNull(iteratorSupplier);
+    }
+
+    @Override
+    public void subscribe(final Subscriber<? super T> subscriber) {
+        final IteratorSubscription<T> subscription =
+                new IteratorSubscription<>(Objects.requireNonNull(subscriber), iteratorSupplier);
+        subscriber.onSubscribe(subscription);
+    }
+
+    static final class IteratorSubscription<T> implements Subscription {
+        private final Subscriber<? super T> subscriber;
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        private Supplier<? extends Iterator<? extends T>> iteratorSupplier;
+        private Iterator<? extends T> iterator;
+        private volatile boolean cancelled;
+        private volatile Throwable invalidRequest;
+
+        IteratorSubscription(
+                final Subscriber<? super T> subscriber,
+                final Supplier<? extends Iterator<? extends T>> iteratorSupplier) {
+            this.subscriber = subscriber;
+            this.iteratorSupplier = iteratorSupplier;
+        }
+
+        @Override
+        public void request(final long n) {
+            if (n <= 0) {
+                invalidRequest =
+                        new IllegalArgumentException(
+                                String.format("non-positive request %s, see Reactive Streams rule 3.9", n));
+            } else {
+                long current;
+                long next;
+
+                do {
+                    current = requested.get();
+                    next = current + n;
+                } while (!requested.compareAndSet(current, (next < 0) ? Long.MAX_VALUE : next));
+            }
+
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            drain();
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+
+            int missed = 1;
+
+            do {
+                if (!cancelled && !emit()) {
+                    cancelled = true;
+                }
+
+                if (cancelled) {
+                    iteratorSupplier = null;
+                    iterator = null;
+                }
+
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        /**
+         * Emits as many elements as requested. The failures of the Iterator are signalled by
+         * onError, while a Subscriber throwing from its own methods, against the Reactive Streams
+         * rule 2.13, has its subscription considered cancelled, with no further signals.
+         *
+         * @return false if the subscription has been terminated, true, otherwise
+         */
+        private boolean emit() {
+            final long demand = requested.get();
+            long emitted = 0;
+
+            try {
+                if (invalidRequest != null) {
+                    subscriber.onError(invalidRequest);
+                    return false;
+                }
+
+                if (demand == 0) {
+                    return true;
+                }
+
+                while (!cancelled) {
+                    final boolean hasNext;
+                    final T element;
+
+                    try {
+                        if (iterator == null) {
+                            iterator = Objects.requireNonNull(iteratorSupplier.get());
+                        }
+
+                        hasNext = iterator.hasNext();
+                        element =
+                                (hasNext && emitted != demand)
+                                        ? Objects.requireNonNull(iterator.next())
+                                        : null;
+                    } catch (final RuntimeException e) {
+                        subscriber.onError(e);
+                        return false;
+                    }
+
+                    if (!hasNext) {
+                        subscriber.onComplete();
+                        return false;
+                    }
+
+                    if (element == null) {
+                        break;
+                    }
+
+                    subscriber.onNext(element);
+                    emitted++;
+                }
+            } catch (final RuntimeException e) {
+                return false;
+            }
+
+            if (cancelled) {
+                return false;
+            }
+
+            if (demand != Long.MAX_VALUE) {
+                requested.addAndGet(-emitted);
+            }
+
+            return true;
+        }
+    }
+}
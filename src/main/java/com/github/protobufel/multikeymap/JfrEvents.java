@@ -0,0 +1,50 @@
+/*
+ *    Copyright 2017 David Tesler
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.protobufel.multikeymap;
+
+/**
+ * The emitter of the Java Flight Recorder events of the MultiKeyMap, see {@link
+ * JfrSupport#EVENTS}. The events are emitted by the standard begin/commit pattern: a begin method
+ * returns null unless its event is enabled in a running recording, so that the operations neither
+ * allocate nor do anything else for the events while not being recorded, and the commit methods
+ * must only be called with a non-null event.
+ *
+ * <p>The implementation, which refers to jdk.jfr, lives in its own source set, so that the main
+ * one compiles for, and loads on, any Java 8 platform.
+ *
+ * @author David Tesler
+ */
+interface JfrEvents {
+    Object beginPartialQuery();
+
+    void commitPartialQuery(
+            Object event,
+            Iterable<?> partialKey,
+            int subKeyCount,
+            boolean positional,
+            int smallestPostingSetSize,
+            int resultSize);
+
+    Object beginIndexUpdate();
+
+    void commitIndexUpdate(Object event, boolean added, int subKeyCount);
+
+    Object beginBulkOperation();
+
+    void commitBulkOperation(Object event, String operation, int entryCount);
+}
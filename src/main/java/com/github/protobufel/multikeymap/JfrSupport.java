@@ -0,0 +1,51 @@
+/*
+ *    Copyright 2017 David Tesler
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.protobufel.multikeymap;
+
+/**
+ * Loads the Java Flight Recorder events of the {@link JfrEvents}, if the jdk.jfr API is available,
+ * as of OpenJDK 8u262 and Java 11, and not disabled by the {@code
+ * com.github.protobufel.multikeymap.jfr.disabled} system property. This class doesn't refer to
+ * jdk.jfr itself, so that it is safe to load on any JVM; the implementation of the events is only
+ * loaded reflectively, if available.
+ *
+ * @author David Tesler
+ */
+final class JfrSupport {
+    static final String DISABLED_PROPERTY = "com.github.protobufel.multikeymap.jfr.disabled";
+    static final String EVENTS_CLASS = "com.github.protobufel.multikeymap.FlightRecorderEvents";
+    /** The events, or null if not available. */
+    static final JfrEvents EVENTS = Boolean.getBoolean(DISABLED_PROPERTY) ? null : loadEvents();
+    static final boolean ENABLED = EVENTS != null;
+
+    private JfrSupport() {
+    }
+
+    private static JfrEvents loadEvents() {
+        final ClassLoader classLoader = JfrSupport.class.getClassLoader();
+
+        try {
+            Class.forName("jdk.jfr.Event", false, classLoader);
+            return Class.forName(EVENTS_CLASS, true, classLoader)
+                    .asSubclass(JfrEvents.class)
+                    .newInstance();
+        } catch (ReflectiveOperationException | LinkageError | ClassCastException e) {
+            return null;
+        }
+    }
+}
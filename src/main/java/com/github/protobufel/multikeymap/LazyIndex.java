@@ -0,0 +1,167 @@
+/*
+ *    Copyright 2017 David Tesler
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.protobufel.multikeymap;
+
+import java.util.function.LongSupplier;
+
+/**
+ * The state of the lazily built sub-key index, see {@link MultiKeyMapBuilder#lazyIndex(long,
+ * java.util.concurrent.TimeUnit)}. The MultiKeyMap starts unindexed, keeping only its fullMap; the
+ * first partial query needing the index builds it in bulk, and the writes maintain it from then
+ * on, until it has been idle, i.e. not queried, for too long, and is dropped again.
+ *
+ * <p>The writes index their keys only if the state is not {@link #UNINDEXED}. The build first
+ * drops whatever the writes racing with the last drop have left, switches to {@link #BUILDING},
+ * so that the writes index their keys again, and then indexes all keys of the fullMap. The write
+ * which has seen the unindexed state, but finds it changed after adding its key, indexes the key
+ * on its own, as the build may have missed it.
+ *
+ * <p>The drop may clear the index while a query reads it, so the query validates its reads by the
+ * stamp it has got, and starts over, if the index has been dropped since.
+ *
+ * @author David Tesler
+ */
+final class LazyIndex {
+    static final int UNINDEXED = 0;
+    static final int BUILDING = 1;
+    static final int INDEXED = 2;
+    /** The number of the writes between the checks of the idle time, a power of two. */
+    static final int CHECK_INTERVAL = 1024;
+
+    private final long idleNanos;
+    private final LongSupplier ticker;
+    private final Object lock = new Object();
+    private volatile int state = UNINDEXED;
+    private volatile long lastQueryNanos;
+    /** The number of the drops, written under the lock, after the state. */
+    private volatile long drops;
+    /** The approximate number of the writes, racy on purpose. */
+    private int writes;
+
+    /**
+     * Creates the unindexed state.
+     *
+     * @param idleNanos the idle time to drop the index after, or negative to keep it forever
+     * @param ticker    the source of the nanosecond time
+     */
+    LazyIndex(final long idleNanos, final LongSupplier ticker) {
+        super();
+        this.idleNanos = idleNanos;
+        this.ticker = ticker;
+    }
+
+    /**
+     * Tells whether the writes should maintain the index.
+     *
+     * @return true if the index is being built or is built
+     */
+    boolean isIndexing() {
+        return state != UNINDEXED;
+    }
+
+    boolean isIndexed() {
+        return state == INDEXED;
+    }
+
+    /**
+     * Records the partial query, and builds the index, if not yet.
+     *
+     * @param clear the action dropping the index
+     * @param build the action indexing all keys of the fullMap
+     * @return the stamp to validate the reads of the index by, see {@link #isCurrent(long)}
+     */
+    long query(final Runnable clear, final Runnable build) {
+        if (idleNanos >= 0) {
+            lastQueryNanos = ticker.getAsLong();
+        }
+
+        // the stamp is read before the state, and the drop writes them in reverse order
+        final long stamp = drops;
+
+        if (state == INDEXED) {
+            return stamp;
+        }
+
+        synchronized (lock) {
+            if (state == INDEXED) {
+                return drops;
+            }
+
+            try {
+                clear.run();
+                state = BUILDING;
+                build.run();
+                state = INDEXED;
+            } finally {
+                if (state != INDEXED) {
+                    state = UNINDEXED;
+                }
+            }
+
+            return drops;
+        }
+    }
+
+    /**
+     * Tells whether the index has not been dropped since the stamp was taken, to be called after
+     * reading the index.
+     *
+     * @param stamp the stamp of {@link #query(Runnable, Runnable)}
+     * @return true if the reads of the index since the stamp are complete
+     */
+    boolean isCurrent(final long stamp) {
+        return drops == stamp;
+    }
+
+    /**
+     * Tells whether the write should check the idle time, about once per {@link #CHECK_INTERVAL}
+     * writes.
+     *
+     * @return true if the idle time is due to be checked
+     */
+    boolean isCheckDue() {
+        return (idleNanos >= 0) && ((++writes & (CHECK_INTERVAL - 1)) == 0) && (state == INDEXED);
+    }
+
+    /**
+     * Drops the index, if it has not been queried for the idle time.
+     *
+     * @param clear the action dropping the index
+     * @return true if the index has been dropped
+     */
+    boolean dropIfIdle(final Runnable clear) {
+        if ((idleNanos < 0) || !isIdle()) {
+            return false;
+        }
+
+        synchronized (lock) {
+            if (!isIdle()) {
+                return false;
+            }
+
+            state = UNINDEXED;
+            drops++;
+            clear.run();
+            return true;
+        }
+    }
+
+    private boolean isIdle() {
+        return (state == INDEXED) && (ticker.getAsLong() - lastQueryNanos >= idleNanos);
+    }
+}
@@ -19,6 +19,7 @@ package com.github.protobufel.multikeymap;
 
 import java.io.Serializable;
 import java.util.*;
+import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -47,7 +48,24 @@ interface LiteSetMultimap<K, V> {
      * @return a new instance of LiteSetMultimap based on the provided empty map
      */
     static <K, V> LiteSetMultimap<K, V> newInstance(boolean concurrent) {
-        return concurrent ? new ConcurrentLiteSetMultimap<>() : new RegularLiteSetMultimap<>();
+        return newInstance(concurrent, false);
+    }
+
+    /**
+     * Creates a new instance of LiteSetMultimap, optionally maintaining its statistics
+     * incrementally, see {@link PostingStats}.
+     *
+     * @param concurrent create a concurrent instance if true, un-synchronized, regular instance,
+     *                   otherwise
+     * @param trackStats maintain the statistics incrementally if true, scan the sets for them on
+     *                   request, otherwise
+     * @return a new instance of LiteSetMultimap
+     */
+    static <K, V> LiteSetMultimap<K, V> newInstance(boolean concurrent, boolean trackStats) {
+        final PostingStats<K> stats = trackStats ? new PostingStats<>() : null;
+        return concurrent
+                ? new ConcurrentLiteSetMultimap<>(stats)
+                : new RegularLiteSetMultimap<>(stats);
     }
 
     /** Clears all data */
@@ -64,6 +82,27 @@ interface LiteSetMultimap<K, V> {
      */
     boolean remove(K key, V value);
 
+    /**
+     * Removes the values, if present, from the set of the key's values at once, as in {@link
+     * #remove(Object, Object)}.
+     *
+     * @param key    the key to search for
+     * @param values the values to be removed corresponding to the search key
+     * @return the number of the removed values
+     */
+    int removeAll(K key, Collection<? extends V> values);
+
+    /**
+     * Removes the values from the set of the key's values at once, as in {@link
+     * #removeAll(Object, Collection)}, given that they are distinct and all present, so that the
+     * whole set is dropped in one operation if they are as many as its values.
+     *
+     * @param key    the key to search for
+     * @param values the distinct values, all present in the set of the key's values
+     * @return the number of the removed values
+     */
+    int removeAllPresent(K key, Collection<? extends V> values);
+
     /**
      * Gets the number of records in the LiteSetMultimap.
      *
@@ -96,6 +135,52 @@ interface LiteSetMultimap<K, V> {
      */
     boolean put(K key, V value);
 
+    /**
+     * Adds the value to the set of values corresponding to the search key, as {@link #put(Object,
+     * Object)} does, and gets the size of the set afterwards.
+     *
+     * @param key the key to search for
+     * @param value the value to add to the set of values corresponding to the search key
+     * @return the size of the key's set, including the value
+     */
+    int putAndGetSize(K key, V value);
+
+    /**
+     * Adds the values to the set of the key's values at once, as in {@link #put(Object, Object)}.
+     *
+     * @param key    the key to search for
+     * @param values the values to add to the set of values corresponding to the search key
+     * @return the size of the key's set afterwards
+     */
+    int putAll(K key, Collection<? extends V> values);
+
+    /**
+     * Gets the total number of the values in all sets, maintained incrementally if tracked, or by
+     * scanning the sets, otherwise.
+     *
+     * @return the total number of the values
+     */
+    long valueCount();
+
+    /**
+     * Gets the histogram of the set sizes, maintained incrementally if tracked, or by scanning the
+     * sets, otherwise, wherein the element i is the number of the sets of the size from {@code
+     * 2^(i - 1)} inclusive to {@code 2^i} exclusive.
+     *
+     * @return the histogram, with the unused element 0
+     */
+    long[] setSizeHistogram();
+
+    /**
+     * Gets the keys with the largest sets, among the keys of the top size buckets if tracked, see
+     * {@link PostingStats#heaviestKeys(int, java.util.function.ToIntFunction)}, or by scanning the
+     * sets, otherwise.
+     *
+     * @param limit the maximum number of the keys to return
+     * @return the list of the keys with their set sizes, in the descending order of the size
+     */
+    List<Map.Entry<K, Integer>> heaviestKeys(int limit);
+
     /**
      * Returns whether this class supports concurrent access.
      */
@@ -107,7 +192,11 @@ interface LiteSetMultimap<K, V> {
         private static final long serialVersionUID = -5018582265479564955L;
 
         public ConcurrentLiteSetMultimap() {
-            super(new ConcurrentHashMap<>());
+            this(null);
+        }
+
+        ConcurrentLiteSetMultimap(final PostingStats<K> stats) {
+            super(new ConcurrentHashMap<>(), stats);
         }
 
         @Override
@@ -120,7 +209,11 @@ interface LiteSetMultimap<K, V> {
         private static final long serialVersionUID = -1557045174464645635L;
 
         public RegularLiteSetMultimap() {
-            super(new HashMap<>());
+            this(null);
+        }
+
+        RegularLiteSetMultimap(final PostingStats<K> stats) {
+            super(new HashMap<>(), stats);
         }
 
         @Override
@@ -136,9 +229,16 @@ interface LiteSetMultimap<K, V> {
          * @serial
          */
         private final Map<K, Set<V>> map;
+        /** The incrementally maintained statistics, null if they are computed on request. */
+        private final PostingStats<K> stats;
 
         public BaseLiteSetMultimap(Map<K, Set<V>> map) {
+            this(map, null);
+        }
+
+        BaseLiteSetMultimap(final Map<K, Set<V>> map, final PostingStats<K> stats) {
             this.map = map;
+            this.stats = stats;
         }
 
         abstract Set<V> newSet();
@@ -160,13 +260,140 @@ interface LiteSetMultimap<K, V> {
 
         @Override
         public boolean put(final K key, final V value) {
-            return map.computeIfAbsent(Objects.requireNonNull(key), k -> newSet())
-                    .add(Objects.requireNonNull(value));
+            return add(key, value) > 0;
+        }
+
+        @Override
+        public int putAndGetSize(final K key, final V value) {
+            return Math.abs(add(key, value));
+        }
+
+        @Override
+        public int putAll(final K key, final Collection<? extends V> values) {
+            Objects.requireNonNull(values);
+            final int[] size = {0};
+            map.compute(
+                    Objects.requireNonNull(key),
+                    (k, v) -> {
+                        final Set<V> set = (v == null) ? newSet() : v;
+                        final int oldSize = set.size();
+
+                        for (final V value : values) {
+                            set.add(Objects.requireNonNull(value));
+                        }
+
+                        size[0] = set.size();
+
+                        if (stats != null) {
+                            stats.resized(k, oldSize, size[0]);
+                        }
+
+                        return set.isEmpty() ? null : set;
+                    });
+
+            return size[0];
+        }
+
+        /** Returns the size of the set afterwards, negative if the value was already there. */
+        private int add(final K key, final V value) {
+            Objects.requireNonNull(value);
+            final int[] size = {0};
+            map.compute(
+                    Objects.requireNonNull(key),
+                    (k, v) -> {
+                        final Set<V> set = (v == null) ? newSet() : v;
+
+                        if (set.add(value)) {
+                            size[0] = set.size();
+
+                            if (stats != null) {
+                                stats.resized(k, size[0] - 1, size[0]);
+                            }
+                        } else {
+                            size[0] = -set.size();
+                        }
+
+                        return set;
+                    });
+
+            return size[0];
         }
 
         @Override
         public void clear() {
             map.clear();
+
+            if (stats != null) {
+                stats.clear();
+            }
+        }
+
+        @Override
+        public long valueCount() {
+            if (stats != null) {
+                return stats.valueCount();
+            }
+
+            long count = 0;
+
+            for (final Set<V> set : map.values()) {
+                count += set.size();
+            }
+
+            return count;
+        }
+
+        @Override
+        public long[] setSizeHistogram() {
+            if (stats != null) {
+                return stats.setSizeHistogram();
+            }
+
+            final long[] histogram = new long[Integer.SIZE];
+
+            for (final Set<V> set : map.values()) {
+                final int bucket = PostingStats.bucketOf(set.size());
+
+                if (bucket != 0) {
+                    histogram[bucket]++;
+                }
+            }
+
+            return histogram;
+        }
+
+        @Override
+        public List<Map.Entry<K, Integer>> heaviestKeys(final int limit) {
+            if (stats != null) {
+                return stats.heaviestKeys(
+                        limit,
+                        key -> {
+                            final Set<V> set = map.get(key);
+                            return (set == null) ? 0 : set.size();
+                        });
+            } else if (limit == 0) {
+                return new ArrayList<>();
+            }
+
+            final Comparator<Map.Entry<K, Integer>> bySize = Map.Entry.comparingByValue();
+            // the min-heap of the heaviest keys so far
+            final PriorityQueue<Map.Entry<K, Integer>> heaviest = new PriorityQueue<>(bySize);
+
+            map.forEach(
+                    (key, set) -> {
+                        final int size = set.size();
+
+                        if (heaviest.size() < limit) {
+                            heaviest.add(new SimpleImmutableEntry<>(key, size));
+                        } else if (heaviest.peek().getValue() < size) {
+                            heaviest.poll();
+                            heaviest.add(new SimpleImmutableEntry<>(key, size));
+                        }
+                    });
+
+            final List<Map.Entry<K, Integer>> result = new ArrayList<>(heaviest);
+            result.sort(bySize.reversed());
+            return result;
         }
 
         @Override
@@ -175,8 +402,12 @@ interface LiteSetMultimap<K, V> {
             map.computeIfPresent(
                     Objects.requireNonNull(key),
                     (k, v) -> {
-                        if ((removed[0] = v.remove(value)) && v.isEmpty()) {
-                            return null;
+                        if (removed[0] = v.remove(value)) {
+                            if (stats != null) {
+                                stats.resized(k, v.size() + 1, v.size());
+                            }
+
+                            return v.isEmpty() ? null : v;
                         }
 
                         return v;
@@ -185,6 +416,60 @@ interface LiteSetMultimap<K, V> {
             return removed[0];
         }
 
+        @Override
+        public int removeAll(final K key, final Collection<? extends V> values) {
+            final int[] removed = {0};
+            map.computeIfPresent(
+                    Objects.requireNonNull(key),
+                    (k, v) -> {
+                        for (final V value : values) {
+                            if (v.remove(value)) {
+                                removed[0]++;
+                            }
+                        }
+
+                        if (stats != null) {
+                            stats.resized(k, v.size() + removed[0], v.size());
+                        }
+
+                        return v.isEmpty() ? null : v;
+                    });
+
+            return removed[0];
+        }
+
+        @Override
+        public int removeAllPresent(final K key, final Collection<? extends V> values) {
+            final int[] removed = {0};
+            map.computeIfPresent(
+                    Objects.requireNonNull(key),
+                    (k, v) -> {
+                        if (values.size() == v.size()) {
+                            removed[0] = v.size();
+
+                            if (stats != null) {
+                                stats.resized(k, removed[0], 0);
+                            }
+
+                            return null;
+                        }
+
+                        for (final V value : values) {
+                            if (v.remove(value)) {
+                                removed[0]++;
+                            }
+                        }
+
+                        if (stats != null) {
+                            stats.resized(k, v.size() + removed[0], v.size());
+                        }
+
+                        return v.isEmpty() ? null : v;
+                    });
+
+            return removed[0];
+        }
+
         @Override
         public boolean equals(final Object o) {
             if (o == this) {
@@ -0,0 +1,107 @@
+/*
+ *    Copyright 2017 David Tesler
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.protobufel.multikeymap;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A concurrent histogram of the non-negative long values with the logarithmic buckets, in the
+ * manner of the HdrHistogram: the values below 8 are exact, and the larger ones are grouped by
+ * their highest bit and 3 more bits, so that the relative error stays within 12.5% for any value.
+ * Recording is one atomic increment; the negative values are recorded as zero.
+ *
+ * @author David Tesler
+ */
+final class LogHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (Long.SIZE - 1 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    static int indexOf(final long value) {
+        if (value < SUB_BUCKETS) {
+            return (value < 0) ? 0 : (int) value;
+        }
+
+        final int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        final int shift = exponent - SUB_BUCKET_BITS;
+        return ((shift + 1) << SUB_BUCKET_BITS) + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    static long highestValueOf(final int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+
+        final int shift = (index >>> SUB_BUCKET_BITS) - 1;
+        final long lowest = (long) (SUB_BUCKETS + (index & (SUB_BUCKETS - 1))) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    void record(final long value) {
+        counts.incrementAndGet(indexOf(value));
+    }
+
+    long getCount() {
+        long count = 0;
+
+        for (int i = 0; i < BUCKETS; i++) {
+            count += counts.get(i);
+        }
+
+        return count;
+    }
+
+    /**
+     * Gets the value at the percentile, as the highest value of its bucket.
+     *
+     * @param percentile the percentile from 0 to 100
+     * @return the value at the percentile, or zero if there are no values
+     */
+    long getValueAtPercentile(final double percentile) {
+        final long[] snapshot = new long[BUCKETS];
+        long count = 0;
+
+        for (int i = 0; i < BUCKETS; i++) {
+            count += (snapshot[i] = counts.get(i));
+        }
+
+        if (count == 0) {
+            return 0;
+        }
+
+        final double bounded = Math.min(Math.max(percentile, 0.0), 100.0);
+        final long rank = Math.max(1, (long) Math.ceil(bounded / 100.0 * count));
+        long seen = 0;
+
+        for (int i = 0; i < BUCKETS; i++) {
+            if ((seen += snapshot[i]) >= rank) {
+                return highestValueOf(i);
+            }
+        }
+
+        return highestValueOf(BUCKETS - 1);
+    }
+
+    void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+    }
+}
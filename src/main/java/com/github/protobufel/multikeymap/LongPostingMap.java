@@ -0,0 +1,176 @@
+/*
+ *    Copyright 2017 David Tesler
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.protobufel.multikeymap;
+
+/**
+ * An open-addressing map of the primitive sub-keys to their posting lists of the entry ids. The
+ * int sub-keys are widened to long, so the same map serves both int and long based MultiKeyMaps.
+ *
+ * <p>NOTE: This class is not thread-safe.
+ *
+ * @author David Tesler
+ */
+final class LongPostingMap {
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] subKeys;
+    private IntHashSet[] postings;
+    private int size;
+
+    LongPostingMap() {
+        subKeys = new long[MIN_CAPACITY];
+        postings = new IntHashSet[MIN_CAPACITY];
+    }
+
+    static int mix(final long value) {
+        long h = value * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 32;
+        return (int) (h ^ (h >>> 16));
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Gets the posting list of the sub-key.
+     *
+     * @param subKey the sub-key to search for
+     * @return the live posting list, or null if there is none
+     */
+    IntHashSet get(final long subKey) {
+        final int mask = subKeys.length - 1;
+
+        for (int i = mix(subKey) & mask; ; i = (i + 1) & mask) {
+            final IntHashSet posting = postings[i];
+
+            if (posting == null) {
+                return null;
+            } else if (subKeys[i] == subKey) {
+                return posting;
+            }
+        }
+    }
+
+    /**
+     * Adds the entry id to the posting list of the sub-key, creating the latter as needed.
+     *
+     * @param subKey  the sub-key to add to
+     * @param entryId the entry id to add
+     * @return true if the entry id has been added, false if it is already there
+     */
+    boolean put(final long subKey, final int entryId) {
+        final int mask = subKeys.length - 1;
+        int i = mix(subKey) & mask;
+
+        for (IntHashSet posting; (posting = postings[i]) != null; i = (i + 1) & mask) {
+            if (subKeys[i] == subKey) {
+                return posting.add(entryId);
+            }
+        }
+
+        final IntHashSet posting = new IntHashSet();
+        posting.add(entryId);
+        subKeys[i] = subKey;
+        postings[i] = posting;
+
+        if (++size << 1 > subKeys.length) {
+            rehash(subKeys.length << 1);
+        }
+
+        return true;
+    }
+
+    /**
+     * Removes the entry id from the posting list of the sub-key, and the entire posting list if it
+     * becomes empty.
+     *
+     * @param subKey  the sub-key to remove from
+     * @param entryId the entry id to remove
+     * @return true if the entry id has been removed, false, otherwise
+     */
+    boolean remove(final long subKey, final int entryId) {
+        final int mask = subKeys.length - 1;
+
+        for (int i = mix(subKey) & mask; ; i = (i + 1) & mask) {
+            final IntHashSet posting = postings[i];
+
+            if (posting == null) {
+                return false;
+            } else if (subKeys[i] == subKey) {
+                if (!posting.remove(entryId)) {
+                    return false;
+                }
+
+                if (posting.isEmpty()) {
+                    shiftBack(i);
+                    size--;
+                }
+
+                return true;
+            }
+        }
+    }
+
+    void clear() {
+        subKeys = new long[MIN_CAPACITY];
+        postings = new IntHashSet[MIN_CAPACITY];
+        size = 0;
+    }
+
+    private void shiftBack(int i) {
+        final int mask = subKeys.length - 1;
+
+        for (int j = (i + 1) & mask; postings[j] != null; j = (j + 1) & mask) {
+            final int ideal = mix(subKeys[j]) & mask;
+
+            if ((j > i) ? (ideal <= i || ideal > j) : (ideal <= i && ideal > j)) {
+                subKeys[i] = subKeys[j];
+                postings[i] = postings[j];
+                i = j;
+            }
+        }
+
+        postings[i] = null;
+    }
+
+    private void rehash(final int newCapacity) {
+        final long[] oldSubKeys = subKeys;
+        final IntHashSet[] oldPostings = postings;
+        final int mask = newCapacity - 1;
+        subKeys = new long[newCapacity];
+        postings = new IntHashSet[newCapacity];
+
+        for (int j = 0; j < oldPostings.length; j++) {
+            if (oldPostings[j] != null) {
+                int i = mix(oldSubKeys[j]) & mask;
+
+                while (postings[i] != null) {
+                    i = (i + 1) & mask;
+                }
+
+                subKeys[i] = oldSubKeys[j];
+                postings[i] = oldPostings[j];
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ *    Copyright 2017 David Tesler
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.protobufel.multikeymap;
+
+import java.util.Map;
+
+/**
+ * Represents a live, read-only Map of the entries matching a partial key, incrementally maintained
+ * by every modification of the MultiKeyMap it is materialized from, so that reading it requires no
+ * intersection at all. Closing it stops the maintenance and empties it.
+ *
+ * @param <K> the type of a full key
+ * @param <V> the type of a value
+ * @author David Tesler
+ * @see MultiKeyMap#materialize(Iterable, Iterable)
+ */
+public interface MaterializedView<K, V> extends Map<K, V>, AutoCloseable {
+
+    /**
+     * Tells whether this view has been closed.
+     *
+     * @return true if closed, false, otherwise
+     */
+    boolean isClosed();
+
+    /**
+     * Stops maintaining this view and empties it; does nothing if already closed.
+     */
+    @Override
+    void close();
+}
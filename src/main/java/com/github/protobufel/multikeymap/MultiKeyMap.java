@@ -18,10 +18,14 @@
 package com.github.protobufel.multikeymap;
 
 import java.util.AbstractMap.SimpleImmutableEntry;
-import java.util.HashMap;
-import java.util.Iterator;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -110,6 +114,347 @@ public interface MultiKeyMap<T, K extends Iterable<T>, V> extends Map<K, V> {
                 .map(key -> new SimpleImmutableEntry<>(key, get(key)));
     }
 
+    /**
+     * Removes all entries for which their full keys contain the partial key set in any order, at
+     * once. The implementations backed by the sub-key index remove the whole intersection in one
+     * pass, updating each affected posting list once, instead of one {@link #remove(Object)} per
+     * full key.
+     *
+     * @param partialKey the combination of the sub-keys to search for.
+     * @return the number of the removed entries
+     */
+    default int removeByPartialKey(final Iterable<? extends T> partialKey) {
+        return com.github.protobufel.multikeymap.Collectors.removeAll(
+                this, getFullKeysByPartialKey(Objects.requireNonNull(partialKey)));
+    }
+
+    /**
+     * Removes all entries for which their full keys contain the partial key according to the
+     * specified positions, at once, as {@link #removeByPartialKey(Iterable)} does.
+     *
+     * @param partialKey the combination of the sub-keys to search for.
+     * @param positions  the sequence of positions corresponding to the sequence of partialKey's
+     *                   sub-keys, as in {@link #getFullKeysByPartialKey(Iterable, Iterable)}
+     * @return the number of the removed entries
+     */
+    default int removeByPartialKey(
+            final Iterable<? extends T> partialKey, final Iterable<Integer> positions) {
+        return com.github.protobufel.multikeymap.Collectors.removeAll(
+                this, getFullKeysByPartialKey(partialKey, positions));
+    }
+
+    /**
+     * Replaces the values of all entries for which their full keys contain the partial key set in
+     * any order with the results of the function, as {@link Map#replaceAll(BiFunction)} does. The
+     * full keys stay the same, so the sub-key index is not touched at all.
+     *
+     * @param partialKey the combination of the sub-keys to search for.
+     * @param function   the function computing the new value of the full key and its old value,
+     *                   which must not be null
+     * @return the number of the replaced values
+     */
+    default int replaceAllByPartialKey(
+            final Iterable<? extends T> partialKey,
+            final BiFunction<? super K, ? super V, ? extends V> function) {
+        Objects.requireNonNull(function);
+        return com.github.protobufel.multikeymap.Collectors.replaceAll(
+                this, getFullKeysByPartialKey(Objects.requireNonNull(partialKey)), function);
+    }
+
+    /**
+     * Replaces the values of all entries for which their full keys contain the partial key
+     * according to the specified positions, as {@link #replaceAllByPartialKey(Iterable,
+     * BiFunction)} does.
+     *
+     * @param partialKey the combination of the sub-keys to search for.
+     * @param positions  the sequence of positions corresponding to the sequence of partialKey's
+     *                   sub-keys, as in {@link #getFullKeysByPartialKey(Iterable, Iterable)}
+     * @param function   the function computing the new value of the full key and its old value,
+     *                   which must not be null
+     * @return the number of the replaced values
+     */
+    default int replaceAllByPartialKey(
+            final Iterable<? extends T> partialKey,
+            final Iterable<Integer> positions,
+            final BiFunction<? super K, ? super V, ? extends V> function) {
+        Objects.requireNonNull(function);
+        return com.github.protobufel.multikeymap.Collectors.replaceAll(
+                this, getFullKeysByPartialKey(partialKey, positions), function);
+    }
+
+    /**
+     * Subscribes the listener to the changes of the entries whose full keys contain the partial key
+     * in any order, as a continuous query instead of polling.
+     *
+     * @param partialKey the combination of the sub-keys to subscribe to
+     * @param listener   the listener to notify of the matching entries' changes
+     * @return the subscription to close when no longer needed
+     * @see #subscribe(Iterable, Iterable, PartialKeyListener)
+     */
+    default PartialKeySubscription subscribe(
+            final Iterable<? extends T> partialKey,
+            final PartialKeyListener<? super K, ? super V> listener) {
+        return subscribe(partialKey, Collections.emptyList(), listener);
+    }
+
+    /**
+     * Subscribes the listener to the changes of the entries whose full keys contain the partial key
+     * according to the specified positions, as a continuous query instead of polling. The listener
+     * is notified of every matching entry added, removed, or having its value replaced after the
+     * subscription, synchronously, by the modifying thread. The events of the same entry modified
+     * concurrently by several threads can come in any order. The entries already in this
+     * MultiKeyMap are not reported; query them as usual. The empty partial key matches nothing.
+     *
+     * @param partialKey the combination of the sub-keys to subscribe to
+     * @param positions  the sequence of positions corresponding to the sequence of partialKey's
+     *                   sub-keys, as in {@link #getFullKeysByPartialKey(Iterable, Iterable)}
+     * @param listener   the listener to notify of the matching entries' changes
+     * @return the subscription to close when no longer needed
+     * @throws UnsupportedOperationException if this implementation doesn't support subscriptions
+     */
+    default PartialKeySubscription subscribe(
+            final Iterable<? extends T> partialKey,
+            final Iterable<Integer> positions,
+            final PartialKeyListener<? super K, ? super V> listener) {
+        throw new UnsupportedOperationException("subscribe");
+    }
+
+    /**
+     * Materializes the entries whose full keys contain the partial key in any order.
+     *
+     * @param partialKey the combination of the sub-keys to search for
+     * @return the live, read-only view of the matching entries, to close when no longer needed
+     * @see #materialize(Iterable, Iterable)
+     */
+    default MaterializedView<K, V> materialize(final Iterable<? extends T> partialKey) {
+        return materialize(partialKey, Collections.emptyList());
+    }
+
+    /**
+     * Materializes the entries whose full keys contain the partial key according to the specified
+     * positions, for the hot partial key queries. The returned view is a live, read-only Map which
+     * is updated by every modification of this MultiKeyMap, so that reading it costs no
+     * intersection. It is built on {@link #subscribe(Iterable, Iterable, PartialKeyListener)}, with
+     * the same cost for the modifications, and must be closed when no longer needed.
+     *
+     * @param partialKey the combination of the sub-keys to search for
+     * @param positions  the sequence of positions corresponding to the sequence of partialKey's
+     *                   sub-keys, as in {@link #getFullKeysByPartialKey(Iterable, Iterable)}
+     * @return the live, read-only view of the matching entries, to close when no longer needed
+     * @throws UnsupportedOperationException if this implementation doesn't support subscriptions
+     */
+    default MaterializedView<K, V> materialize(
+            final Iterable<? extends T> partialKey, final Iterable<Integer> positions) {
+        return new BaseMaterializedView<>(
+                this, Objects.requireNonNull(partialKey), Objects.requireNonNull(positions));
+    }
+
+    /**
+     * Associates the value with the key, as {@link #put(Object, Object)}, which expires after the
+     * specified time to live, instead of the default one.
+     *
+     * @param key      the full key
+     * @param value    the value
+     * @param duration the time to live of the entry
+     * @param unit     the unit of the duration
+     * @return the previous value associated with the key, or null if none
+     * @throws UnsupportedOperationException if the expiration is not enabled, see {@link
+     *                                       MultiKeyMapBuilder#expireAfterWrite(long, TimeUnit)}
+     * @throws IllegalArgumentException      if the duration is negative
+     */
+    default V put(final K key, final V value, final long duration, final TimeUnit unit) {
+        throw new UnsupportedOperationException("expiration is not enabled");
+    }
+
+    /**
+     * Performs the pending maintenance, such as removing the expired entries. Does nothing by
+     * default.
+     */
+    default void cleanUp() {
+    }
+
+    /**
+     * Gets the snapshot of the index statistics with the top 10 heaviest sub-keys.
+     *
+     * @return the snapshot of the index statistics
+     * @see #indexStats(int)
+     */
+    default IndexStats<T> indexStats() {
+        return indexStats(10);
+    }
+
+    /**
+     * Gets the snapshot of the index statistics, such as the sub-key cardinality distribution, the
+     * heaviest sub-keys, and the estimated bytes of the structures, for the capacity planning. By
+     * default, the statistics are computed by a scan of the posting lists on request, in time
+     * proportional to the number of the distinct sub-keys, so that the modifications pay nothing
+     * for them; see {@link MultiKeyMapBuilder#trackIndexStats(boolean)} to maintain them
+     * incrementally instead, so that the snapshot is cheap regardless of the size.
+     *
+     * @param topN the maximum number of the heaviest sub-keys to include
+     * @return the snapshot of the index statistics
+     * @throws UnsupportedOperationException if this implementation doesn't keep the statistics
+     */
+    default IndexStats<T> indexStats(final int topN) {
+        throw new UnsupportedOperationException("indexStats");
+    }
+
+    /**
+     * Asynchronously gets all full keys that contain the partial key set in any order, running the
+     * query on the provided executor.
+     *
+     * @param partialKey the combination of the sub-keys to search for.
+     * @param executor   the executor to run the query on
+     * @return the future of the list of the full keys satisfying the partial key criteria
+     * @throws java.util.concurrent.RejectedExecutionException if the executor rejects the query
+     * @see MultiKeyMaps#newPartialQueryExecutor(int, int)
+     */
+    default CompletableFuture<List<K>> getFullKeysByPartialKeyAsync(
+            final Iterable<? extends T> partialKey, final Executor executor) {
+        Objects.requireNonNull(partialKey);
+        return CompletableFuture.supplyAsync(
+                () -> getFullKeysByPartialKey(partialKey).collect(Collectors.toList()),
+                Objects.requireNonNull(executor));
+    }
+
+    /**
+     * Asynchronously gets all full keys that contain the partial key according to the specified
+     * positions, running the query on the provided executor.
+     *
+     * @param partialKey the combination of the sub-keys to search for.
+     * @param positions  the sequence of positions corresponding to the sequence of partialKey's
+     *                   sub-keys, as in {@link #getFullKeysByPartialKey(Iterable, Iterable)}
+     * @param executor   the executor to run the query on
+     * @return the future of the list of the full keys satisfying the partial key criteria
+     * @throws java.util.concurrent.RejectedExecutionException if the executor rejects the query
+     */
+    default CompletableFuture<List<K>> getFullKeysByPartialKeyAsync(
+            final Iterable<? extends T> partialKey,
+            final Iterable<Integer> positions,
+            final Executor executor) {
+        Objects.requireNonNull(partialKey);
+        Objects.requireNonNull(positions);
+        return CompletableFuture.supplyAsync(
+                () -> getFullKeysByPartialKey(partialKey, positions).collect(Collectors.toList()),
+                Objects.requireNonNull(executor));
+    }
+
+    /**
+     * Asynchronously gets all values for which their full keys contain the partial key set in any
+     * order, running the query on the provided executor.
+     *
+     * @param partialKey the combination of the sub-keys to search for.
+     * @param executor   the executor to run the query on
+     * @return the future of the list of the values satisfying the partial key criteria
+     * @throws java.util.concurrent.RejectedExecutionException if the executor rejects the query
+     */
+    default CompletableFuture<List<V>> getValuesByPartialKeyAsync(
+            final Iterable<? extends T> partialKey, final Executor executor) {
+        Objects.requireNonNull(partialKey);
+        return CompletableFuture.supplyAsync(
+                () -> getValuesByPartialKey(partialKey).collect(Collectors.toList()),
+                Objects.requireNonNull(executor));
+    }
+
+    /**
+     * Asynchronously gets all values for which their full keys contain the partial key according to
+     * the specified positions, running the query on the provided executor.
+     *
+     * @param partialKey the combination of the sub-keys to search for.
+     * @param positions  the sequence of positions corresponding to the sequence of partialKey's
+     *                   sub-keys, as in {@link #getFullKeysByPartialKey(Iterable, Iterable)}
+     * @param executor   the executor to run the query on
+     * @return the future of the list of the values satisfying the partial key criteria
+     * @throws java.util.concurrent.RejectedExecutionException if the executor rejects the query
+     */
+    default CompletableFuture<List<V>> getValuesByPartialKeyAsync(
+            final Iterable<? extends T> partialKey,
+            final Iterable<Integer> positions,
+            final Executor executor) {
+        Objects.requireNonNull(partialKey);
+        Objects.requireNonNull(positions);
+        return CompletableFuture.supplyAsync(
+                () -> getValuesByPartialKey(partialKey, positions).collect(Collectors.toList()),
+                Objects.requireNonNull(executor));
+    }
+
+    /**
+     * Asynchronously gets all entries for which their full keys contain the partial key set in any
+     * order, running the query on the provided executor.
+     *
+     * @param partialKey the combination of the sub-keys to search for.
+     * @param executor   the executor to run the query on
+     * @return the future of the list of the entries satisfying the partial key criteria
+     * @throws java.util.concurrent.RejectedExecutionException if the executor rejects the query
+     */
+    default CompletableFuture<List<Entry<K, V>>> getEntriesByPartialKeyAsync(
+            final Iterable<? extends T> partialKey, final Executor executor) {
+        Objects.requireNonNull(partialKey);
+        return CompletableFuture.supplyAsync(
+                () -> getEntriesByPartialKey(partialKey).collect(Collectors.toList()),
+                Objects.requireNonNull(executor));
+    }
+
+    /**
+     * Asynchronously gets all entries for which their full keys contain the partial key according
+     * to the specified positions, running the query on the provided executor.
+     *
+     * @param partialKey the combination of the sub-keys to search for.
+     * @param positions  the sequence of positions corresponding to the sequence of partialKey's
+     *                   sub-keys, as in {@link #getFullKeysByPartialKey(Iterable, Iterable)}
+     * @param executor   the executor to run the query on
+     * @return the future of the list of the entries satisfying the partial key criteria
+     * @throws java.util.concurrent.RejectedExecutionException if the executor rejects the query
+     */
+    default CompletableFuture<List<Entry<K, V>>> getEntriesByPartialKeyAsync(
+            final Iterable<? extends T> partialKey,
+            final Iterable<Integer> positions,
+            final Executor executor) {
+        Objects.requireNonNull(partialKey);
+        Objects.requireNonNull(positions);
+        return CompletableFuture.supplyAsync(
+                () -> getEntriesByPartialKey(partialKey, positions).collect(Collectors.toList()),
+                Objects.requireNonNull(executor));
+    }
+
+    /**
+     * Asynchronously counts all full keys that contain the partial key set in any order, running
+     * the query on the provided executor.
+     *
+     * @param partialKey the combination of the sub-keys to search for.
+     * @param executor   the executor to run the query on
+     * @return the future of the number of the full keys satisfying the partial key criteria
+     * @throws java.util.concurrent.RejectedExecutionException if the executor rejects the query
+     */
+    default CompletableFuture<Long> countByPartialKeyAsync(
+            final Iterable<? extends T> partialKey, final Executor executor) {
+        Objects.requireNonNull(partialKey);
+        return CompletableFuture.supplyAsync(
+                () -> getFullKeysByPartialKey(partialKey).count(), Objects.requireNonNull(executor));
+    }
+
+    /**
+     * Asynchronously counts all full keys that contain the partial key according to the specified
+     * positions, running the query on the provided executor.
+     *
+     * @param partialKey the combination of the sub-keys to search for.
+     * @param positions  the sequence of positions corresponding to the sequence of partialKey's
+     *                   sub-keys, as in {@link #getFullKeysByPartialKey(Iterable, Iterable)}
+     * @param executor   the executor to run the query on
+     * @return the future of the number of the full keys satisfying the partial key criteria
+     * @throws java.util.concurrent.RejectedExecutionException if the executor rejects the query
+     */
+    default CompletableFuture<Long> countByPartialKeyAsync(
+            final Iterable<? extends T> partialKey,
+            final Iterable<Integer> positions,
+            final Executor executor) {
+        Objects.requireNonNull(partialKey);
+        Objects.requireNonNull(positions);
+        return CompletableFuture.supplyAsync(
+                () -> getFullKeysByPartialKey(partialKey, positions).count(),
+                Objects.requireNonNull(executor));
+    }
+
     /**
      * Gets all full keys that contain the partial key according to the specified positions.
      *
@@ -127,79 +472,55 @@ public interface MultiKeyMap<T, K extends Iterable<T>, V> extends Map<K, V> {
         final Stream<K> keyStream =
                 getFullKeysByPartialKey(
                         com.github.protobufel.multikeymap.Collectors.streamOf(
-                                Objects.requireNonNull(partialKey), true)
+                                Objects.requireNonNull(partialKey), false)
                                 .collect(Collectors.toSet()));
 
-        class IterableMatcher {
-            final Map<Integer, T> symbols;
-            final Map<T, Integer> counters;
-            final int totalCount;
-
-            IterableMatcher() {
-                this.symbols = new HashMap<>();
-                this.counters = new HashMap<>();
-
-                final Iterator<Integer> it = positions.iterator();
-                boolean morePositions = true;
-                int totalCount = 0;
-
-                for (final T el : partialKey) {
-                    final int position;
-
-                    if (morePositions && (morePositions = it.hasNext()) && ((position = it.next()) >= 0)) {
-                        if (symbols.put(position, el) != null) {
-                            throw new IllegalArgumentException(
-                                    String.format("duplicate positive position %s", position));
-                        } else {
-                            totalCount++;
-                        }
-                    } else {
-                        totalCount++;
-                        counters.merge(el, 1, (oldValue, value) -> oldValue + 1);
-                    }
-                }
-
-                this.totalCount = totalCount;
-            }
-
-            boolean matches(final K fullKey) {
-                Objects.requireNonNull(fullKey);
-                final Map<T, Integer> counters = new HashMap<>(this.counters);
-                int totalCount = this.totalCount;
-
-                int i = -1;
-
-                for (final T el : fullKey) {
-                    i++;
-
-                    final T fixedPositionSubKey = symbols.get(i);
-
-                    if (fixedPositionSubKey == null) {
-                        final boolean[] found = {false};
-                        counters.computeIfPresent(
-                                el,
-                                (subKey, count) -> {
-                                    found[0] = true;
-                                    return (--count == 0) ? null : count;
-                                });
-
-                        if (found[0] && (--totalCount == 0)) {
-                            return true;
-                        }
-                    } else if (fixedPositionSubKey.equals(el)) {
-                        if (--totalCount == 0) {
-                            return true;
-            }
-          } else {
-            return false;
-          }
-        }
-
-        return totalCount == 0;
-      }
-    }
-
-    final IterableMatcher matcher = new IterableMatcher();
-    return keyStream.filter(matcher::matches);
-  }
+        final PartialKeyMatcher<T> matcher = new PartialKeyMatcher<>(partialKey, positions);
+        return keyStream.filter(matcher::matches);
+    }
+
+    /**
+     * Gets all full keys that contain the partial key set in any order, using the provided
+     * execution policy instead of this MultiKeyMap's own one. The implementations without the
+     * parallel support ignore the policy.
+     *
+     * @param partialKey the combination of the sub-keys to search for.
+     * @param policy     the execution policy of this query
+     * @return a stream of the full keys satisfying the partial key criteria, otherwise, the empty
+     * stream.
+     */
+    default Stream<K> getFullKeysByPartialKey(
+            final Iterable<? extends T> partialKey, final ExecutionPolicy policy) {
+        Objects.requireNonNull(policy);
+        return getFullKeysByPartialKey(partialKey);
+    }
+
+    /**
+     * Gets all full keys that contain the partial key according to the specified positions, using
+     * the provided execution policy instead of this MultiKeyMap's own one. The implementations
+     * without the parallel support ignore the policy.
+     *
+     * @param partialKey the combination of the sub-keys to search for.
+     * @param positions  the sequence of positions corresponding to the sequence of partialKey's
+     *                   sub-keys, as in {@link #getFullKeysByPartialKey(Iterable, Iterable)}
+     * @param policy     the execution policy of this query
+     * @return a stream of the full keys satisfying the partial key criteria, otherwise, the empty
+     * stream.
+     */
+    default Stream<K> getFullKeysByPartialKey(
+            final Iterable<? extends T> partialKey,
+            final Iterable<Integer> positions,
+            final ExecutionPolicy policy) {
+        Objects.requireNonNull(positions);
+        Objects.requireNonNull(policy);
+        final Stream<K> keyStream =
+                getFullKeysByPartialKey(
+                        com.github.protobufel.multikeymap.Collectors.streamOf(
+                                Objects.requireNonNull(partialKey), false)
+                                .collect(Collectors.toSet()),
+                        policy);
+
+        final PartialKeyMatcher<T> matcher = new PartialKeyMatcher<>(partialKey, positions);
+        return keyStream.filter(matcher::matches);
+    }
 }
@@ -0,0 +1,520 @@
+/*
+ *    Copyright 2017 David Tesler
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.protobufel.multikeymap;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.ToLongBiFunction;
+
+/**
+ * Builds the MultiKeyMaps with the advanced settings, see {@link MultiKeyMaps#builder()}. The
+ * built MultiKeyMap is Serializable if the supplied map is Serializable; however, only its data is
+ * serialized, and the deserialized instance has the default settings. Hence, the MultiKeyMap
+ * bounded by the size or the weight, or expiring its entries, refuses to be serialized with
+ * {@link java.io.NotSerializableException}, rather than be restored unbounded and never expiring.
+ *
+ * <p>NOTE: This class is not thread-safe.
+ *
+ * @param <T> the type of a sub-key the key consist of
+ * @param <K> the type of a full key, which is an Iterable of its sub-keys, with usage as in a
+ *            regular Map
+ * @param <V> the type of a value which stored in the MultiKeyMap under the corresponding key
+ * @author David Tesler
+ */
+public final class MultiKeyMapBuilder<T, K extends Iterable<T>, V> {
+    private Supplier<? extends Map<K, V>> mapSupplier = HashMap::new;
+    private boolean concurrent;
+    private ExecutionPolicy executionPolicy = ExecutionPolicy.sequential();
+    private MultiKeyMapMetrics metrics;
+    private long maximum = -1;
+    private ToLongBiFunction<? super K, ? super V> weigher;
+    private EvictionListener<? super K, ? super V> evictionListener;
+    private long expireAfterWriteNanos = -1;
+    private ScheduledExecutorService expirationExecutor;
+    private LongSupplier ticker = System::nanoTime;
+    private BitSet includedPositions;
+    private BitSet excludedPositions;
+    private Predicate<? super T> excludedSubKeys;
+    private double stopSubKeyShare;
+    private int stopSubKeyMinimum;
+    private boolean lazyIndex;
+    private long lazyIndexIdleNanos = -1;
+    private Executor indexExecutor;
+    private boolean trackIndexStats;
+
+    MultiKeyMapBuilder() {
+        super();
+    }
+
+    /**
+     * Sets the supplier of the empty map holding the MultiKeyMap data, HashMap by default.
+     *
+     * @param mapSupplier a supplier of {@code Map<K, V>} the MultiKeyMap is based on
+     * @return this builder
+     */
+    public MultiKeyMapBuilder<T, K, V> mapSupplier(final Supplier<? extends Map<K, V>> mapSupplier) {
+        this.mapSupplier = Objects.requireNonNull(mapSupplier);
+        return this;
+    }
+
+    /**
+     * Sets whether the MultiKeyMap's index is concurrent, false by default.
+     *
+     * @param concurrent create a concurrent instance if true, un-synchronized, regular instance,
+     *                   otherwise
+     * @return this builder
+     */
+    public MultiKeyMapBuilder<T, K, V> concurrent(final boolean concurrent) {
+        this.concurrent = concurrent;
+        return this;
+    }
+
+    /**
+     * Sets the default execution policy of the partial key queries, sequential by default.
+     *
+     * @param executionPolicy the default execution policy
+     * @return this builder
+     */
+    public MultiKeyMapBuilder<T, K, V> executionPolicy(final ExecutionPolicy executionPolicy) {
+        this.executionPolicy = Objects.requireNonNull(executionPolicy);
+        return this;
+    }
+
+    /**
+     * Sets the metrics to record the MultiKeyMap's activity to, none by default.
+     *
+     * @param metrics the metrics, e.g. {@link StandardMultiKeyMapMetrics}
+     * @return this builder
+     */
+    public MultiKeyMapBuilder<T, K, V> metrics(final MultiKeyMapMetrics metrics) {
+        this.metrics = Objects.requireNonNull(metrics);
+        return this;
+    }
+
+    /**
+     * Bounds the MultiKeyMap by the number of its entries, which makes it evict the entries, along
+     * with their sub-key postings, once the size exceeds the maximum. The eviction policy is the
+     * frequency aware W-TinyLFU, which keeps the frequently used entries over the recently, yet
+     * rarely used ones, and costs O(1) amortized per access. Unbounded by default.
+     *
+     * @param maximumSize the maximum number of the entries
+     * @return this builder
+     * @throws IllegalArgumentException if maximumSize is negative
+     * @throws IllegalStateException    if the maximum size or weight is already set
+     */
+    public MultiKeyMapBuilder<T, K, V> maximumSize(final long maximumSize) {
+        return bound(maximumSize, null);
+    }
+
+    /**
+     * Bounds the MultiKeyMap by the total weight of its entries, as in {@link #maximumSize(long)}.
+     * The weight of an entry is calculated on its put, and must not change afterwards.
+     *
+     * @param maximumWeight the maximum total weight of the entries
+     * @param weigher       the non-negative weight of an entry
+     * @return this builder
+     * @throws IllegalArgumentException if maximumWeight is negative
+     * @throws IllegalStateException    if the maximum size or weight is already set
+     */
+    public MultiKeyMapBuilder<T, K, V> maximumWeight(
+            final long maximumWeight, final ToLongBiFunction<? super K, ? super V> weigher) {
+        return bound(maximumWeight, Objects.requireNonNull(weigher));
+    }
+
+    private MultiKeyMapBuilder<T, K, V> bound(
+            final long maximum, final ToLongBiFunction<? super K, ? super V> weigher) {
+        if (maximum < 0) {
+            throw new IllegalArgumentException(String.format("negative maximum %s", maximum));
+        }
+
+        if (this.maximum >= 0) {
+            throw new IllegalStateException("maximum size or weight is already set");
+        }
+
+        this.maximum = maximum;
+        this.weigher = weigher;
+        return this;
+    }
+
+    /**
+     * Makes the MultiKeyMap expire its entries after the time to live since their last put, and
+     * enables the per entry time to live of {@link MultiKeyMap#put(Iterable, Object, long,
+     * TimeUnit)}. Use {@code Long.MAX_VALUE} for no default time to live, so that only the entries
+     * put with their own time to live expire. Never expire by default.
+     *
+     * <p>The expired entries are hidden from the lookups, like {@link MultiKeyMap#get(Object)}, and
+     * from the partial key queries, which also remove the ones they come across, along with their
+     * sub-key postings. The size, the emptiness check, and the views remove all the entries
+     * expired by then before reading the map, unless another thread is already doing so. The rest
+     * are removed in batches by the following writes, by {@link MultiKeyMap#cleanUp()}, and
+     * periodically by the {@link #expirationExecutor(ScheduledExecutorService)}, if any.
+     *
+     * @param duration the default time to live of an entry
+     * @param unit     the unit of the duration
+     * @return this builder
+     * @throws IllegalArgumentException if the duration is negative
+     * @throws IllegalStateException    if the expiration is already set
+     */
+    public MultiKeyMapBuilder<T, K, V> expireAfterWrite(final long duration, final TimeUnit unit) {
+        if (duration < 0) {
+            throw new IllegalArgumentException(String.format("negative duration %s", duration));
+        }
+
+        if (expireAfterWriteNanos >= 0) {
+            throw new IllegalStateException("expiration is already set");
+        }
+
+        this.expireAfterWriteNanos = Objects.requireNonNull(unit).toNanos(duration);
+        return this;
+    }
+
+    /**
+     * Sets the executor to remove the expired entries periodically, about every second, in
+     * batches, see {@link #expireAfterWrite(long, TimeUnit)}, and to drop the idle lazy index, see
+     * {@link #lazyIndex(long, TimeUnit)}; requires either of them. The task stops once the
+     * MultiKeyMap is garbage collected. None by default.
+     *
+     * @param expirationExecutor the executor of the periodic removal of the expired entries
+     * @return this builder
+     */
+    public MultiKeyMapBuilder<T, K, V> expirationExecutor(
+            final ScheduledExecutorService expirationExecutor) {
+        this.expirationExecutor = Objects.requireNonNull(expirationExecutor);
+        return this;
+    }
+
+    /**
+     * Sets the source of the nanosecond time of the expiration and the lazy index, for testing.
+     *
+     * @param ticker the source of the time, System.nanoTime by default
+     * @return this builder
+     */
+    MultiKeyMapBuilder<T, K, V> ticker(final LongSupplier ticker) {
+        this.ticker = Objects.requireNonNull(ticker);
+        return this;
+    }
+
+    /**
+     * Sets the listener of the entries the bounded or expiring MultiKeyMap evicts, none by default.
+     *
+     * @param evictionListener the listener of the evicted entries
+     * @return this builder
+     */
+    public MultiKeyMapBuilder<T, K, V> evictionListener(
+            final EvictionListener<? super K, ? super V> evictionListener) {
+        this.evictionListener = Objects.requireNonNull(evictionListener);
+        return this;
+    }
+
+    /**
+     * Restricts the index to the sub-keys at the given positions within the full keys; all
+     * positions are indexed by default. The sub-keys at the other positions are neither indexed
+     * nor cost anything to write, and the partial key queries filter the candidates by them
+     * instead, or scan the whole map if none of the partial key's sub-keys is indexed.
+     *
+     * <p>The non-positional query sub-key is looked up in the index only if no entry has it at the
+     * unindexed positions, and is filtered by, otherwise; so the MultiKeyMap counts the distinct
+     * sub-keys of the unindexed positions of its entries, which is cheap for the low cardinality
+     * positions, such as the flags or versions, but not for the unique ones.
+     *
+     * @param positions the zero-based positions to index
+     * @return this builder
+     * @throws IllegalArgumentException if any position is negative
+     * @throws IllegalStateException    if the indexed positions are already set
+     */
+    public MultiKeyMapBuilder<T, K, V> indexPositions(final int... positions) {
+        if (includedPositions != null) {
+            throw new IllegalStateException("indexPositions is already set");
+        }
+
+        this.includedPositions = toBitSet(positions);
+        return this;
+    }
+
+    /**
+     * Excludes the sub-keys at the given positions within the full keys from the index, for the
+     * positions which are never queried, or have the sub-keys so common that their postings
+     * contain a large share of the map, as in {@link #indexPositions(int...)}. None by default.
+     *
+     * @param positions the zero-based positions not to index
+     * @return this builder
+     * @throws IllegalArgumentException if any position is negative
+     * @throws IllegalStateException    if the excluded positions are already set
+     */
+    public MultiKeyMapBuilder<T, K, V> excludePositions(final int... positions) {
+        if (excludedPositions != null) {
+            throw new IllegalStateException("excludePositions is already set");
+        }
+
+        this.excludedPositions = toBitSet(positions);
+        return this;
+    }
+
+    /**
+     * Excludes the sub-keys matching the predicate from the index, at any position. The partial
+     * key queries filter the candidates by such sub-keys, or scan the whole map if none of the
+     * partial key's sub-keys is indexed. None by default.
+     *
+     * @param excludedSubKeys the predicate of the sub-keys not to index, which must be stable for
+     *                        the same sub-key
+     * @return this builder
+     * @throws IllegalStateException if the excluded sub-keys are already set
+     */
+    public MultiKeyMapBuilder<T, K, V> excludeSubKeys(final Predicate<? super T> excludedSubKeys) {
+        if (this.excludedSubKeys != null) {
+            throw new IllegalStateException("excludeSubKeys is already set");
+        }
+
+        this.excludedSubKeys = Objects.requireNonNull(excludedSubKeys);
+        return this;
+    }
+
+    /**
+     * Turns the sub-keys found in too many full keys, such as "ANY" or "default", into the stop
+     * sub-keys, which are no longer indexed. Once a sub-key's posting list reaches the minimum size
+     * and exceeds the share of the map's entries, its postings are dropped, so that the writes no
+     * longer update, nor contend on, its huge set. The partial key queries filter the candidates of
+     * the other sub-keys by the stop ones, or scan the whole map if all of its sub-keys are stop
+     * ones. A stop sub-key stays such until the MultiKeyMap is cleared, see {@link
+     * IndexStats#getStopSubKeys()}. None by default.
+     *
+     * @param share           the maximum share of the entries per posting list, greater than zero
+     *                        and less than one
+     * @param minimumPostings the minimum size of the posting list of a stop sub-key, so that the
+     *                        small maps don't stop any, greater than zero
+     * @return this builder
+     * @throws IllegalArgumentException if the share or the minimum is out of range
+     * @throws IllegalStateException    if the stop sub-keys are already set
+     */
+    public MultiKeyMapBuilder<T, K, V> stopSubKeys(final double share, final int minimumPostings) {
+        if (stopSubKeyShare > 0) {
+            throw new IllegalStateException("stopSubKeys is already set");
+        }
+
+        if (!(share > 0 && share < 1)) {
+            throw new IllegalArgumentException(String.format("share %s is out of (0, 1)", share));
+        }
+
+        if (minimumPostings <= 0) {
+            throw new IllegalArgumentException(
+                    String.format("non-positive minimumPostings %s", minimumPostings));
+        }
+
+        this.stopSubKeyShare = share;
+        this.stopSubKeyMinimum = minimumPostings;
+        return this;
+    }
+
+    /**
+     * Makes the MultiKeyMap build its sub-key index lazily, on the first partial key query, for
+     * the write heavy MultiKeyMaps rarely, if ever, queried by the partial keys. Until then, the
+     * writes maintain only the fullMap; the first query builds the index in bulk, in parallel if
+     * concurrent and large enough for the execution policy, and the writes maintain it from then
+     * on. Always maintained by default.
+     *
+     * @return this builder
+     * @throws IllegalStateException if the lazy index is already set
+     */
+    public MultiKeyMapBuilder<T, K, V> lazyIndex() {
+        return setLazyIndex(-1);
+    }
+
+    /**
+     * Makes the MultiKeyMap build its sub-key index lazily, as {@link #lazyIndex()} does, and drop
+     * it again, to reclaim its memory, once no partial key query has used it for the idle time.
+     * The idle time is checked by the writes, by {@link MultiKeyMap#cleanUp()}, and periodically
+     * by the {@link #expirationExecutor(ScheduledExecutorService)}, if any.
+     *
+     * @param idleDuration the idle time to drop the index after
+     * @param unit         the unit of the idle time
+     * @return this builder
+     * @throws IllegalArgumentException if the idle time is negative
+     * @throws IllegalStateException    if the lazy index is already set
+     */
+    public MultiKeyMapBuilder<T, K, V> lazyIndex(final long idleDuration, final TimeUnit unit) {
+        if (idleDuration < 0) {
+            throw new IllegalArgumentException(
+                    String.format("negative idleDuration %s", idleDuration));
+        }
+
+        return setLazyIndex(Objects.requireNonNull(unit).toNanos(idleDuration));
+    }
+
+    private MultiKeyMapBuilder<T, K, V> setLazyIndex(final long idleNanos) {
+        if (lazyIndex) {
+            throw new IllegalStateException("lazyIndex is already set");
+        }
+
+        this.lazyIndex = true;
+        this.lazyIndexIdleNanos = idleNanos;
+        return this;
+    }
+
+    /**
+     * Makes the concurrent MultiKeyMap maintain its sub-key index asynchronously, off the write
+     * path. The writes update only the fullMap, and record the net index change per full key, so
+     * that a put followed by a remove of the same key cancels out; a task on the executor applies
+     * the changes in batches, grouped by the sub-key. The partial key queries merge the pending
+     * changes into their results, so that they see all preceding writes, at the cost of a scan of
+     * the changes per query. {@link MultiKeyMap#cleanUp()} applies the pending changes on the
+     * caller, and the writes do so if the executor rejects the task. Synchronous by default.
+     *
+     * <p>The {@link MultiKeyMap#indexStats()} don't count the pending changes, and the
+     * asynchronous index cannot be lazy, see {@link #lazyIndex()}.
+     *
+     * @param indexExecutor the executor of the task applying the index changes
+     * @return this builder
+     * @throws IllegalStateException if the index executor is already set
+     */
+    public MultiKeyMapBuilder<T, K, V> asyncIndex(final Executor indexExecutor) {
+        if (this.indexExecutor != null) {
+            throw new IllegalStateException("asyncIndex is already set");
+        }
+
+        this.indexExecutor = Objects.requireNonNull(indexExecutor);
+        return this;
+    }
+
+    /**
+     * Sets whether the index maintains its statistics incrementally, so that {@link
+     * MultiKeyMap#indexStats(int)} is cheap regardless of the size, false by default. When on,
+     * every posting change updates the counters, and the index keeps its sub-keys by the
+     * power-of-two bucket of their posting list size, which costs a set entry per distinct
+     * sub-key; when off, the statistics are computed by a scan of the posting lists on request.
+     *
+     * @param trackIndexStats maintain the index statistics incrementally if true, compute them on
+     *                        request, otherwise
+     * @return this builder
+     */
+    public MultiKeyMapBuilder<T, K, V> trackIndexStats(final boolean trackIndexStats) {
+        this.trackIndexStats = trackIndexStats;
+        return this;
+    }
+
+    private static BitSet toBitSet(final int... positions) {
+        final BitSet bitSet = new BitSet();
+
+        for (final int position : Objects.requireNonNull(positions)) {
+            if (position < 0) {
+                throw new IllegalArgumentException(String.format("negative position %s", position));
+            }
+
+            bitSet.set(position);
+        }
+
+        return bitSet;
+    }
+
+    /**
+     * Builds a new MultiKeyMap with the settings of this builder.
+     *
+     * @return a new instance of the implementation of MultiKeyMap
+     * @throws IllegalStateException if the expiration executor is set without either the
+     *                               expiration or the idle drop of the lazy index, or the
+     *                               asynchronous index is set for the non-concurrent or lazily
+     *                               indexed MultiKeyMap
+     */
+    public MultiKeyMap<T, K, V> build() {
+        if (expirationExecutor != null && expireAfterWriteNanos < 0 && lazyIndexIdleNanos < 0) {
+            throw new IllegalStateException(
+                    "expirationExecutor requires expireAfterWrite or lazyIndex with an idle time");
+        }
+
+        if (indexExecutor != null && !concurrent) {
+            throw new IllegalStateException("asyncIndex requires concurrent");
+        }
+
+        if (indexExecutor != null && lazyIndex) {
+            throw new IllegalStateException("asyncIndex and lazyIndex are mutually exclusive");
+        }
+
+        return new BaseMultiKeyMap<>(this);
+    }
+
+    Map<K, V> newMap() {
+        return Objects.requireNonNull(mapSupplier.get());
+    }
+
+    boolean isConcurrent() {
+        return concurrent;
+    }
+
+    boolean isTrackingIndexStats() {
+        return trackIndexStats;
+    }
+
+    ExecutionPolicy getExecutionPolicy() {
+        return executionPolicy;
+    }
+
+    MultiKeyMapMetrics getMetrics() {
+        return metrics;
+    }
+
+    WindowTinyLfuPolicy<K, V> newEvictionPolicy() {
+        return (maximum < 0) ? null : new WindowTinyLfuPolicy<>(maximum, weigher);
+    }
+
+    EvictionListener<? super K, ? super V> getEvictionListener() {
+        return evictionListener;
+    }
+
+    TimerWheel<K> newTimerWheel() {
+        return (expireAfterWriteNanos < 0) ? null : new TimerWheel<>(ticker);
+    }
+
+    long getExpireAfterWriteNanos() {
+        return expireAfterWriteNanos;
+    }
+
+    ScheduledExecutorService getExpirationExecutor() {
+        return expirationExecutor;
+    }
+
+    IndexFilter<T> newIndexFilter() {
+        if ((includedPositions == null)
+                && (excludedPositions == null)
+                && (excludedSubKeys == null)
+                && (stopSubKeyShare == 0)) {
+            return null;
+        }
+
+        return new IndexFilter<>(
+                includedPositions,
+                excludedPositions,
+                excludedSubKeys,
+                stopSubKeyShare,
+                stopSubKeyMinimum);
+    }
+
+    LazyIndex newLazyIndex() {
+        return lazyIndex ? new LazyIndex(lazyIndexIdleNanos, ticker) : null;
+    }
+
+    Executor getIndexExecutor() {
+        return indexExecutor;
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ *    Copyright 2017 David Tesler
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.protobufel.multikeymap;
+
+/**
+ * The SPI for observing a MultiKeyMap in production, attached at construction time by {@link
+ * MultiKeyMapBuilder#metrics(MultiKeyMapMetrics)}. The methods are called synchronously on the hot
+ * paths, so the implementations must be fast and thread-safe, like {@link
+ * StandardMultiKeyMapMetrics}. A MultiKeyMap without metrics doesn't even measure the time.
+ *
+ * @author David Tesler
+ */
+public interface MultiKeyMapMetrics {
+
+    /**
+     * Records a put.
+     *
+     * @param added true if a new entry has been added, false if the value of the existing one has
+     *              been replaced
+     */
+    default void recordPut(final boolean added) {
+    }
+
+    /** Records the removal of an entry. */
+    default void recordRemove() {
+    }
+
+    /**
+     * Records the entry the MultiKeyMap has removed on its own.
+     *
+     * @param cause the reason of the eviction
+     */
+    default void recordEviction(final EvictionCause cause) {
+    }
+
+    /**
+     * Records the intersection part of a partial key query.
+     *
+     * @param latencyNanos the intersection time in nanoseconds
+     * @param candidates   the number of the candidates, i.e. the size of the smallest posting set
+     * @param results      the number of the full keys in the intersection
+     */
+    default void recordPartialQuery(final long latencyNanos, final int candidates, final int results) {
+    }
+
+    /**
+     * Records a full key of the intersection rejected by the positional matching of a partial key
+     * query with the positions.
+     */
+    default void recordRejectedCandidate() {
+    }
+}
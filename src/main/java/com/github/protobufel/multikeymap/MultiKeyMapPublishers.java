@@ -0,0 +1,102 @@
+/*
+ *    Copyright 2017 David Tesler
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.protobufel.multikeymap;
+
+import org.reactivestreams.Publisher;
+
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Provides the Reactive Streams Publishers of the MultiKeyMap's partial key queries. The Reactive
+ * Streams API is an optional dependency, which must be on the classpath only for this class.
+ *
+ * @author David Tesler
+ */
+public final class MultiKeyMapPublishers {
+    private MultiKeyMapPublishers() {
+    }
+
+    /**
+     * Gets the Reactive Streams Publisher of all entries for which their full keys contain the
+     * partial key set in any order. Every Subscriber runs its own query, lazily, as far as its
+     * demand requires, and the cancellation stops the query; the default MultiKeyMap intersects its
+     * postings lazily as well, while the other ones are iterated by their {@link
+     * MultiKeyMap#getEntriesByPartialKey(Iterable)} stream. The values are read at the time of
+     * emission, and the entries removed by then are skipped.
+     *
+     * <p>NOTE: The non-concurrent MultiKeyMap must not be modified while any of its Subscribers is
+     * active, otherwise, the latter might fail with the ConcurrentModificationException.
+     *
+     * @param map        the MultiKeyMap to query
+     * @param partialKey the combination of the sub-keys to search for.
+     * @param <T>        the type of a sub-key the key consist of
+     * @param <K>        the type of a full key, which is an Iterable of its sub-keys, with usage as
+     *                   in a regular Map
+     * @param <V>        the type of a value which stored in the MultiKeyMap under the corresponding
+     *                   key
+     * @return the Publisher of the entries satisfying the partial key criteria
+     */
+    public static <T, K extends Iterable<T>, V> Publisher<Map.Entry<K, V>> publisher(
+            final MultiKeyMap<T, K, V> map, final Iterable<? extends T> partialKey) {
+        Objects.requireNonNull(map);
+        Objects.requireNonNull(partialKey);
+
+        if (map instanceof BaseMultiKeyMap) {
+            final BaseMultiKeyMap<T, K, V> baseMap = (BaseMultiKeyMap<T, K, V>) map;
+            return new IteratorPublisher<>(() -> baseMap.lazyEntriesByPartialKey(partialKey, null));
+        }
+
+        return new IteratorPublisher<>(() -> map.getEntriesByPartialKey(partialKey).iterator());
+    }
+
+    /**
+     * Gets the Reactive Streams Publisher of all entries for which their full keys contain the
+     * partial key according to the specified positions, as in {@link #publisher(MultiKeyMap,
+     * Iterable)}.
+     *
+     * @param map        the MultiKeyMap to query
+     * @param partialKey the combination of the sub-keys to search for.
+     * @param positions  the sequence of positions corresponding to the sequence of partialKey's
+     *                   sub-keys, as in {@link MultiKeyMap#getFullKeysByPartialKey(Iterable,
+     *                   Iterable)}
+     * @param <T>        the type of a sub-key the key consist of
+     * @param <K>        the type of a full key, which is an Iterable of its sub-keys, with usage as
+     *                   in a regular Map
+     * @param <V>        the type of a value which stored in the MultiKeyMap under the corresponding
+     *                   key
+     * @return the Publisher of the entries satisfying the partial key criteria
+     */
+    public static <T, K extends Iterable<T>, V> Publisher<Map.Entry<K, V>> publisher(
+            final MultiKeyMap<T, K, V> map,
+            final Iterable<? extends T> partialKey,
+            final Iterable<Integer> positions) {
+        Objects.requireNonNull(map);
+        Objects.requireNonNull(partialKey);
+        Objects.requireNonNull(positions);
+
+        if (map instanceof BaseMultiKeyMap) {
+            final BaseMultiKeyMap<T, K, V> baseMap = (BaseMultiKeyMap<T, K, V>) map;
+            return new IteratorPublisher<>(
+                    () -> baseMap.lazyEntriesByPartialKey(partialKey, positions));
+        }
+
+        return new IteratorPublisher<>(
+                () -> map.getEntriesByPartialKey(partialKey, positions).iterator());
+    }
+}
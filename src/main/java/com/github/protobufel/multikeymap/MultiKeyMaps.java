@@ -17,8 +17,19 @@
 
 package com.github.protobufel.multikeymap;
 
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
 
 /**
@@ -51,6 +62,45 @@ public final class MultiKeyMaps {
                 Objects.requireNonNull(mapSupplier).get(), LiteSetMultimap.newInstance(concurrent));
     }
 
+    /**
+     * Creates a new MultiKeyMap based on the provided map supplier, which runs its partial key
+     * intersections according to the provided execution policy. The returned MultiKeyMap is
+     * Serializable if the provided map is Serializable, however, the execution policy is not
+     * serialized, and the deserialized instance is sequential.
+     *
+     * @param mapSupplier a supplier of {@code Map<K, V>} this MultiKeyMap is based on
+     * @param concurrent  create a concurrent instance if true, un-synchronized, regular instance,
+     *                    otherwise
+     * @param policy      the default execution policy of the partial key queries
+     * @param <T>         the type of a sub-key the key consist of
+     * @param <K>         the type of a full key, which is an Iterable of its sub-keys, with usage as in a
+     *                    regular Map
+     * @param <V>         the type of a value which stored in the MultiKeyMap under the corresponding key
+     * @return a new instance of the implementation of MultiKeyMap
+     */
+    public static <T, K extends Iterable<T>, V> MultiKeyMap<T, K, V> newMultiKeyMap(
+            final Supplier<Map<K, V>> mapSupplier,
+            final boolean concurrent,
+            final ExecutionPolicy policy) {
+        return new BaseMultiKeyMap<>(
+                Objects.requireNonNull(mapSupplier).get(),
+                LiteSetMultimap.newInstance(concurrent),
+                Objects.requireNonNull(policy));
+    }
+
+    /**
+     * Creates a new builder of the MultiKeyMap with the advanced settings, such as the metrics.
+     *
+     * @param <T> the type of a sub-key the key consist of
+     * @param <K> the type of a full key, which is an Iterable of its sub-keys, with usage as in a
+     *            regular Map
+     * @param <V> the type of a value which stored in the MultiKeyMap under the corresponding key
+     * @return a new builder with the default settings
+     */
+    public static <T, K extends Iterable<T>, V> MultiKeyMapBuilder<T, K, V> builder() {
+        return new MultiKeyMapBuilder<>();
+    }
+
     /**
      * Creates a new default, Serialiazable instance of MultiKeyMap.
      *
@@ -77,6 +127,165 @@ public final class MultiKeyMaps {
      * data
      */
     public static <T, K extends Iterable<T>, V> MultiKeyMap<T, K, V> of(final Map<K, V> map) {
-    return new BaseMultiKeyMap<>(Objects.requireNonNull(map));
-  }
+        return new BaseMultiKeyMap<>(Objects.requireNonNull(map));
+    }
+
+    /**
+     * Creates a new MultiKeyMap partitioned by the full key hash across the shards supplied, each
+     * with its own index, for the big maps, wherein a single index becomes the point of contention
+     * and the GC hotspot. The full key operations go to the single shard of the key, so that the
+     * write throughput grows with the number of shards; the partial key queries fan out to all
+     * shards in parallel on the executor, and are merged lazily into one stream. The returned
+     * MultiKeyMap is as concurrent as its shards, and is not Serializable.
+     *
+     * @param shards        the number of the shards
+     * @param shardSupplier a supplier of the distinct, empty shard MultiKeyMaps
+     * @param executor      the executor to run the shards' partial key queries on
+     * @param <T>           the type of a sub-key the key consist of
+     * @param <K>           the type of a full key, which is an Iterable of its sub-keys, with usage as
+     *                      in a regular Map
+     * @param <V>           the type of a value which stored in the MultiKeyMap under the corresponding
+     *                      key
+     * @return a new sharded MultiKeyMap
+     * @throws IllegalArgumentException if the number of the shards is not positive, or the supplier
+     *                                  supplies the same or a non-empty shard
+     * @see #newPartialQueryExecutor(int, int)
+     */
+    public static <T, K extends Iterable<T>, V> MultiKeyMap<T, K, V> newSharded(
+            final int shards,
+            final Supplier<? extends MultiKeyMap<T, K, V>> shardSupplier,
+            final Executor executor) {
+        Objects.requireNonNull(shardSupplier);
+        Objects.requireNonNull(executor);
+
+        if (shards <= 0) {
+            throw new IllegalArgumentException(String.format("non-positive shards %s", shards));
+        }
+
+        final List<MultiKeyMap<T, K, V>> list = new ArrayList<>(shards);
+
+        for (int i = 0; i < shards; i++) {
+            final MultiKeyMap<T, K, V> shard = Objects.requireNonNull(shardSupplier.get());
+
+            if (!shard.isEmpty()) {
+                throw new IllegalArgumentException("non-empty shard");
+            }
+
+            list.add(shard);
+        }
+
+        return new ShardedMultiKeyMap<>(list, executor);
+    }
+
+    /**
+     * Creates a new concurrent MultiKeyMap partitioned by the full key hash across the concurrent
+     * shards based on ConcurrentHashMap, which fans its partial key queries out on the common
+     * ForkJoinPool, as in {@link #newSharded(int, Supplier, Executor)}.
+     *
+     * @param shards the number of the shards
+     * @param <T>    the type of a sub-key the key consist of
+     * @param <K>    the type of a full key, which is an Iterable of its sub-keys, with usage as in a
+     *               regular Map
+     * @param <V>    the type of a value which stored in the MultiKeyMap under the corresponding key
+     * @return a new sharded, concurrent MultiKeyMap
+     * @throws IllegalArgumentException if the number of the shards is not positive
+     */
+    public static <T, K extends Iterable<T>, V> MultiKeyMap<T, K, V> newSharded(final int shards) {
+        return newSharded(
+                shards,
+                () -> newMultiKeyMap(ConcurrentHashMap<K, V>::new, true),
+                ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Connects a new client MultiKeyMap to the shards of the partitioned MultiKeyMap, each served by
+     * the {@link ShardServer}, usually in its own process, for the data which doesn't fit one JVM's
+     * heap. The full key operations go to the shard of the key by its hash code, and the partial
+     * key queries are scattered to all shards and gathered lazily, see {@link
+     * PartitionedMultiKeyMap}. All the clients must list the same shards in the same order.
+     *
+     * @param shards      the addresses of the shard servers
+     * @param subKeyCodec the codec of the sub-keys
+     * @param keyCodec    the codec of the full keys
+     * @param valueCodec  the codec of the values
+     * @param <T>         the type of a sub-key the key consist of
+     * @param <K>         the type of a full key, which is an Iterable of its sub-keys, with usage as
+     *                    in a regular Map
+     * @param <V>         the type of a value which stored in the MultiKeyMap under the corresponding
+     *                    key
+     * @return a new client MultiKeyMap, to close when no longer needed
+     * @throws IOException              if a shard cannot be connected to
+     * @throws IllegalArgumentException if there are no shards
+     */
+    public static <T, K extends Iterable<T>, V> PartitionedMultiKeyMap<T, K, V> newPartitioned(
+            final List<InetSocketAddress> shards,
+            final Codec<T> subKeyCodec,
+            final Codec<K> keyCodec,
+            final Codec<V> valueCodec)
+            throws IOException {
+        return new PartitionedMultiKeyMap<>(shards, subKeyCodec, keyCodec, valueCodec);
+    }
+
+    /**
+     * Creates a new bounded executor for the asynchronous partial key queries, such as {@link
+     * MultiKeyMap#getFullKeysByPartialKeyAsync(Iterable, java.util.concurrent.Executor)}, so that
+     * the heavy queries neither block the caller threads nor compete within the common
+     * ForkJoinPool. The threads are daemons, and the queries beyond the queue capacity are rejected
+     * with the RejectedExecutionException. The current queue depth is {@code
+     * executor.getQueue().size()}, and the rest of the metrics are the ThreadPoolExecutor's own.
+     *
+     * @param threads       the number of the threads
+     * @param queueCapacity the maximum number of the queries waiting for a thread
+     * @return a new bounded ThreadPoolExecutor
+     */
+    public static ThreadPoolExecutor newPartialQueryExecutor(
+            final int threads, final int queueCapacity) {
+        final AtomicInteger threadCount = new AtomicInteger();
+        return new ThreadPoolExecutor(
+                threads,
+                threads,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    final Thread thread =
+                            new Thread(runnable, "multikeymap-query-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Creates a new default, Serializable instance of IntMultiKeyMap, which neither boxes its int
+     * sub-keys nor wraps its int array full keys.
+     *
+     * @param <V> the type of a value which stored in the IntMultiKeyMap under the corresponding key
+     * @return a new instance of the default implementation of IntMultiKeyMap
+     */
+    public static <V> IntMultiKeyMap<V> newIntMultiKeyMap() {
+        return new BaseIntMultiKeyMap<>();
+    }
+
+    /**
+     * Creates a new default, Serializable instance of LongMultiKeyMap, which neither boxes its long
+     * sub-keys nor wraps its long array full keys.
+     *
+     * @param <V> the type of a value which stored in the LongMultiKeyMap under the corresponding key
+     * @return a new instance of the default implementation of LongMultiKeyMap
+     */
+    public static <V> LongMultiKeyMap<V> newLongMultiKeyMap() {
+        return new BaseLongMultiKeyMap<>();
+    }
+
+    /**
+     * Creates a new default, Serializable instance of StringMultiKeyMap, which keeps its sub-keys in
+     * the compact UTF-8 dictionary.
+     *
+     * @param <V> the type of a value which stored in the StringMultiKeyMap under the corresponding
+     *            key
+     * @return a new instance of the default implementation of StringMultiKeyMap
+     */
+    public static <V> StringMultiKeyMap<V> newStringMultiKeyMap() {
+        return new BaseStringMultiKeyMap<>();
+    }
 }
@@ -0,0 +1,59 @@
+/*
+ *    Copyright 2017 David Tesler
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.protobufel.multikeymap;
+
+/**
+ * Receives the incremental changes of the entries matching a partial key subscription, see {@link
+ * MultiKeyMap#subscribe(Iterable, Iterable, PartialKeyListener)}. The methods are called
+ * synchronously by the thread modifying the MultiKeyMap, right after the modification, so they
+ * should be fast and must not modify the same MultiKeyMap.
+ *
+ * @param <K> the type of a full key
+ * @param <V> the type of a value
+ * @author David Tesler
+ */
+public interface PartialKeyListener<K, V> {
+
+    /**
+     * Called when the new matching entry has been added.
+     *
+     * @param key   the full key of the entry
+     * @param value the value of the entry
+     */
+    default void onAdded(final K key, final V value) {
+    }
+
+    /**
+     * Called when the matching entry has been removed.
+     *
+     * @param key   the full key of the entry
+     * @param value the value of the entry before its removal
+     */
+    default void onRemoved(final K key, final V value) {
+    }
+
+    /**
+     * Called when the value of the matching entry has been replaced.
+     *
+     * @param key      the full key of the entry
+     * @param oldValue the previous value
+     * @param newValue the new value
+     */
+    default void onUpdated(final K key, final V oldValue, final V newValue) {
+    }
+}
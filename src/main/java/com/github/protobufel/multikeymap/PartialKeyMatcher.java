@@ -0,0 +1,108 @@
+/*
+ *    Copyright 2017 David Tesler
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.protobufel.multikeymap;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Matches the full keys against the partial key with the positions, as specified by {@link
+ * MultiKeyMap#getFullKeysByPartialKey(Iterable, Iterable)}.
+ *
+ * @param <T> the type of a sub-key
+ * @author David Tesler
+ */
+final class PartialKeyMatcher<T> {
+    private final Map<Integer, T> symbols;
+    private final Map<T, Integer> counters;
+    private final int totalCount;
+
+    /**
+     * Creates the matcher of the partial key with the positions.
+     *
+     * @param partialKey the combination of the sub-keys to search for
+     * @param positions  the sequence of positions corresponding to the sequence of partialKey's
+     *                   sub-keys, as in {@link MultiKeyMap#getFullKeysByPartialKey(Iterable,
+     *                   Iterable)}
+     * @throws IllegalArgumentException if there are duplicate positive positions
+     */
+    PartialKeyMatcher(final Iterable<? extends T> partialKey, final Iterable<Integer> positions) {
+        this.symbols = new HashMap<>();
+        this.counters = new HashMap<>();
+
+        final Iterator<Integer> it = positions.iterator();
+        boolean morePositions = true;
+        int totalCount = 0;
+
+        for (final T el : partialKey) {
+            final int position;
+
+            if (morePositions && (morePositions = it.hasNext()) && ((position = it.next()) >= 0)) {
+                if (symbols.put(position, el) != null) {
+                    throw new IllegalArgumentException(
+                            String.format("duplicate positive position %s", position));
+                } else {
+                    totalCount++;
+                }
+            } else {
+                totalCount++;
+                counters.merge(el, 1, (oldValue, value) -> oldValue + 1);
+            }
+        }
+
+        this.totalCount = totalCount;
+    }
+
+    boolean matches(final Iterable<? extends T> fullKey) {
+        Objects.requireNonNull(fullKey);
+        final Map<T, Integer> counters = new HashMap<>(this.counters);
+        int totalCount = this.totalCount;
+
+        int i = -1;
+
+        for (final T el : fullKey) {
+            i++;
+
+            final T fixedPositionSubKey = symbols.get(i);
+
+            if (fixedPositionSubKey == null) {
+                final boolean[] found = {false};
+                counters.computeIfPresent(
+                        el,
+                        (subKey, count) -> {
+                            found[0] = true;
+                            return (--count == 0) ? null : count;
+                        });
+
+                if (found[0] && (--totalCount == 0)) {
+                    return true;
+                }
+            } else if (fixedPositionSubKey.equals(el)) {
+                if (--totalCount == 0) {
+                    return true;
+                }
+            } else {
+                return false;
+            }
+        }
+
+        return totalCount == 0;
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ *    Copyright 2017 David Tesler
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.protobufel.multikeymap;
+
+/**
+ * Represents the registration of a {@link PartialKeyListener}, which stays active until closed.
+ *
+ * @author David Tesler
+ * @see MultiKeyMap#subscribe(Iterable, Iterable, PartialKeyListener)
+ */
+public interface PartialKeySubscription extends AutoCloseable {
+
+    /**
+     * Tells whether this subscription has been closed.
+     *
+     * @return true if closed, false, otherwise
+     */
+    boolean isClosed();
+
+    /**
+     * Unregisters the listener, so that it receives no more events; does nothing if already
+     * closed.
+     */
+    @Override
+    void close();
+}
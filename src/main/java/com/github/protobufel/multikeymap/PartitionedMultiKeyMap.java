@@ -0,0 +1,837 @@
+/*
+ *    Copyright 2017 David Tesler
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.protobufel.multikeymap;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SocketChannel;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * The client of the MultiKeyMap partitioned across the {@link ShardServer} processes, for the
+ * data which doesn't fit one JVM's heap. The full key operations go to the single shard of the key
+ * by its hash code, so the keys' hash codes must be the same in all the client processes, as they
+ * are for the lists of the strings or of the boxed primitives. The partial key queries are
+ * scattered to all shards at once, and their results are streamed lazily, shard by shard, and page
+ * by page, see {@link ShardProtocol}, requesting the next page ahead; closing the stream early
+ * releases the shards' cursors.
+ *
+ * <p>Each shard has one connection, shared by all threads; the requests are pipelined, so that
+ * many of them are in flight at once, and the ones issued concurrently are written to the
+ * connection in one batch. A request fails with the UncheckedIOException if its shard is
+ * unavailable, doesn't respond within 30 seconds, or its connection fails, which the next request
+ * re-opens, and with the shard's own exception if the latter rejects it. The Map methods not
+ * overridden here, such as {@code putIfAbsent} or {@code compute}, are not atomic. Iteration reads
+ * each shard's snapshot page by page, as it gets to it.
+ *
+ * @param <T> the type of a sub-key the key consist of
+ * @param <K> the type of a full key, which is an Iterable of its sub-keys, with usage as in a
+ *            regular Map
+ * @param <V> the type of a value which stored in the MultiKeyMap under the corresponding key
+ * @author David Tesler
+ * @see MultiKeyMaps#newPartitioned(List, Codec, Codec, Codec)
+ */
+public final class PartitionedMultiKeyMap<T, K extends Iterable<T>, V> extends AbstractMap<K, V>
+        implements MultiKeyMap<T, K, V>, AutoCloseable {
+    private static final long TIMEOUT_SECONDS = 30;
+
+    private final ShardConnection[] connections;
+    private final Codec<T> subKeyCodec;
+    private final Codec<K> keyCodec;
+    private final Codec<V> valueCodec;
+    private Set<Entry<K, V>> entrySet;
+
+    PartitionedMultiKeyMap(
+            final List<InetSocketAddress> addresses,
+            final Codec<T> subKeyCodec,
+            final Codec<K> keyCodec,
+            final Codec<V> valueCodec)
+            throws IOException {
+        super();
+        this.subKeyCodec = Objects.requireNonNull(subKeyCodec);
+        this.keyCodec = Objects.requireNonNull(keyCodec);
+        this.valueCodec = Objects.requireNonNull(valueCodec);
+
+        if (Objects.requireNonNull(addresses).isEmpty()) {
+            throw new IllegalArgumentException("no shards");
+        }
+
+        this.connections = new ShardConnection[addresses.size()];
+
+        try {
+            for (int i = 0; i < connections.length; i++) {
+                connections[i] = new ShardConnection(Objects.requireNonNull(addresses.get(i)));
+            }
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    int getShardCount() {
+        return connections.length;
+    }
+
+    /** Gets the number of the requests waiting for their responses on all shards, for testing. */
+    int getPendingCount() {
+        int count = 0;
+
+        for (final ShardConnection connection : connections) {
+            count += connection.channel.pending.size();
+        }
+
+        return count;
+    }
+
+    /** Closes the connections to all shards, failing the requests in flight. */
+    @Override
+    public void close() {
+        for (final ShardConnection connection : connections) {
+            if (connection != null) {
+                connection.close();
+            }
+        }
+    }
+
+    private ShardConnection shardOf(final Object key) {
+        return connections[ShardedMultiKeyMap.shardIndex(key, connections.length)];
+    }
+
+    @SuppressWarnings("unchecked")
+    private K asKey(final Object key) {
+        return (K) Objects.requireNonNull(key);
+    }
+
+    @Override
+    public int size() {
+        long size = 0;
+
+        for (final CompletableFuture<DataInputStream> future :
+                broadcast(ShardProtocol.SIZE, ShardProtocol.EMPTY)) {
+            try {
+                size += await(future).readInt();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        final K fullKey = asKey(key);
+
+        try {
+            return await(
+                    shardOf(fullKey)
+                            .send(ShardProtocol.CONTAINS_KEY, out -> keyCodec.encode(fullKey, out)))
+                    .readBoolean();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public boolean containsValue(final Object value) {
+        @SuppressWarnings("unchecked") final V v = (V) Objects.requireNonNull(value);
+        boolean found = false;
+
+        for (final CompletableFuture<DataInputStream> future :
+                broadcast(ShardProtocol.CONTAINS_VALUE, out -> valueCodec.encode(v, out))) {
+            try {
+                found |= await(future).readBoolean();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        return found;
+    }
+
+    @Override
+    public V get(final Object key) {
+        final K fullKey = asKey(key);
+        return readValue(
+                shardOf(fullKey).send(ShardProtocol.GET, out -> keyCodec.encode(fullKey, out)));
+    }
+
+    @Override
+    public V put(final K key, final V value) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(value);
+        return readValue(
+                shardOf(key)
+                        .send(
+                                ShardProtocol.PUT,
+                                out -> {
+                                    keyCodec.encode(key, out);
+                                    valueCodec.encode(value, out);
+                                }));
+    }
+
+    /**
+     * Puts all the entries, sending each shard its entries in a single request, to all shards at
+     * once.
+     */
+    @Override
+    public void putAll(final Map<? extends K, ? extends V> map) {
+        final List<List<Entry<? extends K, ? extends V>>> batches =
+                new ArrayList<>(connections.length);
+
+        for (int i = 0; i < connections.length; i++) {
+            batches.add(new ArrayList<>());
+        }
+
+        for (final Entry<? extends K, ? extends V> entry : map.entrySet()) {
+            Objects.requireNonNull(entry.getValue());
+            final int shard =
+                    ShardedMultiKeyMap.shardIndex(
+                            Objects.requireNonNull(entry.getKey()), connections.length);
+            batches.get(shard).add(entry);
+        }
+
+        final List<CompletableFuture<DataInputStream>> futures = new ArrayList<>(connections.length);
+
+        for (int i = 0; i < connections.length; i++) {
+            final List<Entry<? extends K, ? extends V>> batch = batches.get(i);
+
+            if (!batch.isEmpty()) {
+                futures.add(
+                        connections[i].send(
+                                ShardProtocol.PUT_ALL,
+                                out -> {
+                                    out.writeInt(batch.size());
+
+                                    for (final Entry<? extends K, ? extends V> entry : batch) {
+                                        keyCodec.encode(entry.getKey(), out);
+                                        valueCodec.encode(entry.getValue(), out);
+                                    }
+                                }));
+            }
+        }
+
+        futures.forEach(PartitionedMultiKeyMap::await);
+    }
+
+    @Override
+    public V remove(final Object key) {
+        final K fullKey = asKey(key);
+        return readValue(
+                shardOf(fullKey).send(ShardProtocol.REMOVE, out -> keyCodec.encode(fullKey, out)));
+    }
+
+    @Override
+    public void clear() {
+        broadcast(ShardProtocol.CLEAR, ShardProtocol.EMPTY).forEach(PartitionedMultiKeyMap::await);
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return (entrySet == null) ? (entrySet = new EntrySet()) : entrySet;
+    }
+
+    @Override
+    public Stream<K> getFullKeysByPartialKey(final Iterable<? extends T> partialKey) {
+        return getFullKeysByPartialKey(partialKey, Collections.emptyList());
+    }
+
+    @Override
+    public Stream<K> getFullKeysByPartialKey(
+            final Iterable<? extends T> partialKey, final Iterable<Integer> positions) {
+        return gather(
+                scatter(ShardProtocol.KEYS_BY_PARTIAL_KEY, partialKey, positions), keyCodec::decode);
+    }
+
+    @Override
+    public Stream<V> getValuesByPartialKey(final Iterable<? extends T> partialKey) {
+        return getEntriesByPartialKey(partialKey).map(Entry::getValue);
+    }
+
+    @Override
+    public Stream<V> getValuesByPartialKey(
+            final Iterable<? extends T> partialKey, final Iterable<Integer> positions) {
+        return getEntriesByPartialKey(partialKey, positions).map(Entry::getValue);
+    }
+
+    @Override
+    public Stream<Entry<K, V>> getEntriesByPartialKey(final Iterable<? extends T> partialKey) {
+        return getEntriesByPartialKey(partialKey, Collections.emptyList());
+    }
+
+    @Override
+    public Stream<Entry<K, V>> getEntriesByPartialKey(
+            final Iterable<? extends T> partialKey, final Iterable<Integer> positions) {
+        return gather(
+                scatter(ShardProtocol.ENTRIES_BY_PARTIAL_KEY, partialKey, positions), this::readEntry);
+    }
+
+    @Override
+    public int removeByPartialKey(final Iterable<? extends T> partialKey) {
+        return removeByPartialKey(partialKey, Collections.emptyList());
+    }
+
+    @Override
+    public int removeByPartialKey(
+            final Iterable<? extends T> partialKey, final Iterable<Integer> positions) {
+        long removed = 0;
+
+        for (final CompletableFuture<DataInputStream> future :
+                scatter(ShardProtocol.REMOVE_BY_PARTIAL_KEY, partialKey, positions)) {
+            try {
+                removed += await(future).readInt();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        return (int) Math.min(removed, Integer.MAX_VALUE);
+    }
+
+    private List<CompletableFuture<DataInputStream>> scatter(
+            final byte op,
+            final Iterable<? extends T> partialKey,
+            final Iterable<Integer> positions) {
+        Objects.requireNonNull(partialKey);
+        Objects.requireNonNull(positions);
+        return broadcast(
+                op, out -> ShardProtocol.writePartialKey(subKeyCodec, partialKey, positions, out));
+    }
+
+    private List<CompletableFuture<DataInputStream>> broadcast(
+            final byte op, final ShardProtocol.Payload payload) {
+        final List<CompletableFuture<DataInputStream>> futures = new ArrayList<>(connections.length);
+
+        for (final ShardConnection connection : connections) {
+            futures.add(connection.send(op, payload));
+        }
+
+        return futures;
+    }
+
+    /**
+     * Streams the paged responses of the shards in their order, closing the ones not read to the end
+     * on the stream's close.
+     */
+    private <R> Stream<R> gather(
+            final List<CompletableFuture<DataInputStream>> futures, final Reader<R> reader) {
+        final List<PageIterator<R>> pages = new ArrayList<>(futures.size());
+
+        for (int i = 0; i < futures.size(); i++) {
+            pages.add(new PageIterator<>(connections[i], futures.get(i), reader));
+        }
+
+        // not a flatMap, which reads the whole shard's response even for a short-circuited stream
+        final Iterator<R> elements =
+                new Iterator<R>() {
+                    private int shard;
+
+                    @Override
+                    public boolean hasNext() {
+                        for (; shard < pages.size(); shard++) {
+                            if (pages.get(shard).hasNext()) {
+                                return true;
+                            }
+                        }
+
+                        return false;
+                    }
+
+                    @Override
+                    public R next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+
+                        return pages.get(shard).next();
+                    }
+                };
+
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(elements, Spliterator.ORDERED), false)
+                .onClose(() -> pages.forEach(PageIterator::close));
+    }
+
+    private Entry<K, V> readEntry(final DataInputStream in) throws IOException {
+        final K key = keyCodec.decode(in);
+        return new SimpleImmutableEntry<>(key, valueCodec.decode(in));
+    }
+
+    private V readValue(final CompletableFuture<DataInputStream> future) {
+        try {
+            return ShardProtocol.readNullable(valueCodec, await(future));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Waits for the response, rethrowing the shard's exception as is, and the transport failure
+     * as the UncheckedIOException. The request given up on is cancelled, which drops it from the
+     * pending ones, so that its late response, if any, is ignored.
+     */
+    private static DataInputStream await(final CompletableFuture<DataInputStream> future) {
+        try {
+            return future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            future.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new UncheckedIOException(new InterruptedIOException("interrupted"));
+        } catch (TimeoutException e) {
+            future.cancel(false);
+            throw new UncheckedIOException(new SocketTimeoutException("the shard did not respond"));
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw new UncheckedIOException((IOException) e.getCause());
+            } else if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /** The element reader of a paged response. */
+    @FunctionalInterface
+    interface Reader<R> {
+        R read(DataInputStream in) throws IOException;
+    }
+
+    /**
+     * Iterates the elements of a shard's paged response, decoding them as it goes, and requesting
+     * the next page as soon as the current one arrives.
+     */
+    static final class PageIterator<R> implements Iterator<R>, AutoCloseable {
+        private final ShardConnection connection;
+        private final Reader<R> reader;
+        private CompletableFuture<DataInputStream> next;
+        private DataInputStream page;
+        private int remaining;
+
+        PageIterator(
+                final ShardConnection connection,
+                final CompletableFuture<DataInputStream> first,
+                final Reader<R> reader) {
+            super();
+            this.connection = connection;
+            this.reader = reader;
+            this.next = first;
+        }
+
+        @Override
+        public boolean hasNext() {
+            try {
+                while (remaining == 0) {
+                    if (next == null) {
+                        return false;
+                    }
+
+                    page = await(next);
+                    next = null;
+                    final int cursor = page.readInt();
+                    remaining = ShardProtocol.readLength(page, 0);
+
+                    if (cursor != 0) {
+                        next = connection.send(ShardProtocol.NEXT_PAGE, out -> out.writeInt(cursor));
+                    }
+                }
+
+                return true;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public R next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            try {
+                final R element = reader.read(page);
+                remaining--;
+                return element;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /** Stops the iteration, closing the shard's cursor of the page on its way, if any. */
+        @Override
+        public void close() {
+            final CompletableFuture<DataInputStream> pending = next;
+            next = null;
+            page = null;
+            remaining = 0;
+
+            if (pending != null) {
+                pending.thenAccept(
+                        in -> {
+                            try {
+                                final int cursor = in.readInt();
+
+                                if (cursor != 0) {
+                                    connection.send(ShardProtocol.CLOSE_CURSOR, out -> out.writeInt(cursor));
+                                }
+                            } catch (IOException | RuntimeException e) {
+                                // the cursor expires anyway
+                            }
+                        });
+            }
+        }
+    }
+
+    /**
+     * The connection to a shard, with the pipelined requests. The requests are queued, and the
+     * connection's own writer thread writes all the queued ones at once, so that interrupting the
+     * caller never closes the shared channel; the daemon reader thread completes the requests by
+     * their ids. Once the channel fails, its requests in flight fail, and the next request opens a
+     * new channel.
+     */
+    static final class ShardConnection implements Closeable {
+        private final InetSocketAddress address;
+        private final AtomicInteger ids;
+        private volatile ShardChannel channel;
+        private volatile boolean closed;
+
+        ShardConnection(final InetSocketAddress address) throws IOException {
+            super();
+            this.address = address;
+            this.ids = new AtomicInteger();
+            this.channel = new ShardChannel(address);
+        }
+
+        CompletableFuture<DataInputStream> send(final byte op, final ShardProtocol.Payload payload) {
+            final CompletableFuture<DataInputStream> future = new CompletableFuture<>();
+            final int id = ids.incrementAndGet();
+            final ByteBuffer frame;
+            final ShardChannel current;
+
+            try {
+                frame = ShardProtocol.frame(id, op, payload);
+                current = connected();
+            } catch (IOException | RuntimeException e) {
+                future.completeExceptionally(e);
+                return future;
+            }
+
+            current.send(id, frame, future);
+            return future;
+        }
+
+        /** Gets the channel, opening the new one, if the current one has failed. */
+        private ShardChannel connected() throws IOException {
+            final ShardChannel current = channel;
+
+            if (current.failure == null) {
+                return current;
+            }
+
+            synchronized (this) {
+                if (closed) {
+                    throw new ClosedChannelException();
+                } else if (channel.failure == null) {
+                    return channel;
+                }
+
+                channel = new ShardChannel(address);
+                return channel;
+            }
+        }
+
+        @Override
+        public void close() {
+            synchronized (this) {
+                closed = true;
+            }
+
+            channel.fail(new ClosedChannelException());
+        }
+    }
+
+    /**
+     * The socket channel of the connection to a shard, with its pending requests, and its writer
+     * and reader threads. Failed once, it stays failed.
+     */
+    static final class ShardChannel {
+        private static final int MAXIMUM_BATCH = 1024;
+
+        private final SocketChannel channel;
+        private final ConcurrentMap<Integer, CompletableFuture<DataInputStream>> pending;
+        private final BlockingQueue<ByteBuffer> outbox;
+        private final Thread writer;
+        private final Thread reader;
+        private volatile IOException failure;
+
+        ShardChannel(final InetSocketAddress address) throws IOException {
+            super();
+            this.channel = SocketChannel.open(address);
+            this.pending = new ConcurrentHashMap<>();
+            this.outbox = new LinkedBlockingQueue<>();
+
+            try {
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+
+            this.writer = new Thread(this::write, "multikeymap-shard-writer-" + address);
+            writer.setDaemon(true);
+            this.reader = new Thread(this::read, "multikeymap-shard-client-" + address);
+            reader.setDaemon(true);
+            writer.start();
+            reader.start();
+        }
+
+        void send(
+                final int id,
+                final ByteBuffer frame,
+                final CompletableFuture<DataInputStream> future) {
+            pending.put(id, future);
+            // the cancelled request, given up on by its caller, must not stay pending
+            future.whenComplete((response, e) -> pending.remove(id, future));
+            final IOException failed = failure;
+
+            if (failed != null) {
+                pending.remove(id);
+                future.completeExceptionally(failed);
+                return;
+            }
+
+            outbox.add(frame);
+        }
+
+        private void write() {
+            final List<ByteBuffer> batch = new ArrayList<>();
+
+            try {
+                while (failure == null) {
+                    batch.add(outbox.take());
+                    outbox.drainTo(batch, MAXIMUM_BATCH - 1);
+                    final ByteBuffer[] buffers = batch.toArray(new ByteBuffer[batch.size()]);
+                    batch.clear();
+
+                    while (buffers[buffers.length - 1].hasRemaining()) {
+                        channel.write(buffers);
+                    }
+                }
+            } catch (IOException e) {
+                fail(e);
+            } catch (InterruptedException e) {
+                // failed, see fail
+            }
+        }
+
+        private void read() {
+            final ByteBuffer header = ByteBuffer.allocate(4);
+
+            try {
+                while (true) {
+                    header.clear();
+                    readFully(header);
+                    final int length = header.getInt(0);
+
+                    if (length < ShardProtocol.HEADER || length > ShardProtocol.MAXIMUM_FRAME) {
+                        throw new IOException(String.format("invalid frame length %s", length));
+                    }
+
+                    final ByteBuffer frame = ByteBuffer.allocate(length);
+                    readFully(frame);
+                    final int id = frame.getInt(0);
+                    final byte status = frame.get(4);
+                    final CompletableFuture<DataInputStream> future = pending.remove(id);
+
+                    if (future == null) {
+                        continue;
+                    }
+
+                    final DataInputStream in =
+                            new DataInputStream(
+                                    new ByteArrayInputStream(
+                                            frame.array(),
+                                            ShardProtocol.HEADER,
+                                            length - ShardProtocol.HEADER));
+
+                    if (status == ShardProtocol.OK) {
+                        future.complete(in);
+                    } else {
+                        future.completeExceptionally(ShardProtocol.readException(in));
+                    }
+                }
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+
+        private void readFully(final ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new EOFException("the shard closed the connection");
+                }
+            }
+        }
+
+        void fail(final IOException e) {
+            synchronized (this) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // already failed
+            }
+
+            if (Thread.currentThread() != writer) {
+                // wakes the writer up, if waiting for the requests
+                writer.interrupt();
+            }
+
+            for (final Iterator<CompletableFuture<DataInputStream>> it = pending.values().iterator();
+                 it.hasNext(); ) {
+                it.next().completeExceptionally(failure);
+                it.remove();
+            }
+
+            outbox.clear();
+        }
+    }
+
+    final class EntrySet extends AbstractSet<Entry<K, V>> {
+
+        @Override
+        public int size() {
+            return PartitionedMultiKeyMap.this.size();
+        }
+
+        @Override
+        public void clear() {
+            PartitionedMultiKeyMap.this.clear();
+        }
+
+        @Override
+        public Iterator<Entry<K, V>> iterator() {
+            return new EntrySetIterator();
+        }
+    }
+
+    /**
+     * Iterates the shards' snapshots of the entries page by page, requesting the first page of the
+     * next shard ahead.
+     */
+    final class EntrySetIterator implements Iterator<Entry<K, V>> {
+        private int shard;
+        private PageIterator<Entry<K, V>> current;
+        private CompletableFuture<DataInputStream> next;
+        private Entry<K, V> last;
+
+        EntrySetIterator() {
+            super();
+            this.current =
+                    new PageIterator<>(
+                            connections[0],
+                            connections[0].send(ShardProtocol.ENTRIES, ShardProtocol.EMPTY),
+                            PartitionedMultiKeyMap.this::readEntry);
+            this.next = sendEntries(1);
+        }
+
+        private CompletableFuture<DataInputStream> sendEntries(final int shard) {
+            return (shard < connections.length)
+                    ? connections[shard].send(ShardProtocol.ENTRIES, ShardProtocol.EMPTY)
+                    : null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext()) {
+                if (next == null) {
+                    return false;
+                }
+
+                current =
+                        new PageIterator<>(
+                                connections[++shard], next, PartitionedMultiKeyMap.this::readEntry);
+                next = sendEntries(shard + 1);
+            }
+
+            return true;
+        }
+
+        @Override
+        public Entry<K, V> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            return last = current.next();
+        }
+
+        @Override
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException();
+            }
+
+            PartitionedMultiKeyMap.this.remove(last.getKey());
+            last = null;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ *    Copyright 2017 David Tesler
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.protobufel.multikeymap;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToIntFunction;
+
+/**
+ * The statistics of a LiteSetMultimap's sets, maintained incrementally by its modifications, see
+ * {@link MultiKeyMapBuilder#trackIndexStats(boolean)}. Besides the value count and the histogram
+ * of the set sizes, it keeps the keys by the power-of-two bucket of their set size, so that the
+ * heaviest keys are found among the keys of the top buckets only. A key moves between the buckets
+ * only when its set size crosses a power of two, so the modifications mostly pay just the counter
+ * update.
+ *
+ * <p>NOTE: This class is thread-safe; the changes of a key must be reported under its lock.
+ *
+ * @param <K> the type of the LiteSetMultimap's key
+ * @author David Tesler
+ */
+final class PostingStats<K> {
+    private final LongAdder valueCount = new LongAdder();
+    private final AtomicLongArray setSizeHistogram = new AtomicLongArray(Integer.SIZE);
+    private final List<Set<K>> keysByBucket = new ArrayList<>(Integer.SIZE);
+
+    PostingStats() {
+        super();
+
+        for (int i = 0; i < Integer.SIZE; i++) {
+            keysByBucket.add(ConcurrentHashMap.newKeySet());
+        }
+    }
+
+    /**
+     * Gets the bucket of the set size, wherein the bucket i holds the sizes from {@code 2^(i - 1)}
+     * inclusive to {@code 2^i} exclusive, and the bucket 0 is of the absent sets.
+     */
+    static int bucketOf(final int size) {
+        return Integer.SIZE - Integer.numberOfLeadingZeros(size);
+    }
+
+    /**
+     * Records the change of the key's set size, under the lock of the key.
+     *
+     * @param key      the key
+     * @param fromSize the size of the set before, zero if absent
+     * @param toSize   the size of the set after, zero if removed
+     */
+    void resized(final K key, final int fromSize, final int toSize) {
+        if (fromSize == toSize) {
+            return;
+        }
+
+        valueCount.add(toSize - fromSize);
+        final int from = bucketOf(fromSize);
+        final int to = bucketOf(toSize);
+
+        if (from != to) {
+            if (from != 0) {
+                setSizeHistogram.decrementAndGet(from);
+                keysByBucket.get(from).remove(key);
+            }
+
+            if (to != 0) {
+                setSizeHistogram.incrementAndGet(to);
+                keysByBucket.get(to).add(key);
+            }
+        }
+    }
+
+    long valueCount() {
+        return valueCount.sum();
+    }
+
+    long[] setSizeHistogram() {
+        final long[] histogram = new long[setSizeHistogram.length()];
+
+        for (int i = 0; i < histogram.length; i++) {
+            histogram[i] = setSizeHistogram.get(i);
+        }
+
+        return histogram;
+    }
+
+    /**
+     * Gets the keys with the largest sets, from the top buckets down to the one completing the
+     * limit, so that only their keys are visited.
+     *
+     * @param limit  the maximum number of the keys to return
+     * @param sizeOf the current set size of the key, zero if absent
+     * @return the list of the keys with their set sizes, in the descending order of the size
+     */
+    List<Map.Entry<K, Integer>> heaviestKeys(final int limit, final ToIntFunction<K> sizeOf) {
+        final Comparator<Map.Entry<K, Integer>> bySize = Map.Entry.comparingByValue();
+        // the min-heap of the heaviest keys so far
+        final PriorityQueue<Map.Entry<K, Integer>> heaviest = new PriorityQueue<>(bySize);
+
+        for (int bucket = Integer.SIZE - 1; (bucket > 0) && (heaviest.size() < limit); bucket--) {
+            for (final K key : keysByBucket.get(bucket)) {
+                final int size = sizeOf.applyAsInt(key);
+
+                if (size == 0) {
+                    continue;
+                } else if (heaviest.size() < limit) {
+                    heaviest.add(new SimpleImmutableEntry<>(key, size));
+                } else if (bucket == 1) {
+                    // all sets of the lowest bucket are of the same size
+                    break;
+                } else if (heaviest.peek().getValue() < size) {
+                    heaviest.poll();
+                    heaviest.add(new SimpleImmutableEntry<>(key, size));
+                }
+            }
+        }
+
+        final List<Map.Entry<K, Integer>> result = new ArrayList<>(heaviest);
+        result.sort(bySize.reversed());
+        return result;
+    }
+
+    void clear() {
+        valueCount.reset();
+
+        for (int i = 0; i < setSizeHistogram.length(); i++) {
+            setSizeHistogram.set(i, 0);
+            keysByBucket.get(i).clear();
+        }
+    }
+}
@@ -0,0 +1,276 @@
+/*
+ *    Copyright 2017 David Tesler
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.protobufel.multikeymap;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The binary protocol between {@link PartitionedMultiKeyMap} and {@link ShardServer}. Every
+ * request and response is the frame of its int length, excluding the length itself, the int
+ * request id, the byte of the operation, or of the status, and the payload. The client pipelines
+ * the requests, and the server answers each connection's requests in order, with the response
+ * carrying the request id.
+ *
+ * <p>The payloads are encoded by the {@link Codec}s of the map; the nullable values are prefixed
+ * by the boolean presence, the partial keys are the int number of the sub-keys, the sub-keys, the
+ * int number of the positions, and the int positions, and the error responses are the class name
+ * and the message of the exception.
+ *
+ * <p>The responses of the entries and of the partial key queries, which may be as large as the
+ * shard, are paged: a page is the int cursor of the rest of the result, 0 if none, the int number
+ * of the page's elements, and the elements, of about {@link #PAGE_BYTES} in total. The client
+ * reads the rest by the {@link #NEXT_PAGE} requests of the cursor, and releases the cursor by
+ * {@link #CLOSE_CURSOR}, unless it has read the last page.
+ *
+ * @author David Tesler
+ */
+final class ShardProtocol {
+    static final byte GET = 1;
+    static final byte CONTAINS_KEY = 2;
+    static final byte PUT = 3;
+    static final byte PUT_ALL = 4;
+    static final byte REMOVE = 5;
+    static final byte SIZE = 6;
+    static final byte CLEAR = 7;
+    static final byte CONTAINS_VALUE = 8;
+    static final byte KEYS_BY_PARTIAL_KEY = 9;
+    static final byte ENTRIES_BY_PARTIAL_KEY = 10;
+    static final byte ENTRIES = 11;
+    static final byte REMOVE_BY_PARTIAL_KEY = 12;
+    static final byte NEXT_PAGE = 13;
+    static final byte CLOSE_CURSOR = 14;
+
+    static final byte OK = 0;
+    static final byte ERROR = 1;
+
+    /** The size of the frame header, the id and the operation or status, after the length. */
+    static final int HEADER = 5;
+    static final int MAXIMUM_FRAME = 1 << 28;
+    /** The encoded bytes of the elements, which end a page once reached. */
+    static final int PAGE_BYTES = 1 << 20;
+    private static final int MAXIMUM_MESSAGE = 1024;
+
+    private ShardProtocol() {
+    }
+
+    static <E> void writeNullable(final Codec<E> codec, final E value, final DataOutput out)
+            throws IOException {
+        out.writeBoolean(value != null);
+
+        if (value != null) {
+            codec.encode(value, out);
+        }
+    }
+
+    static <E> E readNullable(final Codec<E> codec, final DataInput in) throws IOException {
+        return in.readBoolean() ? codec.decode(in) : null;
+    }
+
+    static <T> void writePartialKey(
+            final Codec<T> codec,
+            final Iterable<? extends T> partialKey,
+            final Iterable<Integer> positions,
+            final DataOutput out)
+            throws IOException {
+        final List<T> subKeys = new ArrayList<>();
+        partialKey.forEach(subKeys::add);
+        out.writeInt(subKeys.size());
+
+        for (final T subKey : subKeys) {
+            codec.encode(subKey, out);
+        }
+
+        final List<Integer> list = new ArrayList<>();
+        positions.forEach(list::add);
+        out.writeInt(list.size());
+
+        for (final Integer position : list) {
+            out.writeInt(position);
+        }
+    }
+
+    /**
+     * Reads the length prefix, checking it against the bytes left, if known, as they are for the
+     * frames being decoded, so that a malformed frame fails with the IOException, rather than with
+     * the OutOfMemoryError of the huge allocation.
+     *
+     * @param in        the input to read from
+     * @param unitBytes the minimum number of bytes of each unit the length counts, 0 if unknown
+     * @return the non-negative length
+     * @throws IOException if the input fails, or the length is negative or exceeds the bytes left
+     */
+    static int readLength(final DataInput in, final int unitBytes) throws IOException {
+        final int length = in.readInt();
+
+        if (length < 0) {
+            throw new IOException(String.format("negative length %s", length));
+        } else if ((unitBytes > 0)
+                && (in instanceof InputStream)
+                && ((long) length * unitBytes > ((InputStream) in).available())) {
+            throw new EOFException(String.format("length %s exceeds the bytes left", length));
+        }
+
+        return length;
+    }
+
+    /**
+     * Gets the initial capacity of the list of the decoded elements, bounded by the bytes left, if
+     * known, as the elements' encoded sizes are not.
+     */
+    static int initialCapacity(final DataInput in, final int size) throws IOException {
+        return (in instanceof InputStream) ? Math.min(size, ((InputStream) in).available()) : size;
+    }
+
+    static <T> List<T> readSubKeys(final Codec<T> codec, final DataInput in) throws IOException {
+        final int size = readLength(in, 0);
+        final List<T> subKeys = new ArrayList<>(initialCapacity(in, size));
+
+        for (int i = 0; i < size; i++) {
+            subKeys.add(codec.decode(in));
+        }
+
+        return subKeys;
+    }
+
+    static List<Integer> readPositions(final DataInput in) throws IOException {
+        final int size = readLength(in, Integer.BYTES);
+        final List<Integer> positions = new ArrayList<>(size);
+
+        for (int i = 0; i < size; i++) {
+            positions.add(in.readInt());
+        }
+
+        return positions;
+    }
+
+    static void writeException(final Throwable e, final DataOutput out) throws IOException {
+        final String message = e.getMessage();
+        out.writeUTF(e.getClass().getName());
+        out.writeBoolean(message != null);
+
+        if (message != null) {
+            out.writeUTF(
+                    (message.length() > MAXIMUM_MESSAGE)
+                            ? message.substring(0, MAXIMUM_MESSAGE)
+                            : message);
+        }
+    }
+
+    /**
+     * Reads the exception of the error response, re-creating the standard Map contract's
+     * exceptions as such, and the rest as the IllegalStateException.
+     */
+    static RuntimeException readException(final DataInput in) throws IOException {
+        final String type = in.readUTF();
+        final String message = in.readBoolean() ? in.readUTF() : null;
+
+        switch (type) {
+            case "java.lang.NullPointerException":
+                return new NullPointerException(message);
+            case "java.lang.IllegalArgumentException":
+                return new IllegalArgumentException(message);
+            case "java.lang.IllegalStateException":
+                return new IllegalStateException(message);
+            case "java.lang.UnsupportedOperationException":
+                return new UnsupportedOperationException(message);
+            case "java.lang.ClassCastException":
+                return new ClassCastException(message);
+            default:
+                return new IllegalStateException(
+                        String.format("the shard failed with %s: %s", type, message));
+        }
+    }
+
+    /** The payload of a frame, written by the caller. */
+    @FunctionalInterface
+    interface Payload {
+        void writeTo(DataOutput out) throws IOException;
+    }
+
+    static final Payload EMPTY = out -> {
+    };
+
+    /**
+     * The frame being built, which reserves its length in front, and patches it once complete,
+     * without copying.
+     */
+    static final class Frame extends ByteArrayOutputStream {
+        private final DataOutputStream data;
+
+        Frame(final int id, final byte code) {
+            super(64);
+            this.data = new DataOutputStream(this);
+            reset(id, code);
+        }
+
+        /** Discards the payload, and starts over with the given header. */
+        void reset(final int id, final byte code) {
+            reset();
+            buf[4] = (byte) (id >>> 24);
+            buf[5] = (byte) (id >>> 16);
+            buf[6] = (byte) (id >>> 8);
+            buf[7] = (byte) id;
+            buf[8] = code;
+            count = 4 + HEADER;
+        }
+
+        DataOutputStream data() {
+            return data;
+        }
+
+        /** Overwrites the int written at the offset, see {@link #size()}. */
+        void patchInt(final int offset, final int value) throws IOException {
+            data.flush();
+            buf[offset] = (byte) (value >>> 24);
+            buf[offset + 1] = (byte) (value >>> 16);
+            buf[offset + 2] = (byte) (value >>> 8);
+            buf[offset + 3] = (byte) value;
+        }
+
+        ByteBuffer toBuffer() throws IOException {
+            data.flush();
+            final int length = count - 4;
+
+            if (length > MAXIMUM_FRAME) {
+                throw new IOException(String.format("frame of %s bytes is too long", length));
+            }
+
+            buf[0] = (byte) (length >>> 24);
+            buf[1] = (byte) (length >>> 16);
+            buf[2] = (byte) (length >>> 8);
+            buf[3] = (byte) length;
+            return ByteBuffer.wrap(buf, 0, count);
+        }
+    }
+
+    static ByteBuffer frame(final int id, final byte code, final Payload payload)
+            throws IOException {
+        final Frame frame = new Frame(id, code);
+        payload.writeTo(frame.data());
+        return frame.toBuffer();
+    }
+}
@@ -0,0 +1,579 @@
+/*
+ *    Copyright 2017 David Tesler
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.protobufel.multikeymap;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataOutput;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+
+/**
+ * The shard server of the partitioned MultiKeyMap, hosting one shard MultiKeyMap for the {@link
+ * PartitionedMultiKeyMap} clients, over the binary protocol on the non-blocking NIO channels.
+ * The single daemon thread of the server accepts the connections, reads the pipelined requests of
+ * all of them, runs each request against the MultiKeyMap in order, and writes the responses of the
+ * whole batch read at once. So the hosted MultiKeyMap needn't be concurrent, unless it is also
+ * used locally. The connection stops being read while its responses are waiting for the client to
+ * read them.
+ *
+ * <p>The entries and the partial key query results are sent in pages, see {@link ShardProtocol}.
+ * Their cursors keep the snapshot of the references to the result's elements, taken by the first
+ * page, so that the other requests can modify the MultiKeyMap meanwhile; a connection keeps up to
+ * {@value #MAXIMUM_CURSORS} cursors, and drops the least recently read one beyond that.
+ *
+ * <p>The server can be run as a separate process by {@link #main(String[])}.
+ *
+ * @param <T> the type of a sub-key the key consist of
+ * @param <K> the type of a full key, which is an Iterable of its sub-keys, with usage as in a
+ *            regular Map
+ * @param <V> the type of a value which stored in the MultiKeyMap under the corresponding key
+ * @author David Tesler
+ * @see MultiKeyMaps#newPartitioned(List, Codec, Codec, Codec)
+ */
+public final class ShardServer<T, K extends Iterable<T>, V> implements AutoCloseable {
+    private static final int INITIAL_BUFFER = 1 << 16;
+    static final int MAXIMUM_CURSORS = 16;
+
+    private final MultiKeyMap<T, K, V> multiKeyMap;
+    private final Codec<T> subKeyCodec;
+    private final Codec<K> keyCodec;
+    private final Codec<V> valueCodec;
+    private final Selector selector;
+    private final InetSocketAddress address;
+    private final Thread thread;
+    private volatile boolean closed;
+
+    private ShardServer(
+            final InetSocketAddress address,
+            final MultiKeyMap<T, K, V> multiKeyMap,
+            final Codec<T> subKeyCodec,
+            final Codec<K> keyCodec,
+            final Codec<V> valueCodec)
+            throws IOException {
+        super();
+        this.multiKeyMap = Objects.requireNonNull(multiKeyMap);
+        this.subKeyCodec = Objects.requireNonNull(subKeyCodec);
+        this.keyCodec = Objects.requireNonNull(keyCodec);
+        this.valueCodec = Objects.requireNonNull(valueCodec);
+        this.selector = Selector.open();
+        final ServerSocketChannel serverChannel = ServerSocketChannel.open();
+
+        try {
+            serverChannel.bind(Objects.requireNonNull(address));
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+            this.address = (InetSocketAddress) serverChannel.getLocalAddress();
+        } catch (IOException | RuntimeException e) {
+            closeQuietly(serverChannel);
+            closeQuietly(selector);
+            throw e;
+        }
+
+        this.thread = new Thread(this::run, "multikeymap-shard-server-" + this.address.getPort());
+        thread.setDaemon(true);
+    }
+
+    /**
+     * Starts the server of the MultiKeyMap on the address.
+     *
+     * @param address     the address to listen on, with the port 0 for any free one
+     * @param multiKeyMap the shard MultiKeyMap to serve
+     * @param subKeyCodec the codec of the sub-keys
+     * @param keyCodec    the codec of the full keys
+     * @param valueCodec  the codec of the values
+     * @param <T>         the type of a sub-key the key consist of
+     * @param <K>         the type of a full key, which is an Iterable of its sub-keys, with usage as
+     *                    in a regular Map
+     * @param <V>         the type of a value which stored in the MultiKeyMap under the corresponding
+     *                    key
+     * @return the started server
+     * @throws IOException if the address cannot be bound
+     */
+    public static <T, K extends Iterable<T>, V> ShardServer<T, K, V> start(
+            final InetSocketAddress address,
+            final MultiKeyMap<T, K, V> multiKeyMap,
+            final Codec<T> subKeyCodec,
+            final Codec<K> keyCodec,
+            final Codec<V> valueCodec)
+            throws IOException {
+        final ShardServer<T, K, V> server =
+                new ShardServer<>(address, multiKeyMap, subKeyCodec, keyCodec, valueCodec);
+        server.thread.start();
+        return server;
+    }
+
+    /**
+     * Runs the server of the new MultiKeyMap of the string list keys and the string values on the
+     * loopback address, until its standard input is closed, so that the shard processes stop
+     * together with their parent. Prints the listening port as the first line of the standard
+     * output.
+     *
+     * @param args the optional port to listen on, 0 by default for any free one
+     * @throws IOException if the port cannot be bound
+     */
+    public static void main(final String[] args) throws IOException {
+        final int port = (args.length > 0) ? Integer.parseInt(args[0]) : 0;
+
+        try (ShardServer<String, List<String>, String> server =
+                     start(
+                             new InetSocketAddress(InetAddress.getLoopbackAddress(), port),
+                             MultiKeyMaps.newMultiKeyMap(),
+                             Codec.utf8(),
+                             Codec.listOf(Codec.utf8()),
+                             Codec.utf8())) {
+            System.out.println(server.getAddress().getPort());
+            System.out.flush();
+
+            while (System.in.read() >= 0) {
+                // wait for the end of the input
+            }
+        }
+    }
+
+    /**
+     * Gets the address this server listens on.
+     *
+     * @return the bound address
+     */
+    public InetSocketAddress getAddress() {
+        return address;
+    }
+
+    /**
+     * Gets the shard MultiKeyMap this server serves.
+     *
+     * @return the shard MultiKeyMap
+     */
+    public MultiKeyMap<T, K, V> getMultiKeyMap() {
+        return multiKeyMap;
+    }
+
+    /**
+     * Tells whether this server has been closed.
+     *
+     * @return true if closed, false, otherwise
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Stops the server, and closes all its connections, waiting for its thread to finish the
+     * current batch of requests.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        selector.wakeup();
+
+        if (Thread.currentThread() != thread) {
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void run() {
+        try {
+            while (!closed) {
+                selector.select();
+                final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+
+                while (keys.hasNext()) {
+                    final SelectionKey key = keys.next();
+                    keys.remove();
+
+                    try {
+                        if (!key.isValid()) {
+                            continue;
+                        }
+
+                        if (key.isAcceptable()) {
+                            accept((ServerSocketChannel) key.channel());
+                            continue;
+                        }
+
+                        final Connection connection = (Connection) key.attachment();
+
+                        if (key.isReadable()) {
+                            connection.read();
+                        }
+
+                        if (key.isValid() && key.isWritable()) {
+                            connection.write();
+                        }
+                    } catch (IOException e) {
+                        // the connection is broken or misbehaves, so drop it
+                        key.cancel();
+                        closeQuietly(key.channel());
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            // the selector failed, so the server stops
+        } finally {
+            // whatever stops the only thread of the server, closes the latter
+            closed = true;
+
+            for (final SelectionKey key : selector.keys()) {
+                closeQuietly(key.channel());
+            }
+
+            closeQuietly(selector);
+        }
+    }
+
+    private void accept(final ServerSocketChannel serverChannel) throws IOException {
+        final SocketChannel channel = serverChannel.accept();
+
+        if (channel == null) {
+            return;
+        }
+
+        try {
+            channel.configureBlocking(false);
+            final SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+            key.attach(new Connection(channel, key, this::handle));
+        } catch (IOException e) {
+            closeQuietly(channel);
+        }
+    }
+
+    private ByteBuffer handle(final Connection connection, final ByteBuffer frame) {
+        final int id = frame.getInt();
+        final byte op = frame.get();
+        final DataInputStream in =
+                new DataInputStream(
+                        new ByteArrayInputStream(
+                                frame.array(),
+                                frame.arrayOffset() + frame.position(),
+                                frame.remaining()));
+        final ShardProtocol.Frame response = new ShardProtocol.Frame(id, ShardProtocol.OK);
+
+        try {
+            try {
+                execute(connection, op, in, response);
+            } catch (IOException | RuntimeException e) {
+                response.reset(id, ShardProtocol.ERROR);
+                ShardProtocol.writeException(e, response.data());
+            }
+
+            return response.toBuffer();
+        } catch (IOException e) {
+            // only the response longer than the frame limit gets here
+            response.reset(id, ShardProtocol.ERROR);
+
+            try {
+                ShardProtocol.writeException(e, response.data());
+                return response.toBuffer();
+            } catch (IOException impossible) {
+                throw new UncheckedIOException(impossible);
+            }
+        }
+    }
+
+    private void execute(
+            final Connection connection,
+            final byte op,
+            final DataInputStream in,
+            final ShardProtocol.Frame response)
+            throws IOException {
+        final DataOutputStream out = response.data();
+
+        switch (op) {
+            case ShardProtocol.GET:
+                ShardProtocol.writeNullable(valueCodec, multiKeyMap.get(keyCodec.decode(in)), out);
+                break;
+            case ShardProtocol.CONTAINS_KEY:
+                out.writeBoolean(multiKeyMap.containsKey(keyCodec.decode(in)));
+                break;
+            case ShardProtocol.PUT: {
+                final K key = keyCodec.decode(in);
+                final V value = valueCodec.decode(in);
+                ShardProtocol.writeNullable(valueCodec, multiKeyMap.put(key, value), out);
+                break;
+            }
+            case ShardProtocol.PUT_ALL: {
+                final int size = ShardProtocol.readLength(in, 0);
+
+                for (int i = 0; i < size; i++) {
+                    final K key = keyCodec.decode(in);
+                    multiKeyMap.put(key, valueCodec.decode(in));
+                }
+
+                break;
+            }
+            case ShardProtocol.REMOVE:
+                ShardProtocol.writeNullable(
+                        valueCodec, multiKeyMap.remove(keyCodec.decode(in)), out);
+                break;
+            case ShardProtocol.SIZE:
+                out.writeInt(multiKeyMap.size());
+                break;
+            case ShardProtocol.CLEAR:
+                multiKeyMap.clear();
+                break;
+            case ShardProtocol.CONTAINS_VALUE:
+                out.writeBoolean(multiKeyMap.containsValue(valueCodec.decode(in)));
+                break;
+            case ShardProtocol.KEYS_BY_PARTIAL_KEY: {
+                final List<T> partialKey = ShardProtocol.readSubKeys(subKeyCodec, in);
+                final List<Integer> positions = ShardProtocol.readPositions(in);
+                final List<K> keys =
+                        (positions.isEmpty()
+                                ? multiKeyMap.getFullKeysByPartialKey(partialKey)
+                                : multiKeyMap.getFullKeysByPartialKey(partialKey, positions))
+                                .collect(Collectors.toList());
+                writePage(connection, new Cursor<>(keys.iterator(), keyCodec::encode), response);
+                break;
+            }
+            case ShardProtocol.REMOVE_BY_PARTIAL_KEY: {
+                final List<T> partialKey = ShardProtocol.readSubKeys(subKeyCodec, in);
+                final List<Integer> positions = ShardProtocol.readPositions(in);
+                out.writeInt(
+                        positions.isEmpty()
+                                ? multiKeyMap.removeByPartialKey(partialKey)
+                                : multiKeyMap.removeByPartialKey(partialKey, positions));
+                break;
+            }
+            case ShardProtocol.ENTRIES_BY_PARTIAL_KEY: {
+                final List<T> partialKey = ShardProtocol.readSubKeys(subKeyCodec, in);
+                final List<Integer> positions = ShardProtocol.readPositions(in);
+                final List<Entry<K, V>> entries =
+                        (positions.isEmpty()
+                                ? multiKeyMap.getEntriesByPartialKey(partialKey)
+                                : multiKeyMap.getEntriesByPartialKey(partialKey, positions))
+                                .collect(Collectors.toList());
+                writePage(connection, new Cursor<>(entries.iterator(), this::writeEntry), response);
+                break;
+            }
+            case ShardProtocol.ENTRIES:
+                writePage(
+                        connection,
+                        new Cursor<>(
+                                new ArrayList<>(multiKeyMap.entrySet()).iterator(), this::writeEntry),
+                        response);
+                break;
+            case ShardProtocol.NEXT_PAGE:
+                writePage(connection, connection.takeCursor(in.readInt()), response);
+                break;
+            case ShardProtocol.CLOSE_CURSOR:
+                connection.cursors.remove(in.readInt());
+                break;
+            default:
+                throw new UnsupportedOperationException(String.format("unknown operation %s", op));
+        }
+    }
+
+    private void writeEntry(final Entry<K, V> entry, final DataOutput out) throws IOException {
+        keyCodec.encode(entry.getKey(), out);
+        valueCodec.encode(entry.getValue(), out);
+    }
+
+    /**
+     * Writes the next page of the cursor's elements, see {@link ShardProtocol}, keeping the cursor
+     * for the next one, unless this page is the last.
+     *
+     * @param connection the connection of the request
+     * @param cursor     the cursor of the rest of the result
+     * @param response   the response to write the page to
+     * @throws IOException if the elements cannot be encoded
+     */
+    private static void writePage(
+            final Connection connection, final Cursor<?> cursor, final ShardProtocol.Frame response)
+            throws IOException {
+        final DataOutputStream out = response.data();
+        final int start = response.size();
+        out.writeInt(0);
+        out.writeInt(0);
+        int count = 0;
+
+        while (cursor.elements.hasNext() && (response.size() - start < ShardProtocol.PAGE_BYTES)) {
+            cursor.writeNext(out);
+            count++;
+        }
+
+        response.patchInt(start, cursor.elements.hasNext() ? connection.keepCursor(cursor) : 0);
+        response.patchInt(start + 4, count);
+    }
+
+    private static void closeQuietly(final Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // nothing to do about it
+        }
+    }
+
+    /** The element writer of a cursor. */
+    @FunctionalInterface
+    interface ElementWriter<E> {
+        void write(E element, DataOutput out) throws IOException;
+    }
+
+    /** The rest of a paged response, only accessed by the server thread. */
+    static final class Cursor<E> {
+        private final Iterator<E> elements;
+        private final ElementWriter<? super E> writer;
+        private int id;
+
+        Cursor(final Iterator<E> elements, final ElementWriter<? super E> writer) {
+            super();
+            this.elements = elements;
+            this.writer = writer;
+        }
+
+        void writeNext(final DataOutput out) throws IOException {
+            writer.write(elements.next(), out);
+        }
+    }
+
+    /** The state of a client connection, only accessed by the server thread. */
+    static final class Connection {
+        private final SocketChannel channel;
+        private final SelectionKey key;
+        private final BiFunction<Connection, ByteBuffer, ByteBuffer> handler;
+        private final ArrayDeque<ByteBuffer> output;
+        /** The open cursors by their ids, in the order of their last read. */
+        private final Map<Integer, Cursor<?>> cursors;
+        private int cursorIds;
+        private ByteBuffer input;
+
+        Connection(
+                final SocketChannel channel,
+                final SelectionKey key,
+                final BiFunction<Connection, ByteBuffer, ByteBuffer> handler) {
+            super();
+            this.channel = channel;
+            this.key = key;
+            this.handler = handler;
+            this.output = new ArrayDeque<>();
+            this.cursors =
+                    new LinkedHashMap<Integer, Cursor<?>>() {
+                        private static final long serialVersionUID = 1L;
+
+                        @Override
+                        protected boolean removeEldestEntry(final Map.Entry<Integer, Cursor<?>> eldest) {
+                            return size() > MAXIMUM_CURSORS;
+                        }
+                    };
+            this.input = ByteBuffer.allocate(INITIAL_BUFFER);
+        }
+
+        /** Keeps the cursor for its next page, as the most recently read one, and gets its id. */
+        int keepCursor(final Cursor<?> cursor) {
+            if (cursor.id == 0) {
+                cursorIds = (cursorIds == Integer.MAX_VALUE) ? 1 : cursorIds + 1;
+                cursor.id = cursorIds;
+            }
+
+            cursors.put(cursor.id, cursor);
+            return cursor.id;
+        }
+
+        /** Takes the cursor out, so that it is dropped if its page fails, see keepCursor. */
+        Cursor<?> takeCursor(final int id) {
+            final Cursor<?> cursor = cursors.remove(id);
+
+            if (cursor == null) {
+                throw new IllegalStateException(String.format("cursor %s is closed or expired", id));
+            }
+
+            return cursor;
+        }
+
+        /** Reads and runs all the complete requests available, and writes their responses. */
+        void read() throws IOException {
+            if (channel.read(input) < 0) {
+                throw new EOFException();
+            }
+
+            input.flip();
+            int needed = 0;
+
+            while (input.remaining() >= 4) {
+                final int length = input.getInt(input.position());
+
+                if (length < ShardProtocol.HEADER || length > ShardProtocol.MAXIMUM_FRAME) {
+                    throw new IOException(String.format("invalid frame length %s", length));
+                }
+
+                if (input.remaining() < 4 + length) {
+                    needed = 4 + length;
+                    break;
+                }
+
+                input.position(input.position() + 4);
+                final ByteBuffer frame = input.slice();
+                frame.limit(length);
+                input.position(input.position() + length);
+                output.add(handler.apply(this, frame));
+            }
+
+            input.compact();
+
+            if (needed > input.capacity()) {
+                final ByteBuffer bigger =
+                        ByteBuffer.allocate(Math.max(needed, input.capacity() << 1));
+                input.flip();
+                bigger.put(input);
+                input = bigger;
+            }
+
+            write();
+        }
+
+        /** Writes the pending responses, gathering them in one write. */
+        void write() throws IOException {
+            if (!output.isEmpty()) {
+                channel.write(output.toArray(new ByteBuffer[output.size()]));
+
+                while (!output.isEmpty() && !output.peekFirst().hasRemaining()) {
+                    output.pollFirst();
+                }
+            }
+
+            key.interestOps(output.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_WRITE);
+        }
+    }
+}
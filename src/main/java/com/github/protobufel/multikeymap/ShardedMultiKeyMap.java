@@ -0,0 +1,557 @@
+/*
+ *    Copyright 2017 David Tesler
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.protobufel.multikeymap;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The MultiKeyMap partitioned by the full key hash across the independent shard MultiKeyMaps, each
+ * with its own index. The full key operations go to the single shard of the key, so that the
+ * writers of the different shards neither contend on the same index nor grow the same one; the
+ * partial key queries fan out to all shards in parallel on the executor, and their results are
+ * concatenated, shard by shard, into one stream. The partial key query starts right away, when its
+ * stream is created, rather than on the terminal operation. Only the first shard's result streams
+ * lazily, on the caller thread; every other shard's result is collected into a list on the
+ * executor, so that the query holds all of their matching elements at once, and does all of their
+ * work even if the stream is short-circuited early.
+ *
+ * <p>The consistency of the whole map is the one of its shards; the aggregate operations, such as
+ * {@link #size()} or iteration, visit the shards one by one, and see no atomic snapshot of the
+ * concurrently modified map. This class is not Serializable.
+ *
+ * @param <T> the type of a sub-key the key consist of
+ * @param <K> the type of a full key, which is an Iterable of its sub-keys, with usage as in a
+ *            regular Map
+ * @param <V> the type of a value which stored in the MultiKeyMap under the corresponding key
+ * @author David Tesler
+ * @see MultiKeyMaps#newSharded(int, java.util.function.Supplier, Executor)
+ */
+final class ShardedMultiKeyMap<T, K extends Iterable<T>, V> extends AbstractMap<K, V>
+        implements MultiKeyMap<T, K, V> {
+    private final MultiKeyMap<T, K, V>[] shards;
+    private final Executor executor;
+    private Set<Entry<K, V>> entrySet;
+
+    ShardedMultiKeyMap(final List<? extends MultiKeyMap<T, K, V>> shards, final Executor executor) {
+        super();
+
+        if (Objects.requireNonNull(shards).isEmpty()) {
+            throw new IllegalArgumentException("no shards");
+        }
+
+        @SuppressWarnings("unchecked") final MultiKeyMap<T, K, V>[] array =
+                (MultiKeyMap<T, K, V>[]) new MultiKeyMap<?, ?, ?>[shards.size()];
+
+        for (int i = 0; i < array.length; i++) {
+            array[i] = Objects.requireNonNull(shards.get(i));
+
+            for (int j = 0; j < i; j++) {
+                if (array[j] == array[i]) {
+                    throw new IllegalArgumentException("the same shard supplied twice");
+                }
+            }
+        }
+
+        this.shards = array;
+        this.executor = Objects.requireNonNull(executor);
+    }
+
+    int getShardCount() {
+        return shards.length;
+    }
+
+    MultiKeyMap<T, K, V> getShard(final int index) {
+        return shards[index];
+    }
+
+    /**
+     * Gets the shard index of the full key, spreading the higher bits of its hash code, so that the
+     * keys with the poor hash codes still scatter.
+     */
+    static int shardIndex(final Object key, final int shards) {
+        final int h = key.hashCode() * 0x9e3779b9;
+        return Math.floorMod(h ^ (h >>> 16), shards);
+    }
+
+    private MultiKeyMap<T, K, V> shardOf(final Object key) {
+        return shards[shardIndex(key, shards.length)];
+    }
+
+    @Override
+    public int size() {
+        long size = 0;
+
+        for (final MultiKeyMap<T, K, V> shard : shards) {
+            size += shard.size();
+        }
+
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        for (final MultiKeyMap<T, K, V> shard : shards) {
+            if (!shard.isEmpty()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        return shardOf(Objects.requireNonNull(key)).containsKey(key);
+    }
+
+    @Override
+    public boolean containsValue(final Object value) {
+        for (final MultiKeyMap<T, K, V> shard : shards) {
+            if (shard.containsValue(value)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    @Override
+    public V get(final Object key) {
+        return shardOf(Objects.requireNonNull(key)).get(key);
+    }
+
+    @Override
+    public V getOrDefault(final Object key, final V defaultValue) {
+        return shardOf(Objects.requireNonNull(key)).getOrDefault(key, defaultValue);
+    }
+
+    @Override
+    public V put(final K key, final V value) {
+        return shardOf(Objects.requireNonNull(key)).put(key, value);
+    }
+
+    @Override
+    public V put(final K key, final V value, final long duration, final TimeUnit unit) {
+        return shardOf(Objects.requireNonNull(key)).put(key, value, duration, unit);
+    }
+
+    @Override
+    public V putIfAbsent(final K key, final V value) {
+        return shardOf(Objects.requireNonNull(key)).putIfAbsent(key, value);
+    }
+
+    @Override
+    public void putAll(final Map<? extends K, ? extends V> map) {
+        for (final Entry<? extends K, ? extends V> entry : map.entrySet()) {
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Override
+    public V remove(final Object key) {
+        return shardOf(Objects.requireNonNull(key)).remove(key);
+    }
+
+    @Override
+    public boolean remove(final Object key, final Object value) {
+        return shardOf(Objects.requireNonNull(key)).remove(key, value);
+    }
+
+    @Override
+    public boolean replace(final K key, final V oldValue, final V newValue) {
+        return shardOf(Objects.requireNonNull(key)).replace(key, oldValue, newValue);
+    }
+
+    @Override
+    public V replace(final K key, final V value) {
+        return shardOf(Objects.requireNonNull(key)).replace(key, value);
+    }
+
+    @Override
+    public V computeIfAbsent(final K key, final Function<? super K, ? extends V> mappingFunction) {
+        return shardOf(Objects.requireNonNull(key)).computeIfAbsent(key, mappingFunction);
+    }
+
+    @Override
+    public V computeIfPresent(
+            final K key, final BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        return shardOf(Objects.requireNonNull(key)).computeIfPresent(key, remappingFunction);
+    }
+
+    @Override
+    public V compute(
+            final K key, final BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        return shardOf(Objects.requireNonNull(key)).compute(key, remappingFunction);
+    }
+
+    @Override
+    public V merge(
+            final K key,
+            final V value,
+            final BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        return shardOf(Objects.requireNonNull(key)).merge(key, value, remappingFunction);
+    }
+
+    @Override
+    public void forEach(final BiConsumer<? super K, ? super V> action) {
+        Objects.requireNonNull(action);
+
+        for (final MultiKeyMap<T, K, V> shard : shards) {
+            shard.forEach(action);
+        }
+    }
+
+    @Override
+    public void replaceAll(final BiFunction<? super K, ? super V, ? extends V> function) {
+        Objects.requireNonNull(function);
+
+        for (final MultiKeyMap<T, K, V> shard : shards) {
+            shard.replaceAll(function);
+        }
+    }
+
+    @Override
+    public void clear() {
+        for (final MultiKeyMap<T, K, V> shard : shards) {
+            shard.clear();
+        }
+    }
+
+    @Override
+    public void cleanUp() {
+        for (final MultiKeyMap<T, K, V> shard : shards) {
+            shard.cleanUp();
+        }
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return (entrySet == null) ? (entrySet = new EntrySet()) : entrySet;
+    }
+
+    @Override
+    public Stream<K> getFullKeysByPartialKey(final Iterable<? extends T> partialKey) {
+        Objects.requireNonNull(partialKey);
+        return fanOut(shard -> shard.getFullKeysByPartialKey(partialKey));
+    }
+
+    @Override
+    public Stream<K> getFullKeysByPartialKey(
+            final Iterable<? extends T> partialKey, final Iterable<Integer> positions) {
+        Objects.requireNonNull(partialKey);
+        Objects.requireNonNull(positions);
+        return fanOut(shard -> shard.getFullKeysByPartialKey(partialKey, positions));
+    }
+
+    @Override
+    public Stream<K> getFullKeysByPartialKey(
+            final Iterable<? extends T> partialKey, final ExecutionPolicy policy) {
+        Objects.requireNonNull(partialKey);
+        Objects.requireNonNull(policy);
+        return fanOut(shard -> shard.getFullKeysByPartialKey(partialKey, policy));
+    }
+
+    @Override
+    public Stream<K> getFullKeysByPartialKey(
+            final Iterable<? extends T> partialKey,
+            final Iterable<Integer> positions,
+            final ExecutionPolicy policy) {
+        Objects.requireNonNull(partialKey);
+        Objects.requireNonNull(positions);
+        Objects.requireNonNull(policy);
+        return fanOut(shard -> shard.getFullKeysByPartialKey(partialKey, positions, policy));
+    }
+
+    @Override
+    public int removeByPartialKey(final Iterable<? extends T> partialKey) {
+        Objects.requireNonNull(partialKey);
+        return sum(fanOut(shard -> Stream.of(shard.removeByPartialKey(partialKey))));
+    }
+
+    @Override
+    public int removeByPartialKey(
+            final Iterable<? extends T> partialKey, final Iterable<Integer> positions) {
+        Objects.requireNonNull(partialKey);
+        Objects.requireNonNull(positions);
+        return sum(fanOut(shard -> Stream.of(shard.removeByPartialKey(partialKey, positions))));
+    }
+
+    @Override
+    public int replaceAllByPartialKey(
+            final Iterable<? extends T> partialKey,
+            final BiFunction<? super K, ? super V, ? extends V> function) {
+        Objects.requireNonNull(partialKey);
+        Objects.requireNonNull(function);
+        return sum(fanOut(shard -> Stream.of(shard.replaceAllByPartialKey(partialKey, function))));
+    }
+
+    @Override
+    public int replaceAllByPartialKey(
+            final Iterable<? extends T> partialKey,
+            final Iterable<Integer> positions,
+            final BiFunction<? super K, ? super V, ? extends V> function) {
+        Objects.requireNonNull(partialKey);
+        Objects.requireNonNull(positions);
+        Objects.requireNonNull(function);
+        return sum(
+                fanOut(
+                        shard ->
+                                Stream.of(
+                                        shard.replaceAllByPartialKey(
+                                                partialKey, positions, function))));
+    }
+
+    private static int sum(final Stream<Integer> counts) {
+        return counts.mapToInt(Integer::intValue).sum();
+    }
+
+    @Override
+    public Stream<V> getValuesByPartialKey(final Iterable<? extends T> partialKey) {
+        Objects.requireNonNull(partialKey);
+        return fanOut(shard -> shard.getValuesByPartialKey(partialKey));
+    }
+
+    @Override
+    public Stream<V> getValuesByPartialKey(
+            final Iterable<? extends T> partialKey, final Iterable<Integer> positions) {
+        Objects.requireNonNull(partialKey);
+        Objects.requireNonNull(positions);
+        return fanOut(shard -> shard.getValuesByPartialKey(partialKey, positions));
+    }
+
+    @Override
+    public Stream<Entry<K, V>> getEntriesByPartialKey(final Iterable<? extends T> partialKey) {
+        Objects.requireNonNull(partialKey);
+        return fanOut(shard -> shard.getEntriesByPartialKey(partialKey));
+    }
+
+    @Override
+    public Stream<Entry<K, V>> getEntriesByPartialKey(
+            final Iterable<? extends T> partialKey, final Iterable<Integer> positions) {
+        Objects.requireNonNull(partialKey);
+        Objects.requireNonNull(positions);
+        return fanOut(shard -> shard.getEntriesByPartialKey(partialKey, positions));
+    }
+
+    /**
+     * Sums up the index statistics of the shards, see {@link IndexStats#sum(List, int)}.
+     *
+     * @param topN the maximum number of the heaviest sub-keys to include
+     * @return the snapshot of the index statistics of all shards
+     */
+    @Override
+    public IndexStats<T> indexStats(final int topN) {
+        if (topN < 0) {
+            throw new IllegalArgumentException(String.format("negative topN %s", topN));
+        }
+
+        final List<IndexStats<T>> stats = new ArrayList<>(shards.length);
+
+        for (final MultiKeyMap<T, K, V> shard : shards) {
+            stats.add(shard.indexStats(topN));
+        }
+
+        return IndexStats.sum(stats, topN);
+    }
+
+    @Override
+    public PartialKeySubscription subscribe(
+            final Iterable<? extends T> partialKey,
+            final Iterable<Integer> positions,
+            final PartialKeyListener<? super K, ? super V> listener) {
+        Objects.requireNonNull(partialKey);
+        Objects.requireNonNull(positions);
+        Objects.requireNonNull(listener);
+        final List<PartialKeySubscription> subscriptions = new ArrayList<>(shards.length);
+
+        try {
+            for (final MultiKeyMap<T, K, V> shard : shards) {
+                subscriptions.add(shard.subscribe(partialKey, positions, listener));
+            }
+        } catch (RuntimeException e) {
+            subscriptions.forEach(PartialKeySubscription::close);
+            throw e;
+        }
+
+        return new ShardedSubscription(subscriptions);
+    }
+
+    /**
+     * Runs the query on every shard but the first one on the executor, and the first one on the
+     * caller thread, and concatenates the results in the shard order, waiting for each shard's
+     * result only when the stream reaches it.
+     */
+    private <R> Stream<R> fanOut(final Function<MultiKeyMap<T, K, V>, Stream<R>> query) {
+        if (shards.length == 1) {
+            return query.apply(shards[0]);
+        }
+
+        @SuppressWarnings("unchecked") final CompletableFuture<List<R>>[] futures =
+                (CompletableFuture<List<R>>[]) new CompletableFuture<?>[shards.length - 1];
+
+        for (int i = 0; i < futures.length; i++) {
+            final MultiKeyMap<T, K, V> shard = shards[i + 1];
+            futures[i] =
+                    CompletableFuture.supplyAsync(
+                            () -> query.apply(shard).collect(Collectors.toList()), executor);
+        }
+
+        return Stream.concat(
+                query.apply(shards[0]),
+                Arrays.stream(futures).flatMap(future -> join(future).stream()));
+    }
+
+    private static <R> R join(final CompletableFuture<R> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+
+            throw e;
+        }
+    }
+
+    static final class ShardedSubscription implements PartialKeySubscription {
+        private final List<PartialKeySubscription> subscriptions;
+
+        ShardedSubscription(final List<PartialKeySubscription> subscriptions) {
+            super();
+            this.subscriptions = Collections.unmodifiableList(subscriptions);
+        }
+
+        @Override
+        public boolean isClosed() {
+            return subscriptions.stream().allMatch(PartialKeySubscription::isClosed);
+        }
+
+        @Override
+        public void close() {
+            subscriptions.forEach(PartialKeySubscription::close);
+        }
+    }
+
+    final class EntrySet extends AbstractSet<Entry<K, V>> {
+
+        @Override
+        public int size() {
+            return ShardedMultiKeyMap.this.size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return ShardedMultiKeyMap.this.isEmpty();
+        }
+
+        @Override
+        public void clear() {
+            ShardedMultiKeyMap.this.clear();
+        }
+
+        @Override
+        public boolean contains(final Object o) {
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+
+            final Object key = ((Entry<?, ?>) o).getKey();
+            return (key != null) && shardOf(key).entrySet().contains(o);
+        }
+
+        @Override
+        public boolean remove(final Object o) {
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+
+            final Object key = ((Entry<?, ?>) o).getKey();
+            return (key != null) && shardOf(key).entrySet().remove(o);
+        }
+
+        @Override
+        public Iterator<Entry<K, V>> iterator() {
+            return new EntrySetIterator();
+        }
+    }
+
+    final class EntrySetIterator implements Iterator<Entry<K, V>> {
+        private int shard;
+        private Iterator<Entry<K, V>> current;
+        private Iterator<Entry<K, V>> last;
+
+        EntrySetIterator() {
+            super();
+            this.current = shards[0].entrySet().iterator();
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext()) {
+                if (shard == shards.length - 1) {
+                    return false;
+                }
+
+                current = shards[++shard].entrySet().iterator();
+            }
+
+            return true;
+        }
+
+        @Override
+        public Entry<K, V> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            last = current;
+            return current.next();
+        }
+
+        @Override
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException();
+            }
+
+            last.remove();
+            last = null;
+        }
+    }
+}
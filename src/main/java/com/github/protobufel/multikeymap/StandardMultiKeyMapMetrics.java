@@ -0,0 +1,192 @@
+/*
+ *    Copyright 2017 David Tesler
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.protobufel.multikeymap;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The standard, thread-safe MultiKeyMapMetrics, which counts with LongAdders and keeps the
+ * partial key query latencies and the candidate set sizes in the logarithmic histograms of at most
+ * 12.5% relative error. One instance can be shared by several MultiKeyMaps to aggregate them.
+ *
+ * @author David Tesler
+ */
+public final class StandardMultiKeyMapMetrics implements MultiKeyMapMetrics {
+    private final LongAdder adds = new LongAdder();
+    private final LongAdder replaces = new LongAdder();
+    private final LongAdder removes = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder queries = new LongAdder();
+    private final LongAdder candidates = new LongAdder();
+    private final LongAdder results = new LongAdder();
+    private final LongAdder rejectedCandidates = new LongAdder();
+    private final LogHistogram queryLatencies = new LogHistogram();
+    private final LogHistogram candidateSizes = new LogHistogram();
+
+    @Override
+    public void recordPut(final boolean added) {
+        (added ? adds : replaces).increment();
+    }
+
+    @Override
+    public void recordRemove() {
+        removes.increment();
+    }
+
+    @Override
+    public void recordEviction(final EvictionCause cause) {
+        evictions.increment();
+    }
+
+    @Override
+    public void recordPartialQuery(final long latencyNanos, final int candidates, final int results) {
+        queries.increment();
+        this.candidates.add(candidates);
+        this.results.add(results);
+        queryLatencies.record(latencyNanos);
+        candidateSizes.record(candidates);
+    }
+
+    @Override
+    public void recordRejectedCandidate() {
+        rejectedCandidates.increment();
+    }
+
+    /**
+     * Gets the number of the puts which added a new entry.
+     *
+     * @return the number of the added entries
+     */
+    public long getAddCount() {
+        return adds.sum();
+    }
+
+    /**
+     * Gets the number of the puts which replaced the value of an existing entry.
+     *
+     * @return the number of the replaced values
+     */
+    public long getReplaceCount() {
+        return replaces.sum();
+    }
+
+    /**
+     * Gets the number of the removed entries.
+     *
+     * @return the number of the removed entries
+     */
+    public long getRemoveCount() {
+        return removes.sum();
+    }
+
+    /**
+     * Gets the number of the entries evicted by the MultiKeyMap on its own.
+     *
+     * @return the number of the evicted entries
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * Gets the number of the partial key query intersections.
+     *
+     * @return the number of the queries
+     */
+    public long getQueryCount() {
+        return queries.sum();
+    }
+
+    /**
+     * Gets the total number of the candidates of all queries.
+     *
+     * @return the total number of the candidates
+     */
+    public long getCandidateCount() {
+        return candidates.sum();
+    }
+
+    /**
+     * Gets the total number of the intersection results of all queries.
+     *
+     * @return the total number of the intersection results
+     */
+    public long getResultCount() {
+        return results.sum();
+    }
+
+    /**
+     * Gets the number of the intersection results rejected by the positional matching.
+     *
+     * @return the number of the rejected candidates
+     */
+    public long getRejectedCandidateCount() {
+        return rejectedCandidates.sum();
+    }
+
+    /**
+     * Gets the query latency at the percentile.
+     *
+     * @param percentile the percentile from 0 to 100
+     * @return the latency in nanoseconds, or zero if there are no queries
+     */
+    public long getQueryLatencyNanos(final double percentile) {
+        return queryLatencies.getValueAtPercentile(percentile);
+    }
+
+    /**
+     * Gets the number of the query candidates at the percentile.
+     *
+     * @param percentile the percentile from 0 to 100
+     * @return the number of the candidates, or zero if there are no queries
+     */
+    public long getCandidates(final double percentile) {
+        return candidateSizes.getValueAtPercentile(percentile);
+    }
+
+    /** Resets all counters and histograms. */
+    public void reset() {
+        adds.reset();
+        replaces.reset();
+        removes.reset();
+        evictions.reset();
+        queries.reset();
+        candidates.reset();
+        results.reset();
+        rejectedCandidates.reset();
+        queryLatencies.reset();
+        candidateSizes.reset();
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "StandardMultiKeyMapMetrics[adds=%s, replaces=%s, removes=%s, evictions=%s, "
+                        + "queries=%s, candidates=%s, results=%s, rejected=%s, p50=%sns, p99=%sns]",
+                getAddCount(),
+                getReplaceCount(),
+                getRemoveCount(),
+                getEvictionCount(),
+                getQueryCount(),
+                getCandidateCount(),
+                getResultCount(),
+                getRejectedCandidateCount(),
+                getQueryLatencyNanos(50),
+                getQueryLatencyNanos(99));
+    }
+}
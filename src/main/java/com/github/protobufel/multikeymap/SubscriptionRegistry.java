@@ -0,0 +1,187 @@
+/*
+ *    Copyright 2017 David Tesler
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.protobufel.multikeymap;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * Keeps the partial key subscriptions of a MultiKeyMap indexed by their anchor sub-keys, so that a
+ * change of an entry is only checked against the subscriptions anchored by one of its sub-keys.
+ * The anchor is the sub-key of the partial key with the fewest full keys at the time of the
+ * subscription, as every matching full key contains all of them anyway.
+ *
+ * <p>NOTE: This class is thread-safe.
+ *
+ * @param <T> the type of a sub-key
+ * @param <K> the type of a full key
+ * @param <V> the type of a value
+ * @author David Tesler
+ */
+final class SubscriptionRegistry<T, K extends Iterable<T>, V> {
+    private final ConcurrentMap<T, List<Registration>> byAnchor = new ConcurrentHashMap<>();
+    private final AtomicInteger count = new AtomicInteger();
+
+    /**
+     * Tells whether there are any subscriptions, so that the modifications can skip the
+     * notification altogether.
+     *
+     * @return true if there is at least one subscription, false, otherwise
+     */
+    boolean isActive() {
+        return count.get() > 0;
+    }
+
+    /**
+     * Registers the listener of the partial key.
+     *
+     * @param partialKey  the combination of the sub-keys to subscribe to
+     * @param positions   the sequence of positions corresponding to the sequence of partialKey's
+     *                    sub-keys, as in {@link MultiKeyMap#getFullKeysByPartialKey(Iterable,
+     *                    Iterable)}
+     * @param cardinality the current number of the full keys per sub-key
+     * @param listener    the listener to notify
+     * @return the subscription
+     */
+    PartialKeySubscription register(
+            final Iterable<? extends T> partialKey,
+            final Iterable<Integer> positions,
+            final ToIntFunction<T> cardinality,
+            final PartialKeyListener<? super K, ? super V> listener) {
+        final PartialKeyMatcher<T> matcher = new PartialKeyMatcher<>(partialKey, positions);
+        T anchor = null;
+        int minCardinality = Integer.MAX_VALUE;
+
+        for (final T subKey : partialKey) {
+            final int subKeyCardinality = cardinality.applyAsInt(Objects.requireNonNull(subKey));
+
+            if (anchor == null || subKeyCardinality < minCardinality) {
+                anchor = subKey;
+                minCardinality = subKeyCardinality;
+            }
+        }
+
+        final Registration registration = new Registration(anchor, matcher, listener);
+
+        if (anchor != null) {
+            byAnchor.compute(
+                    anchor,
+                    (subKey, registrations) -> {
+                        final List<Registration> result =
+                                (registrations == null) ? new CopyOnWriteArrayList<>() : registrations;
+                        result.add(registration);
+                        return result;
+                    });
+            count.incrementAndGet();
+        }
+
+        return registration;
+    }
+
+    void added(final K key, final V value) {
+        dispatch(key, listener -> listener.onAdded(key, value));
+    }
+
+    void removed(final K key, final V value) {
+        dispatch(key, listener -> listener.onRemoved(key, value));
+    }
+
+    void updated(final K key, final V oldValue, final V newValue) {
+        dispatch(key, listener -> listener.onUpdated(key, oldValue, newValue));
+    }
+
+    private void dispatch(
+            final K key, final Consumer<PartialKeyListener<? super K, ? super V>> action) {
+        if (!isActive()) {
+            return;
+        }
+
+        Set<T> visited = null;
+
+        for (final T subKey : key) {
+            final List<Registration> registrations = byAnchor.get(subKey);
+
+            if (registrations == null) {
+                continue;
+            }
+
+            if (visited == null) {
+                visited = new HashSet<>();
+            }
+
+            if (visited.add(subKey)) {
+                for (final Registration registration : registrations) {
+                    if (!registration.isClosed() && registration.matcher.matches(key)) {
+                        action.accept(registration.listener);
+                    }
+                }
+            }
+        }
+    }
+
+    final class Registration implements PartialKeySubscription {
+        private final T anchor;
+        private final PartialKeyMatcher<T> matcher;
+        private final PartialKeyListener<? super K, ? super V> listener;
+        private volatile boolean closed;
+
+        Registration(
+                final T anchor,
+                final PartialKeyMatcher<T> matcher,
+                final PartialKeyListener<? super K, ? super V> listener) {
+            super();
+            this.anchor = anchor;
+            this.matcher = matcher;
+            this.listener = listener;
+        }
+
+        @Override
+        public boolean isClosed() {
+            return closed;
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+
+            closed = true;
+
+            if (anchor != null) {
+                byAnchor.computeIfPresent(
+                        anchor,
+                        (subKey, registrations) -> {
+                            if (registrations.remove(this)) {
+                                count.decrementAndGet();
+                            }
+
+                            return registrations.isEmpty() ? null : registrations;
+                        });
+            }
+        }
+    }
+}
@@ -0,0 +1,317 @@
+/*
+ *    Copyright 2017 David Tesler
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ *    This file is derived from the TimerWheel of Caffeine,
+ *    https://github.com/ben-manes/caffeine, Copyright 2017 Ben Manes,
+ *    licensed under the Apache License, Version 2.0; see the NOTICE file.
+ *
+ */
+
+package com.github.protobufel.multikeymap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * The hierarchical timer wheel of the expiring MultiKeyMap's entries. Each level is a circular
+ * array of the buckets spanning the power-of-two number of nanoseconds, i.e. about 1 second, 1
+ * minute, 1 hour, 20 hours, and 13 days per bucket; an entry is put into the bucket of the coarsest
+ * level fitting its time to live, and cascades down to the finer levels as the time advances, so
+ * that scheduling an entry is O(1), and advancing the wheel only visits the expired buckets. The
+ * wheel's layout and the cascading are those of Caffeine's TimerWheel by Ben Manes.
+ *
+ * <p>The expiration times are kept in the concurrent map, so that checking whether an entry is
+ * expired doesn't take the lock; the buckets are guarded by the lock. Scheduling only updates the
+ * map, under the MultiKeyMap's lock of the key, and buffers the change of the buckets, in the
+ * order of the key's modifications, so that the writers never wait for each other; the buffer is
+ * applied by the next advance. The resolution of the proactive expiration is about a second,
+ * while {@link #isExpired(Object)} and {@link #tryAdvanceExactly()} are exact.
+ *
+ * @param <K> the type of a full key
+ * @author David Tesler
+ */
+final class TimerWheel<K> {
+    private static final int[] BUCKETS = {64, 64, 32, 4, 1};
+    private static final int[] SHIFTS = {30, 36, 42, 46, 50};
+    /** The maximum time to live, so that the time arithmetic never overflows. */
+    static final long MAXIMUM_DURATION = Long.MAX_VALUE >> 1;
+
+    private final LongSupplier ticker;
+    private final ReentrantLock lock;
+    private final ConcurrentMap<Object, Node<K>> nodes;
+    /** The changes of the buckets not yet applied, see {@link #advance(boolean)}. */
+    private final Queue<Runnable> buffer;
+    private final Node<K>[][] wheel;
+    private long nanos;
+
+    TimerWheel(final LongSupplier ticker) {
+        super();
+        this.ticker = ticker;
+        this.lock = new ReentrantLock();
+        this.nodes = new ConcurrentHashMap<>();
+        this.buffer = new ConcurrentLinkedQueue<>();
+        @SuppressWarnings("unchecked") final Node<K>[][] wheel =
+                (Node<K>[][]) new Node<?>[BUCKETS.length][];
+
+        for (int i = 0; i < wheel.length; i++) {
+            @SuppressWarnings("unchecked") final Node<K>[] buckets =
+                    (Node<K>[]) new Node<?>[BUCKETS[i]];
+
+            for (int j = 0; j < buckets.length; j++) {
+                buckets[j] = new Node<>(null, 0);
+                buckets[j].prev = buckets[j];
+                buckets[j].next = buckets[j];
+            }
+
+            wheel[i] = buckets;
+        }
+
+        this.wheel = wheel;
+        this.nanos = ticker.getAsLong();
+    }
+
+    long now() {
+        return ticker.getAsLong();
+    }
+
+    /**
+     * Schedules the expiration of the key, replacing its previous one, if any.
+     *
+     * @param key           the full key
+     * @param durationNanos the time to live in nanoseconds, or {@link Long#MAX_VALUE} for never
+     */
+    void schedule(final K key, final long durationNanos) {
+        if (durationNanos == Long.MAX_VALUE) {
+            deschedule(key);
+            return;
+        }
+
+        final long duration = Math.min(Math.max(durationNanos, 0), MAXIMUM_DURATION);
+        final Node<K> node = new Node<>(key, now() + duration);
+        final Node<K> old = nodes.put(key, node);
+        buffer.add(
+                () -> {
+                    if (old != null) {
+                        unlink(old);
+                    }
+
+                    link(node);
+                });
+    }
+
+    /**
+     * Cancels the expiration of the key, if any.
+     *
+     * @param key the full key
+     */
+    void deschedule(final Object key) {
+        final Node<K> node = nodes.remove(key);
+
+        if (node != null) {
+            buffer.add(() -> unlink(node));
+        }
+    }
+
+    /**
+     * Checks whether the key is expired, without the lock.
+     *
+     * @param key the full key
+     * @return true if the key is scheduled and its time has come
+     */
+    boolean isExpired(final Object key) {
+        final Node<K> node = nodes.get(key);
+        return (node != null) && (node.time - now() <= 0);
+    }
+
+    /** Cancels all the expirations. */
+    void clear() {
+        lock.lock();
+
+        try {
+            buffer.clear();
+            nodes.clear();
+
+            for (final Node<K>[] buckets : wheel) {
+                for (final Node<K> sentinel : buckets) {
+                    sentinel.prev = sentinel;
+                    sentinel.next = sentinel;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Advances the wheel to the current time, after applying the buffered schedules, cascading the
+     * entries of the passed coarse buckets to the finer ones, and collecting the expired ones. The expired keys stay scheduled, so that
+     * {@link #isExpired(Object)} is true until they are removed by {@link #deschedule(Object)} or
+     * re-scheduled.
+     *
+     * @param wait whether to wait for the lock, or give up if it is busy
+     * @return the expired keys, possibly empty
+     */
+    List<K> advance(final boolean wait) {
+        return advance(wait, false);
+    }
+
+    /**
+     * Advances the wheel as {@link #advance(boolean)} does, giving up if the lock is busy, and also
+     * collects the expired keys of the current finest bucket, so that none of the keys expired by
+     * now is left behind. Meant for the reads, which never wait for the lock.
+     *
+     * @return the expired keys, possibly empty, or none if the lock is busy
+     */
+    List<K> tryAdvanceExactly() {
+        return advance(false, true);
+    }
+
+    private List<K> advance(final boolean wait, final boolean exact) {
+        if (wait) {
+            lock.lock();
+        } else if (!lock.tryLock()) {
+            return Collections.emptyList();
+        }
+
+        try {
+            for (Runnable change; (change = buffer.poll()) != null; ) {
+                change.run();
+            }
+
+            final long previous = nanos;
+            nanos = now();
+            final List<K> expired = new ArrayList<>();
+
+            for (int i = 0; i < SHIFTS.length; i++) {
+                final long previousTicks = previous >>> SHIFTS[i];
+                final long delta = (nanos >>> SHIFTS[i]) - previousTicks;
+
+                if (delta <= 0L) {
+                    break;
+                }
+
+                expire(i, previousTicks, delta, expired);
+            }
+
+            if (exact) {
+                // the entries due within the current tick are all in its bucket by now
+                collect(wheel[0][(int) ((nanos >>> SHIFTS[0]) & (wheel[0].length - 1))], expired);
+            }
+
+            return expired;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void expire(
+            final int level, final long previousTicks, final long delta, final List<K> expired) {
+        final Node<K>[] buckets = wheel[level];
+        final int mask = buckets.length - 1;
+        final int steps = (int) Math.min(delta + 1, buckets.length);
+        final int start = (int) (previousTicks & mask);
+
+        for (int i = start; i < start + steps; i++) {
+            final Node<K> sentinel = buckets[i & mask];
+            Node<K> node = sentinel.next;
+            sentinel.prev = sentinel;
+            sentinel.next = sentinel;
+
+            while (node != sentinel) {
+                final Node<K> next = node.next;
+                node.prev = null;
+                node.next = null;
+
+                if (node.time - nanos <= 0) {
+                    expired.add(node.key);
+                } else {
+                    link(node);
+                }
+
+                node = next;
+            }
+        }
+    }
+
+    private void collect(final Node<K> sentinel, final List<K> expired) {
+        Node<K> node = sentinel.next;
+
+        while (node != sentinel) {
+            final Node<K> next = node.next;
+
+            if (node.time - nanos <= 0) {
+                unlink(node);
+                expired.add(node.key);
+            }
+
+            node = next;
+        }
+    }
+
+    private void link(final Node<K> node) {
+        final Node<K> sentinel = findBucket(node.time);
+        node.prev = sentinel.prev;
+        node.next = sentinel;
+        sentinel.prev.next = node;
+        sentinel.prev = node;
+    }
+
+    private void unlink(final Node<K> node) {
+        if (node.next != null) {
+            node.prev.next = node.next;
+            node.next.prev = node.prev;
+            node.prev = null;
+            node.next = null;
+        }
+    }
+
+    private Node<K> findBucket(final long time) {
+        final long duration = time - nanos;
+        final int last = wheel.length - 1;
+
+        if (duration <= 0) {
+            // already due, as the buffered schedule may be applied late, so the current bucket
+            return wheel[0][(int) ((nanos >>> SHIFTS[0]) & (wheel[0].length - 1))];
+        }
+
+        for (int i = 0; i < last; i++) {
+            if (duration < (1L << SHIFTS[i + 1])) {
+                return wheel[i][(int) ((time >>> SHIFTS[i]) & (wheel[i].length - 1))];
+            }
+        }
+
+        return wheel[last][0];
+    }
+
+    static final class Node<E> {
+        private final E key;
+        private final long time;
+        private Node<E> prev;
+        private Node<E> next;
+
+        Node(final E key, final long time) {
+            super();
+            this.key = key;
+            this.time = time;
+        }
+    }
+}
@@ -0,0 +1,430 @@
+/*
+ *    Copyright 2017 David Tesler
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.protobufel.multikeymap;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A dictionary of strings packed as UTF-8 bytes into a single arena, each identified by its int
+ * id. The lookup table is open-addressing over the ids. The lookups encode the provided
+ * CharSequence into the reusable scratch buffer, so neither String nor byte array is allocated per
+ * lookup.
+ *
+ * <p>The strings are reference counted: {@link #intern(CharSequence)} acquires a reference, and
+ * {@link #release(int)} drops it, freeing the string along with its id once unreferenced. The
+ * freed ids are reused, and the arena is compacted when it runs out of room, so the dictionary is
+ * bounded by its live strings rather than by all strings ever seen.
+ *
+ * <p>NOTE: This class is not thread-safe.
+ *
+ * @author David Tesler
+ */
+final class Utf8Dictionary implements Serializable {
+    private static final long serialVersionUID = 6393458720719733542L;
+    private static final int MIN_CAPACITY = 16;
+
+    /**
+     * The UTF-8 bytes of the strings, possibly with the gaps left by the freed ones
+     *
+     * @serial
+     */
+    private byte[] arena;
+    /**
+     * The number of the arena bytes used, including the gaps
+     *
+     * @serial
+     */
+    private int arenaEnd;
+    /**
+     * The number of the arena bytes of the live strings
+     *
+     * @serial
+     */
+    private int liveBytes;
+    /**
+     * The offsets of the strings within the arena by their ids
+     *
+     * @serial
+     */
+    private int[] offsets;
+    /**
+     * The byte lengths of the strings by their ids
+     *
+     * @serial
+     */
+    private int[] lengths;
+    /**
+     * The hashes of the strings by their ids
+     *
+     * @serial
+     */
+    private int[] hashes;
+    /**
+     * The reference counts of the strings by their ids, zero for the free ids
+     *
+     * @serial
+     */
+    private int[] refCounts;
+    /**
+     * The open-addressing table of the ids plus one
+     *
+     * @serial
+     */
+    private int[] table;
+    /**
+     * The freed ids to reuse, as a stack
+     *
+     * @serial
+     */
+    private int[] freeIds;
+    /**
+     * The number of the freed ids
+     *
+     * @serial
+     */
+    private int freeCount;
+    /**
+     * The number of the ids ever allocated, free or not
+     *
+     * @serial
+     */
+    private int highId;
+    /**
+     * The number of the live strings
+     *
+     * @serial
+     */
+    private int size;
+
+    private transient byte[] scratch;
+
+    Utf8Dictionary() {
+        clear();
+    }
+
+    void clear() {
+        arena = new byte[MIN_CAPACITY << 3];
+        arenaEnd = 0;
+        liveBytes = 0;
+        offsets = new int[MIN_CAPACITY];
+        lengths = new int[MIN_CAPACITY];
+        hashes = new int[MIN_CAPACITY];
+        refCounts = new int[MIN_CAPACITY];
+        table = new int[MIN_CAPACITY << 1];
+        freeIds = new int[MIN_CAPACITY];
+        freeCount = 0;
+        highId = 0;
+        size = 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Gets the number of the arena bytes in use, including the gaps left by the freed strings.
+     */
+    int arenaSize() {
+        return arenaEnd;
+    }
+
+    /**
+     * Gets the number of the ids allocated so far, free or not.
+     */
+    int idCapacity() {
+        return highId;
+    }
+
+    /**
+     * Finds the id of the string.
+     *
+     * @param value the string to search for
+     * @return the id of the string, or -1 if not found
+     */
+    int find(final CharSequence value) {
+        final int length = encode(Objects.requireNonNull(value));
+        final int i = indexOf(length, hash(scratch, length));
+        return (i < 0) ? -1 : table[i] - 1;
+    }
+
+    /**
+     * Gets the id of the string, adding the latter if not found, and acquires a reference to it,
+     * to be dropped by {@link #release(int)}.
+     *
+     * @param value the string to search for
+     * @return the id of the string
+     */
+    int intern(final CharSequence value) {
+        final int length = encode(Objects.requireNonNull(value));
+        final int hash = hash(scratch, length);
+        final int i = indexOf(length, hash);
+
+        if (i >= 0) {
+            final int id = table[i] - 1;
+            refCounts[id]++;
+            return id;
+        }
+
+        reserve(length);
+        final int id = newId();
+        System.arraycopy(scratch, 0, arena, arenaEnd, length);
+        offsets[id] = arenaEnd;
+        lengths[id] = length;
+        hashes[id] = hash;
+        refCounts[id] = 1;
+        table[~i] = id + 1;
+        arenaEnd += length;
+        liveBytes += length;
+
+        if (++size << 1 > table.length) {
+            rehash(table.length << 1);
+        }
+
+        return id;
+    }
+
+    /**
+     * Drops the reference acquired by {@link #intern(CharSequence)}, and frees the string along
+     * with its id, if no longer referenced.
+     *
+     * @param id the id of the string
+     */
+    void release(final int id) {
+        checkId(id);
+
+        if (--refCounts[id] > 0) {
+            return;
+        }
+
+        final int mask = table.length - 1;
+        int i = hashes[id] & mask;
+
+        while (table[i] != id + 1) {
+            i = (i + 1) & mask;
+        }
+
+        shiftBack(i);
+        liveBytes -= lengths[id];
+        lengths[id] = 0;
+
+        if (freeCount == freeIds.length) {
+            freeIds = Arrays.copyOf(freeIds, freeIds.length << 1);
+        }
+
+        freeIds[freeCount++] = id;
+        size--;
+    }
+
+    /**
+     * Decodes the string by its id.
+     *
+     * @param id the id of the string
+     * @return the decoded string
+     */
+    String get(final int id) {
+        checkId(id);
+        return new String(arena, offsets[id], lengths[id], StandardCharsets.UTF_8);
+    }
+
+    private void checkId(final int id) {
+        if (id < 0 || id >= highId || refCounts[id] == 0) {
+            throw new IndexOutOfBoundsException(String.valueOf(id));
+        }
+    }
+
+    private int newId() {
+        if (freeCount > 0) {
+            return freeIds[--freeCount];
+        }
+
+        if (highId == offsets.length) {
+            final int newLength = offsets.length << 1;
+            offsets = Arrays.copyOf(offsets, newLength);
+            lengths = Arrays.copyOf(lengths, newLength);
+            hashes = Arrays.copyOf(hashes, newLength);
+            refCounts = Arrays.copyOf(refCounts, newLength);
+        }
+
+        return highId++;
+    }
+
+    /**
+     * Makes room for the string of the length at the end of the arena, compacting the live strings
+     * into the same or the doubled arena.
+     */
+    private void reserve(final int length) {
+        if (arenaEnd + length <= arena.length) {
+            return;
+        }
+
+        final int required = liveBytes + length;
+        final int capacity =
+                (required << 1 <= arena.length)
+                        ? arena.length
+                        : Math.max(arena.length << 1, required);
+
+        if (liveBytes == arenaEnd) {
+            arena = Arrays.copyOf(arena, capacity);
+            return;
+        }
+
+        final byte[] compacted = new byte[capacity];
+        int end = 0;
+
+        for (int id = 0; id < highId; id++) {
+            if (refCounts[id] > 0) {
+                System.arraycopy(arena, offsets[id], compacted, end, lengths[id]);
+                offsets[id] = end;
+                end += lengths[id];
+            }
+        }
+
+        arena = compacted;
+        arenaEnd = end;
+    }
+
+    private void shiftBack(int i) {
+        final int mask = table.length - 1;
+
+        for (int j = (i + 1) & mask, stored; (stored = table[j]) != 0; j = (j + 1) & mask) {
+            final int ideal = hashes[stored - 1] & mask;
+
+            if ((j > i) ? (ideal <= i || ideal > j) : (ideal <= i && ideal > j)) {
+                table[i] = stored;
+                i = j;
+            }
+        }
+
+        table[i] = 0;
+    }
+
+    private int indexOf(final int length, final int hash) {
+        final int mask = table.length - 1;
+
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            final int stored = table[i];
+
+            if (stored == 0) {
+                return ~i;
+            }
+
+            final int id = stored - 1;
+
+            if (hashes[id] == hash && equalsScratch(id, length)) {
+                return i;
+            }
+        }
+    }
+
+    private boolean equalsScratch(final int id, final int length) {
+        final int offset = offsets[id];
+
+        if (lengths[id] != length) {
+            return false;
+        }
+
+        for (int i = 0; i < length; i++) {
+            if (arena[offset + i] != scratch[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static int hash(final byte[] bytes, final int length) {
+        int h = 0x811C9DC5;
+
+        for (int i = 0; i < length; i++) {
+            h = (h ^ bytes[i]) * 0x01000193;
+        }
+
+        return IntHashSet.mix(h);
+    }
+
+    /**
+     * Encodes the value into the scratch buffer the same way as {@code String.getBytes(UTF_8)}
+     * does, i.e. with the malformed surrogates replaced with '?'.
+     *
+     * @return the number of the encoded bytes
+     */
+    private int encode(final CharSequence value) {
+        final int charCount = value.length();
+
+        if (scratch == null || scratch.length < charCount * 3) {
+            scratch = new byte[Math.max(64, charCount * 3)];
+        }
+
+        final byte[] bytes = scratch;
+        int j = 0;
+
+        for (int i = 0; i < charCount; i++) {
+            final char c = value.charAt(i);
+
+            if (c < 0x80) {
+                bytes[j++] = (byte) c;
+            } else if (c < 0x800) {
+                bytes[j++] = (byte) (0xC0 | (c >> 6));
+                bytes[j++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                final char low;
+
+                if (Character.isHighSurrogate(c)
+                        && i + 1 < charCount
+                        && Character.isLowSurrogate(low = value.charAt(i + 1))) {
+                    final int codePoint = Character.toCodePoint(c, low);
+                    i++;
+                    bytes[j++] = (byte) (0xF0 | (codePoint >> 18));
+                    bytes[j++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                    bytes[j++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                    bytes[j++] = (byte) (0x80 | (codePoint & 0x3F));
+                } else {
+                    bytes[j++] = (byte) '?';
+                }
+            } else {
+                bytes[j++] = (byte) (0xE0 | (c >> 12));
+                bytes[j++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                bytes[j++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+
+        return j;
+    }
+
+    private void rehash(final int newCapacity) {
+        final int mask = newCapacity - 1;
+        table = new int[newCapacity];
+
+        for (int id = 0; id < highId; id++) {
+            if (refCounts[id] == 0) {
+                continue;
+            }
+
+            int i = hashes[id] & mask;
+
+            while (table[i] != 0) {
+                i = (i + 1) & mask;
+            }
+
+            table[i] = id + 1;
+        }
+    }
+}
@@ -0,0 +1,409 @@
+/*
+ *    Copyright 2017 David Tesler
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.protobufel.multikeymap;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToLongBiFunction;
+
+/**
+ * The W-TinyLFU eviction policy of the bounded MultiKeyMap. The new entries enter the small LRU
+ * window of 1% of the maximum; the entries leaving the window compete with the LRU victim of the
+ * main segmented LRU for the admission, by their estimated frequencies, see {@link
+ * FrequencySketch}; the main space is split into the probation and the protected, 80% of it,
+ * segments, wherein the probation entries get promoted to the protected on access. So the
+ * recently, yet once used entries never flush the frequently used ones out, as they do in the
+ * plain LRU.
+ *
+ * <p>The policy only tracks the keys, and tells the MultiKeyMap which ones to evict, along with
+ * the stamps of their last writes, so that the entries written since, even with the same value,
+ * are not evicted, see {@link #isLastWrite(Object, long)}. All the operations are O(1) amortized. The MultiKeyMap records the writes and the removals under the lock
+ * of the entry's key, if concurrent, so that they are buffered in the order of the key's
+ * modifications, and then drains the buffer, see {@link #drain()}, outside the key's lock; the
+ * buffer is applied under the policy's lock, which the writers only try, so that they never wait
+ * for each other, and the policy tracks the keys present as of the last drain. The reads merely
+ * try the lock as well, and skip recording the access if it is busy. So the MultiKeyMap may exceed
+ * the maximum for a while, until the busy drain is done. The policy itself never locks the
+ * MultiKeyMap.
+ *
+ * @param <K> the type of a full key
+ * @param <V> the type of a value
+ * @author David Tesler
+ */
+final class WindowTinyLfuPolicy<K, V> {
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+
+    private final long maximum;
+    private final long windowMaximum;
+    private final long protectedMaximum;
+    private final ToLongBiFunction<? super K, ? super V> weigher;
+    private final ReentrantLock lock;
+    /** The writes and the removals not yet applied, see {@link #drain()}. */
+    private final Queue<Runnable> buffer;
+    /**
+     * The stamps of the keys' last writes, updated at once under the MultiKeyMap's lock of the
+     * key, unlike the buffered nodes.
+     */
+    private final ConcurrentMap<Object, Long> stamps;
+    private final AtomicLong lastStamp;
+    private final FrequencySketch sketch;
+    private final Map<K, Node<K>> nodes;
+    /** The sentinels of the circular, doubly linked queues, from the LRU head to the MRU tail. */
+    private final Node<K>[] queues;
+    private final long[] weights;
+
+    /**
+     * Creates the policy.
+     *
+     * @param maximum the maximum total weight of the entries
+     * @param weigher the weigher of the entries, or null for the weight of 1 per entry
+     */
+    WindowTinyLfuPolicy(final long maximum, final ToLongBiFunction<? super K, ? super V> weigher) {
+        super();
+
+        if (maximum < 0) {
+            throw new IllegalArgumentException(String.format("negative maximum %s", maximum));
+        }
+
+        this.maximum = maximum;
+        this.windowMaximum = Math.max(1, maximum / 100);
+        this.protectedMaximum = (maximum - windowMaximum) * 4 / 5;
+        this.weigher = weigher;
+        this.lock = new ReentrantLock();
+        this.buffer = new ConcurrentLinkedQueue<>();
+        this.stamps = new ConcurrentHashMap<>();
+        this.lastStamp = new AtomicLong();
+        this.sketch = new FrequencySketch();
+        this.nodes = new HashMap<>();
+        this.queues = newQueues();
+        this.weights = new long[3];
+
+        sketch.ensureCapacity((weigher == null) ? maximum : 0);
+    }
+
+    long getMaximum() {
+        return maximum;
+    }
+
+    boolean isWeighted() {
+        return weigher != null;
+    }
+
+    /**
+     * Records the read of the key, present or not, if the policy isn't busy.
+     *
+     * @param key the full key read
+     */
+    void recordRead(final Object key) {
+        if (!lock.tryLock()) {
+            return;
+        }
+
+        try {
+            sketch.increment(key);
+            final Node<K> node = nodes.get(key);
+
+            if (node != null) {
+                onHit(node);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Weighs the entry, before it is written.
+     *
+     * @param key   the full key of the entry
+     * @param value the new value of the entry
+     * @return the weight of the entry, 1 if not weighted
+     * @throws IllegalArgumentException if the weight is negative
+     */
+    long weigh(final K key, final V value) {
+        final long weight = (weigher == null) ? 1 : weigher.applyAsLong(key, value);
+
+        if (weight < 0) {
+            throw new IllegalArgumentException(String.format("negative weight %s", weight));
+        }
+
+        return weight;
+    }
+
+    /**
+     * Buffers the addition or the replacement of the entry, see {@link #drain()}.
+     *
+     * @param key    the full key of the entry
+     * @param value  the new value of the entry
+     * @param weight the weight of the entry, see {@link #weigh(Object, Object)}
+     */
+    void recordWrite(final K key, final V value, final long weight) {
+        final long stamp = lastStamp.incrementAndGet();
+        stamps.put(key, stamp);
+        buffer.add(() -> onWrite(key, stamp, weight));
+    }
+
+    /**
+     * Buffers the re-weighing of the entry whose value has been replaced in bulk, which doesn't
+     * count as an access, nor as a write, see {@link #drain()}. Nothing to do if not weighted.
+     *
+     * @param key   the full key of the entry
+     * @param value the new value of the entry
+     */
+    void recordUpdate(final K key, final V value) {
+        if (weigher != null) {
+            final long weight = weigh(key, value);
+            buffer.add(() -> onUpdate(key, weight));
+        }
+    }
+
+    /**
+     * Buffers the removal of the key by the MultiKeyMap, see {@link #drain()}.
+     *
+     * @param key the full key removed
+     */
+    void recordRemove(final Object key) {
+        stamps.remove(key);
+        buffer.add(() -> onRemove(key));
+    }
+
+    /**
+     * Checks whether the key has not been written since the write of the stamp, e.g. since its
+     * selection for the eviction, called under the MultiKeyMap's lock of the key.
+     *
+     * @param key   the full key
+     * @param stamp the stamp of the write, as returned by {@link #drain()}
+     * @return true if the stamp is the one of the key's last write
+     */
+    boolean isLastWrite(final Object key, final long stamp) {
+        final Long last = stamps.get(key);
+        return (last != null) && (last == stamp);
+    }
+
+    /**
+     * Applies the buffered writes and removals, and selects the entries to evict in order to get
+     * back within the bounds, unless another thread is doing so, which then applies the ones
+     * buffered meanwhile as well.
+     *
+     * @return the keys to evict, with the stamps of their last writes as of their selection, empty
+     *     if none or if the policy is busy
+     */
+    List<Entry<K, Long>> drain() {
+        List<Entry<K, Long>> evicted = Collections.emptyList();
+
+        // re-checked after the unlock, lest the writes buffered just before it wait for the next one
+        while (!buffer.isEmpty() && lock.tryLock()) {
+            try {
+                for (Runnable event; (event = buffer.poll()) != null; ) {
+                    event.run();
+                }
+
+                final List<Entry<K, Long>> victims = evict();
+
+                if (evicted.isEmpty()) {
+                    evicted = victims;
+                } else {
+                    evicted.addAll(victims);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        return evicted;
+    }
+
+    /** Forgets all the keys, yet keeps their frequencies. */
+    void clear() {
+        lock.lock();
+
+        try {
+            buffer.clear();
+            stamps.clear();
+            nodes.clear();
+
+            for (int i = 0; i < 3; i++) {
+                queues[i].prev = queues[i];
+                queues[i].next = queues[i];
+                weights[i] = 0;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void onWrite(final K key, final long stamp, final long weight) {
+        sketch.increment(key);
+        final Node<K> node = nodes.get(key);
+
+        if (node == null) {
+            final Node<K> added = new Node<>(key, stamp, weight);
+            nodes.put(key, added);
+            link(added, WINDOW);
+
+            if (weigher != null) {
+                sketch.ensureCapacity(nodes.size());
+            }
+        } else {
+            weights[node.queue] += weight - node.weight;
+            node.weight = weight;
+            node.stamp = stamp;
+            onHit(node);
+        }
+    }
+
+    private void onUpdate(final K key, final long weight) {
+        final Node<K> node = nodes.get(key);
+
+        if (node != null) {
+            weights[node.queue] += weight - node.weight;
+            node.weight = weight;
+        }
+    }
+
+    private void onRemove(final Object key) {
+        final Node<K> node = nodes.remove(key);
+
+        if (node != null) {
+            unlink(node);
+        }
+    }
+
+    private void onHit(final Node<K> node) {
+        if (node.queue == PROBATION) {
+            move(node, PROTECTED);
+
+            while (weights[PROTECTED] > protectedMaximum && head(PROTECTED) != tail(PROTECTED)) {
+                move(head(PROTECTED), PROBATION);
+            }
+        } else {
+            move(node, node.queue);
+        }
+    }
+
+    private List<Entry<K, Long>> evict() {
+        while (weights[WINDOW] > windowMaximum && head(WINDOW) != tail(WINDOW)) {
+            move(head(WINDOW), PROBATION);
+        }
+
+        List<Entry<K, Long>> evicted = Collections.emptyList();
+
+        while (weights[WINDOW] + weights[PROBATION] + weights[PROTECTED] > maximum) {
+            final Node<K> victim =
+                    (head(PROBATION) != null)
+                            ? head(PROBATION)
+                            : ((head(PROTECTED) != null) ? head(PROTECTED) : head(WINDOW));
+            final Node<K> candidate = (victim.queue == PROBATION) ? tail(PROBATION) : victim;
+
+            // the TinyLFU admission: the candidate, the latest newcomer to the main space, only
+            // displaces the LRU victim if it has been used more often, so that the one-hit wonders
+            // don't flush the frequently used entries out
+            final Node<K> evictee =
+                    (sketch.frequency(candidate.key) > sketch.frequency(victim.key))
+                            ? victim
+                            : candidate;
+
+            if (evicted.isEmpty()) {
+                evicted = new ArrayList<>(2);
+            }
+
+            nodes.remove(evictee.key);
+            unlink(evictee);
+            evicted.add(new SimpleImmutableEntry<>(evictee.key, evictee.stamp));
+        }
+
+        return evicted;
+    }
+
+    private Node<K>[] newQueues() {
+        @SuppressWarnings("unchecked") final Node<K>[] sentinels = (Node<K>[]) new Node<?>[3];
+
+        for (int i = 0; i < 3; i++) {
+            sentinels[i] = new Node<>(null, 0, 0);
+            sentinels[i].prev = sentinels[i];
+            sentinels[i].next = sentinels[i];
+        }
+
+        return sentinels;
+    }
+
+    private void move(final Node<K> node, final int queue) {
+        unlink(node);
+        link(node, queue);
+    }
+
+    private void link(final Node<K> node, final int queue) {
+        final Node<K> sentinel = queues[queue];
+        node.queue = queue;
+        node.prev = sentinel.prev;
+        node.next = sentinel;
+        sentinel.prev.next = node;
+        sentinel.prev = node;
+        weights[queue] += node.weight;
+    }
+
+    private void unlink(final Node<K> node) {
+        node.prev.next = node.next;
+        node.next.prev = node.prev;
+        node.prev = null;
+        node.next = null;
+        weights[node.queue] -= node.weight;
+    }
+
+    /** Gets the least recently used node of the queue, or null if empty. */
+    private Node<K> head(final int queue) {
+        final Node<K> sentinel = queues[queue];
+        return (sentinel.next == sentinel) ? null : sentinel.next;
+    }
+
+    /** Gets the most recently used node of the queue, or null if empty. */
+    private Node<K> tail(final int queue) {
+        final Node<K> sentinel = queues[queue];
+        return (sentinel.prev == sentinel) ? null : sentinel.prev;
+    }
+
+    static final class Node<E> {
+        private final E key;
+        /** The stamp of the last write, only to tell whether the evicted entry has been written. */
+        private long stamp;
+        private long weight;
+        private int queue;
+        private Node<E> prev;
+        private Node<E> next;
+
+        Node(final E key, final long stamp, final long weight) {
+            super();
+            this.key = key;
+            this.stamp = stamp;
+            this.weight = weight;
+            this.queue = WINDOW;
+        }
+    }
+}
@@ -25,7 +25,13 @@
  * com.github.protobufel.multikeymap.MultiKeyMaps#newMultiKeyMap()} to get an instance of the
  * default implementation. In addition, one can create a new {@link
  * com.github.protobufel.multikeymap.MultiKeyMap} based on the data copied from the provided map
- * using {@link com.github.protobufel.multikeymap.MultiKeyMaps#of(java.util.Map)} method.
+ * using {@link com.github.protobufel.multikeymap.MultiKeyMaps#of(java.util.Map)} method. The
+ * {@link com.github.protobufel.multikeymap.IntMultiKeyMap} and {@link
+ * com.github.protobufel.multikeymap.LongMultiKeyMap} are the primitive specializations for the keys
+ * made of ints or longs, which box neither their sub-keys nor their full keys, and the {@link
+ * com.github.protobufel.multikeymap.StringMultiKeyMap} keeps its String sub-keys in the compact
+ * UTF-8 dictionary. The {@link com.github.protobufel.multikeymap.ExecutionPolicy} tells a
+ * MultiKeyMap whether and in which ForkJoinPool to run its large intersections in parallel.
  *
  * <p>For example, one can add any value with the complex key {"Hello", "the", "wonderful",
  * "World!"}, and then query by any sequence of subkeys like {"wonderful", "Hello"}. In addition,
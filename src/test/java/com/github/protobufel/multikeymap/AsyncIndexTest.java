@@ -0,0 +1,319 @@
+/*
+ *    Copyright 2017 David Tesler
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.protobufel.multikeymap;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.assertj.core.api.JUnitSoftAssertions;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static com.github.protobufel.multikeymap.MultiKeyMapGenerators.newClassifiedKey;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@RunWith(JUnit4.class)
+public class AsyncIndexTest {
+    @Rule
+    public final JUnitSoftAssertions softly = new JUnitSoftAssertions();
+
+    private static <T, K extends Iterable<T>, V> MultiKeyMapBuilder<T, K, V> asyncBuilder(
+            final Executor executor) {
+        return MultiKeyMaps.<T, K, V>builder()
+                .mapSupplier(ConcurrentHashMap::new)
+                .concurrent(true)
+                .asyncIndex(executor);
+    }
+
+    private static Set<List<String>> scan(
+            final MultiKeyMap<String, List<String>, Integer> multiKeyMap, final String... subKeys) {
+        return multiKeyMap
+                .keySet()
+                .stream()
+                .filter(key -> key.containsAll(ImmutableList.copyOf(subKeys)))
+                .collect(Collectors.toSet());
+    }
+
+    /** The executor running the tasks only when asked to. */
+    private static final class ManualExecutor implements Executor {
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+        @Override
+        public void execute(final Runnable command) {
+            tasks.add(command);
+        }
+
+        void runAll() {
+            for (Runnable task; (task = tasks.poll()) != null; ) {
+                task.run();
+            }
+        }
+    }
+
+    @Test
+    public void testQueriesSeePendingChanges() {
+        final ManualExecutor executor = new ManualExecutor();
+        final MultiKeyMap<String, List<String>, Integer> multiKeyMap =
+                AsyncIndexTest.<String, List<String>, Integer>asyncBuilder(executor).build();
+
+        for (int i = 0; i < 100; i++) {
+            multiKeyMap.put(newClassifiedKey(i), i);
+        }
+
+        softly.assertThat(multiKeyMap.indexStats().getPostingCount()).isZero();
+        softly
+                .assertThat(multiKeyMap.getFullKeysByPartialKey(ImmutableSet.of("c1", "odd")))
+                .containsOnlyElementsOf(scan(multiKeyMap, "c1", "odd"))
+                .hasSize(10);
+
+        executor.runAll();
+
+        softly.assertThat(multiKeyMap.indexStats().getPostingCount()).isEqualTo(300);
+
+        for (int i = 0; i < 100; i += 2) {
+            multiKeyMap.remove(newClassifiedKey(i));
+        }
+
+        multiKeyMap.put(newClassifiedKey(1000), 1000);
+
+        softly.assertThat(multiKeyMap.indexStats().getPostingCount()).isEqualTo(300);
+        softly
+                .assertThat(multiKeyMap.getFullKeysByPartialKey(ImmutableSet.of("c0", "even")))
+                .containsOnly(newClassifiedKey(1000));
+        softly
+                .assertThat(
+                        multiKeyMap.getFullKeysByPartialKey(
+                                ImmutableList.of("odd", "c3"), ImmutableList.of(2, 1)))
+                .containsOnlyElementsOf(scan(multiKeyMap, "c3", "odd"))
+                .hasSize(10);
+        softly
+                .assertThat(multiKeyMap.getValuesByPartialKey(ImmutableSet.of("id1000")))
+                .containsExactly(1000);
+        softly.assertThat(multiKeyMap.getValuesByPartialKey(ImmutableSet.of("id2"))).isEmpty();
+
+        executor.runAll();
+
+        softly.assertThat(multiKeyMap.indexStats().getPostingCount()).isEqualTo(153);
+        softly.assertThat(multiKeyMap.getFullKeysByPartialKey(ImmutableSet.of("even")))
+                .containsOnly(newClassifiedKey(1000));
+    }
+
+    @Test
+    public void testPutFollowedByRemoveCancelsOut() {
+        final ManualExecutor executor = new ManualExecutor();
+        final MultiKeyMap<String, List<String>, Integer> multiKeyMap =
+                AsyncIndexTest.<String, List<String>, Integer>asyncBuilder(executor).build();
+        multiKeyMap.put(newClassifiedKey(1), 1);
+        executor.runAll();
+
+        for (int i = 2; i < 50; i++) {
+            multiKeyMap.put(newClassifiedKey(i), i);
+            multiKeyMap.remove(newClassifiedKey(i));
+        }
+
+        multiKeyMap.remove(newClassifiedKey(1));
+        multiKeyMap.put(newClassifiedKey(1), 11);
+
+        softly.assertThat(multiKeyMap.getValuesByPartialKey(ImmutableSet.of("odd"))).containsOnly(11);
+
+        executor.runAll();
+
+        softly.assertThat(multiKeyMap.indexStats().getSubKeyCount()).isEqualTo(3);
+        softly.assertThat(multiKeyMap.indexStats().getPostingCount()).isEqualTo(3);
+
+        multiKeyMap.put(newClassifiedKey(3), 3);
+        multiKeyMap.clear();
+        executor.runAll();
+
+        softly.assertThat(multiKeyMap.indexStats().getPostingCount()).isZero();
+        softly.assertThat(multiKeyMap.getFullKeysByPartialKey(ImmutableSet.of("odd"))).isEmpty();
+    }
+
+    @Test
+    public void testCleanUpAndRejectedTasksApplyOnCaller() {
+        final ManualExecutor executor = new ManualExecutor();
+        final MultiKeyMap<String, List<String>, Integer> multiKeyMap =
+                AsyncIndexTest.<String, List<String>, Integer>asyncBuilder(executor).build();
+
+        for (int i = 0; i < 10; i++) {
+            multiKeyMap.put(newClassifiedKey(i), i);
+        }
+
+        multiKeyMap.cleanUp();
+
+        softly.assertThat(multiKeyMap.indexStats().getPostingCount()).isEqualTo(30);
+
+        final MultiKeyMap<String, List<String>, Integer> rejecting =
+                AsyncIndexTest.<String, List<String>, Integer>asyncBuilder(
+                        command -> {
+                            throw new RejectedExecutionException();
+                        })
+                        .build();
+        rejecting.put(newClassifiedKey(1), 1);
+
+        softly.assertThat(rejecting.indexStats().getPostingCount()).isEqualTo(3);
+    }
+
+    @Test
+    public void testConcurrentWritersAndQueries() throws Exception {
+        final ExecutorService indexExecutor = Executors.newSingleThreadExecutor();
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            final MultiKeyMap<String, List<String>, Integer> multiKeyMap =
+                    AsyncIndexTest.<String, List<String>, Integer>asyncBuilder(indexExecutor).build();
+            final List<Future<?>> futures = new ArrayList<>();
+
+            for (int t = 0; t < 4; t++) {
+                final int offset = t * 10_000;
+                futures.add(
+                        executor.submit(
+                                () -> {
+                                    for (int i = offset; i < offset + 10_000; i++) {
+                                        multiKeyMap.put(newClassifiedKey(i), i);
+
+                                        if (i % 3 == 0) {
+                                            multiKeyMap.remove(newClassifiedKey(i - 1));
+                                        }
+
+                                        if (i % 1000 == 0) {
+                                            softly
+                                                    .assertThat(
+                                                            multiKeyMap.getValuesByPartialKey(
+                                                                    ImmutableSet.of("id" + i)))
+                                                    .containsExactly(i);
+                                        }
+                                    }
+                                }));
+            }
+
+            for (final Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+
+            for (int c = 0; c < 5; c++) {
+                softly
+                        .assertThat(
+                                multiKeyMap
+                                        .getFullKeysByPartialKey(ImmutableSet.of("c" + c, "odd"))
+                                        .collect(Collectors.toSet()))
+                        .as("c%s", c)
+                        .isEqualTo(scan(multiKeyMap, "c" + c, "odd"));
+            }
+
+            multiKeyMap.cleanUp();
+
+            softly
+                    .assertThat(multiKeyMap.indexStats().getPostingCount())
+                    .isEqualTo(3L * multiKeyMap.size());
+        } finally {
+            executor.shutdownNow();
+            indexExecutor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testSameResultsAsSynchronousIndex() {
+        final Random random = new Random(5);
+        final ManualExecutor executor = new ManualExecutor();
+        final MultiKeyMap<Integer, List<Integer>, Integer> sync = MultiKeyMaps.newMultiKeyMap();
+        final MultiKeyMap<Integer, List<Integer>, Integer> async =
+                AsyncIndexTest.<Integer, List<Integer>, Integer>asyncBuilder(executor)
+                        .excludePositions(3)
+                        .stopSubKeys(0.3, 50)
+                        .build();
+
+        for (int i = 0; i < 3000; i++) {
+            final List<Integer> key = new ArrayList<>();
+
+            for (int j = 0; j < 4; j++) {
+                key.add(random.nextBoolean() ? random.nextInt(2) : random.nextInt(30));
+            }
+
+            sync.put(key, i);
+            async.put(key, i);
+
+            if (random.nextInt(4) == 0) {
+                sync.remove(key);
+                async.remove(key);
+            }
+
+            if (random.nextInt(100) == 0) {
+                executor.runAll();
+            }
+
+            if (i % 10 == 0) {
+                final List<Integer> partialKey = new ArrayList<>();
+                final List<Integer> positions = new ArrayList<>();
+
+                for (int j = 0; j < 1 + random.nextInt(3); j++) {
+                    partialKey.add(random.nextInt(8));
+                    positions.add(random.nextBoolean() ? j : -1);
+                }
+
+                softly
+                        .assertThat(
+                                async.getFullKeysByPartialKey(partialKey, positions)
+                                        .collect(Collectors.toSet()))
+                        .as("query %s at %s", partialKey, positions)
+                        .isEqualTo(
+                                sync.getFullKeysByPartialKey(partialKey, positions)
+                                        .collect(Collectors.toSet()));
+                softly
+                        .assertThat(
+                                async.getFullKeysByPartialKey(ImmutableSet.copyOf(partialKey))
+                                        .collect(Collectors.toSet()))
+                        .as("query %s", partialKey)
+                        .isEqualTo(
+                                sync.getFullKeysByPartialKey(ImmutableSet.copyOf(partialKey))
+                                        .collect(Collectors.toSet()));
+            }
+        }
+
+        softly.assertThat(async.indexStats().getStopSubKeys()).contains(0, 1);
+    }
+
+    @Test
+    public void testBuilderArguments() {
+        assertThatThrownBy(() -> MultiKeyMaps.builder().asyncIndex(null))
+                .isInstanceOf(NullPointerException.class);
+        assertThatThrownBy(() -> MultiKeyMaps.builder().asyncIndex(Runnable::run).build())
+                .isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(
+                () -> asyncBuilder(Runnable::run).lazyIndex().build())
+                .isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> MultiKeyMaps.builder().asyncIndex(Runnable::run).asyncIndex(Runnable::run))
+                .isInstanceOf(IllegalStateException.class);
+    }
+}
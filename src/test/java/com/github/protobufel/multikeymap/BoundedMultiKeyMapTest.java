@@ -0,0 +1,356 @@
+/*
+ *    Copyright 2017 David Tesler
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.protobufel.multikeymap;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.assertj.core.api.JUnitSoftAssertions;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayOutputStream;
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+
+import static com.github.protobufel.multikeymap.MultiKeyMapGenerators.newParityKey;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
+
+@RunWith(JUnit4.class)
+public class BoundedMultiKeyMapTest {
+    @Rule
+    public final JUnitSoftAssertions softly = new JUnitSoftAssertions();
+
+    @Test
+    public void testMaximumSizeEvictsWithPostings() {
+        final List<List<String>> evicted = new ArrayList<>();
+        final MultiKeyMap<String, List<String>, Integer> multiKeyMap =
+                MultiKeyMaps.<String, List<String>, Integer>builder()
+                        .maximumSize(100)
+                        .evictionListener(
+                                (key, value, cause) -> {
+                                    softly.assertThat(cause).isEqualTo(EvictionCause.SIZE);
+                                    evicted.add(key);
+                                })
+                        .build();
+
+        for (int i = 0; i < 1000; i++) {
+            multiKeyMap.put(newParityKey(i), i);
+        }
+
+        softly.assertThat(multiKeyMap).hasSize(100);
+        softly.assertThat(evicted).hasSize(900).doesNotContainAnyElementsOf(multiKeyMap.keySet());
+        softly
+                .assertThat(
+                        multiKeyMap
+                                .getFullKeysByPartialKey(ImmutableSet.of("all"))
+                                .collect(Collectors.toSet()))
+                .isEqualTo(multiKeyMap.keySet());
+        softly.assertThat(multiKeyMap.getFullKeysByPartialKey(ImmutableSet.of("id0"))).isEmpty();
+        softly.assertThat(multiKeyMap.indexStats().getPostingCount()).isEqualTo(300);
+    }
+
+    @Test
+    public void testFrequentlyUsedEntrySurvivesScan() {
+        final MultiKeyMap<String, List<String>, Integer> multiKeyMap =
+                MultiKeyMaps.<String, List<String>, Integer>builder().maximumSize(100).build();
+        final List<String> hotKey = ImmutableList.of("hot");
+        multiKeyMap.put(hotKey, -1);
+
+        for (int i = 0; i < 10_000; i++) {
+            if (i % 10 == 0) {
+                softly.assertThat(multiKeyMap.get(hotKey)).as("get %s", i).isEqualTo(-1);
+            }
+
+            multiKeyMap.put(newParityKey(i), i);
+        }
+
+        softly.assertThat(multiKeyMap).hasSize(100).containsKey(hotKey);
+    }
+
+    @Test
+    public void testMaximumWeight() {
+        final StandardMultiKeyMapMetrics metrics = new StandardMultiKeyMapMetrics();
+        final MultiKeyMap<String, List<String>, Integer> multiKeyMap =
+                MultiKeyMaps.<String, List<String>, Integer>builder()
+                        .maximumWeight(1000, (key, value) -> value)
+                        .metrics(metrics)
+                        .build();
+
+        for (int i = 0; i < 1000; i++) {
+            multiKeyMap.put(newParityKey(i), i % 20);
+            softly
+                    .assertThat(multiKeyMap.values().stream().mapToInt(Integer::intValue).sum())
+                    .isLessThanOrEqualTo(1000);
+        }
+
+        softly.assertThat(metrics.getEvictionCount()).isEqualTo(1000 - multiKeyMap.size());
+        softly.assertThat(metrics.getRemoveCount()).isZero();
+
+        multiKeyMap.replaceAll((key, value) -> 500);
+
+        softly.assertThat(multiKeyMap).hasSize(2);
+        softly.assertThat(multiKeyMap.indexStats().getEntryCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void testEntryRewrittenAfterSelectionIsNotEvicted() {
+        final RewritingMap fullMap = new RewritingMap();
+        final Map<List<String>, Integer> evicted = new HashMap<>();
+        final MultiKeyMap<String, List<String>, Integer> multiKeyMap =
+                MultiKeyMaps.<String, List<String>, Integer>builder()
+                        .mapSupplier(() -> fullMap)
+                        .maximumSize(1)
+                        .evictionListener((key, value, cause) -> evicted.put(key, value))
+                        .build();
+        fullMap.multiKeyMap = multiKeyMap;
+
+        final Integer value = 1000;
+        multiKeyMap.put(newParityKey(1), value);
+        fullMap.rewriting = true;
+        multiKeyMap.put(newParityKey(2), 2);
+
+        softly.assertThat(multiKeyMap).containsExactly(entry(newParityKey(1), value));
+        softly.assertThat(evicted).containsExactly(entry(newParityKey(2), 2));
+
+        multiKeyMap.put(newParityKey(3), 3);
+
+        softly.assertThat(multiKeyMap).containsOnlyKeys(newParityKey(3));
+        softly.assertThat(evicted).containsEntry(newParityKey(1), value).hasSize(2);
+    }
+
+    @Test
+    public void testZeroMaximumSize() {
+        final MultiKeyMap<String, List<String>, Integer> multiKeyMap =
+                MultiKeyMaps.<String, List<String>, Integer>builder().maximumSize(0).build();
+
+        softly.assertThat(multiKeyMap.put(newParityKey(1), 1)).isNull();
+        softly.assertThat(multiKeyMap).isEmpty();
+        softly.assertThat(multiKeyMap.getFullKeysByPartialKey(ImmutableSet.of("all"))).isEmpty();
+    }
+
+    @Test
+    public void testRemovalsAndClearFreeTheCapacity() {
+        final List<List<String>> evicted = new ArrayList<>();
+        final MultiKeyMap<String, List<String>, Integer> multiKeyMap =
+                MultiKeyMaps.<String, List<String>, Integer>builder()
+                        .maximumSize(10)
+                        .evictionListener((key, value, cause) -> evicted.add(key))
+                        .build();
+
+        for (int i = 0; i < 10; i++) {
+            multiKeyMap.put(newParityKey(i), i);
+        }
+
+        multiKeyMap.remove(newParityKey(0));
+        multiKeyMap.keySet().remove(newParityKey(1));
+        multiKeyMap.put(newParityKey(10), 10);
+        multiKeyMap.put(newParityKey(11), 11);
+
+        softly.assertThat(evicted).isEmpty();
+        softly.assertThat(multiKeyMap).hasSize(10);
+
+        multiKeyMap.clear();
+
+        for (int i = 0; i < 10; i++) {
+            multiKeyMap.put(newParityKey(i), i);
+        }
+
+        softly.assertThat(evicted).isEmpty();
+        multiKeyMap.put(newParityKey(100), 100);
+        softly.assertThat(evicted).hasSize(1);
+        softly.assertThat(multiKeyMap).hasSize(10);
+    }
+
+    @Test
+    public void testEvictionNotifiesSubscriptions() {
+        final List<List<String>> removed = new ArrayList<>();
+        final MultiKeyMap<String, List<String>, Integer> multiKeyMap =
+                MultiKeyMaps.<String, List<String>, Integer>builder()
+                        .mapSupplier(ConcurrentHashMap::new)
+                        .concurrent(true)
+                        .maximumSize(5)
+                        .build();
+        multiKeyMap.subscribe(
+                ImmutableSet.of("all"),
+                new PartialKeyListener<List<String>, Integer>() {
+                    @Override
+                    public void onRemoved(final List<String> key, final Integer value) {
+                        removed.add(key);
+                    }
+                });
+
+        for (int i = 0; i < 10; i++) {
+            multiKeyMap.put(newParityKey(i), i);
+        }
+
+        softly.assertThat(removed).hasSize(5).doesNotContainAnyElementsOf(multiKeyMap.keySet());
+    }
+
+    @Test
+    public void testConcurrentPutsAndRemovesKeepTheBound() throws Exception {
+        final MultiKeyMap<String, List<String>, Integer> multiKeyMap =
+                MultiKeyMaps.<String, List<String>, Integer>builder()
+                        .mapSupplier(ConcurrentHashMap::new)
+                        .concurrent(true)
+                        .maximumSize(32)
+                        .build();
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+
+            for (int t = 0; t < 4; t++) {
+                final int seed = t;
+                futures.add(
+                        executor.submit(
+                                () -> {
+                                    final Random random = new Random(seed);
+
+                                    for (int i = 0; i < 20_000; i++) {
+                                        final List<String> key = newParityKey(random.nextInt(64));
+
+                                        if (random.nextBoolean()) {
+                                            multiKeyMap.put(key, i);
+                                        } else if (random.nextBoolean()) {
+                                            multiKeyMap.remove(key);
+                                        } else {
+                                            multiKeyMap.keySet().remove(key);
+                                        }
+                                    }
+                                }));
+            }
+
+            for (final Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        softly.assertThat(multiKeyMap.size()).isLessThanOrEqualTo(32);
+
+        // every entry left must still be tracked by the policy, lest the bound be exceeded for good
+        for (int i = 1000; i < 1200; i++) {
+            multiKeyMap.put(newParityKey(i), i);
+        }
+
+        softly.assertThat(multiKeyMap.size()).isLessThanOrEqualTo(32);
+        softly
+                .assertThat(
+                        multiKeyMap
+                                .getFullKeysByPartialKey(ImmutableSet.of("all"))
+                                .collect(Collectors.toSet()))
+                .isEqualTo(multiKeyMap.keySet());
+    }
+
+    @Test
+    public void testBuilderBounds() {
+        assertThatThrownBy(() -> MultiKeyMaps.builder().maximumSize(-1))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> MultiKeyMaps.builder().maximumSize(1).maximumSize(2))
+                .isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> MultiKeyMaps.builder().maximumWeight(1, null))
+                .isInstanceOf(NullPointerException.class);
+        assertThatThrownBy(
+                () ->
+                        MultiKeyMaps.<String, List<String>, Integer>builder()
+                                .maximumWeight(10, (key, value) -> -1)
+                                .build()
+                                .put(newParityKey(1), 1))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void testNotSerializable() {
+        final MultiKeyMap<String, List<String>, Integer> bySize =
+                MultiKeyMaps.<String, List<String>, Integer>builder().maximumSize(10).build();
+        final MultiKeyMap<String, List<String>, Integer> byWeight =
+                MultiKeyMaps.<String, List<String>, Integer>builder()
+                        .maximumWeight(10, (key, value) -> value)
+                        .build();
+        bySize.put(newParityKey(1), 1);
+        byWeight.put(newParityKey(1), 1);
+
+        assertThatThrownBy(
+                () -> new ObjectOutputStream(new ByteArrayOutputStream()).writeObject(bySize))
+                .isInstanceOf(NotSerializableException.class);
+        assertThatThrownBy(
+                () -> new ObjectOutputStream(new ByteArrayOutputStream()).writeObject(byWeight))
+                .isInstanceOf(NotSerializableException.class);
+    }
+
+    @Test
+    public void testFrequencySketch() {
+        final FrequencySketch sketch = new FrequencySketch();
+        sketch.ensureCapacity(512);
+
+        for (int i = 0; i < 20; i++) {
+            sketch.increment("hot");
+        }
+
+        sketch.increment("warm");
+        sketch.increment("warm");
+
+        softly.assertThat(sketch.frequency("hot")).isEqualTo(15);
+        softly.assertThat(sketch.frequency("warm")).isBetween(2, 3);
+        softly.assertThat(sketch.frequency("cold")).isLessThanOrEqualTo(1);
+
+        for (int i = 0; i < 512 * 10; i++) {
+            sketch.increment(i);
+        }
+
+        softly.assertThat(sketch.frequency("hot")).as("aged").isLessThan(15);
+    }
+
+    /**
+     * Re-puts the victim, with its very value instance, between its selection and its removal, as
+     * a concurrent writer would.
+     */
+    private static final class RewritingMap extends HashMap<List<String>, Integer> {
+        private static final long serialVersionUID = 1L;
+        private MultiKeyMap<String, List<String>, Integer> multiKeyMap;
+        private boolean rewriting;
+
+        @Override
+        public Integer computeIfPresent(
+                final List<String> key,
+                final BiFunction<? super List<String>, ? super Integer, ? extends Integer> function) {
+            if (rewriting) {
+                rewriting = false;
+                multiKeyMap.put(key, get(key));
+            }
+
+            return super.computeIfPresent(key, function);
+        }
+    }
+}
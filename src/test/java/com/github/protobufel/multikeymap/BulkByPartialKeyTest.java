@@ -0,0 +1,276 @@
+/*
+ *    Copyright 2017 David Tesler
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.protobufel.multikeymap;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.assertj.core.api.JUnitSoftAssertions;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@RunWith(JUnit4.class)
+public class BulkByPartialKeyTest {
+    @Rule
+    public final JUnitSoftAssertions softly = new JUnitSoftAssertions();
+
+    private static List<String> key(final int i) {
+        return ImmutableList.of("tenant" + (i % 4), "c" + (i % 5), "id" + i);
+    }
+
+    private static List<MultiKeyMap<String, List<String>, Integer>> multiKeyMaps() {
+        final List<MultiKeyMap<String, List<String>, Integer>> multiKeyMaps =
+                ImmutableList.of(
+                        MultiKeyMaps.newMultiKeyMap(),
+                        MultiKeyMaps.<String, List<String>, Integer>builder()
+                                .mapSupplier(ConcurrentHashMap::new)
+                                .concurrent(true)
+                                .build(),
+                        MultiKeyMaps.<String, List<String>, Integer>builder().excludePositions(1).build(),
+                        MultiKeyMaps.newSharded(3));
+
+        for (final MultiKeyMap<String, List<String>, Integer> multiKeyMap : multiKeyMaps) {
+            for (int i = 0; i < 200; i++) {
+                multiKeyMap.put(key(i), i);
+            }
+        }
+
+        return multiKeyMaps;
+    }
+
+    @Test
+    public void testRemoveByPartialKey() {
+        for (final MultiKeyMap<String, List<String>, Integer> multiKeyMap : multiKeyMaps()) {
+            final String name = multiKeyMap.getClass().getSimpleName();
+            softly.assertThat(multiKeyMap.removeByPartialKey(ImmutableSet.of("tenant1"))).as(name).isEqualTo(50);
+            softly.assertThat(multiKeyMap.removeByPartialKey(ImmutableSet.of("tenant1"))).as(name).isZero();
+            softly.assertThat(multiKeyMap).as(name).hasSize(150);
+            softly.assertThat(multiKeyMap.getFullKeysByPartialKey(ImmutableSet.of("tenant1"))).as(name).isEmpty();
+            softly
+                    .assertThat(multiKeyMap.getFullKeysByPartialKey(ImmutableSet.of("c1")).count())
+                    .as(name)
+                    .isEqualTo(30);
+            softly
+                    .assertThat(
+                            multiKeyMap.removeByPartialKey(
+                                    ImmutableList.of("c2", "tenant2"), ImmutableList.of(1, 0)))
+                    .as(name)
+                    .isEqualTo(10);
+            softly
+                    .assertThat(
+                            multiKeyMap.removeByPartialKey(
+                                    ImmutableList.of("c2", "tenant2"), ImmutableList.of(0, 1)))
+                    .as(name)
+                    .isZero();
+            softly.assertThat(multiKeyMap).as(name).hasSize(140);
+            softly
+                    .assertThat(multiKeyMap.getFullKeysByPartialKey(ImmutableSet.of("c2", "tenant2")))
+                    .as(name)
+                    .isEmpty();
+            softly.assertThat(multiKeyMap.get(key(3))).as(name).isEqualTo(3);
+        }
+    }
+
+    @Test
+    public void testRemoveByPartialKeyUpdatesIndexAndListeners() {
+        final MultiKeyMap<String, List<String>, Integer> multiKeyMap = MultiKeyMaps.newMultiKeyMap();
+        final List<Integer> removed = new ArrayList<>();
+
+        for (int i = 0; i < 200; i++) {
+            multiKeyMap.put(key(i), i);
+        }
+
+        multiKeyMap.subscribe(
+                ImmutableSet.of("c0"),
+                new PartialKeyListener<List<String>, Integer>() {
+                    @Override
+                    public void onRemoved(final List<String> key, final Integer value) {
+                        removed.add(value);
+                    }
+                });
+
+        softly.assertThat(multiKeyMap.removeByPartialKey(ImmutableSet.of("tenant0"))).isEqualTo(50);
+
+        final IndexStats<String> stats = multiKeyMap.indexStats();
+        softly.assertThat(stats.getPostingCount()).isEqualTo(450);
+        softly.assertThat(stats.getSubKeyCount()).isEqualTo(3 + 5 + 150);
+        softly.assertThat(removed).hasSize(10).allMatch(value -> value % 20 == 0);
+    }
+
+    @Test
+    public void testRemoveByPartialKeyDropsWholePostingSets() {
+        for (final MultiKeyMap<String, List<String>, Integer> multiKeyMap : multiKeyMaps()) {
+            final String name = multiKeyMap.getClass().getSimpleName();
+
+            for (int i = 0; i < 10; i++) {
+                multiKeyMap.put(ImmutableList.of("twice", "twice", "id" + i), -i);
+            }
+
+            softly.assertThat(multiKeyMap.removeByPartialKey(ImmutableSet.of("twice"))).as(name).isEqualTo(10);
+            softly.assertThat(multiKeyMap.removeByPartialKey(ImmutableSet.of("c4"))).as(name).isEqualTo(40);
+            softly.assertThat(multiKeyMap).as(name).hasSize(160);
+            softly.assertThat(multiKeyMap.getFullKeysByPartialKey(ImmutableSet.of("twice"))).as(name).isEmpty();
+            softly.assertThat(multiKeyMap.getFullKeysByPartialKey(ImmutableSet.of("c4"))).as(name).isEmpty();
+            softly
+                    .assertThat(multiKeyMap.getFullKeysByPartialKey(ImmutableSet.of("id0")).count())
+                    .as(name)
+                    .isEqualTo(1);
+        }
+
+        final MultiKeyMap<String, List<String>, Integer> multiKeyMap = MultiKeyMaps.newMultiKeyMap();
+
+        for (int i = 0; i < 200; i++) {
+            multiKeyMap.put(key(i), i);
+        }
+
+        softly.assertThat(multiKeyMap.removeByPartialKey(ImmutableSet.of("c4"))).isEqualTo(40);
+        softly.assertThat(multiKeyMap.indexStats().getPostingCount()).isEqualTo(480L);
+        softly.assertThat(multiKeyMap.indexStats().getSubKeyCount()).isEqualTo(4 + 4 + 160);
+    }
+
+    @Test
+    public void testConcurrentRemoveByPartialKeyKeepsTheIndex() throws Exception {
+        final MultiKeyMap<String, List<String>, Integer> multiKeyMap =
+                MultiKeyMaps.<String, List<String>, Integer>builder()
+                        .mapSupplier(ConcurrentHashMap::new)
+                        .concurrent(true)
+                        .build();
+        final ExecutorService executor = Executors.newFixedThreadPool(3);
+        final CyclicBarrier start = new CyclicBarrier(3);
+
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+
+            // the removed keys are put again meanwhile, so their postings must survive the removal
+            for (int t = 0; t < 2; t++) {
+                final int offset = t;
+                futures.add(
+                        executor.submit(
+                                () -> {
+                                    start.await();
+
+                                    for (int round = 0; round < 200; round++) {
+                                        for (int i = offset; i < 200; i += 2) {
+                                            multiKeyMap.put(key(i), i);
+                                        }
+                                    }
+
+                                    return null;
+                                }));
+            }
+
+            futures.add(
+                    executor.submit(
+                            () -> {
+                                start.await();
+
+                                for (int round = 0; round < 200; round++) {
+                                    multiKeyMap.removeByPartialKey(ImmutableSet.of("tenant" + (round % 4)));
+                                }
+
+                                return null;
+                            }));
+
+            for (final Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        softly.assertThat(multiKeyMap.indexStats().getPostingCount()).isEqualTo(3L * multiKeyMap.size());
+
+        for (final List<String> key : multiKeyMap.keySet()) {
+            softly
+                    .assertThat(multiKeyMap.getFullKeysByPartialKey(key).count())
+                    .as(key.toString())
+                    .isEqualTo(1);
+        }
+    }
+
+    @Test
+    public void testReplaceAllByPartialKey() {
+        for (final MultiKeyMap<String, List<String>, Integer> multiKeyMap : multiKeyMaps()) {
+            final String name = multiKeyMap.getClass().getSimpleName();
+            softly
+                    .assertThat(multiKeyMap.replaceAllByPartialKey(ImmutableSet.of("tenant3"), (key, value) -> -value))
+                    .as(name)
+                    .isEqualTo(50);
+            softly
+                    .assertThat(
+                            multiKeyMap.replaceAllByPartialKey(
+                                    ImmutableList.of("c0", "tenant0"),
+                                    ImmutableList.of(1, 0),
+                                    (key, value) -> value + 1000))
+                    .as(name)
+                    .isEqualTo(10);
+            softly.assertThat(multiKeyMap).as(name).hasSize(200);
+            softly.assertThat(multiKeyMap.get(key(3))).as(name).isEqualTo(-3);
+            softly.assertThat(multiKeyMap.get(key(20))).as(name).isEqualTo(1020);
+            softly.assertThat(multiKeyMap.get(key(1))).as(name).isEqualTo(1);
+            softly
+                    .assertThat(multiKeyMap.getValuesByPartialKey(ImmutableSet.of("tenant3")))
+                    .as(name)
+                    .allMatch(value -> value <= 0)
+                    .hasSize(50);
+            assertThatThrownBy(
+                    () -> multiKeyMap.replaceAllByPartialKey(ImmutableSet.of("id5"), (key, value) -> null))
+                    .isInstanceOf(NullPointerException.class);
+            softly.assertThat(multiKeyMap.get(key(5))).as(name).isEqualTo(5);
+        }
+    }
+
+    @Test
+    public void testReplaceAllByPartialKeyDoesNotTouchTheIndex() {
+        final MultiKeyMap<String, List<String>, Integer> multiKeyMap = MultiKeyMaps.newMultiKeyMap();
+        final List<Integer> updated = new ArrayList<>();
+
+        for (int i = 0; i < 200; i++) {
+            multiKeyMap.put(key(i), i);
+        }
+
+        multiKeyMap.subscribe(
+                ImmutableSet.of("tenant2"),
+                new PartialKeyListener<List<String>, Integer>() {
+                    @Override
+                    public void onUpdated(
+                            final List<String> key, final Integer oldValue, final Integer newValue) {
+                        updated.add(newValue - oldValue);
+                    }
+                });
+        final String before = multiKeyMap.indexStats().toString();
+
+        softly
+                .assertThat(multiKeyMap.replaceAllByPartialKey(ImmutableSet.of("c2"), (key, value) -> value + 1))
+                .isEqualTo(40);
+        softly.assertThat(multiKeyMap.indexStats().toString()).isEqualTo(before);
+        softly.assertThat(updated).hasSize(10).containsOnly(1);
+    }
+}
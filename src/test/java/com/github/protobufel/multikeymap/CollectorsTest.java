@@ -25,11 +25,17 @@ import org.junit.Rule;
 import org.junit.Test;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.BinaryOperator;
 import java.util.function.Function;
 import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+import static java.util.stream.Collectors.toSet;
 
 public class CollectorsTest {
     @Rule
@@ -102,4 +108,40 @@ public class CollectorsTest {
                                         .expectCollects(expected, castArray))
                 .doesNotThrowAnyException();
     }
+
+    @Test
+    public void testIntersectSetsInParallel() {
+        final int size = 100_000;
+        final Set<Integer> all = IntStream.range(0, size).boxed().collect(toSet());
+        final Set<Integer> even =
+                IntStream.range(0, size).filter(i -> i % 2 == 0).boxed().collect(toSet());
+        final Set<Integer> byThree =
+                IntStream.range(0, size).filter(i -> i % 3 == 0).boxed().collect(toSet());
+        final List<Set<Integer>> sets = Arrays.asList(all, even, byThree);
+        final ForkJoinPool pool = new ForkJoinPool(4);
+
+        try {
+            final List<Integer> result = Collectors.intersectSetsInParallel(sets, pool);
+
+            softly
+                    .assertThat(result)
+                    .doesNotHaveDuplicates()
+                    .hasSize((size + 5) / 6)
+                    .allMatch(i -> i % 6 == 0);
+            softly
+                    .assertThat(
+                            Collectors.intersectSetsInParallel(
+                                    Arrays.asList(all, Collections.<Integer>emptySet()), pool))
+                    .isEmpty();
+            softly
+                    .assertThat(Collectors.intersectSetsInParallel(Collections.singletonList(even), pool))
+                    .hasSameElementsAs(even);
+            softly
+                    .assertThat(Collectors.intersectSets(sets, true))
+                    .isEqualTo(Collectors.intersectSets(sets, false))
+                    .hasSameElementsAs(result);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
 }
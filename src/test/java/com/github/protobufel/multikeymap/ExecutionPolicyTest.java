@@ -0,0 +1,147 @@
+/*
+ *    Copyright 2017 David Tesler
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.protobufel.multikeymap;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.assertj.core.api.JUnitSoftAssertions;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static java.util.stream.Collectors.toSet;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@RunWith(JUnit4.class)
+public class ExecutionPolicyTest {
+    private static final int SIZE = 1000;
+    @Rule
+    public final JUnitSoftAssertions softly = new JUnitSoftAssertions();
+    private ForkJoinPool pool;
+    private MultiKeyMap<String, List<String>, Integer> sequentialMap;
+    private MultiKeyMap<String, List<String>, Integer> parallelMap;
+
+    @Before
+    public void setUp() throws Exception {
+        pool = new ForkJoinPool(2);
+        sequentialMap = MultiKeyMaps.newMultiKeyMap();
+        parallelMap =
+                MultiKeyMaps.newMultiKeyMap(
+                        HashMap::new, false, ExecutionPolicy.parallel(pool, 0));
+
+        for (int i = 0; i < SIZE; i++) {
+            final List<String> key =
+                    ImmutableList.of("common", "key" + i, "mod3-" + (i % 3), "mod5-" + (i % 5));
+            sequentialMap.put(key, i);
+            parallelMap.put(key, i);
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        pool.shutdownNow();
+    }
+
+    @Test
+    public void testPolicies() {
+        softly.assertThat(ExecutionPolicy.sequential().isParallel()).isFalse();
+        softly.assertThat(ExecutionPolicy.sequential().isParallelFor(Integer.MAX_VALUE)).isFalse();
+        softly.assertThat(ExecutionPolicy.parallel().isParallel()).isTrue();
+        softly.assertThat(ExecutionPolicy.parallel().getPool()).isSameAs(ForkJoinPool.commonPool());
+        softly
+                .assertThat(ExecutionPolicy.parallel().getThreshold())
+                .isEqualTo(ExecutionPolicy.DEFAULT_PARALLEL_THRESHOLD);
+
+        final ExecutionPolicy policy = ExecutionPolicy.parallel(pool, 100);
+        softly.assertThat(policy.getPool()).isSameAs(pool);
+        softly.assertThat(policy.isParallelFor(99)).isFalse();
+        softly.assertThat(policy.isParallelFor(100)).isTrue();
+
+        assertThatThrownBy(() -> ExecutionPolicy.parallel(pool, -1))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> ExecutionPolicy.parallel(null, 1))
+                .isInstanceOf(NullPointerException.class);
+    }
+
+    @Test
+    public void testParallelMapMatchesSequential() {
+        for (final List<String> partialKey :
+                ImmutableList.of(
+                        ImmutableList.of("common"),
+                        ImmutableList.of("mod3-1", "mod5-2"),
+                        ImmutableList.of("common", "mod3-0", "mod5-4"),
+                        ImmutableList.of("mod3-0", "absent"))) {
+            softly
+                    .assertThat(parallelMap.getFullKeysByPartialKey(partialKey).collect(toSet()))
+                    .isEqualTo(sequentialMap.getFullKeysByPartialKey(partialKey).collect(toSet()));
+            softly
+                    .assertThat(
+                            parallelMap
+                                    .getFullKeysByPartialKey(ImmutableSet.copyOf(partialKey))
+                                    .collect(toSet()))
+                    .isEqualTo(
+                            sequentialMap
+                                    .getFullKeysByPartialKey(ImmutableSet.copyOf(partialKey))
+                                    .collect(toSet()));
+        }
+    }
+
+    @Test
+    public void testPerQueryPolicy() {
+        final ImmutableSet<String> partialKey = ImmutableSet.of("mod3-2", "mod5-3");
+        final ImmutableList<Integer> positions = ImmutableList.of(2, 3);
+
+        softly
+                .assertThat(
+                        sequentialMap
+                                .getFullKeysByPartialKey(partialKey, ExecutionPolicy.parallel(pool, 0))
+                                .collect(toSet()))
+                .isEqualTo(sequentialMap.getFullKeysByPartialKey(partialKey).collect(toSet()))
+                .hasSize(67);
+        softly
+                .assertThat(
+                        parallelMap
+                                .getFullKeysByPartialKey(
+                                        ImmutableList.copyOf(partialKey),
+                                        positions,
+                                        ExecutionPolicy.sequential())
+                                .collect(toSet()))
+                .isEqualTo(
+                        sequentialMap
+                                .getFullKeysByPartialKey(ImmutableList.copyOf(partialKey), positions)
+                                .collect(toSet()))
+                .hasSize(67);
+    }
+
+    @Test
+    public void testPolicyIsNotSerialized() throws Exception {
+        final BaseMultiKeyMap<String, List<String>, Integer> copy =
+                (BaseMultiKeyMap<String, List<String>, Integer>)
+                        com.google.common.testing.SerializableTester.reserialize(parallelMap);
+
+        softly.assertThat(copy).isEqualTo(parallelMap);
+        softly.assertThat(copy.getExecutionPolicy()).isSameAs(ExecutionPolicy.sequential());
+    }
+}
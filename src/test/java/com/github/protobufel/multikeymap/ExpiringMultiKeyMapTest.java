@@ -0,0 +1,403 @@
+/*
+ *    Copyright 2017 David Tesler
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.protobufel.multikeymap;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.assertj.core.api.JUnitSoftAssertions;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayOutputStream;
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static com.github.protobufel.multikeymap.MultiKeyMapGenerators.newParityKey;
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@RunWith(JUnit4.class)
+public class ExpiringMultiKeyMapTest {
+    @Rule
+    public final JUnitSoftAssertions softly = new JUnitSoftAssertions();
+    private AtomicLong ticker;
+    private List<List<String>> expired;
+
+    @Before
+    public void setUp() throws Exception {
+        ticker = new AtomicLong();
+        expired = new ArrayList<>();
+    }
+
+    private MultiKeyMapBuilder<String, List<String>, Integer> builder(final long minutes) {
+        return MultiKeyMaps.<String, List<String>, Integer>builder()
+                .expireAfterWrite(minutes, TimeUnit.MINUTES)
+                .ticker(ticker::get)
+                .evictionListener(
+                        (key, value, cause) -> {
+                            softly.assertThat(cause).isEqualTo(EvictionCause.EXPIRED);
+                            expired.add(key);
+                        });
+    }
+
+    private void advance(final long duration, final TimeUnit unit) {
+        ticker.addAndGet(unit.toNanos(duration));
+    }
+
+    @Test
+    public void testExpiresLazilyOnAccess() {
+        final MultiKeyMap<String, List<String>, Integer> multiKeyMap = builder(10).build();
+        multiKeyMap.put(newParityKey(1), 1);
+        advance(9, TimeUnit.MINUTES);
+
+        softly.assertThat(multiKeyMap.get(newParityKey(1))).isEqualTo(1);
+        softly.assertThat(multiKeyMap.containsKey(newParityKey(1))).isTrue();
+
+        advance(1, TimeUnit.MINUTES);
+
+        softly.assertThat(multiKeyMap.containsKey(newParityKey(1))).isFalse();
+        softly.assertThat(multiKeyMap.get(newParityKey(1))).isNull();
+        softly.assertThat(expired).containsExactly(newParityKey(1));
+        softly.assertThat(multiKeyMap).isEmpty();
+        softly.assertThat(multiKeyMap.getFullKeysByPartialKey(ImmutableSet.of("all"))).isEmpty();
+    }
+
+    @Test
+    public void testCleanUpExpiresInBatches() {
+        final MultiKeyMap<String, List<String>, Integer> multiKeyMap = builder(10).build();
+
+        for (int i = 0; i < 100; i++) {
+            multiKeyMap.put(newParityKey(i), i);
+            advance(1, TimeUnit.SECONDS);
+        }
+
+        advance(10, TimeUnit.MINUTES);
+        advance(-50, TimeUnit.SECONDS);
+        multiKeyMap.cleanUp();
+
+        softly.assertThat(expired.size()).isBetween(49, 51);
+        softly.assertThat(multiKeyMap.size()).isEqualTo(100 - expired.size());
+        softly.assertThat(multiKeyMap.keySet()).doesNotContainAnyElementsOf(expired);
+        softly.assertThat(multiKeyMap.indexStats().getPostingCount()).isEqualTo(3 * multiKeyMap.size());
+
+        advance(1, TimeUnit.MINUTES);
+        multiKeyMap.cleanUp();
+
+        softly.assertThat(expired).hasSize(100);
+        softly.assertThat(multiKeyMap).isEmpty();
+        softly.assertThat(multiKeyMap.indexStats().getSubKeyCount()).isZero();
+    }
+
+    @Test
+    public void testWritesExpireProactively() {
+        final MultiKeyMap<String, List<String>, Integer> multiKeyMap =
+                builder(1).mapSupplier(ConcurrentHashMap::new).concurrent(true).build();
+        multiKeyMap.put(newParityKey(1), 1);
+        multiKeyMap.put(newParityKey(2), 2);
+        advance(2, TimeUnit.MINUTES);
+        multiKeyMap.put(newParityKey(3), 3);
+
+        softly.assertThat(expired).containsOnly(newParityKey(1), newParityKey(2));
+        softly.assertThat(multiKeyMap).containsOnlyKeys(newParityKey(3));
+        softly.assertThat(multiKeyMap.indexStats().getPostingCount()).isEqualTo(3);
+    }
+
+    @Test
+    public void testPutAndRemoveOfExpiredEntry() {
+        final MultiKeyMap<String, List<String>, Integer> multiKeyMap = builder(1).build();
+        multiKeyMap.put(newParityKey(1), 1);
+        multiKeyMap.put(newParityKey(2), 2);
+        advance(1, TimeUnit.MINUTES);
+
+        softly.assertThat(multiKeyMap.put(newParityKey(1), 10)).isNull();
+        softly.assertThat(multiKeyMap.remove(newParityKey(2))).isNull();
+        softly.assertThat(expired).containsOnly(newParityKey(1), newParityKey(2));
+
+        advance(30, TimeUnit.SECONDS);
+
+        softly.assertThat(multiKeyMap).containsOnlyKeys(newParityKey(1));
+        softly
+                .assertThat(multiKeyMap.getFullKeysByPartialKey(ImmutableSet.of("all")))
+                .containsOnly(newParityKey(1));
+    }
+
+    /** Puts the even keys, then the odd ones 5 minutes later, and gets past the even keys' TTL. */
+    private BaseMultiKeyMap<String, List<String>, Integer> halfExpired() {
+        final BaseMultiKeyMap<String, List<String>, Integer> multiKeyMap =
+                (BaseMultiKeyMap<String, List<String>, Integer>) builder(10).build();
+        multiKeyMap.put(newParityKey(0), 0);
+        multiKeyMap.put(newParityKey(2), 2);
+        advance(5, TimeUnit.MINUTES);
+        multiKeyMap.put(newParityKey(1), 1);
+        multiKeyMap.put(newParityKey(3), 3);
+        advance(5, TimeUnit.MINUTES);
+        return multiKeyMap;
+    }
+
+    @Test
+    public void testPartialQueriesHideAndExpireExpiredEntries() {
+        final List<Function<BaseMultiKeyMap<String, List<String>, Integer>, List<List<String>>>>
+                queries =
+                ImmutableList.of(
+                        map ->
+                                map.getFullKeysByPartialKey(ImmutableSet.of("all"))
+                                        .collect(toList()),
+                        map ->
+                                map.getFullKeysByPartialKey(
+                                        ImmutableList.of("all"), ImmutableList.of(0))
+                                        .collect(toList()),
+                        map ->
+                                map.getEntriesByPartialKey(ImmutableList.of("all"))
+                                        .map(Map.Entry::getKey)
+                                        .collect(toList()),
+                        map ->
+                                ImmutableList.copyOf(
+                                        map.lazyFullKeysByPartialKey(
+                                                ImmutableSet.of("all"), null)));
+
+        for (final Function<BaseMultiKeyMap<String, List<String>, Integer>, List<List<String>>>
+                query : queries) {
+            expired.clear();
+            ticker.set(0);
+            final BaseMultiKeyMap<String, List<String>, Integer> multiKeyMap = halfExpired();
+
+            softly
+                    .assertThat(query.apply(multiKeyMap))
+                    .containsOnly(newParityKey(1), newParityKey(3));
+            softly.assertThat(expired).containsOnly(newParityKey(0), newParityKey(2));
+            softly.assertThat(multiKeyMap.indexStats().getPostingCount()).isEqualTo(6);
+        }
+    }
+
+    @Test
+    public void testViewsHideAndExpireExpiredEntries() {
+        final List<Function<MultiKeyMap<String, List<String>, Integer>, Object>> views =
+                ImmutableList.of(
+                        MultiKeyMap::size,
+                        MultiKeyMap::isEmpty,
+                        map -> map.containsValue(0),
+                        map -> ImmutableList.copyOf(map.keySet()),
+                        map -> ImmutableList.copyOf(map.values()),
+                        map -> ImmutableList.copyOf(map.entrySet()),
+                        map -> map.keySet().stream().collect(toList()),
+                        map -> {
+                            final List<Integer> values = new ArrayList<>();
+                            map.values().forEach(values::add);
+                            return values;
+                        });
+
+        for (final Function<MultiKeyMap<String, List<String>, Integer>, Object> view : views) {
+            expired.clear();
+            ticker.set(0);
+            final MultiKeyMap<String, List<String>, Integer> multiKeyMap = halfExpired();
+            view.apply(multiKeyMap);
+
+            softly.assertThat(expired).containsOnly(newParityKey(0), newParityKey(2));
+            softly.assertThat(multiKeyMap.indexStats().getPostingCount()).isEqualTo(6);
+        }
+
+        final MultiKeyMap<String, List<String>, Integer> multiKeyMap = halfExpired();
+
+        softly.assertThat(multiKeyMap.size()).isEqualTo(2);
+        softly.assertThat(multiKeyMap.containsValue(0)).isFalse();
+        softly.assertThat(multiKeyMap.keySet()).containsOnly(newParityKey(1), newParityKey(3));
+        softly.assertThat(multiKeyMap.values()).containsOnly(1, 3);
+
+        expired.clear();
+        final MultiKeyMap<String, List<String>, Integer> other = halfExpired();
+
+        softly
+                .assertThat(
+                        other.entrySet().contains(new SimpleImmutableEntry<>(newParityKey(0), 0)))
+                .isFalse();
+        softly.assertThat(expired).containsExactly(newParityKey(0));
+    }
+
+    @Test
+    public void testPerEntryTimeToLive() {
+        final MultiKeyMap<String, List<String>, Integer> multiKeyMap =
+                builder(Long.MAX_VALUE).build();
+        multiKeyMap.put(newParityKey(1), 1);
+        multiKeyMap.put(newParityKey(2), 2, 1, TimeUnit.HOURS);
+        multiKeyMap.put(newParityKey(3), 3, 1, TimeUnit.DAYS);
+        advance(2, TimeUnit.HOURS);
+        multiKeyMap.cleanUp();
+
+        softly.assertThat(multiKeyMap).containsOnlyKeys(newParityKey(1), newParityKey(3));
+
+        multiKeyMap.put(newParityKey(3), 30);
+        advance(1000, TimeUnit.DAYS);
+        multiKeyMap.cleanUp();
+
+        softly.assertThat(multiKeyMap).containsOnlyKeys(newParityKey(1), newParityKey(3));
+        softly.assertThat(expired).containsExactly(newParityKey(2));
+        softly.assertThat(multiKeyMap.indexStats().getPostingCount()).isEqualTo(6);
+    }
+
+    @Test
+    public void testExpirationExecutor() throws Exception {
+        final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        final CountDownLatch evicted = new CountDownLatch(10);
+        final Set<Thread> evictingThreads = ConcurrentHashMap.newKeySet();
+
+        try {
+            final MultiKeyMap<String, List<String>, Integer> multiKeyMap =
+                    MultiKeyMaps.<String, List<String>, Integer>builder()
+                            .mapSupplier(ConcurrentHashMap::new)
+                            .concurrent(true)
+                            .expireAfterWrite(1, TimeUnit.MINUTES)
+                            .ticker(ticker::get)
+                            .expirationExecutor(executor)
+                            .evictionListener(
+                                    (key, value, cause) -> {
+                                        evictingThreads.add(Thread.currentThread());
+                                        evicted.countDown();
+                                    })
+                            .build();
+
+            for (int i = 0; i < 10; i++) {
+                multiKeyMap.put(newParityKey(i), i);
+            }
+
+            advance(2, TimeUnit.MINUTES);
+
+            // only the executor expires them, as nothing here reads the map until they are gone
+            softly.assertThat(evicted.await(10, TimeUnit.SECONDS)).isTrue();
+            softly.assertThat(evictingThreads).doesNotContain(Thread.currentThread()).hasSize(1);
+            softly.assertThat(((BaseMultiKeyMap<?, ?, ?>) multiKeyMap).getFullMap()).isEmpty();
+            softly.assertThat(multiKeyMap.indexStats().getSubKeyCount()).isZero();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testUnsupportedAndIllegal() {
+        assertThatThrownBy(
+                () ->
+                        MultiKeyMaps.<String, List<String>, Integer>newMultiKeyMap()
+                                .put(newParityKey(1), 1, 1, TimeUnit.MINUTES))
+                .isInstanceOf(UnsupportedOperationException.class);
+        assertThatThrownBy(() -> builder(1).build().put(newParityKey(1), 1, -1, TimeUnit.MINUTES))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> MultiKeyMaps.builder().expireAfterWrite(-1, TimeUnit.MINUTES))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(
+                () -> MultiKeyMaps.builder().expirationExecutor(Executors.newScheduledThreadPool(0)).build())
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void testNotSerializable() {
+        final MultiKeyMap<String, List<String>, Integer> multiKeyMap = builder(10).build();
+        multiKeyMap.put(newParityKey(1), 1);
+
+        assertThatThrownBy(
+                () -> new ObjectOutputStream(new ByteArrayOutputStream()).writeObject(multiKeyMap))
+                .isInstanceOf(NotSerializableException.class);
+    }
+
+    @Test
+    public void testTimerWheelCascades() {
+        final TimerWheel<Integer> wheel = new TimerWheel<>(ticker::get);
+        final Random random = new Random(42);
+        final Map<Integer, Long> deadlines = new HashMap<>();
+
+        for (int i = 0; i < 1000; i++) {
+            final long duration = (long) (Math.pow(random.nextDouble(), 4) * TimeUnit.DAYS.toNanos(40));
+            wheel.schedule(i, duration);
+            deadlines.put(i, duration);
+        }
+
+        final Set<Integer> expiredKeys = new HashSet<>();
+        final long step = TimeUnit.MINUTES.toNanos(7);
+
+        for (long now = 0; now <= TimeUnit.DAYS.toNanos(60); now += step) {
+            ticker.set(now);
+
+            for (final Integer key : wheel.advance(true)) {
+                softly.assertThat(deadlines.get(key)).as("key %s", key).isLessThanOrEqualTo(now);
+                softly.assertThat(expiredKeys.add(key)).isTrue();
+                wheel.deschedule(key);
+            }
+
+            for (final Map.Entry<Integer, Long> entry : deadlines.entrySet()) {
+                if (!expiredKeys.contains(entry.getKey()) && entry.getValue() <= now - step) {
+                    softly.fail("key %s is late at %s", entry.getKey(), now);
+                    expiredKeys.add(entry.getKey());
+                }
+            }
+        }
+
+        softly.assertThat(expiredKeys).hasSize(1000);
+    }
+
+    @Test
+    public void testTimerWheelAdvancesExactly() {
+        final TimerWheel<Integer> wheel = new TimerWheel<>(ticker::get);
+        final Random random = new Random(42);
+        final Map<Integer, Long> deadlines = new HashMap<>();
+
+        for (int i = 0; i < 1000; i++) {
+            final long duration = (long) (random.nextDouble() * TimeUnit.HOURS.toNanos(2));
+            wheel.schedule(i, duration);
+            deadlines.put(i, duration);
+        }
+
+        final Set<Integer> expiredKeys = new HashSet<>();
+
+        final long step = TimeUnit.MILLISECONDS.toNanos(700);
+
+        for (long now = 0; now <= TimeUnit.HOURS.toNanos(2); now += step) {
+            ticker.set(now);
+
+            for (final Integer key : wheel.advanceExactly()) {
+                softly.assertThat(deadlines.get(key)).as("key %s", key).isLessThanOrEqualTo(now);
+                softly.assertThat(expiredKeys.add(key)).isTrue();
+                wheel.deschedule(key);
+            }
+
+            for (final Map.Entry<Integer, Long> entry : deadlines.entrySet()) {
+                if (!expiredKeys.contains(entry.getKey()) && entry.getValue() <= now) {
+                    softly.fail("key %s is late at %s", entry.getKey(), now);
+                    expiredKeys.add(entry.getKey());
+                }
+            }
+        }
+
+        softly.assertThat(expiredKeys).hasSize(1000);
+    }
+}
@@ -97,6 +97,21 @@ public class GuavaMultiKeyMapTests extends TestCase {
 
         suite.addTest(suite3);
 
+        final TestSuite suite5 =
+                MapTestSuiteBuilder.using(
+                        new MultiKeyMapGenerators.StringMultiKeyMapTestGenerator(
+                                MultiKeyMaps.<String, Iterable<String>, String>newSharded(4)))
+                        .named("Sharded MultiKeyMap of strings")
+                        .withFeatures(
+                                CollectionSize.ANY,
+                                CollectionFeature.SUPPORTS_ITERATOR_REMOVE,
+                                MapFeature.GENERAL_PURPOSE,
+                                MapFeature.RESTRICTS_KEYS,
+                                MapFeature.RESTRICTS_VALUES)
+                        .createTestSuite();
+
+        suite.addTest(suite5);
+
         //        //TODO: investigate why it fails!
         //        final TestSuite suite4 =
         //                MapTestSuiteBuilder.using(new MultiKeyMapGenerators.StringMultiKeyMapTestGenerator(
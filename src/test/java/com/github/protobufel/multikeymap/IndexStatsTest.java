@@ -0,0 +1,220 @@
+/*
+ *    Copyright 2017 David Tesler
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.protobufel.multikeymap;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.testing.SerializableTester;
+import org.assertj.core.api.JUnitSoftAssertions;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@RunWith(JUnit4.class)
+public class IndexStatsTest {
+    @Rule
+    public final JUnitSoftAssertions softly = new JUnitSoftAssertions();
+    private List<MultiKeyMap<String, List<String>, Integer>> multiKeyMaps;
+
+    @Before
+    public void setUp() throws Exception {
+        multiKeyMaps =
+                ImmutableList.of(
+                        MultiKeyMaps.newMultiKeyMap(),
+                        MultiKeyMaps.<String, List<String>, Integer>builder().trackIndexStats(true).build(),
+                        MultiKeyMaps.<String, List<String>, Integer>builder()
+                                .mapSupplier(ConcurrentHashMap::new)
+                                .concurrent(true)
+                                .trackIndexStats(true)
+                                .build());
+
+        for (final MultiKeyMap<String, List<String>, Integer> multiKeyMap : multiKeyMaps) {
+            for (int i = 0; i < 100; i++) {
+                multiKeyMap.put(ImmutableList.of("all", (i % 2 == 0) ? "even" : "odd", "id" + i), i);
+            }
+        }
+    }
+
+    @Test
+    public void testCounts() {
+        for (final MultiKeyMap<String, List<String>, Integer> multiKeyMap : multiKeyMaps) {
+            final IndexStats<String> stats = multiKeyMap.indexStats();
+
+            softly.assertThat(stats.getEntryCount()).isEqualTo(100);
+            softly.assertThat(stats.getSubKeyCount()).isEqualTo(103);
+            softly.assertThat(stats.getPostingCount()).isEqualTo(300);
+            softly.assertThat(stats.getAveragePostingsPerKey()).isEqualTo(3.0);
+            softly.assertThat(stats.getAveragePostingListSize()).isEqualTo(300.0 / 103);
+            softly.assertThat(stats.getEstimatedFullMapBytes()).isPositive();
+            softly
+                    .assertThat(stats.getEstimatedIndexBytes())
+                    .isGreaterThan(stats.getEstimatedFullMapBytes());
+            softly.assertThat(stats.toString()).contains("subKeys=103");
+        }
+    }
+
+    @Test
+    public void testPostingListSizeHistogram() {
+        for (final MultiKeyMap<String, List<String>, Integer> multiKeyMap : multiKeyMaps) {
+            softly
+                    .assertThat(multiKeyMap.indexStats().getPostingListSizeHistogram())
+                    .containsExactly(entry(1, 100L), entry(32, 2L), entry(64, 1L));
+
+            multiKeyMap.put(ImmutableList.of("id0", "id1"), -1);
+            multiKeyMap.remove(ImmutableList.of("all", "odd", "id1"));
+
+            softly
+                    .assertThat(multiKeyMap.indexStats().getPostingListSizeHistogram())
+                    .containsExactly(
+                            entry(1, 99L), entry(2, 1L), entry(32, 2L), entry(64, 1L));
+        }
+    }
+
+    @Test
+    public void testHeaviestSubKeys() {
+        for (final MultiKeyMap<String, List<String>, Integer> multiKeyMap : multiKeyMaps) {
+            softly
+                    .assertThat(multiKeyMap.indexStats(1).getHeaviestSubKeys())
+                    .containsExactly(new SimpleImmutableEntry<>("all", 100));
+
+            for (int i = 100; i < 120; i++) {
+                multiKeyMap.put(ImmutableList.of("even", "id" + i), i);
+            }
+
+            softly
+                    .assertThat(multiKeyMap.indexStats(3).getHeaviestSubKeys())
+                    .containsExactly(
+                            new SimpleImmutableEntry<>("all", 100),
+                            new SimpleImmutableEntry<>("even", 70),
+                            new SimpleImmutableEntry<>("odd", 50));
+            softly.assertThat(multiKeyMap.indexStats(0).getHeaviestSubKeys()).isEmpty();
+
+            // the small posting lists are reported as well, to fill the requested number
+            final List<Map.Entry<String, Integer>> heaviest = multiKeyMap.indexStats().getHeaviestSubKeys();
+            softly.assertThat(heaviest).hasSize(10);
+            softly.assertThat(heaviest.subList(3, 10)).allMatch(entry -> entry.getValue() == 1);
+
+            for (int i = 0; i < 40; i++) {
+                multiKeyMap.remove(ImmutableList.of("all", (i % 2 == 0) ? "even" : "odd", "id" + i));
+            }
+
+            softly
+                    .assertThat(multiKeyMap.indexStats(3).getHeaviestSubKeys())
+                    .containsExactly(
+                            new SimpleImmutableEntry<>("all", 60),
+                            new SimpleImmutableEntry<>("even", 50),
+                            new SimpleImmutableEntry<>("odd", 30));
+        }
+
+        final MultiKeyMap<String, List<String>, Integer> small = MultiKeyMaps.newMultiKeyMap();
+        small.put(ImmutableList.of("a", "b"), 1);
+
+        softly.assertThat(small.indexStats().getHeaviestSubKeys()).hasSize(2);
+    }
+
+    @Test
+    public void testTrackedStatsMatchTheScan() {
+        final Random random = new Random(36);
+
+        for (int i = 0; i < 5000; i++) {
+            final int id = random.nextInt(500);
+            final List<String> key = ImmutableList.of("k" + (id % 13), "k" + (id % 7), "id" + id);
+            final int action = random.nextInt(100);
+
+            for (final MultiKeyMap<String, List<String>, Integer> multiKeyMap : multiKeyMaps) {
+                if (action == 0) {
+                    multiKeyMap.removeByPartialKey(ImmutableList.of("k" + (id % 13)));
+                } else if (action < 35) {
+                    multiKeyMap.remove(key);
+                } else {
+                    multiKeyMap.put(key, i);
+                }
+            }
+        }
+
+        final IndexStats<String> expected = multiKeyMaps.get(0).indexStats(5);
+
+        for (final MultiKeyMap<String, List<String>, Integer> multiKeyMap : multiKeyMaps) {
+            final IndexStats<String> stats = multiKeyMap.indexStats(5);
+
+            softly.assertThat(stats.getSubKeyCount()).isEqualTo(expected.getSubKeyCount());
+            softly.assertThat(stats.getPostingCount()).isEqualTo(expected.getPostingCount());
+            softly
+                    .assertThat(stats.getPostingListSizeHistogram())
+                    .isEqualTo(expected.getPostingListSizeHistogram());
+            softly.assertThat(sizesOf(stats)).isEqualTo(sizesOf(expected));
+        }
+    }
+
+    @Test
+    public void testClearResets() {
+        for (final MultiKeyMap<String, List<String>, Integer> multiKeyMap : multiKeyMaps) {
+            multiKeyMap.clear();
+            final IndexStats<String> stats = multiKeyMap.indexStats();
+
+            softly.assertThat(stats.getEntryCount()).isZero();
+            softly.assertThat(stats.getSubKeyCount()).isZero();
+            softly.assertThat(stats.getPostingCount()).isZero();
+            softly.assertThat(stats.getAveragePostingsPerKey()).isZero();
+            softly.assertThat(stats.getAveragePostingListSize()).isZero();
+            softly.assertThat(stats.getPostingListSizeHistogram()).isEmpty();
+            softly.assertThat(stats.getHeaviestSubKeys()).isEmpty();
+            softly.assertThat(stats.getEstimatedIndexBytes()).isZero();
+        }
+    }
+
+    @Test
+    public void testSerializedCopyRebuildsStats() throws Exception {
+        for (final MultiKeyMap<String, List<String>, Integer> multiKeyMap : multiKeyMaps) {
+            final MultiKeyMap<String, List<String>, Integer> copy =
+                    SerializableTester.reserialize(multiKeyMap);
+
+            softly
+                    .assertThat(copy.indexStats(1).toString())
+                    .isEqualTo(multiKeyMap.indexStats(1).toString());
+        }
+    }
+
+    @Test
+    public void testNegativeTopN() {
+        assertThatThrownBy(() -> multiKeyMaps.get(0).indexStats(-1))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static List<Integer> sizesOf(final IndexStats<String> stats) {
+        return stats
+                .getHeaviestSubKeys()
+                .stream()
+                .map(Map.Entry::getValue)
+                .collect(Collectors.toList());
+    }
+
+    private static Map.Entry<Integer, Long> entry(final int bucket, final long count) {
+        return new SimpleImmutableEntry<>(bucket, count);
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ *    Copyright 2017 David Tesler
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.protobufel.multikeymap;
+
+import org.assertj.core.api.JUnitSoftAssertions;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+@RunWith(JUnit4.class)
+public class IntMultiKeyMapTest {
+    private static final int[] KEY1 = {1, 2, 3};
+    private static final int[] KEY2 = {2, 3};
+    private static final int[] KEY3 = {2, 1, 3, 1};
+    @Rule
+    public final JUnitSoftAssertions softly = new JUnitSoftAssertions();
+    private IntMultiKeyMap<Integer> multiKeyMap;
+
+    @Before
+    public void setUp() throws Exception {
+        multiKeyMap = MultiKeyMaps.newIntMultiKeyMap();
+        multiKeyMap.put(KEY1, 1);
+        multiKeyMap.put(KEY2, 2);
+        multiKeyMap.put(KEY3, 3);
+    }
+
+    @Test
+    public void testMapOperations() {
+        softly.assertThat(multiKeyMap.size()).isEqualTo(3);
+        softly.assertThat(multiKeyMap.get(2, 1, 3, 1)).isEqualTo(3);
+        softly.assertThat(multiKeyMap.get(1, 2)).isNull();
+        softly.assertThat(multiKeyMap.containsKey(2, 3)).isTrue();
+        softly.assertThat(multiKeyMap.put(new int[]{2, 3}, 20)).isEqualTo(2);
+        softly.assertThat(multiKeyMap.get(KEY2)).isEqualTo(20);
+        softly.assertThat(multiKeyMap.remove(1, 2, 3)).isEqualTo(1);
+        softly.assertThat(multiKeyMap.remove(1, 2, 3)).isNull();
+        softly.assertThat(multiKeyMap.size()).isEqualTo(2);
+        softly.assertThat(multiKeyMap.getFullKeysByPartialKey(1)).containsOnly(KEY3);
+        softly
+                .assertThatThrownBy(() -> multiKeyMap.put(KEY1, null))
+                .isInstanceOf(NullPointerException.class);
+
+        multiKeyMap.clear();
+        softly.assertThat(multiKeyMap.isEmpty()).isTrue();
+        softly.assertThat(multiKeyMap.getFullKeysByPartialKey(2)).isEmpty();
+    }
+
+    @Test
+    public void testKeysAreCopied() {
+        final int[] key = {7, 8};
+        multiKeyMap.put(key, 7);
+        key[0] = 1;
+
+        softly.assertThat(multiKeyMap.get(7, 8)).isEqualTo(7);
+        multiKeyMap.getFullKeysByPartialKey(7).forEach(fullKey -> fullKey[0] = 1);
+        softly.assertThat(multiKeyMap.getFullKeysByPartialKey(7)).containsOnly(new int[]{7, 8});
+    }
+
+    @Test
+    public void testGetByPartialKeyNoPositions() {
+        softly.assertThat(multiKeyMap.getFullKeysByPartialKey()).isEmpty();
+        softly.assertThat(multiKeyMap.getFullKeysByPartialKey(100, 200)).isEmpty();
+        softly
+                .assertThatThrownBy(() -> multiKeyMap.getFullKeysByPartialKey((int[]) null))
+                .isInstanceOf(NullPointerException.class);
+
+        softly.assertThat(multiKeyMap.getFullKeysByPartialKey(2)).containsOnly(KEY1, KEY2, KEY3);
+        softly.assertThat(multiKeyMap.getFullKeysByPartialKey(KEY1)).containsOnly(KEY1, KEY3);
+        softly.assertThat(multiKeyMap.getFullKeysByPartialKey(1, 1)).containsOnly(KEY3);
+        softly.assertThat(multiKeyMap.getValuesByPartialKey(KEY1)).containsOnly(1, 3);
+        softly
+                .assertThat(multiKeyMap.getEntriesByPartialKey(KEY2).map(Entry::getValue))
+                .containsOnly(1, 2, 3);
+    }
+
+    @Test
+    public void testGetByPartialKeyWithPositions() {
+        softly
+                .assertThat(multiKeyMap.getFullKeysByPartialKey(new int[]{2}, new int[]{0}))
+                .containsOnly(KEY2, KEY3);
+        softly
+                .assertThat(multiKeyMap.getFullKeysByPartialKey(KEY2, new int[]{0, 2}))
+                .containsOnly(KEY3);
+        softly
+                .assertThat(multiKeyMap.getFullKeysByPartialKey(KEY1, new int[]{100, 50}))
+                .isEmpty();
+        softly
+                .assertThat(multiKeyMap.getFullKeysByPartialKey(new int[]{2, 3, 1}, new int[]{0, -1, 1}))
+                .containsOnly(KEY3);
+        softly
+                .assertThat(multiKeyMap.getValuesByPartialKey(new int[]{1, 1, 2}, new int[]{-1, 1, 0}))
+                .containsOnly(3);
+        softly
+                .assertThat(multiKeyMap.getFullKeysByPartialKey(KEY1, new int[]{0, 1, 2, 3, 4, 5}))
+                .containsOnly(KEY1);
+        softly
+                .assertThatThrownBy(
+                        () ->
+                                multiKeyMap.getFullKeysByPartialKey(
+                                        new int[]{1, 2, 2, 1, 1}, new int[]{0, 0, 1, 1, -1}))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void testSameResultsAsMultiKeyMap() {
+        final Random random = new Random(1);
+        final MultiKeyMap<Integer, List<Integer>, Integer> expected = MultiKeyMaps.newMultiKeyMap();
+        multiKeyMap.clear();
+
+        for (int i = 0; i < 2000; i++) {
+            final int[] key = random.ints(1 + random.nextInt(5), 0, 20).toArray();
+
+            if (random.nextInt(4) == 0) {
+                softly.assertThat(multiKeyMap.remove(key)).isEqualTo(expected.remove(boxed(key)));
+            } else {
+                softly.assertThat(multiKeyMap.put(key, i)).isEqualTo(expected.put(boxed(key), i));
+            }
+        }
+
+        softly.assertThat(multiKeyMap.size()).isEqualTo(expected.size());
+
+        for (int i = 0; i < 200; i++) {
+            final int[] partialKey = random.ints(1 + random.nextInt(3), 0, 20).toArray();
+            final int[] positions = random.ints(random.nextInt(3), -1, 3).toArray();
+
+            if (IntStream.of(positions).filter(position -> position >= 0).distinct().count()
+                    != IntStream.of(positions).filter(position -> position >= 0).count()) {
+                continue;
+            }
+
+            softly
+                    .assertThat(
+                            multiKeyMap
+                                    .getFullKeysByPartialKey(partialKey, positions)
+                                    .map(IntMultiKeyMapTest::boxed)
+                                    .collect(Collectors.toList()))
+                    .hasSameElementsAs(
+                            expected
+                                    .getFullKeysByPartialKey(boxed(partialKey), boxed(positions))
+                                    .collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void testSerialization() throws Exception {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(multiKeyMap);
+        }
+
+        try (ObjectInputStream in =
+                     new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            @SuppressWarnings("unchecked") final IntMultiKeyMap<Integer> copy =
+                    (IntMultiKeyMap<Integer>) in.readObject();
+
+            softly.assertThat(copy.toString()).isEqualTo(multiKeyMap.toString());
+            softly.assertThat(copy.getFullKeysByPartialKey(1)).containsOnly(KEY1, KEY3);
+        }
+    }
+
+    @Test
+    public void testLongMultiKeyMap() {
+        final LongMultiKeyMap<String> longMap = MultiKeyMaps.newLongMultiKeyMap();
+        final long big = Long.MAX_VALUE - 1;
+        longMap.put(new long[]{big, 1L}, "one");
+        longMap.put(new long[]{1L, big, 1L}, "two");
+
+        softly.assertThat(longMap.get(big, 1L)).isEqualTo("one");
+        softly.assertThat(longMap.getValuesByPartialKey(big)).containsOnly("one", "two");
+        softly.assertThat(longMap.getValuesByPartialKey(1L, 1L)).containsOnly("two");
+        softly
+                .assertThat(longMap.getValuesByPartialKey(new long[]{big}, new int[]{0}))
+                .containsOnly("one");
+        softly.assertThat(longMap.remove(big, 1L)).isEqualTo("one");
+        softly.assertThat(longMap.getValuesByPartialKey(big)).containsOnly("two");
+    }
+
+    private static List<Integer> boxed(final int[] array) {
+        return Arrays.stream(array).boxed().collect(Collectors.toCollection(ArrayList::new));
+    }
+}
@@ -0,0 +1,339 @@
+/*
+ *    Copyright 2017 David Tesler
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.protobufel.multikeymap;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.assertj.core.api.JUnitSoftAssertions;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static com.github.protobufel.multikeymap.MultiKeyMapGenerators.newClassifiedKey;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@RunWith(JUnit4.class)
+public class LazyIndexTest {
+    @Rule
+    public final JUnitSoftAssertions softly = new JUnitSoftAssertions();
+
+    private static Set<List<String>> scan(
+            final MultiKeyMap<String, List<String>, Integer> multiKeyMap, final String... subKeys) {
+        return multiKeyMap
+                .keySet()
+                .stream()
+                .filter(key -> key.containsAll(ImmutableList.copyOf(subKeys)))
+                .collect(Collectors.toSet());
+    }
+
+    @Test
+    public void testIndexBuiltOnFirstQuery() {
+        final MultiKeyMap<String, List<String>, Integer> multiKeyMap =
+                MultiKeyMaps.<String, List<String>, Integer>builder().lazyIndex().build();
+
+        for (int i = 0; i < 100; i++) {
+            multiKeyMap.put(newClassifiedKey(i), i);
+        }
+
+        multiKeyMap.remove(newClassifiedKey(0));
+
+        softly.assertThat(multiKeyMap.indexStats().getPostingCount()).isZero();
+        softly.assertThat(multiKeyMap.get(newClassifiedKey(1))).isEqualTo(1);
+        softly
+                .assertThat(multiKeyMap.getFullKeysByPartialKey(ImmutableSet.of("c0", "odd")))
+                .containsOnlyElementsOf(scan(multiKeyMap, "c0", "odd"))
+                .hasSize(10);
+        softly.assertThat(multiKeyMap.indexStats().getPostingCount()).isEqualTo(297);
+
+        multiKeyMap.put(newClassifiedKey(100), 100);
+        multiKeyMap.remove(newClassifiedKey(5));
+
+        softly.assertThat(multiKeyMap.indexStats().getPostingCount()).isEqualTo(297);
+        softly
+                .assertThat(
+                        multiKeyMap.getFullKeysByPartialKey(
+                                ImmutableList.of("even", "c0"), ImmutableList.of(2, 1)))
+                .containsOnly(
+                        newClassifiedKey(10), newClassifiedKey(20), newClassifiedKey(30),
+                        newClassifiedKey(40), newClassifiedKey(50), newClassifiedKey(60),
+                        newClassifiedKey(70), newClassifiedKey(80), newClassifiedKey(90),
+                        newClassifiedKey(100));
+        softly
+                .assertThat(multiKeyMap.getValuesByPartialKey(ImmutableSet.of("id5")))
+                .isEmpty();
+    }
+
+    @Test
+    public void testIdleIndexDropped() {
+        final AtomicLong ticker = new AtomicLong();
+        final MultiKeyMap<String, List<String>, Integer> multiKeyMap =
+                MultiKeyMaps.<String, List<String>, Integer>builder()
+                        .lazyIndex(1, TimeUnit.MINUTES)
+                        .ticker(ticker::get)
+                        .build();
+
+        for (int i = 0; i < 100; i++) {
+            multiKeyMap.put(newClassifiedKey(i), i);
+        }
+
+        softly.assertThat(multiKeyMap.getFullKeysByPartialKey(ImmutableSet.of("odd")).count()).isEqualTo(50);
+        softly.assertThat(multiKeyMap.indexStats().getPostingCount()).isEqualTo(300);
+
+        ticker.addAndGet(TimeUnit.SECONDS.toNanos(59));
+        multiKeyMap.cleanUp();
+
+        softly.assertThat(multiKeyMap.indexStats().getPostingCount()).isEqualTo(300);
+
+        ticker.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        multiKeyMap.cleanUp();
+
+        softly.assertThat(multiKeyMap.indexStats().getPostingCount()).isZero();
+
+        for (int i = 0; i < 100; i += 2) {
+            multiKeyMap.remove(newClassifiedKey(i));
+        }
+
+        softly.assertThat(multiKeyMap.getFullKeysByPartialKey(ImmutableSet.of("even"))).isEmpty();
+        softly.assertThat(multiKeyMap.getFullKeysByPartialKey(ImmutableSet.of("c1")).count()).isEqualTo(10);
+        softly.assertThat(multiKeyMap.indexStats().getPostingCount()).isEqualTo(150);
+
+        ticker.addAndGet(TimeUnit.MINUTES.toNanos(2));
+
+        for (int i = 0; i < LazyIndex.CHECK_INTERVAL; i++) {
+            multiKeyMap.put(newClassifiedKey(1000 + i), i);
+        }
+
+        softly.assertThat(multiKeyMap.indexStats().getPostingCount()).isLessThan(150);
+        softly
+                .assertThat(multiKeyMap.getFullKeysByPartialKey(ImmutableSet.of("odd", "c3")).count())
+                .isEqualTo(scan(multiKeyMap, "odd", "c3").size());
+    }
+
+    @Test
+    public void testIdleIndexDroppedByExecutor() throws Exception {
+        final AtomicLong ticker = new AtomicLong();
+        final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+
+        try {
+            final MultiKeyMap<String, List<String>, Integer> multiKeyMap =
+                    MultiKeyMaps.<String, List<String>, Integer>builder()
+                            .mapSupplier(ConcurrentHashMap::new)
+                            .concurrent(true)
+                            .lazyIndex(1, TimeUnit.MINUTES)
+                            .ticker(ticker::get)
+                            .expirationExecutor(executor)
+                            .build();
+
+            for (int i = 0; i < 100; i++) {
+                multiKeyMap.put(newClassifiedKey(i), i);
+            }
+
+            softly.assertThat(multiKeyMap.getFullKeysByPartialKey(ImmutableSet.of("odd")).count()).isEqualTo(50);
+            softly.assertThat(multiKeyMap.indexStats().getPostingCount()).isEqualTo(300);
+
+            ticker.addAndGet(TimeUnit.MINUTES.toNanos(2));
+
+            // only the executor drops it, as nothing here writes to the map or cleans it up
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+
+            while (multiKeyMap.indexStats().getPostingCount() != 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+
+            softly.assertThat(multiKeyMap.indexStats().getPostingCount()).isZero();
+            softly.assertThat(multiKeyMap.get(newClassifiedKey(1))).isEqualTo(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testSelectiveLazyIndex() {
+        final MultiKeyMap<String, List<String>, Integer> multiKeyMap =
+                MultiKeyMaps.<String, List<String>, Integer>builder()
+                        .lazyIndex()
+                        .indexPositions(0, 1)
+                        .build();
+
+        for (int i = 0; i < 100; i++) {
+            multiKeyMap.put(newClassifiedKey(i), i);
+        }
+
+        multiKeyMap.put(ImmutableList.of("odd", "c9", "x"), -1);
+
+        softly
+                .assertThat(multiKeyMap.getValuesByPartialKey(ImmutableSet.of("odd")))
+                .hasSize(51)
+                .contains(-1);
+        softly
+                .assertThat(multiKeyMap.getValuesByPartialKey(ImmutableList.of("odd"), ImmutableList.of(0)))
+                .containsOnly(-1);
+        softly.assertThat(multiKeyMap.indexStats().getPostingCount()).isEqualTo(202);
+    }
+
+    @Test
+    public void testConcurrentWritersDuringBuild() throws Exception {
+        final AtomicLong ticker = new AtomicLong();
+        final MultiKeyMap<String, List<String>, Integer> multiKeyMap =
+                MultiKeyMaps.<String, List<String>, Integer>builder()
+                        .mapSupplier(ConcurrentHashMap::new)
+                        .concurrent(true)
+                        .executionPolicy(ExecutionPolicy.parallel(ForkJoinPool.commonPool(), 1))
+                        .lazyIndex(1, TimeUnit.SECONDS)
+                        .ticker(ticker::get)
+                        .build();
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+
+            for (int t = 0; t < 3; t++) {
+                final int offset = t * 10_000;
+                futures.add(
+                        executor.submit(
+                                () -> {
+                                    for (int i = offset; i < offset + 10_000; i++) {
+                                        multiKeyMap.put(newClassifiedKey(i), i);
+
+                                        if (i % 3 == 0) {
+                                            multiKeyMap.remove(newClassifiedKey(i - 1));
+                                        }
+                                    }
+                                }));
+            }
+
+            futures.add(
+                    executor.submit(
+                            () -> {
+                                for (int q = 0; q < 200; q++) {
+                                    multiKeyMap.getFullKeysByPartialKey(ImmutableSet.of("c" + (q % 5))).count();
+
+                                    if (q % 10 == 0) {
+                                        ticker.addAndGet(TimeUnit.SECONDS.toNanos(2));
+                                        multiKeyMap.cleanUp();
+                                    }
+                                }
+                            }));
+
+            for (final Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        for (int c = 0; c < 5; c++) {
+            softly
+                    .assertThat(
+                            multiKeyMap
+                                    .getFullKeysByPartialKey(ImmutableSet.of("c" + c, "even"))
+                                    .collect(Collectors.toSet()))
+                    .as("c%s", c)
+                    .isEqualTo(scan(multiKeyMap, "c" + c, "even"));
+        }
+
+        softly.assertThat(multiKeyMap.indexStats().getPostingCount()).isEqualTo(3L * multiKeyMap.size());
+    }
+
+    @Test
+    public void testStampDetectsTheDrop() {
+        final AtomicLong ticker = new AtomicLong();
+        final LazyIndex lazyIndex = new LazyIndex(TimeUnit.MINUTES.toNanos(1), ticker::get);
+        final Runnable noop = () -> {
+        };
+        final long stamp = lazyIndex.query(noop, noop);
+
+        softly.assertThat(lazyIndex.isCurrent(stamp)).isTrue();
+
+        ticker.addAndGet(TimeUnit.MINUTES.toNanos(1));
+
+        softly.assertThat(lazyIndex.dropIfIdle(noop)).isTrue();
+        softly.assertThat(lazyIndex.isCurrent(stamp)).isFalse();
+
+        final long rebuilt = lazyIndex.query(noop, noop);
+
+        softly.assertThat(lazyIndex.isIndexed()).isTrue();
+        softly.assertThat(lazyIndex.isCurrent(rebuilt)).isTrue();
+        softly.assertThat(lazyIndex.query(noop, noop)).isEqualTo(rebuilt);
+    }
+
+    @Test
+    public void testQueriesRacingWithDrops() throws Exception {
+        final MultiKeyMap<String, List<String>, Integer> multiKeyMap =
+                MultiKeyMaps.<String, List<String>, Integer>builder()
+                        .mapSupplier(ConcurrentHashMap::new)
+                        .concurrent(true)
+                        .lazyIndex(0, TimeUnit.NANOSECONDS)
+                        .build();
+
+        for (int i = 0; i < 1000; i++) {
+            multiKeyMap.put(newClassifiedKey(i), i);
+        }
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        final AtomicBoolean done = new AtomicBoolean();
+
+        try {
+            final Future<?> dropper =
+                    executor.submit(
+                            () -> {
+                                while (!done.get()) {
+                                    multiKeyMap.cleanUp();
+                                }
+                            });
+
+            for (int q = 0; q < 500; q++) {
+                softly
+                        .assertThat(multiKeyMap.getFullKeysByPartialKey(ImmutableSet.of("c1", "odd")))
+                        .as("query %s", q)
+                        .hasSize(100);
+            }
+
+            done.set(true);
+            dropper.get(60, TimeUnit.SECONDS);
+        } finally {
+            done.set(true);
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testBuilderArguments() {
+        assertThatThrownBy(() -> MultiKeyMaps.builder().lazyIndex(-1, TimeUnit.SECONDS))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> MultiKeyMaps.builder().lazyIndex(1, null))
+                .isInstanceOf(NullPointerException.class);
+        assertThatThrownBy(() -> MultiKeyMaps.builder().lazyIndex().lazyIndex(1, TimeUnit.SECONDS))
+                .isInstanceOf(IllegalStateException.class);
+    }
+}
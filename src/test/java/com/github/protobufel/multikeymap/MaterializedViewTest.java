@@ -0,0 +1,166 @@
+/*
+ *    Copyright 2017 David Tesler
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.protobufel.multikeymap;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.assertj.core.api.JUnitSoftAssertions;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@RunWith(JUnit4.class)
+public class MaterializedViewTest {
+    @Rule
+    public final JUnitSoftAssertions softly = new JUnitSoftAssertions();
+    private MultiKeyMap<String, List<String>, Integer> multiKeyMap;
+
+    @Before
+    public void setUp() throws Exception {
+        multiKeyMap = MultiKeyMaps.newMultiKeyMap();
+
+        for (int i = 0; i < 100; i++) {
+            multiKeyMap.put(ImmutableList.of("k" + (i % 10), "k" + (i % 7), "id" + i), i);
+        }
+    }
+
+    @Test
+    public void testLoadsCurrentEntries() {
+        final MaterializedView<List<String>, Integer> view =
+                multiKeyMap.materialize(ImmutableSet.of("k3", "k4"));
+
+        softly.assertThat(view).isEqualTo(query(ImmutableSet.of("k3", "k4"))).isNotEmpty();
+    }
+
+    @Test
+    public void testFollowsModifications() {
+        final Random random = new Random(33);
+        final List<String> positional = ImmutableList.of("k5", "k2");
+        final List<Integer> positions = ImmutableList.of(0, -1);
+        final MaterializedView<List<String>, Integer> view =
+                multiKeyMap.materialize(positional, positions);
+
+        for (int i = 0; i < 2000; i++) {
+            final int id = random.nextInt(300);
+            final List<String> key = ImmutableList.of("k" + (id % 10), "k" + (id % 7), "id" + id);
+
+            switch (random.nextInt(4)) {
+                case 0:
+                    multiKeyMap.remove(key);
+                    break;
+                case 1:
+                    multiKeyMap.keySet().remove(key);
+                    break;
+                default:
+                    multiKeyMap.put(key, i);
+            }
+        }
+
+        softly
+                .assertThat(view)
+                .isEqualTo(
+                        multiKeyMap
+                                .getEntriesByPartialKey(positional, positions)
+                                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue)));
+    }
+
+    @Test
+    public void testFollowsRacingWritersOfTheSameKey() throws Exception {
+        final MultiKeyMap<String, List<String>, Integer> concurrentMap =
+                MultiKeyMaps.<String, List<String>, Integer>builder()
+                        .mapSupplier(ConcurrentHashMap::new)
+                        .concurrent(true)
+                        .build();
+        final List<String> key = ImmutableList.of("hot", "id");
+        final CountDownLatch added = new CountDownLatch(1);
+        final CountDownLatch removed = new CountDownLatch(1);
+
+        // notified before the view, it holds the put's event until the removal has been applied
+        concurrentMap.subscribe(
+                ImmutableSet.of("hot"),
+                new PartialKeyListener<List<String>, Integer>() {
+                    @Override
+                    public void onAdded(final List<String> fullKey, final Integer value) {
+                        added.countDown();
+
+                        try {
+                            removed.await(10, TimeUnit.SECONDS);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                });
+
+        final MaterializedView<List<String>, Integer> view =
+                concurrentMap.materialize(ImmutableSet.of("hot"));
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            final Future<?> writer = executor.submit(() -> concurrentMap.put(key, 1));
+            softly.assertThat(added.await(10, TimeUnit.SECONDS)).isTrue();
+            concurrentMap.remove(key);
+            removed.countDown();
+            writer.get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        softly.assertThat(concurrentMap).isEmpty();
+        softly.assertThat(view).isEmpty();
+    }
+
+    @Test
+    public void testReadOnlyAndClose() {
+        final MaterializedView<List<String>, Integer> view =
+                multiKeyMap.materialize(ImmutableList.of("k1"));
+
+        assertThatThrownBy(() -> view.put(ImmutableList.of("k1"), 1))
+                .isInstanceOf(UnsupportedOperationException.class);
+        assertThatThrownBy(() -> view.entrySet().iterator().next().setValue(1))
+                .isInstanceOf(UnsupportedOperationException.class);
+        assertThatThrownBy(() -> view.keySet().clear())
+                .isInstanceOf(UnsupportedOperationException.class);
+
+        view.close();
+        multiKeyMap.put(ImmutableList.of("k1", "new"), 1);
+
+        softly.assertThat(view.isClosed()).isTrue();
+        softly.assertThat(view).isEmpty();
+    }
+
+    private Map<List<String>, Integer> query(final Iterable<String> partialKey) {
+        return multiKeyMap
+                .getEntriesByPartialKey(partialKey)
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ *    Copyright 2017 David Tesler
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.protobufel.multikeymap;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.assertj.core.api.JUnitSoftAssertions;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@RunWith(JUnit4.class)
+public class MultiKeyMapAsyncTest {
+    private static final int SIZE = 1000;
+    @Rule
+    public final JUnitSoftAssertions softly = new JUnitSoftAssertions();
+    private MultiKeyMap<String, List<String>, Integer> multiKeyMap;
+    private ThreadPoolExecutor executor;
+
+    @Before
+    public void setUp() throws Exception {
+        multiKeyMap = MultiKeyMaps.newMultiKeyMap();
+        executor = MultiKeyMaps.newPartialQueryExecutor(2, 1);
+
+        for (int i = 0; i < SIZE; i++) {
+            multiKeyMap.put(ImmutableList.of("common", "key" + i, (i % 2 == 0) ? "even" : "odd"), i);
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testAsyncQueriesMatchSyncOnes() throws Exception {
+        final List<String> partialKey = ImmutableList.of("even", "common");
+        final List<Integer> positions = ImmutableList.of(-1, 0);
+
+        softly
+                .assertThat(multiKeyMap.getFullKeysByPartialKeyAsync(partialKey, executor).get())
+                .hasSize(SIZE / 2)
+                .hasSameElementsAs(
+                        multiKeyMap.getFullKeysByPartialKey(partialKey).collect(Collectors.toList()));
+        softly
+                .assertThat(
+                        multiKeyMap.getFullKeysByPartialKeyAsync(partialKey, positions, executor).get())
+                .hasSameElementsAs(
+                        multiKeyMap
+                                .getFullKeysByPartialKey(partialKey, positions)
+                                .collect(Collectors.toList()));
+        softly
+                .assertThat(multiKeyMap.getValuesByPartialKeyAsync(partialKey, executor).get())
+                .hasSameElementsAs(
+                        multiKeyMap.getValuesByPartialKey(partialKey).collect(Collectors.toList()));
+        softly
+                .assertThat(
+                        multiKeyMap.getValuesByPartialKeyAsync(partialKey, positions, executor).get())
+                .hasSize(SIZE / 2);
+        softly
+                .assertThat(multiKeyMap.getEntriesByPartialKeyAsync(partialKey, executor).get())
+                .hasSameElementsAs(
+                        multiKeyMap.getEntriesByPartialKey(partialKey).collect(Collectors.toList()));
+        softly
+                .assertThat(
+                        multiKeyMap.getEntriesByPartialKeyAsync(partialKey, positions, executor).get())
+                .hasSize(SIZE / 2);
+        softly
+                .assertThat(multiKeyMap.countByPartialKeyAsync(ImmutableSet.of("odd"), executor).get())
+                .isEqualTo(SIZE / 2L);
+        softly
+                .assertThat(
+                        multiKeyMap
+                                .countByPartialKeyAsync(
+                                        ImmutableList.of("odd"), ImmutableList.of(1), executor)
+                                .get())
+                .isEqualTo(0L);
+    }
+
+    @Test
+    public void testRunsOnProvidedExecutor() throws Exception {
+        final String caller = Thread.currentThread().getName();
+        final AtomicReference<String> worker = new AtomicReference<>();
+        multiKeyMap
+                .getFullKeysByPartialKeyAsync(
+                        ImmutableList.of("key1"),
+                        command ->
+                                executor.execute(
+                                        () -> {
+                                            worker.set(Thread.currentThread().getName());
+                                            command.run();
+                                        }))
+                .get();
+
+        // the completed task count is only final once the worker has finished the task
+        executor.shutdown();
+
+        softly.assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+        softly.assertThat(worker.get()).startsWith("multikeymap-query-").isNotEqualTo(caller);
+        softly.assertThat(executor.getCompletedTaskCount()).isEqualTo(1L);
+    }
+
+    @Test
+    public void testBoundedExecutorRejectsOverflow() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        executor.execute(() -> awaitQuietly(latch));
+        executor.execute(() -> awaitQuietly(latch));
+        multiKeyMap.countByPartialKeyAsync(ImmutableList.of("odd"), executor);
+
+        softly.assertThat(executor.getQueue()).hasSize(1);
+        assertThatThrownBy(
+                () -> multiKeyMap.countByPartialKeyAsync(ImmutableList.of("odd"), executor))
+                .isInstanceOf(RejectedExecutionException.class);
+
+        latch.countDown();
+        executor.shutdown();
+        softly.assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    public void testNullExecutorThrows() {
+        assertThatThrownBy(
+                () -> multiKeyMap.getFullKeysByPartialKeyAsync(ImmutableList.of("odd"), null))
+                .isInstanceOf(NullPointerException.class);
+    }
+
+    private static void awaitQuietly(final CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
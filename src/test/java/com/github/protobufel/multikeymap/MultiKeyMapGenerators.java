@@ -24,6 +24,7 @@ import com.google.common.collect.testing.TestMapGenerator;
 
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.function.IntSupplier;
 import java.util.function.Supplier;
 
 public final class MultiKeyMapGenerators {
@@ -191,4 +192,110 @@ public final class MultiKeyMapGenerators {
             }
         }
     }
+
+    /**
+     * Makes the i-th full key of the id, the class out of 5, and the parity sub-keys.
+     *
+     * @param i the key number
+     * @return the full key, e.g. ["id7", "c2", "odd"]
+     */
+    public static List<String> newClassifiedKey(final int i) {
+        return ImmutableList.of("id" + i, "c" + (i % 5), (i % 2 == 0) ? "even" : "odd");
+    }
+
+    /**
+     * Makes the i-th full key of the sub-key common to all keys, the parity, and the id sub-keys.
+     *
+     * @param i the key number
+     * @return the full key, e.g. ["all", "odd", "id7"]
+     */
+    public static List<String> newParityKey(final int i) {
+        return ImmutableList.of("all", (i % 2 == 0) ? "even" : "odd", "id" + i);
+    }
+
+    /**
+     * Makes the i-th full key as in {@link #newParityKey(int)}, with the residue modulo 3 before
+     * the id sub-key.
+     *
+     * @param i the key number
+     * @return the full key, e.g. ["all", "odd", "m1", "id7"]
+     */
+    public static List<String> newModuloKey(final int i) {
+        return ImmutableList.of("all", (i % 2 == 0) ? "even" : "odd", "m" + (i % 3), "id" + i);
+    }
+
+    /**
+     * Generates the distinct full keys of the given arity, wherein all but the last sub-keys are
+     * drawn from the Zipf distributed vocabulary, and the last sub-key is the unique record id,
+     * like in the typical multi-attribute records.
+     *
+     * @param count      the number of the keys
+     * @param arity      the number of the sub-keys per key, at least 2
+     * @param vocabulary the number of the distinct non-unique sub-keys
+     * @param skew       the Zipf exponent, 0 for the uniform distribution
+     * @param seed       the random seed, for the reproducible data
+     * @return the list of the distinct full keys
+     */
+    public static List<List<String>> newZipfKeys(
+            final int count, final int arity, final int vocabulary, final double skew, final long seed) {
+        if (arity < 2) {
+            throw new IllegalArgumentException(String.format("arity %s is less than 2", arity));
+        }
+
+        final ZipfSupplier zipf = new ZipfSupplier(vocabulary, skew, new Random(seed));
+        final List<List<String>> keys = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            final String[] key = new String[arity];
+
+            for (int j = 0; j < arity - 1; j++) {
+                key[j] = "s" + zipf.getAsInt();
+            }
+
+            key[arity - 1] = "id" + i;
+            keys.add(Arrays.asList(key));
+        }
+
+        return keys;
+    }
+
+    /**
+     * Supplies the ranks from 0 inclusive to n exclusive with the Zipf distribution, i.e. the rank k
+     * has the probability proportional to 1 / (k + 1)^skew.
+     */
+    public static final class ZipfSupplier implements IntSupplier {
+        private final double[] cumulative;
+        private final Random random;
+
+        public ZipfSupplier(final int n, final double skew, final Random random) {
+            super();
+
+            if (n <= 0) {
+                throw new IllegalArgumentException(String.format("non-positive n %s", n));
+            }
+
+            if (skew < 0) {
+                throw new IllegalArgumentException(String.format("negative skew %s", skew));
+            }
+
+            this.random = Objects.requireNonNull(random);
+            this.cumulative = new double[n];
+            double sum = 0;
+
+            for (int k = 0; k < n; k++) {
+                sum += 1.0 / Math.pow(k + 1, skew);
+                cumulative[k] = sum;
+            }
+
+            for (int k = 0; k < n; k++) {
+                cumulative[k] /= sum;
+            }
+        }
+
+        @Override
+        public int getAsInt() {
+            final int index = Arrays.binarySearch(cumulative, random.nextDouble());
+            return Math.min((index < 0) ? -index - 1 : index, cumulative.length - 1);
+        }
+    }
 }
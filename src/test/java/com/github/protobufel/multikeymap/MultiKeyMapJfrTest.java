@@ -0,0 +1,126 @@
+/*
+ *    Copyright 2017 David Tesler
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.protobufel.multikeymap;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.assertj.core.api.JUnitSoftAssertions;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+@RunWith(JUnit4.class)
+public class MultiKeyMapJfrTest {
+    @Rule
+    public final JUnitSoftAssertions softly = new JUnitSoftAssertions();
+
+    @Before
+    public void setUp() throws Exception {
+        Assume.assumeTrue(JfrSupport.ENABLED);
+    }
+
+    @Test
+    public void testEmitsEvents() throws Exception {
+        final List<RecordedEvent> events;
+
+        try (Recording recording = new Recording()) {
+            recording.enable("com.github.protobufel.multikeymap.PartialQuery").withThreshold(null);
+            recording.enable("com.github.protobufel.multikeymap.IndexUpdate").withThreshold(null);
+            recording.enable("com.github.protobufel.multikeymap.BulkOperation").withThreshold(null);
+            recording.start();
+
+            final MultiKeyMap<String, List<String>, Integer> multiKeyMap = MultiKeyMaps.newMultiKeyMap();
+            final Map<List<String>, Integer> source = new HashMap<>();
+            source.put(ImmutableList.of("a", "b"), 1);
+            source.put(ImmutableList.of("a", "c"), 2);
+            multiKeyMap.putAll(source);
+            multiKeyMap.getFullKeysByPartialKey(ImmutableSet.of("a", "b")).count();
+            multiKeyMap.getFullKeysByPartialKey(ImmutableList.of("c"), ImmutableList.of(1)).count();
+            multiKeyMap.getFullKeysByPartialKey(ImmutableList.of("c", "a"), ImmutableList.of(-1)).count();
+            multiKeyMap.remove(ImmutableList.of("a", "b"));
+            multiKeyMap.clear();
+
+            recording.stop();
+            final Path file = Files.createTempFile("multikeymap", ".jfr");
+
+            try {
+                recording.dump(file);
+                events =
+                        RecordingFile.readAllEvents(file)
+                                .stream()
+                                .filter(
+                                        event ->
+                                                event.getEventType().getName().startsWith(
+                                                        "com.github.protobufel.multikeymap."))
+                                .collect(Collectors.toList());
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        }
+
+        final List<RecordedEvent> queries = eventsOf(events, "PartialQuery");
+        softly.assertThat(queries).hasSize(3);
+        softly.assertThat(queries.get(0).getInt("subKeyCount")).isEqualTo(2);
+        softly.assertThat(queries.get(0).getInt("smallestPostingSetSize")).isEqualTo(1);
+        softly.assertThat(queries.get(0).getInt("resultSize")).isEqualTo(1);
+        softly.assertThat(queries.get(0).getBoolean("positional")).isFalse();
+        softly.assertThat(queries.get(1).getBoolean("positional")).isTrue();
+        softly.assertThat(queries.get(2).getBoolean("positional")).isFalse();
+
+        final List<RecordedEvent> updates = eventsOf(events, "IndexUpdate");
+        softly.assertThat(updates).hasSize(3);
+        softly
+                .assertThat(updates.stream().filter(event -> !event.getBoolean("added")).count())
+                .isEqualTo(1);
+
+        softly
+                .assertThat(
+                        eventsOf(events, "BulkOperation")
+                                .stream()
+                                .map(event -> event.getString("operation") + event.getInt("entryCount")))
+                .containsExactly("putAll2", "clear1");
+    }
+
+    @Test
+    public void testNoEventsWithoutRecording() {
+        softly.assertThat(JfrSupport.EVENTS.beginPartialQuery()).isNull();
+        softly.assertThat(JfrSupport.EVENTS.beginIndexUpdate()).isNull();
+        softly.assertThat(JfrSupport.EVENTS.beginBulkOperation()).isNull();
+    }
+
+    private static List<RecordedEvent> eventsOf(final List<RecordedEvent> events, final String name) {
+        return events
+                .stream()
+                .filter(event -> event.getEventType().getName().endsWith("." + name))
+                .sorted((event1, event2) -> event1.getStartTime().compareTo(event2.getStartTime()))
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ *    Copyright 2017 David Tesler
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.protobufel.multikeymap;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Ordering;
+import org.assertj.core.api.JUnitSoftAssertions;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.List;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@RunWith(JUnit4.class)
+public class MultiKeyMapMetricsTest {
+    @Rule
+    public final JUnitSoftAssertions softly = new JUnitSoftAssertions();
+    private StandardMultiKeyMapMetrics metrics;
+    private MultiKeyMap<String, List<String>, Integer> multiKeyMap;
+
+    @Before
+    public void setUp() throws Exception {
+        metrics = new StandardMultiKeyMapMetrics();
+        multiKeyMap = MultiKeyMaps.<String, List<String>, Integer>builder().metrics(metrics).build();
+
+        for (int i = 0; i < 100; i++) {
+            multiKeyMap.put(ImmutableList.of("all", (i % 2 == 0) ? "even" : "odd", "id" + i), i);
+        }
+    }
+
+    @Test
+    public void testCountsModifications() {
+        multiKeyMap.put(ImmutableList.of("all", "even", "id0"), -1);
+        multiKeyMap.remove(ImmutableList.of("all", "even", "id2"));
+        multiKeyMap.remove(ImmutableList.of("absent"));
+        multiKeyMap.keySet().remove(ImmutableList.of("all", "even", "id4"));
+
+        softly.assertThat(metrics.getAddCount()).isEqualTo(100);
+        softly.assertThat(metrics.getReplaceCount()).isEqualTo(1);
+        softly.assertThat(metrics.getRemoveCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void testRecordsQueries() {
+        softly
+                .assertThat(multiKeyMap.getFullKeysByPartialKey(ImmutableSet.of("all", "odd")))
+                .hasSize(50);
+        softly
+                .assertThat(
+                        multiKeyMap.getFullKeysByPartialKey(
+                                ImmutableList.of("odd", "id1"), ImmutableList.of(1, 0)))
+                .isEmpty();
+
+        softly.assertThat(metrics.getQueryCount()).isEqualTo(2);
+        softly.assertThat(metrics.getCandidateCount()).isEqualTo(51);
+        softly.assertThat(metrics.getResultCount()).isEqualTo(51);
+        softly.assertThat(metrics.getRejectedCandidateCount()).isEqualTo(1);
+        softly.assertThat(metrics.getCandidates(100)).isBetween(50L, 56L);
+        softly.assertThat(metrics.getQueryLatencyNanos(50)).isPositive();
+
+        metrics.reset();
+        softly.assertThat(metrics.getQueryCount()).isZero();
+        softly.assertThat(metrics.getQueryLatencyNanos(99)).isZero();
+    }
+
+    @Test
+    public void testBuilder() {
+        final MultiKeyMap<String, List<String>, Integer> treeBased =
+                MultiKeyMaps.<String, List<String>, Integer>builder()
+                        .mapSupplier(() -> new TreeMap<>(Ordering.natural().lexicographical()))
+                        .concurrent(true)
+                        .executionPolicy(ExecutionPolicy.parallel())
+                        .build();
+        treeBased.putAll(multiKeyMap);
+
+        softly.assertThat(treeBased).isEqualTo(multiKeyMap);
+        softly
+                .assertThat(treeBased.keySet().iterator().next())
+                .isEqualTo(ImmutableList.of("all", "even", "id0"));
+        assertThatThrownBy(() -> MultiKeyMaps.builder().metrics(null))
+                .isInstanceOf(NullPointerException.class);
+    }
+
+    @Test
+    public void testLogHistogram() {
+        final LogHistogram histogram = new LogHistogram();
+
+        for (long value = 0; value < 1000; value++) {
+            histogram.record(value);
+        }
+
+        histogram.record(Long.MAX_VALUE);
+        histogram.record(-1);
+
+        softly.assertThat(histogram.getCount()).isEqualTo(1002);
+        softly.assertThat(histogram.getValueAtPercentile(0)).isEqualTo(0);
+        softly.assertThat(histogram.getValueAtPercentile(50)).isBetween(499L, 562L);
+        softly.assertThat(histogram.getValueAtPercentile(99)).isBetween(989L, 1113L);
+        softly.assertThat(histogram.getValueAtPercentile(100)).isEqualTo(Long.MAX_VALUE);
+
+        for (long value : new long[]{0, 7, 8, 9, 15, 16, 1000, 1L << 40, Long.MAX_VALUE}) {
+            final int index = LogHistogram.indexOf(value);
+            softly.assertThat(LogHistogram.highestValueOf(index)).isGreaterThanOrEqualTo(value);
+            softly
+                    .assertThat(LogHistogram.highestValueOf(index) - value)
+                    .isLessThanOrEqualTo(value / 8);
+        }
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ *    Copyright 2017 David Tesler
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.protobufel.multikeymap;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.assertj.core.api.JUnitSoftAssertions;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.stream.Collectors;
+
+import static com.github.protobufel.multikeymap.MultiKeyMapPublishers.publisher;
+
+@RunWith(JUnit4.class)
+public class MultiKeyMapPublisherTest {
+    private static final int SIZE = 1000;
+    @Rule
+    public final JUnitSoftAssertions softly = new JUnitSoftAssertions();
+    private MultiKeyMap<String, List<String>, Integer> multiKeyMap;
+
+    @Before
+    public void setUp() throws Exception {
+        multiKeyMap = MultiKeyMaps.newMultiKeyMap();
+
+        for (int i = 0; i < SIZE; i++) {
+            multiKeyMap.put(ImmutableList.of("common", "key" + i, (i % 2 == 0) ? "even" : "odd"), i);
+        }
+    }
+
+    @Test
+    public void testPublishesAllOnUnboundedDemand() {
+        final TestSubscriber<Entry<List<String>, Integer>> subscriber =
+                new TestSubscriber<>(Long.MAX_VALUE);
+        publisher(multiKeyMap, ImmutableList.of("even", "common"))
+                .subscribe(subscriber);
+
+        softly.assertThat(subscriber.completed).isTrue();
+        softly.assertThat(subscriber.error).isNull();
+        softly
+                .assertThat(subscriber.received)
+                .hasSize(SIZE / 2)
+                .hasSameElementsAs(
+                        multiKeyMap
+                                .getEntriesByPartialKey(ImmutableList.of("even", "common"))
+                                .collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testHonorsDemand() {
+        final TestSubscriber<Entry<List<String>, Integer>> subscriber = new TestSubscriber<>(0);
+        publisher(multiKeyMap, ImmutableSet.of("odd")).subscribe(subscriber);
+
+        softly.assertThat(subscriber.received).isEmpty();
+        subscriber.subscription.request(3);
+        softly.assertThat(subscriber.received).hasSize(3);
+        subscriber.subscription.request(2);
+        softly.assertThat(subscriber.received).hasSize(5);
+        softly.assertThat(subscriber.completed).isFalse();
+
+        subscriber.subscription.cancel();
+        subscriber.subscription.request(10);
+        softly.assertThat(subscriber.received).hasSize(5);
+        softly.assertThat(subscriber.completed).isFalse();
+    }
+
+    @Test
+    public void testPositionsAndEmptyResults() {
+        final TestSubscriber<Entry<List<String>, Integer>> subscriber =
+                new TestSubscriber<>(Long.MAX_VALUE);
+        publisher(multiKeyMap, ImmutableList.of("key7", "common"), ImmutableList.of(1, 0))
+                .subscribe(subscriber);
+
+        softly.assertThat(subscriber.received).extracting(Entry::getValue).containsOnly(7);
+        softly.assertThat(subscriber.completed).isTrue();
+
+        final TestSubscriber<Entry<List<String>, Integer>> absent = new TestSubscriber<>(1);
+        publisher(multiKeyMap, ImmutableList.of("absent")).subscribe(absent);
+
+        softly.assertThat(absent.received).isEmpty();
+        softly.assertThat(absent.completed).isTrue();
+    }
+
+    @Test
+    public void testErrors() {
+        final TestSubscriber<Entry<List<String>, Integer>> subscriber = new TestSubscriber<>(0);
+        publisher(multiKeyMap, ImmutableList.of("common")).subscribe(subscriber);
+        subscriber.subscription.request(0);
+
+        softly.assertThat(subscriber.error).isInstanceOf(IllegalArgumentException.class);
+        softly.assertThat(subscriber.received).isEmpty();
+
+        final TestSubscriber<Entry<List<String>, Integer>> duplicatePositions =
+                new TestSubscriber<>(1);
+        publisher(multiKeyMap, ImmutableList.of("common", "odd"), ImmutableList.of(0, 0))
+                .subscribe(duplicatePositions);
+
+        softly.assertThat(duplicatePositions.error).isInstanceOf(IllegalArgumentException.class);
+        softly
+                .assertThatThrownBy(() -> publisher(multiKeyMap, null))
+                .isInstanceOf(NullPointerException.class);
+    }
+
+    @Test
+    public void testRequestFromOnNext() {
+        final List<Integer> values = new ArrayList<>();
+        publisher(multiKeyMap, ImmutableList.of("even"))
+                .subscribe(
+                        new TestSubscriber<Entry<List<String>, Integer>>(1) {
+                            @Override
+                            public void onNext(final Entry<List<String>, Integer> entry) {
+                                values.add(entry.getValue());
+                                subscription.request(1);
+                            }
+                        });
+
+        softly.assertThat(values).hasSize(SIZE / 2);
+    }
+
+    @Test
+    public void testThrowingSubscriberCancelled() {
+        final TestSubscriber<Entry<List<String>, Integer>> subscriber =
+                new TestSubscriber<Entry<List<String>, Integer>>(10) {
+                    @Override
+                    public void onNext(final Entry<List<String>, Integer> entry) {
+                        super.onNext(entry);
+
+                        if (received.size() == 3) {
+                            throw new IllegalStateException("onNext");
+                        }
+                    }
+                };
+        publisher(multiKeyMap, ImmutableList.of("odd")).subscribe(subscriber);
+        subscriber.subscription.request(10);
+
+        softly.assertThat(subscriber.received).hasSize(3);
+        softly.assertThat(subscriber.error).isNull();
+        softly.assertThat(subscriber.completed).isFalse();
+
+        final List<Integer> completions = new ArrayList<>();
+        final TestSubscriber<Entry<List<String>, Integer>> completing =
+                new TestSubscriber<Entry<List<String>, Integer>>(1) {
+                    @Override
+                    public void onComplete() {
+                        completions.add(received.size());
+                        throw new IllegalStateException("onComplete");
+                    }
+                };
+        publisher(multiKeyMap, ImmutableList.of("key7")).subscribe(completing);
+        completing.subscription.request(1);
+
+        softly.assertThat(completions).containsExactly(1);
+        softly.assertThat(completing.error).isNull();
+    }
+
+    @Test
+    public void testPublishesOtherMultiKeyMaps() {
+        final MultiKeyMap<String, List<String>, Integer> sharded = MultiKeyMaps.newSharded(4);
+        sharded.putAll(multiKeyMap);
+        final TestSubscriber<Entry<List<String>, Integer>> subscriber = new TestSubscriber<>(0);
+        publisher(sharded, ImmutableList.of("odd", "common"), ImmutableList.of(2, 0))
+                .subscribe(subscriber);
+        subscriber.subscription.request(SIZE);
+
+        softly.assertThat(subscriber.completed).isTrue();
+        softly
+                .assertThat(subscriber.received)
+                .hasSameElementsAs(
+                        multiKeyMap
+                                .getEntriesByPartialKey(ImmutableList.of("odd"))
+                                .collect(Collectors.toList()));
+    }
+
+    private static class TestSubscriber<T> implements Subscriber<T> {
+        final List<T> received = new ArrayList<>();
+        private final long initialRequest;
+        Subscription subscription;
+        boolean completed;
+        Throwable error;
+
+        TestSubscriber(final long initialRequest) {
+            this.initialRequest = initialRequest;
+        }
+
+        @Override
+        public void onSubscribe(final Subscription subscription) {
+            this.subscription = subscription;
+
+            if (initialRequest > 0) {
+                subscription.request(initialRequest);
+            }
+        }
+
+        @Override
+        public void onNext(final T t) {
+            received.add(t);
+        }
+
+        @Override
+        public void onError(final Throwable t) {
+            error = t;
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+}
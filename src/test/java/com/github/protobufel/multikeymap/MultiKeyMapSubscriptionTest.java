@@ -0,0 +1,159 @@
+/*
+ *    Copyright 2017 David Tesler
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.protobufel.multikeymap;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.assertj.core.api.JUnitSoftAssertions;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+@RunWith(JUnit4.class)
+public class MultiKeyMapSubscriptionTest {
+    @Rule
+    public final JUnitSoftAssertions softly = new JUnitSoftAssertions();
+    private MultiKeyMap<String, List<String>, Integer> multiKeyMap;
+    private RecordingListener listener;
+
+    @Before
+    public void setUp() throws Exception {
+        multiKeyMap = MultiKeyMaps.newMultiKeyMap();
+        multiKeyMap.put(ImmutableList.of("red", "apple"), 1);
+        listener = new RecordingListener();
+    }
+
+    @Test
+    public void testReceivesMatchingChangesOnly() {
+        final PartialKeySubscription subscription =
+                multiKeyMap.subscribe(ImmutableSet.of("red"), listener);
+
+        multiKeyMap.put(ImmutableList.of("red", "cherry"), 2);
+        multiKeyMap.put(ImmutableList.of("green", "apple"), 3);
+        multiKeyMap.put(ImmutableList.of("red", "cherry"), 4);
+        multiKeyMap.remove(ImmutableList.of("red", "apple"));
+        multiKeyMap.remove(ImmutableList.of("green", "apple"));
+        multiKeyMap.remove(ImmutableList.of("absent"));
+
+        softly.assertThat(subscription.isClosed()).isFalse();
+        softly
+                .assertThat(listener.events)
+                .containsExactly(
+                        "added [red, cherry]=2", "updated [red, cherry]=2->4", "removed [red, apple]=1");
+    }
+
+    @Test
+    public void testPositionalSubscription() {
+        multiKeyMap.subscribe(ImmutableList.of("apple", "red"), ImmutableList.of(1, -1), listener);
+
+        multiKeyMap.put(ImmutableList.of("red", "big", "apple"), 2);
+        multiKeyMap.put(ImmutableList.of("red", "apple", "pie"), 3);
+        multiKeyMap.put(ImmutableList.of("apple", "red"), 4);
+
+        softly.assertThat(listener.events).containsExactly("added [red, apple, pie]=3");
+    }
+
+    @Test
+    public void testCloseStopsEvents() {
+        final PartialKeySubscription subscription =
+                multiKeyMap.subscribe(ImmutableList.of("apple"), listener);
+        multiKeyMap.put(ImmutableList.of("green", "apple"), 2);
+        subscription.close();
+        subscription.close();
+        multiKeyMap.put(ImmutableList.of("yellow", "apple"), 3);
+
+        softly.assertThat(subscription.isClosed()).isTrue();
+        softly.assertThat(listener.events).containsExactly("added [green, apple]=2");
+    }
+
+    @Test
+    public void testDuplicateSubKeysNotifyOnce() {
+        multiKeyMap.subscribe(ImmutableList.of("apple"), listener);
+        multiKeyMap.subscribe(ImmutableList.of("apple", "apple"), listener);
+        multiKeyMap.put(ImmutableList.of("apple", "apple"), 2);
+
+        softly
+                .assertThat(listener.events)
+                .containsExactly("added [apple, apple]=2", "added [apple, apple]=2");
+    }
+
+    @Test
+    public void testEmptyPartialKeyMatchesNothing() {
+        final PartialKeySubscription subscription =
+                multiKeyMap.subscribe(ImmutableList.of(), listener);
+        multiKeyMap.put(ImmutableList.of("green", "apple"), 2);
+
+        softly.assertThat(listener.events).isEmpty();
+        subscription.close();
+        softly.assertThat(subscription.isClosed()).isTrue();
+    }
+
+    @Test
+    public void testViewsAndBulkOperationsNotify() {
+        multiKeyMap.put(ImmutableList.of("green", "apple"), 2);
+        multiKeyMap.put(ImmutableList.of("yellow", "apple"), 3);
+        multiKeyMap.put(ImmutableList.of("sour", "apple"), 4);
+        multiKeyMap.subscribe(ImmutableList.of("apple"), listener);
+
+        multiKeyMap.replaceAll((key, value) -> value * 10);
+        softly.assertThat(listener.events).hasSize(4).allMatch(event -> event.startsWith("updated"));
+        listener.events.clear();
+
+        multiKeyMap.keySet().remove(ImmutableList.of("red", "apple"));
+        softly.assertThat(listener.events).containsExactly("removed [red, apple]=10");
+        listener.events.clear();
+
+        final Iterator<List<String>> keys = multiKeyMap.keySet().iterator();
+        keys.next();
+        keys.remove();
+        final Iterator<Integer> values = multiKeyMap.values().iterator();
+        values.next();
+        values.remove();
+        softly.assertThat(listener.events).hasSize(2).allMatch(event -> event.startsWith("removed"));
+        listener.events.clear();
+
+        multiKeyMap.clear();
+        softly.assertThat(listener.events).hasSize(1).allMatch(event -> event.startsWith("removed"));
+        softly.assertThat(multiKeyMap.getFullKeysByPartialKey(ImmutableList.of("apple"))).isEmpty();
+    }
+
+    static final class RecordingListener implements PartialKeyListener<List<String>, Integer> {
+        final List<String> events = new ArrayList<>();
+
+        @Override
+        public void onAdded(final List<String> key, final Integer value) {
+            events.add(String.format("added %s=%s", key, value));
+        }
+
+        @Override
+        public void onRemoved(final List<String> key, final Integer value) {
+            events.add(String.format("removed %s=%s", key, value));
+        }
+
+        @Override
+        public void onUpdated(final List<String> key, final Integer oldValue, final Integer newValue) {
+            events.add(String.format("updated %s=%s->%s", key, oldValue, newValue));
+        }
+    }
+}
@@ -75,6 +75,7 @@ public class MultiKeyMapsTest {
         new NullPointerTester()
                 .setDefault(MapSupplier.class, hashMapSupplier)
                 .setDefault(boolean.class, false)
+                .setDefault(ExecutionPolicy.class, ExecutionPolicy.sequential())
                 .setDefault(Map.class, new HashMap<Iterable<String>, Integer>())
                 .testAllPublicStaticMethods(MultiKeyMaps.class);
     }
@@ -0,0 +1,530 @@
+/*
+ *    Copyright 2017 David Tesler
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.protobufel.multikeymap;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.assertj.core.api.JUnitSoftAssertions;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.github.protobufel.multikeymap.MultiKeyMapGenerators.newModuloKey;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@RunWith(JUnit4.class)
+public class PartitionedMultiKeyMapTest {
+    @Rule
+    public final JUnitSoftAssertions softly = new JUnitSoftAssertions();
+    private List<ShardServer<String, List<String>, String>> servers;
+    private PartitionedMultiKeyMap<String, List<String>, String> multiKeyMap;
+
+    private static InetSocketAddress loopback(final int port) {
+        return new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+    }
+
+    private static ShardServer<String, List<String>, String> startServer(
+            final MultiKeyMap<String, List<String>, String> shard) throws IOException {
+        return ShardServer.start(
+                loopback(0), shard, Codec.utf8(), Codec.listOf(Codec.utf8()), Codec.utf8());
+    }
+
+    private static PartitionedMultiKeyMap<String, List<String>, String> connect(
+            final List<InetSocketAddress> addresses) throws IOException {
+        return MultiKeyMaps.newPartitioned(
+                addresses, Codec.utf8(), Codec.listOf(Codec.utf8()), Codec.utf8());
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        servers = new ArrayList<>();
+
+        for (int i = 0; i < 3; i++) {
+            servers.add(startServer(MultiKeyMaps.newMultiKeyMap()));
+        }
+
+        multiKeyMap =
+                connect(servers.stream().map(ShardServer::getAddress).collect(Collectors.toList()));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        multiKeyMap.close();
+        servers.forEach(ShardServer::close);
+    }
+
+    @Test
+    public void testFullKeyOperationsRouteByHash() {
+        for (int i = 0; i < 300; i++) {
+            softly.assertThat(multiKeyMap.put(newModuloKey(i), "v" + i)).isNull();
+        }
+
+        softly.assertThat(multiKeyMap.put(newModuloKey(0), "x0")).isEqualTo("v0");
+        softly.assertThat(multiKeyMap).hasSize(300);
+        softly.assertThat(multiKeyMap.get(newModuloKey(0))).isEqualTo("x0");
+        softly.assertThat(multiKeyMap.get(newModuloKey(1))).isEqualTo("v1");
+        softly.assertThat(multiKeyMap.get(newModuloKey(1000))).isNull();
+        softly.assertThat(multiKeyMap.containsKey(newModuloKey(299))).isTrue();
+        softly.assertThat(multiKeyMap.containsKey(newModuloKey(300))).isFalse();
+        softly.assertThat(multiKeyMap.containsValue("v299")).isTrue();
+        softly.assertThat(multiKeyMap.containsValue("v0")).isFalse();
+        softly.assertThat(multiKeyMap.remove(newModuloKey(1))).isEqualTo("v1");
+        softly.assertThat(multiKeyMap.remove(newModuloKey(1))).isNull();
+        softly.assertThat(multiKeyMap).hasSize(299);
+
+        for (final ShardServer<String, List<String>, String> server : servers) {
+            final MultiKeyMap<String, List<String>, String> shard = server.getMultiKeyMap();
+            softly.assertThat(shard.size()).isBetween(50, 150);
+            softly
+                    .assertThat(shard.keySet())
+                    .allMatch(
+                            key ->
+                                    servers.get(ShardedMultiKeyMap.shardIndex(key, servers.size()))
+                                            == server);
+        }
+    }
+
+    @Test
+    public void testPartialQueriesScatterGather() {
+        final Map<List<String>, String> data = new HashMap<>();
+
+        for (int i = 0; i < 600; i++) {
+            data.put(newModuloKey(i), "v" + i);
+        }
+
+        multiKeyMap.putAll(data);
+        final Map<List<String>, String> expected =
+                data.entrySet()
+                        .stream()
+                        .filter(entry -> entry.getKey().contains("even") && entry.getKey().contains("m1"))
+                        .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+
+        softly.assertThat(multiKeyMap).hasSize(600);
+        softly
+                .assertThat(multiKeyMap.getFullKeysByPartialKey(ImmutableSet.of("m1", "even")))
+                .hasSize(100)
+                .containsOnlyElementsOf(expected.keySet());
+        softly
+                .assertThat(
+                        multiKeyMap
+                                .getEntriesByPartialKey(ImmutableList.of("even", "m1"))
+                                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue)))
+                .isEqualTo(expected);
+        softly
+                .assertThat(
+                        multiKeyMap
+                                .getValuesByPartialKey(ImmutableList.of("m1", "even"), ImmutableList.of(2, 1))
+                                .collect(Collectors.toSet()))
+                .isEqualTo(ImmutableSet.copyOf(expected.values()));
+        softly
+                .assertThat(
+                        multiKeyMap.getFullKeysByPartialKey(
+                                ImmutableList.of("even", "m1"), ImmutableList.of(2, 1)))
+                .isEmpty();
+        softly
+                .assertThat(multiKeyMap.getFullKeysByPartialKey(ImmutableList.of("nothing")))
+                .isEmpty();
+        softly.assertThat(multiKeyMap.getFullKeysByPartialKey(ImmutableList.of("all")).count())
+                .isEqualTo(600);
+    }
+
+    @Test
+    public void testLargeResponsesArePaged() {
+        final Map<List<String>, String> data = new HashMap<>();
+        final String padding = Strings.repeat("x", 40_000);
+
+        // about 4 pages of the entries per shard
+        for (int i = 0; i < 300; i++) {
+            data.put(newModuloKey(i), i + padding);
+        }
+
+        multiKeyMap.putAll(data);
+
+        softly.assertThat(multiKeyMap).isEqualTo(data);
+        softly.assertThat(multiKeyMap.hashCode()).isEqualTo(data.hashCode());
+        softly.assertThat(multiKeyMap.keySet()).isEqualTo(data.keySet());
+        softly
+                .assertThat(
+                        multiKeyMap
+                                .getEntriesByPartialKey(ImmutableList.of("all"))
+                                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue)))
+                .isEqualTo(data);
+        softly
+                .assertThat(multiKeyMap.getFullKeysByPartialKey(ImmutableList.of("even")).count())
+                .isEqualTo(150);
+
+        // the cursors of the streams closed early are released
+        for (int i = 0; i < 2 * ShardServer.MAXIMUM_CURSORS; i++) {
+            try (Stream<String> values = multiKeyMap.getValuesByPartialKey(ImmutableList.of("all"))) {
+                softly.assertThat(values.limit(2).count()).isEqualTo(2);
+            }
+        }
+
+        softly.assertThat(multiKeyMap.entrySet()).hasSize(300);
+        softly.assertThat(multiKeyMap).isEqualTo(data);
+        softly.assertThat(multiKeyMap.getPendingCount()).isZero();
+    }
+
+    @Test
+    public void testBulkOperationsByPartialKey() {
+        for (int i = 0; i < 300; i++) {
+            multiKeyMap.put(newModuloKey(i), "v" + i);
+        }
+
+        softly.assertThat(multiKeyMap.removeByPartialKey(ImmutableList.of("m1", "odd"))).isEqualTo(50);
+        softly
+                .assertThat(
+                        multiKeyMap.removeByPartialKey(ImmutableList.of("even", "m1"), ImmutableList.of(2, 1)))
+                .isZero();
+        softly.assertThat(multiKeyMap).hasSize(250);
+        softly.assertThat(multiKeyMap.getFullKeysByPartialKey(ImmutableList.of("m1", "odd"))).isEmpty();
+        softly
+                .assertThat(multiKeyMap.replaceAllByPartialKey(ImmutableList.of("m2"), (key, value) -> value + "!"))
+                .isEqualTo(100);
+        softly.assertThat(multiKeyMap.get(newModuloKey(2))).isEqualTo("v2!");
+        softly.assertThat(multiKeyMap.get(newModuloKey(3))).isEqualTo("v3");
+    }
+
+    @Test
+    public void testIterationAndBulkOperations() {
+        final Map<List<String>, String> entries =
+                ImmutableMap.of(
+                        newModuloKey(1), "1",
+                        newModuloKey(2), "2",
+                        newModuloKey(3), "3",
+                        newModuloKey(4), "4");
+        multiKeyMap.putAll(entries);
+
+        softly.assertThat(multiKeyMap).isEqualTo(entries);
+
+        for (final Iterator<List<String>> it = multiKeyMap.keySet().iterator(); it.hasNext(); ) {
+            if (it.next().contains("odd")) {
+                it.remove();
+            }
+        }
+
+        softly.assertThat(multiKeyMap).containsOnlyKeys(newModuloKey(2), newModuloKey(4));
+        softly.assertThat(multiKeyMap.getFullKeysByPartialKey(ImmutableList.of("odd"))).isEmpty();
+
+        multiKeyMap.clear();
+
+        softly.assertThat(multiKeyMap).isEmpty();
+        softly.assertThat(servers).allMatch(server -> server.getMultiKeyMap().isEmpty());
+    }
+
+    @Test
+    public void testPipelinedConcurrentClients() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+
+            for (int t = 0; t < 8; t++) {
+                final int offset = t * 500;
+                futures.add(
+                        executor.submit(
+                                () -> {
+                                    for (int i = offset; i < offset + 500; i++) {
+                                        multiKeyMap.put(newModuloKey(i), "v" + i);
+                                        softly
+                                                .assertThat(multiKeyMap.get(newModuloKey(i)))
+                                                .isEqualTo("v" + i);
+                                    }
+                                }));
+            }
+
+            for (final Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        softly.assertThat(multiKeyMap).hasSize(4000);
+        softly.assertThat(multiKeyMap.getFullKeysByPartialKey(ImmutableList.of("odd")).count())
+                .isEqualTo(2000);
+    }
+
+    @Test
+    public void testShardExceptionsAndFailures() throws Exception {
+        final ShardServer<String, List<String>, String> readOnly =
+                startServer(
+                        new BaseMultiKeyMap<String, List<String>, String>() {
+                            @Override
+                            public String put(final List<String> key, final String value) {
+                                throw new UnsupportedOperationException("read-only");
+                            }
+                        });
+
+        try (PartitionedMultiKeyMap<String, List<String>, String> client =
+                     connect(ImmutableList.of(readOnly.getAddress()))) {
+            assertThatThrownBy(() -> client.put(newModuloKey(1), "1"))
+                    .isInstanceOf(UnsupportedOperationException.class)
+                    .hasMessage("read-only");
+            assertThatThrownBy(() -> client.put(newModuloKey(1), null))
+                    .isInstanceOf(NullPointerException.class);
+            softly.assertThat(client.get(newModuloKey(1))).isNull();
+
+            readOnly.close();
+
+            assertThatThrownBy(() -> client.get(newModuloKey(1)))
+                    .isInstanceOf(UncheckedIOException.class);
+        } finally {
+            readOnly.close();
+        }
+
+        softly.assertThat(readOnly.isClosed()).isTrue();
+        assertThatThrownBy(() -> connect(ImmutableList.of(readOnly.getAddress())))
+                .isInstanceOf(IOException.class);
+    }
+
+    @Test
+    public void testInterruptedCallerKeepsTheConnection() throws Exception {
+        Thread.currentThread().interrupt();
+
+        try {
+            // the request is sent anyway, but the interrupted caller might give up waiting for it
+            multiKeyMap.put(newModuloKey(1), "v1");
+        } catch (UncheckedIOException e) {
+            softly.assertThat(e).hasCauseInstanceOf(InterruptedIOException.class);
+        } finally {
+            Thread.interrupted();
+        }
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            softly
+                    .assertThat(
+                            executor.submit(() -> multiKeyMap.get(newModuloKey(1)))
+                                    .get(10, TimeUnit.SECONDS))
+                    .isEqualTo("v1");
+        } finally {
+            executor.shutdownNow();
+        }
+
+        softly.assertThat(multiKeyMap.put(newModuloKey(2), "v2")).isNull();
+        softly.assertThat(multiKeyMap).hasSize(2);
+    }
+
+    @Test
+    public void testAbandonedRequestIsNotLeftPending() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final ShardServer<String, List<String>, String> slow =
+                startServer(
+                        new BaseMultiKeyMap<String, List<String>, String>() {
+                            @Override
+                            public String get(final Object key) {
+                                try {
+                                    release.await(10, TimeUnit.SECONDS);
+                                } catch (InterruptedException e) {
+                                    Thread.currentThread().interrupt();
+                                }
+
+                                return super.get(key);
+                            }
+                        });
+
+        try (PartitionedMultiKeyMap<String, List<String>, String> client =
+                     connect(ImmutableList.of(slow.getAddress()))) {
+            Thread.currentThread().interrupt();
+
+            try {
+                assertThatThrownBy(() -> client.get(newModuloKey(1)))
+                        .hasCauseInstanceOf(InterruptedIOException.class);
+            } finally {
+                Thread.interrupted();
+            }
+
+            softly.assertThat(client.getPendingCount()).isZero();
+            release.countDown();
+
+            // the late response of the abandoned request is ignored
+            softly.assertThat(client.put(newModuloKey(1), "v1")).isNull();
+            softly.assertThat(client.get(newModuloKey(1))).isEqualTo("v1");
+            softly.assertThat(client.getPendingCount()).isZero();
+        } finally {
+            release.countDown();
+            slow.close();
+        }
+    }
+
+    @Test
+    public void testReconnectsAfterConnectionFailure() throws Exception {
+        final ShardServer<String, List<String>, String> first =
+                startServer(MultiKeyMaps.newMultiKeyMap());
+        final InetSocketAddress address = first.getAddress();
+
+        try (PartitionedMultiKeyMap<String, List<String>, String> client =
+                     connect(ImmutableList.of(address))) {
+            client.put(newModuloKey(1), "v1");
+            first.close();
+
+            assertThatThrownBy(() -> client.get(newModuloKey(1)))
+                    .isInstanceOf(UncheckedIOException.class);
+
+            final ShardServer<String, List<String>, String> second =
+                    ShardServer.start(
+                            address,
+                            MultiKeyMaps.newMultiKeyMap(),
+                            Codec.utf8(),
+                            Codec.listOf(Codec.utf8()),
+                            Codec.utf8());
+
+            try {
+                softly.assertThat(client.put(newModuloKey(2), "v2")).isNull();
+                softly.assertThat(client.get(newModuloKey(2))).isEqualTo("v2");
+                softly.assertThat(second.getMultiKeyMap()).containsOnlyKeys(newModuloKey(2));
+            } finally {
+                second.close();
+            }
+        } finally {
+            first.close();
+        }
+    }
+
+    @Test
+    public void testMalformedFramesAreRejected() throws Exception {
+        final ShardServer<String, List<String>, String> server = servers.get(0);
+
+        try (SocketChannel channel = SocketChannel.open(server.getAddress())) {
+            final ByteBuffer request =
+                    ShardProtocol.frame(
+                            1,
+                            ShardProtocol.PUT,
+                            out -> {
+                                out.writeInt(1);
+                                out.writeInt(Integer.MAX_VALUE);
+                            });
+
+            while (request.hasRemaining()) {
+                channel.write(request);
+            }
+
+            final ByteBuffer response = ByteBuffer.allocate(4 + ShardProtocol.HEADER);
+
+            while (response.hasRemaining() && channel.read(response) >= 0) {
+                // read the header of the response
+            }
+
+            softly.assertThat(response.getInt(4)).isEqualTo(1);
+            softly.assertThat(response.get(8)).isEqualTo(ShardProtocol.ERROR);
+        }
+
+        softly.assertThat(server.isClosed()).isFalse();
+        softly.assertThat(multiKeyMap.put(newModuloKey(1), "v1")).isNull();
+        softly.assertThat(multiKeyMap.get(newModuloKey(1))).isEqualTo("v1");
+    }
+
+    @Test
+    public void testServerClosesOnError() throws Exception {
+        final ShardServer<String, List<String>, String> failing =
+                startServer(
+                        new BaseMultiKeyMap<String, List<String>, String>() {
+                            @Override
+                            public String get(final Object key) {
+                                throw new StackOverflowError("failing");
+                            }
+                        });
+
+        try (PartitionedMultiKeyMap<String, List<String>, String> client =
+                     connect(ImmutableList.of(failing.getAddress()))) {
+            assertThatThrownBy(() -> client.get(newModuloKey(1)))
+                    .isInstanceOf(UncheckedIOException.class);
+        } finally {
+            failing.close();
+        }
+
+        softly.assertThat(failing.isClosed()).isTrue();
+    }
+
+    @Test
+    public void testShardProcesses() throws Exception {
+        final String java =
+                System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        final List<Process> processes = new ArrayList<>();
+
+        try {
+            final List<InetSocketAddress> addresses = new ArrayList<>();
+
+            for (int i = 0; i < 2; i++) {
+                final Process process =
+                        new ProcessBuilder(
+                                java,
+                                "-Xmx64m",
+                                "-cp",
+                                System.getProperty("java.class.path"),
+                                ShardServer.class.getName())
+                                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                                .start();
+                processes.add(process);
+                final BufferedReader reader =
+                        new BufferedReader(
+                                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+                addresses.add(loopback(Integer.parseInt(reader.readLine().trim())));
+            }
+
+            try (PartitionedMultiKeyMap<String, List<String>, String> client = connect(addresses)) {
+                for (int i = 0; i < 1000; i++) {
+                    client.put(newModuloKey(i), "v" + i);
+                }
+
+                softly.assertThat(client).hasSize(1000);
+                softly.assertThat(client.get(newModuloKey(7))).isEqualTo("v7");
+                softly
+                        .assertThat(client.getFullKeysByPartialKey(ImmutableList.of("even", "m0")).count())
+                        .isEqualTo(167);
+            }
+        } finally {
+            for (final Process process : processes) {
+                process.getOutputStream().close();
+                process.waitFor(10, TimeUnit.SECONDS);
+                process.destroy();
+            }
+        }
+    }
+}
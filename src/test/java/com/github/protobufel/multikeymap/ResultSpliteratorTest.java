@@ -0,0 +1,160 @@
+/*
+ *    Copyright 2017 David Tesler
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.protobufel.multikeymap;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.assertj.core.api.JUnitSoftAssertions;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+import static com.github.protobufel.multikeymap.MultiKeyMapGenerators.newClassifiedKey;
+
+@RunWith(JUnit4.class)
+public class ResultSpliteratorTest {
+    @Rule
+    public final JUnitSoftAssertions softly = new JUnitSoftAssertions();
+
+    private static MultiKeyMap<String, List<String>, Integer> newMultiKeyMap() {
+        final MultiKeyMap<String, List<String>, Integer> multiKeyMap = MultiKeyMaps.newMultiKeyMap();
+
+        for (int i = 0; i < 1000; i++) {
+            multiKeyMap.put(newClassifiedKey(i), i);
+        }
+
+        return multiKeyMap;
+    }
+
+    @Test
+    public void testPartialKeyResultsAreSizedAndSplitInHalves() {
+        final MultiKeyMap<String, List<String>, Integer> multiKeyMap = newMultiKeyMap();
+
+        for (final Set<String> partialKey :
+                ImmutableList.of(ImmutableSet.of("odd"), ImmutableSet.of("c1", "odd"))) {
+            final Spliterator<List<String>> spliterator =
+                    multiKeyMap.getFullKeysByPartialKey(partialKey).spliterator();
+            final long size = spliterator.getExactSizeIfKnown();
+
+            softly
+                    .assertThat(spliterator.hasCharacteristics(Spliterator.SIZED | Spliterator.SUBSIZED))
+                    .as("%s", partialKey)
+                    .isTrue();
+
+            final Spliterator<List<String>> prefix = spliterator.trySplit();
+
+            softly.assertThat(prefix).as("%s", partialKey).isNotNull();
+            softly
+                    .assertThat(prefix.getExactSizeIfKnown() + spliterator.getExactSizeIfKnown())
+                    .as("%s", partialKey)
+                    .isEqualTo(size);
+            softly
+                    .assertThat(Math.abs(prefix.getExactSizeIfKnown() - spliterator.getExactSizeIfKnown()))
+                    .as("%s", partialKey)
+                    .isLessThanOrEqualTo(1L);
+        }
+
+        softly
+                .assertThat(multiKeyMap.getFullKeysByPartialKey(ImmutableSet.of("c1", "odd")).count())
+                .isEqualTo(100);
+    }
+
+    @Test
+    public void testPositionalResultsEstimateTheirSize() {
+        final MultiKeyMap<String, List<String>, Integer> multiKeyMap = newMultiKeyMap();
+        final List<String> partialKey = ImmutableList.of("odd", "c3");
+        final List<Integer> positions = ImmutableList.of(2, 1);
+        final Spliterator<List<String>> spliterator =
+                multiKeyMap.getFullKeysByPartialKey(partialKey, positions).spliterator();
+
+        softly.assertThat(spliterator.hasCharacteristics(Spliterator.SIZED)).isFalse();
+        softly.assertThat(spliterator.getExactSizeIfKnown()).isEqualTo(-1L);
+        softly.assertThat(spliterator.estimateSize()).isBetween(100L, 200L);
+
+        final Spliterator<List<String>> prefix = spliterator.trySplit();
+
+        softly.assertThat(prefix).isNotNull();
+        softly
+                .assertThat(Math.abs(prefix.estimateSize() - spliterator.estimateSize()))
+                .isLessThanOrEqualTo(1L);
+
+        final List<List<String>> results = new ArrayList<>();
+        prefix.forEachRemaining(results::add);
+        spliterator.forEachRemaining(results::add);
+
+        softly
+                .assertThat(results)
+                .hasSize(100)
+                .allMatch(key -> key.get(1).equals("c3") && key.get(2).equals("odd"));
+        softly
+                .assertThat(
+                        multiKeyMap
+                                .getFullKeysByPartialKey(partialKey, positions)
+                                .parallel()
+                                .collect(Collectors.toSet()))
+                .isEqualTo(ImmutableSet.copyOf(results));
+        softly
+                .assertThat(
+                        multiKeyMap.getFullKeysByPartialKey(
+                                ImmutableList.of("c3", "odd"), ImmutableList.of(2, 1)))
+                .isEmpty();
+    }
+
+    @Test
+    public void testFilteringSpliterator() {
+        final List<Integer> source = IntStream.range(0, 1000).boxed().collect(Collectors.toList());
+        final Spliterator<Integer> spliterator =
+                new FilteringSpliterator<>(source.spliterator(), i -> i % 3 == 0);
+
+        softly.assertThat(spliterator.estimateSize()).isEqualTo(1000L);
+        softly.assertThat(spliterator.hasCharacteristics(Spliterator.ORDERED)).isTrue();
+        softly.assertThat(spliterator.hasCharacteristics(Spliterator.SUBSIZED)).isFalse();
+
+        final List<Integer> results = new ArrayList<>();
+
+        softly.assertThat(spliterator.tryAdvance(results::add)).isTrue();
+        softly.assertThat(spliterator.tryAdvance(results::add)).isTrue();
+        softly.assertThat(results).containsExactly(0, 3);
+
+        final Spliterator<Integer> prefix = spliterator.trySplit();
+        prefix.forEachRemaining(results::add);
+
+        while (spliterator.tryAdvance(results::add)) {
+            // drain one by one
+        }
+
+        softly
+                .assertThat(results)
+                .isEqualTo(IntStream.range(0, 334).map(i -> i * 3).boxed().collect(Collectors.toList()));
+        softly
+                .assertThat(
+                        StreamSupport.stream(
+                                new FilteringSpliterator<>(source.spliterator(), i -> i % 3 == 0), true)
+                                .count())
+                .isEqualTo(334L);
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ *    Copyright 2017 David Tesler
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.protobufel.multikeymap;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.assertj.core.api.JUnitSoftAssertions;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@RunWith(JUnit4.class)
+public class SelectiveIndexingTest {
+    @Rule
+    public final JUnitSoftAssertions softly = new JUnitSoftAssertions();
+
+    private static List<String> key(final int i) {
+        return ImmutableList.of("id" + i, "c" + (i % 5), (i % 2 == 0) ? "true" : "false", "v" + (i % 3));
+    }
+
+    private static <T, K extends Iterable<T>> Set<K> query(
+            final MultiKeyMap<T, K, ?> multiKeyMap, final List<T> partialKey, final List<Integer> positions) {
+        return multiKeyMap.getFullKeysByPartialKey(partialKey, positions).collect(Collectors.toSet());
+    }
+
+    @Test
+    public void testExcludedPositionsAreNotIndexed() {
+        final MultiKeyMap<String, List<String>, Integer> multiKeyMap =
+                MultiKeyMaps.<String, List<String>, Integer>builder().excludePositions(2, 3).build();
+
+        for (int i = 0; i < 300; i++) {
+            multiKeyMap.put(key(i), i);
+        }
+
+        softly.assertThat(multiKeyMap.indexStats().getPostingCount()).isEqualTo(600);
+        softly.assertThat(multiKeyMap.indexStats().getSubKeyCount()).isEqualTo(305);
+        softly
+                .assertThat(query(multiKeyMap, ImmutableList.of("c1", "true"), ImmutableList.of(1, 2)))
+                .hasSize(30)
+                .allMatch(key -> key.get(1).equals("c1") && key.get(2).equals("true"));
+        softly
+                .assertThat(multiKeyMap.getFullKeysByPartialKey(ImmutableSet.of("v2", "true")).count())
+                .isEqualTo(50);
+        softly
+                .assertThat(multiKeyMap.getValuesByPartialKey(ImmutableSet.of("id7", "false")))
+                .containsExactly(7);
+        softly.assertThat(multiKeyMap.getFullKeysByPartialKey(ImmutableSet.of("id7", "true"))).isEmpty();
+        softly.assertThat(multiKeyMap.getFullKeysByPartialKey(Collections.emptySet())).isEmpty();
+
+        for (int i = 0; i < 300; i += 2) {
+            multiKeyMap.remove(key(i));
+        }
+
+        softly.assertThat(multiKeyMap.indexStats().getPostingCount()).isEqualTo(300);
+        softly.assertThat(multiKeyMap.getFullKeysByPartialKey(ImmutableSet.of("true"))).isEmpty();
+    }
+
+    @Test
+    public void testSubKeysOfUnindexedPositionsStayQueryable() {
+        final MultiKeyMap<String, List<String>, Integer> multiKeyMap =
+                MultiKeyMaps.<String, List<String>, Integer>builder().indexPositions(0).build();
+        multiKeyMap.put(ImmutableList.of("a", "x"), 1);
+        multiKeyMap.put(ImmutableList.of("x", "b"), 2);
+        multiKeyMap.put(ImmutableList.of("b", "c"), 3);
+
+        softly.assertThat(multiKeyMap.indexStats().getPostingCount()).isEqualTo(3);
+        softly
+                .assertThat(multiKeyMap.getValuesByPartialKey(ImmutableSet.of("x")))
+                .containsOnly(1, 2);
+        softly
+                .assertThat(multiKeyMap.getValuesByPartialKey(ImmutableSet.of("b")))
+                .containsOnly(2, 3);
+        softly
+                .assertThat(multiKeyMap.getValuesByPartialKey(ImmutableList.of("x"), ImmutableList.of(0)))
+                .containsOnly(2);
+        softly.assertThat(multiKeyMap.getValuesByPartialKey(ImmutableSet.of("a"))).containsOnly(1);
+        softly
+                .assertThat(multiKeyMap.getValuesByPartialKey(ImmutableSet.of("c", "b")))
+                .containsOnly(3);
+        softly
+                .assertThat(
+                        multiKeyMap
+                                .getEntriesByPartialKey(ImmutableSet.of("x"))
+                                .map(entry -> entry.getValue())
+                                .collect(Collectors.toSet()))
+                .containsOnly(1, 2);
+    }
+
+    @Test
+    public void testUnindexedSubKeysAreCountedByTheirKeys() {
+        final BitSet included = new BitSet();
+        included.set(0);
+        final IndexFilter<String> filter = new IndexFilter<>(included, null, null, 0, 0);
+        final List<String> first = ImmutableList.of("a", "x", "x");
+        final List<String> second = ImmutableList.of("b", "x");
+        final List<String> indexed = new ArrayList<>();
+        final BiConsumer<String, List<String>> indexer = (subKey, key) -> indexed.add(subKey);
+
+        softly.assertThat(filter.forEachIndexed(first, true, indexer)).isOne();
+        softly.assertThat(filter.forEachIndexed(second, true, indexer)).isOne();
+        softly.assertThat(indexed).containsExactly("a", "b");
+        indexed.clear();
+        softly.assertThat(filter.isQueryable("x", -1)).isFalse();
+        softly.assertThat(filter.isQueryable("x", 0)).isTrue();
+
+        filter.forEachIndexed(first, false, indexer);
+
+        softly.assertThat(filter.isQueryable("x", -1)).isFalse();
+
+        filter.forEachIndexed(second, false, indexer);
+
+        softly.assertThat(filter.isQueryable("x", -1)).isTrue();
+        softly.assertThat(filter.isQueryable("a", -1)).isTrue();
+        softly.assertThat(indexed).containsExactly("a", "b");
+    }
+
+    @Test
+    public void testRemovedKeysMakeSubKeysQueryableAgain() {
+        final MultiKeyMap<String, List<String>, Integer> multiKeyMap =
+                MultiKeyMaps.<String, List<String>, Integer>builder().indexPositions(0).build();
+        multiKeyMap.put(ImmutableList.of("a", "x"), 1);
+        multiKeyMap.put(ImmutableList.of("x", "b"), 2);
+        multiKeyMap.remove(ImmutableList.of("a", "x"));
+
+        softly.assertThat(multiKeyMap.getValuesByPartialKey(ImmutableSet.of("x"))).containsOnly(2);
+
+        multiKeyMap.put(ImmutableList.of("c", "x"), 3);
+
+        softly.assertThat(multiKeyMap.getValuesByPartialKey(ImmutableSet.of("x"))).containsOnly(2, 3);
+    }
+
+    @Test
+    public void testExcludedSubKeys() {
+        final MultiKeyMap<String, List<String>, Integer> multiKeyMap =
+                MultiKeyMaps.<String, List<String>, Integer>builder()
+                        .excludeSubKeys(subKey -> subKey.equals("true") || subKey.equals("false"))
+                        .mapSupplier(ConcurrentHashMap::new)
+                        .concurrent(true)
+                        .build();
+
+        for (int i = 0; i < 100; i++) {
+            multiKeyMap.put(key(i), i);
+        }
+
+        softly.assertThat(multiKeyMap.indexStats().getPostingCount()).isEqualTo(300);
+        softly
+                .assertThat(multiKeyMap.getFullKeysByPartialKey(ImmutableSet.of("true")).count())
+                .isEqualTo(50);
+        softly
+                .assertThat(multiKeyMap.getFullKeysByPartialKey(ImmutableSet.of("false", "c3")).count())
+                .isEqualTo(10);
+
+        multiKeyMap.clear();
+
+        softly.assertThat(multiKeyMap.indexStats().getSubKeyCount()).isZero();
+        softly.assertThat(multiKeyMap.getFullKeysByPartialKey(ImmutableSet.of("true"))).isEmpty();
+    }
+
+    @Test
+    public void testSameResultsAsFullIndex() {
+        final Random random = new Random(7);
+        final MultiKeyMap<Integer, List<Integer>, Integer> full = MultiKeyMaps.newMultiKeyMap();
+        final List<MultiKeyMap<Integer, List<Integer>, Integer>> selective =
+                ImmutableList.of(
+                        MultiKeyMaps.<Integer, List<Integer>, Integer>builder().excludePositions(1).build(),
+                        MultiKeyMaps.<Integer, List<Integer>, Integer>builder().indexPositions(0, 2).build(),
+                        MultiKeyMaps.<Integer, List<Integer>, Integer>builder()
+                                .excludeSubKeys(subKey -> subKey % 3 == 0)
+                                .excludePositions(3)
+                                .build());
+
+        for (int i = 0; i < 2000; i++) {
+            final List<Integer> key = new ArrayList<>();
+
+            for (int j = 0; j < 4; j++) {
+                key.add(random.nextInt(12));
+            }
+
+            full.put(key, i);
+            selective.forEach(multiKeyMap -> multiKeyMap.put(key, key.hashCode()));
+
+            if (random.nextInt(4) == 0) {
+                full.remove(key);
+                selective.forEach(multiKeyMap -> multiKeyMap.remove(key));
+            }
+        }
+
+        for (int q = 0; q < 300; q++) {
+            final int size = 1 + random.nextInt(3);
+            final List<Integer> partialKey = new ArrayList<>();
+            final List<Integer> positions = new ArrayList<>();
+
+            for (int j = 0; j < size; j++) {
+                partialKey.add(random.nextInt(12));
+                positions.add(random.nextBoolean() ? j : -1);
+            }
+
+            final Set<List<Integer>> expected = query(full, partialKey, positions);
+            final Set<List<Integer>> expectedAnyOrder =
+                    full.getFullKeysByPartialKey(ImmutableSet.copyOf(partialKey)).collect(Collectors.toSet());
+
+            for (int m = 0; m < selective.size(); m++) {
+                final MultiKeyMap<Integer, List<Integer>, Integer> multiKeyMap = selective.get(m);
+                softly
+                        .assertThat(query(multiKeyMap, partialKey, positions))
+                        .as("map %s, query %s at %s", m, partialKey, positions)
+                        .isEqualTo(expected);
+                softly
+                        .assertThat(
+                                multiKeyMap
+                                        .getFullKeysByPartialKey(ImmutableSet.copyOf(partialKey))
+                                        .collect(Collectors.toSet()))
+                        .as("map %s, query %s", m, partialKey)
+                        .isEqualTo(expectedAnyOrder);
+            }
+        }
+    }
+
+    @Test
+    public void testBuilderArguments() {
+        assertThatThrownBy(() -> MultiKeyMaps.builder().excludePositions(-1))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> MultiKeyMaps.builder().indexPositions(0).indexPositions(1))
+                .isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> MultiKeyMaps.builder().excludeSubKeys(null))
+                .isInstanceOf(NullPointerException.class);
+        assertThatThrownBy(
+                () -> MultiKeyMaps.builder().excludeSubKeys(subKey -> true).excludeSubKeys(subKey -> true))
+                .isInstanceOf(IllegalStateException.class);
+    }
+}
@@ -0,0 +1,296 @@
+/*
+ *    Copyright 2017 David Tesler
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.protobufel.multikeymap;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.assertj.core.api.JUnitSoftAssertions;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static com.github.protobufel.multikeymap.MultiKeyMapGenerators.newModuloKey;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@RunWith(JUnit4.class)
+public class ShardedMultiKeyMapTest {
+    @Rule
+    public final JUnitSoftAssertions softly = new JUnitSoftAssertions();
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() throws Exception {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testPartitionsByFullKey() {
+        final ShardedMultiKeyMap<String, List<String>, Integer> multiKeyMap =
+                (ShardedMultiKeyMap<String, List<String>, Integer>)
+                        MultiKeyMaps.<String, List<String>, Integer>newSharded(
+                                8, MultiKeyMaps::newMultiKeyMap, executor);
+
+        for (int i = 0; i < 1000; i++) {
+            multiKeyMap.put(newModuloKey(i), i);
+        }
+
+        softly.assertThat(multiKeyMap).hasSize(1000);
+        softly.assertThat(multiKeyMap.getShardCount()).isEqualTo(8);
+        int total = 0;
+
+        for (int i = 0; i < multiKeyMap.getShardCount(); i++) {
+            final MultiKeyMap<String, List<String>, Integer> shard = multiKeyMap.getShard(i);
+            softly.assertThat(shard.size()).as("shard %s", i).isBetween(60, 190);
+            softly
+                    .assertThat(shard.indexStats().getPostingCount())
+                    .as("shard %s", i)
+                    .isEqualTo(4 * shard.size());
+            total += shard.size();
+        }
+
+        softly.assertThat(total).isEqualTo(1000);
+
+        for (int i = 0; i < 1000; i++) {
+            softly.assertThat(multiKeyMap.get(newModuloKey(i))).isEqualTo(i);
+        }
+
+        softly.assertThat(multiKeyMap.remove(newModuloKey(0))).isEqualTo(0);
+        softly.assertThat(multiKeyMap.containsKey(newModuloKey(0))).isFalse();
+        softly.assertThat(multiKeyMap).hasSize(999);
+    }
+
+    @Test
+    public void testPartialQueriesFanOut() {
+        final MultiKeyMap<String, List<String>, Integer> multiKeyMap =
+                MultiKeyMaps.newSharded(5, MultiKeyMaps::newMultiKeyMap, executor);
+        final Map<List<String>, Integer> expected = new HashMap<>();
+
+        for (int i = 0; i < 600; i++) {
+            multiKeyMap.put(newModuloKey(i), i);
+
+            if ((i % 2 == 0) && (i % 3 == 1)) {
+                expected.put(newModuloKey(i), i);
+            }
+        }
+
+        softly
+                .assertThat(
+                        multiKeyMap
+                                .getFullKeysByPartialKey(ImmutableSet.of("even", "m1"))
+                                .collect(Collectors.toList()))
+                .hasSize(100)
+                .containsOnlyElementsOf(expected.keySet());
+        softly
+                .assertThat(
+                        multiKeyMap
+                                .getEntriesByPartialKey(ImmutableList.of("even", "m1"))
+                                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue)))
+                .isEqualTo(expected);
+        softly
+                .assertThat(
+                        multiKeyMap
+                                .getValuesByPartialKey(ImmutableList.of("m1", "even"), ImmutableList.of(2, 1))
+                                .collect(Collectors.toSet()))
+                .isEqualTo(ImmutableSet.copyOf(expected.values()));
+        softly
+                .assertThat(
+                        multiKeyMap.getFullKeysByPartialKey(
+                                ImmutableList.of("even", "m1"), ImmutableList.of(2, 1)))
+                .isEmpty();
+        softly
+                .assertThat(
+                        multiKeyMap
+                                .getFullKeysByPartialKey(ImmutableList.of("all"), ExecutionPolicy.parallel())
+                                .count())
+                .isEqualTo(600);
+        softly
+                .assertThat(multiKeyMap.getFullKeysByPartialKey(ImmutableList.of("id1", "id2")))
+                .isEmpty();
+        softly
+                .assertThat(multiKeyMap.getFullKeysByPartialKey(ImmutableList.of("even")).limit(5))
+                .hasSize(5);
+    }
+
+    @Test
+    public void testEntrySetAndIterationAcrossShards() {
+        final MultiKeyMap<String, List<String>, Integer> multiKeyMap =
+                MultiKeyMaps.newSharded(3, MultiKeyMaps::newMultiKeyMap, executor);
+
+        for (int i = 0; i < 100; i++) {
+            multiKeyMap.put(newModuloKey(i), i);
+        }
+
+        multiKeyMap.entrySet().removeIf(entry -> entry.getValue() % 2 == 1);
+        multiKeyMap.replaceAll((key, value) -> -value);
+
+        softly.assertThat(multiKeyMap).hasSize(50);
+        softly.assertThat(multiKeyMap.values()).allMatch(value -> value <= 0);
+        softly.assertThat(multiKeyMap.getFullKeysByPartialKey(ImmutableList.of("odd"))).isEmpty();
+        softly
+                .assertThat(multiKeyMap.keySet())
+                .containsOnlyElementsOf(
+                        IntStream.range(0, 100)
+                                .filter(i -> i % 2 == 0)
+                                .mapToObj(MultiKeyMapGenerators::newModuloKey)
+                                .collect(Collectors.toList()));
+
+        multiKeyMap.clear();
+
+        softly.assertThat(multiKeyMap).isEmpty();
+        softly.assertThat(multiKeyMap.getFullKeysByPartialKey(ImmutableList.of("all"))).isEmpty();
+    }
+
+    @Test
+    public void testConcurrentWriters() throws Exception {
+        final MultiKeyMap<String, List<String>, Integer> multiKeyMap = MultiKeyMaps.newSharded(4);
+        final List<Future<?>> futures = new ArrayList<>();
+
+        for (int t = 0; t < 4; t++) {
+            final int offset = t * 1000;
+            futures.add(
+                    executor.submit(
+                            () -> {
+                                for (int i = offset; i < offset + 1000; i++) {
+                                    multiKeyMap.put(newModuloKey(i), i);
+                                }
+                            }));
+        }
+
+        for (final Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+
+        softly.assertThat(multiKeyMap).hasSize(4000);
+        softly.assertThat(multiKeyMap.getFullKeysByPartialKey(ImmutableList.of("odd")).count())
+                .isEqualTo(2000);
+    }
+
+    @Test
+    public void testSubscriptionSpansShards() {
+        final MultiKeyMap<String, List<String>, Integer> multiKeyMap =
+                MultiKeyMaps.newSharded(4, MultiKeyMaps::newMultiKeyMap, executor);
+        final List<List<String>> added = new ArrayList<>();
+        final PartialKeySubscription subscription =
+                multiKeyMap.subscribe(
+                        ImmutableSet.of("odd"),
+                        new PartialKeyListener<List<String>, Integer>() {
+                            @Override
+                            public void onAdded(final List<String> key, final Integer value) {
+                                added.add(key);
+                            }
+                        });
+
+        for (int i = 0; i < 20; i++) {
+            multiKeyMap.put(newModuloKey(i), i);
+        }
+
+        subscription.close();
+        multiKeyMap.put(newModuloKey(21), 21);
+
+        softly.assertThat(subscription.isClosed()).isTrue();
+        softly.assertThat(added).hasSize(10).allMatch(key -> key.contains("odd"));
+    }
+
+    @Test
+    public void testIndexStatsSumUpShards() {
+        final MultiKeyMap<String, List<String>, Integer> multiKeyMap =
+                MultiKeyMaps.newSharded(4, MultiKeyMaps::newMultiKeyMap, executor);
+
+        for (int i = 0; i < 1000; i++) {
+            multiKeyMap.put(newModuloKey(i), i);
+        }
+
+        final IndexStats<String> stats = multiKeyMap.indexStats(3);
+
+        softly.assertThat(stats.getEntryCount()).isEqualTo(1000);
+        softly.assertThat(stats.getPostingCount()).isEqualTo(4000);
+        // every shard has its own posting lists of all, even, odd, m0, m1 and m2
+        softly.assertThat(stats.getSubKeyCount()).isEqualTo(1000 + 4 * 6);
+        softly.assertThat(stats.getPostingListSizeHistogram()).containsEntry(1, 1000L);
+        softly
+                .assertThat(stats.getPostingListSizeHistogram().values().stream().mapToLong(n -> n).sum())
+                .isEqualTo(stats.getSubKeyCount());
+        softly
+                .assertThat(stats.getHeaviestSubKeys())
+                .startsWith(new SimpleImmutableEntry<>("all", 1000))
+                .containsExactlyInAnyOrder(
+                        new SimpleImmutableEntry<>("all", 1000),
+                        new SimpleImmutableEntry<>("even", 500),
+                        new SimpleImmutableEntry<>("odd", 500));
+        softly.assertThat(multiKeyMap.indexStats(0).getHeaviestSubKeys()).isEmpty();
+        assertThatThrownBy(() -> multiKeyMap.indexStats(-1))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void testQueryFailurePropagates() {
+        final MultiKeyMap<String, List<String>, Integer> multiKeyMap =
+                MultiKeyMaps.newSharded(
+                        2,
+                        () ->
+                                new BaseMultiKeyMap<String, List<String>, Integer>() {
+                                    @Override
+                                    public Stream<List<String>> getFullKeysByPartialKey(
+                                            final Iterable<? extends String> partialKey) {
+                                        throw new IllegalStateException("broken shard");
+                                    }
+                                },
+                        executor);
+
+        assertThatThrownBy(
+                () -> multiKeyMap.getFullKeysByPartialKey(ImmutableList.of("all")).count())
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("broken shard");
+    }
+
+    @Test
+    public void testIllegalArguments() {
+        assertThatThrownBy(() -> MultiKeyMaps.newSharded(0))
+                .isInstanceOf(IllegalArgumentException.class);
+        final MultiKeyMap<String, List<String>, Integer> shard = MultiKeyMaps.newMultiKeyMap();
+        assertThatThrownBy(() -> MultiKeyMaps.newSharded(2, () -> shard, executor))
+                .isInstanceOf(IllegalArgumentException.class);
+        shard.put(newModuloKey(1), 1);
+        assertThatThrownBy(() -> MultiKeyMaps.newSharded(1, () -> shard, executor))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(
+                () -> MultiKeyMaps.<String, List<String>, Integer>newSharded(2).get(null))
+                .isInstanceOf(NullPointerException.class);
+    }
+}
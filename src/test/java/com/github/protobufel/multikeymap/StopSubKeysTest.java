@@ -0,0 +1,250 @@
+/*
+ *    Copyright 2017 David Tesler
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.protobufel.multikeymap;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.assertj.core.api.JUnitSoftAssertions;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntSupplier;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@RunWith(JUnit4.class)
+public class StopSubKeysTest {
+    @Rule
+    public final JUnitSoftAssertions softly = new JUnitSoftAssertions();
+
+    private static List<String> key(final int i) {
+        return ImmutableList.of("id" + i, (i % 10 == 0) ? "rare" : "ANY", "c" + (i % 7), "default");
+    }
+
+    private static <T, K extends Iterable<T>> Set<K> query(
+            final MultiKeyMap<T, K, ?> multiKeyMap, final List<T> partialKey, final List<Integer> positions) {
+        return multiKeyMap.getFullKeysByPartialKey(partialKey, positions).collect(Collectors.toSet());
+    }
+
+    @Test
+    public void testHeavySubKeysStopBeingIndexed() {
+        final MultiKeyMap<String, List<String>, Integer> multiKeyMap =
+                MultiKeyMaps.<String, List<String>, Integer>builder().stopSubKeys(0.5, 100).build();
+
+        for (int i = 0; i < 1000; i++) {
+            multiKeyMap.put(key(i), i);
+        }
+
+        final IndexStats<String> stats = multiKeyMap.indexStats();
+        softly.assertThat(stats.getStopSubKeys()).containsOnly("ANY", "default");
+        softly.assertThat(stats.getPostingCount()).isEqualTo(2100);
+        softly.assertThat(stats.getSubKeyCount()).isEqualTo(1008);
+        softly
+                .assertThat(multiKeyMap.getFullKeysByPartialKey(ImmutableSet.of("default", "c3")).count())
+                .isEqualTo(143);
+        softly
+                .assertThat(multiKeyMap.getValuesByPartialKey(ImmutableSet.of("ANY", "id7")))
+                .containsExactly(7);
+        softly.assertThat(multiKeyMap.getFullKeysByPartialKey(ImmutableSet.of("ANY", "id10"))).isEmpty();
+        softly.assertThat(multiKeyMap.getFullKeysByPartialKey(ImmutableSet.of("ANY")).count()).isEqualTo(900);
+        softly
+                .assertThat(query(multiKeyMap, ImmutableList.of("default", "rare"), ImmutableList.of(3, 1)))
+                .hasSize(100);
+        softly
+                .assertThat(query(multiKeyMap, ImmutableList.of("default", "rare"), ImmutableList.of(1, 3)))
+                .isEmpty();
+
+        for (int i = 0; i < 1000; i += 2) {
+            multiKeyMap.remove(key(i));
+        }
+
+        softly.assertThat(multiKeyMap.indexStats().getPostingCount()).isEqualTo(1000);
+        softly.assertThat(multiKeyMap.getFullKeysByPartialKey(ImmutableSet.of("default")).count()).isEqualTo(500);
+
+        multiKeyMap.clear();
+        multiKeyMap.put(key(1), 1);
+
+        softly.assertThat(multiKeyMap.indexStats().getStopSubKeys()).isEmpty();
+        softly.assertThat(multiKeyMap.indexStats().getPostingCount()).isEqualTo(4);
+    }
+
+    @Test
+    public void testSmallMapsDontStop() {
+        final MultiKeyMap<String, List<String>, Integer> multiKeyMap =
+                MultiKeyMaps.<String, List<String>, Integer>builder().stopSubKeys(0.1, 1000).build();
+
+        for (int i = 0; i < 999; i++) {
+            multiKeyMap.put(key(i), i);
+        }
+
+        softly.assertThat(multiKeyMap.indexStats().getStopSubKeys()).isEmpty();
+
+        multiKeyMap.put(key(999), 999);
+
+        softly.assertThat(multiKeyMap.indexStats().getStopSubKeys()).containsOnly("default");
+        softly.assertThat(multiKeyMap.getFullKeysByPartialKey(ImmutableSet.of("default")).count()).isEqualTo(1000);
+    }
+
+    @Test
+    public void testConcurrentWriters() throws Exception {
+        final MultiKeyMap<String, List<String>, Integer> multiKeyMap =
+                MultiKeyMaps.<String, List<String>, Integer>builder()
+                        .mapSupplier(ConcurrentHashMap::new)
+                        .concurrent(true)
+                        .stopSubKeys(0.5, 200)
+                        .build();
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        final CyclicBarrier start = new CyclicBarrier(4);
+
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+
+            // the stop check reads the current entry count, which misses at most the 3 keys being
+            // put by the other writers, so only "ANY" and "default" can become heavy, whatever the
+            // interleaving
+            for (int t = 0; t < 4; t++) {
+                final int offset = t * 1000;
+                futures.add(
+                        executor.submit(
+                                () -> {
+                                    start.await();
+
+                                    for (int i = offset; i < offset + 1000; i++) {
+                                        multiKeyMap.put(key(i), i);
+                                    }
+
+                                    return null;
+                                }));
+            }
+
+            for (final Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        softly.assertThat(multiKeyMap.indexStats().getStopSubKeys()).containsOnly("ANY", "default");
+        softly.assertThat(multiKeyMap.getFullKeysByPartialKey(ImmutableSet.of("ANY", "c0")).count())
+                .isEqualTo(multiKeyMap.keySet().stream().filter(k -> k.contains("ANY") && k.contains("c0")).count());
+        softly.assertThat(multiKeyMap.getValuesByPartialKey(ImmutableSet.of("default", "id3999")))
+                .containsExactly(3999);
+    }
+
+    @Test
+    public void testStopCheckReadsTheCurrentEntryCount() {
+        final IndexFilter<String> filter = new IndexFilter<>(null, null, null, 0.5, 100);
+        final AtomicInteger reads = new AtomicInteger();
+        final AtomicInteger entryCount = new AtomicInteger(150);
+        final IntSupplier counter =
+                () -> {
+                    reads.incrementAndGet();
+                    return entryCount.get();
+                };
+
+        softly.assertThat(filter.stopIfHeavy("a", 99, counter)).isFalse();
+        softly.assertThat(reads).hasValue(0);
+        softly.assertThat(filter.stopIfHeavy("a", 100, counter)).isTrue();
+        softly.assertThat(reads).hasValue(1);
+
+        // the count has grown since the put started, so the sub-key is not heavy
+        entryCount.set(1000);
+
+        softly.assertThat(filter.stopIfHeavy("b", 400, counter)).isFalse();
+        softly.assertThat(filter.getStopSubKeys()).containsOnly("a");
+    }
+
+    @Test
+    public void testSameResultsAsFullIndex() {
+        final Random random = new Random(11);
+        final MultiKeyMap<Integer, List<Integer>, Integer> full = MultiKeyMaps.newMultiKeyMap();
+        final MultiKeyMap<Integer, List<Integer>, Integer> stopped =
+                MultiKeyMaps.<Integer, List<Integer>, Integer>builder().stopSubKeys(0.2, 50).build();
+
+        for (int i = 0; i < 2000; i++) {
+            final List<Integer> key = new ArrayList<>();
+
+            for (int j = 0; j < 4; j++) {
+                // the small sub-keys are much more frequent
+                key.add(random.nextBoolean() ? random.nextInt(3) : random.nextInt(40));
+            }
+
+            full.put(key, i);
+            stopped.put(key, i);
+
+            if (random.nextInt(4) == 0) {
+                full.remove(key);
+                stopped.remove(key);
+            }
+        }
+
+        softly.assertThat(stopped.indexStats().getStopSubKeys()).contains(0, 1, 2);
+
+        for (int q = 0; q < 300; q++) {
+            final int size = 1 + random.nextInt(3);
+            final List<Integer> partialKey = new ArrayList<>();
+            final List<Integer> positions = new ArrayList<>();
+
+            for (int j = 0; j < size; j++) {
+                partialKey.add(random.nextInt(10));
+                positions.add(random.nextBoolean() ? j : -1);
+            }
+
+            softly
+                    .assertThat(query(stopped, partialKey, positions))
+                    .as("query %s at %s", partialKey, positions)
+                    .isEqualTo(query(full, partialKey, positions));
+            softly
+                    .assertThat(
+                            stopped.getFullKeysByPartialKey(ImmutableSet.copyOf(partialKey))
+                                    .collect(Collectors.toSet()))
+                    .as("query %s", partialKey)
+                    .isEqualTo(
+                            full.getFullKeysByPartialKey(ImmutableSet.copyOf(partialKey))
+                                    .collect(Collectors.toSet()));
+        }
+    }
+
+    @Test
+    public void testBuilderArguments() {
+        assertThatThrownBy(() -> MultiKeyMaps.builder().stopSubKeys(0, 10))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> MultiKeyMaps.builder().stopSubKeys(1, 10))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> MultiKeyMaps.builder().stopSubKeys(Double.NaN, 10))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> MultiKeyMaps.builder().stopSubKeys(0.5, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> MultiKeyMaps.builder().stopSubKeys(0.5, 10).stopSubKeys(0.5, 10))
+                .isInstanceOf(IllegalStateException.class);
+    }
+}
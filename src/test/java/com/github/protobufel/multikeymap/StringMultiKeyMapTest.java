@@ -0,0 +1,229 @@
+/*
+ *    Copyright 2017 David Tesler
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.protobufel.multikeymap;
+
+import com.google.common.collect.ImmutableList;
+import org.assertj.core.api.JUnitSoftAssertions;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+@RunWith(JUnit4.class)
+public class StringMultiKeyMapTest {
+    private static final List<String> KEY1 = ImmutableList.of("one", "two", "three");
+    private static final List<String> KEY2 = ImmutableList.of("two", "three");
+    private static final List<String> KEY3 = ImmutableList.of("two", "one", "three", "one");
+    @Rule
+    public final JUnitSoftAssertions softly = new JUnitSoftAssertions();
+    private StringMultiKeyMap<Integer> multiKeyMap;
+
+    @Before
+    public void setUp() throws Exception {
+        multiKeyMap = MultiKeyMaps.newStringMultiKeyMap();
+        multiKeyMap.put(KEY1, 1);
+        multiKeyMap.put(KEY2, 2);
+        multiKeyMap.put(KEY3, 3);
+    }
+
+    @Test
+    public void testMapOperations() {
+        softly.assertThat(multiKeyMap.size()).isEqualTo(3);
+        softly.assertThat(multiKeyMap.get(KEY3)).isEqualTo(3);
+        softly.assertThat(multiKeyMap.get(ImmutableList.of("two", "absent"))).isNull();
+        softly.assertThat(multiKeyMap.containsKey(KEY2)).isTrue();
+        softly
+                .assertThat(multiKeyMap.get(Arrays.asList(new StringBuilder("two"), "three")))
+                .isEqualTo(2);
+        softly.assertThat(multiKeyMap.put(KEY2, 20)).isEqualTo(2);
+        softly.assertThat(multiKeyMap.remove(KEY1)).isEqualTo(1);
+        softly.assertThat(multiKeyMap.remove(KEY1)).isNull();
+        softly.assertThat(multiKeyMap.getValuesByPartialKey(ImmutableList.of("two"))).containsOnly(20, 3);
+        softly
+                .assertThatThrownBy(() -> multiKeyMap.get(Arrays.asList("two", null)))
+                .isInstanceOf(NullPointerException.class);
+
+        multiKeyMap.clear();
+        softly.assertThat(multiKeyMap.isEmpty()).isTrue();
+        softly.assertThat(multiKeyMap.getFullKeysByPartialKey(ImmutableList.of("two"))).isEmpty();
+    }
+
+    @Test
+    public void testGetByPartialKey() {
+        softly.assertThat(multiKeyMap.getFullKeysByPartialKey(ImmutableList.of())).isEmpty();
+        softly
+                .assertThat(multiKeyMap.getFullKeysByPartialKey(ImmutableList.of("not", "here")))
+                .isEmpty();
+        softly
+                .assertThat(multiKeyMap.getFullKeysByPartialKey(ImmutableList.of("two")))
+                .containsOnly(KEY1, KEY2, KEY3);
+        softly.assertThat(multiKeyMap.getFullKeysByPartialKey(KEY1)).containsOnly(KEY1, KEY3);
+        softly
+                .assertThat(multiKeyMap.getFullKeysByPartialKey(ImmutableList.of("one", "one")))
+                .containsOnly(KEY3);
+        softly
+                .assertThat(
+                        multiKeyMap.getFullKeysByPartialKey(ImmutableList.of("two"), ImmutableList.of(0)))
+                .containsOnly(KEY2, KEY3);
+        softly
+                .assertThat(
+                        multiKeyMap.getValuesByPartialKey(
+                                ImmutableList.of("two", "three", "one"), ImmutableList.of(0, -1, 1)))
+                .containsOnly(3);
+        softly
+                .assertThat(
+                        multiKeyMap
+                                .getEntriesByPartialKey(ImmutableList.of(new StringBuilder("one")))
+                                .map(Entry::getKey))
+                .containsOnly(KEY1, KEY3);
+    }
+
+    @Test
+    public void testUtf8SubKeys() {
+        final List<String> key = ImmutableList.of("été", "中文", "😀", "\ud800x");
+        multiKeyMap.put(key, 4);
+
+        softly.assertThat(multiKeyMap.get(key)).isEqualTo(4);
+        softly
+                .assertThat(multiKeyMap.getFullKeysByPartialKey(ImmutableList.of("😀")))
+                .containsOnly(
+                        Arrays.stream(key.toArray(new String[0]))
+                                .map(s -> new String(s.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8))
+                                .collect(Collectors.toList()));
+        softly.assertThat(multiKeyMap.get(ImmutableList.of("été", "中文"))).isNull();
+    }
+
+    @Test
+    public void testSameResultsAsMultiKeyMap() {
+        final Random random = new Random(1);
+        final MultiKeyMap<String, List<String>, Integer> expected = MultiKeyMaps.newMultiKeyMap();
+        multiKeyMap.clear();
+
+        for (int i = 0; i < 2000; i++) {
+            final List<String> key = randomKey(random, 1 + random.nextInt(5));
+
+            if (random.nextInt(4) == 0) {
+                softly.assertThat(multiKeyMap.remove(key)).isEqualTo(expected.remove(key));
+            } else {
+                softly.assertThat(multiKeyMap.put(key, i)).isEqualTo(expected.put(key, i));
+            }
+        }
+
+        softly.assertThat(multiKeyMap.size()).isEqualTo(expected.size());
+
+        for (int i = 0; i < 200; i++) {
+            final List<String> partialKey = randomKey(random, 1 + random.nextInt(3));
+
+            softly
+                    .assertThat(multiKeyMap.getFullKeysByPartialKey(partialKey).collect(Collectors.toList()))
+                    .hasSameElementsAs(
+                            expected.getFullKeysByPartialKey(partialKey).collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void testDictionaryReclaimsFreedSubKeys() throws Exception {
+        final Utf8Dictionary dictionary =
+                ((BaseStringMultiKeyMap<Integer>) multiKeyMap).dictionary();
+        multiKeyMap.clear();
+
+        for (int i = 0; i < 10_000; i++) {
+            multiKeyMap.put(ImmutableList.of("tenant" + (i % 3), "id" + i), i);
+            multiKeyMap.put(ImmutableList.of("tenant" + (i % 3), "id" + i), i);
+
+            if (i >= 100) {
+                multiKeyMap.remove(ImmutableList.of("tenant" + ((i - 100) % 3), "id" + (i - 100)));
+            }
+        }
+
+        softly.assertThat(multiKeyMap.size()).isEqualTo(100);
+        softly.assertThat(dictionary.size()).isEqualTo(103);
+        softly.assertThat(dictionary.idCapacity()).isLessThanOrEqualTo(104);
+        softly.assertThat(dictionary.arenaSize()).isLessThan(4096);
+        softly.assertThat(multiKeyMap.get(ImmutableList.of("tenant0", "id9999"))).isEqualTo(9999);
+        softly
+                .assertThat(multiKeyMap.getValuesByPartialKey(ImmutableList.of("tenant1", "id9901")))
+                .containsOnly(9901);
+        softly.assertThat(multiKeyMap.getValuesByPartialKey(ImmutableList.of("id9899"))).isEmpty();
+        softly.assertThat(multiKeyMap.getValuesByPartialKey(ImmutableList.of("tenant2"))).hasSize(33);
+
+        for (int i = 9900; i < 10_000; i++) {
+            multiKeyMap.remove(ImmutableList.of("tenant" + (i % 3), "id" + i));
+        }
+
+        softly.assertThat(dictionary.size()).isZero();
+        multiKeyMap.put(KEY3, 3);
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(multiKeyMap);
+        }
+
+        try (ObjectInputStream in =
+                     new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            @SuppressWarnings("unchecked") final StringMultiKeyMap<Integer> copy =
+                    (StringMultiKeyMap<Integer>) in.readObject();
+            copy.remove(KEY3);
+            copy.put(KEY2, 2);
+
+            softly.assertThat(((BaseStringMultiKeyMap<Integer>) copy).dictionary().size()).isEqualTo(2);
+            softly.assertThat(copy.getFullKeysByPartialKey(ImmutableList.of("two"))).containsOnly(KEY2);
+        }
+    }
+
+    @Test
+    public void testSerialization() throws Exception {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(multiKeyMap);
+        }
+
+        try (ObjectInputStream in =
+                     new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            @SuppressWarnings("unchecked") final StringMultiKeyMap<Integer> copy =
+                    (StringMultiKeyMap<Integer>) in.readObject();
+
+            softly.assertThat(copy.toString()).isEqualTo(multiKeyMap.toString());
+            softly.assertThat(copy.get(KEY3)).isEqualTo(3);
+            softly
+                    .assertThat(copy.getFullKeysByPartialKey(ImmutableList.of("one")))
+                    .containsOnly(KEY1, KEY3);
+        }
+    }
+
+    private static List<String> randomKey(final Random random, final int size) {
+        return random
+                .ints(size, 0, 20)
+                .mapToObj(i -> "sub" + i)
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ *    Copyright 2017 David Tesler
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.protobufel.multikeymap;
+
+import org.assertj.core.api.JUnitSoftAssertions;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+@RunWith(JUnit4.class)
+public class Utf8DictionaryTest {
+    @Rule
+    public final JUnitSoftAssertions softly = new JUnitSoftAssertions();
+
+    @Test
+    public void testReferenceCounting() {
+        final Utf8Dictionary dictionary = new Utf8Dictionary();
+        final int id = dictionary.intern("été");
+
+        softly.assertThat(dictionary.intern(new StringBuilder("été"))).isEqualTo(id);
+
+        dictionary.release(id);
+
+        softly.assertThat(dictionary.find("été")).isEqualTo(id);
+        softly.assertThat(dictionary.get(id)).isEqualTo("été");
+
+        dictionary.release(id);
+
+        softly.assertThat(dictionary.find("été")).isEqualTo(-1);
+        softly.assertThat(dictionary.size()).isZero();
+        softly.assertThatThrownBy(() -> dictionary.get(id)).isInstanceOf(IndexOutOfBoundsException.class);
+        softly.assertThatThrownBy(() -> dictionary.release(id)).isInstanceOf(IndexOutOfBoundsException.class);
+        softly.assertThat(dictionary.intern("中文")).isEqualTo(id);
+        softly.assertThat(dictionary.get(id)).isEqualTo("中文");
+    }
+
+    @Test
+    public void testChurnStaysBounded() {
+        final Utf8Dictionary dictionary = new Utf8Dictionary();
+        final Random random = new Random(3);
+        final Map<String, Integer> live = new HashMap<>();
+
+        for (int i = 0; i < 100_000; i++) {
+            final String value = "value" + random.nextInt(1_000) + ((i % 7 == 0) ? "-long-suffix-" + i : "");
+
+            if (live.size() < 500 && random.nextBoolean()) {
+                final int id = dictionary.intern(value);
+                live.put(value, id);
+                softly.assertThat(dictionary.get(id)).isEqualTo(value);
+            } else if (!live.isEmpty()) {
+                final String victim = live.keySet().iterator().next();
+                final int id = live.remove(victim);
+
+                while (dictionary.find(victim) >= 0) {
+                    dictionary.release(id);
+                }
+            }
+        }
+
+        softly.assertThat(dictionary.size()).isEqualTo(live.size());
+        softly.assertThat(dictionary.idCapacity()).isLessThanOrEqualTo(1_000);
+        softly.assertThat(dictionary.arenaSize()).isLessThan(100_000);
+        live.forEach(
+                (value, id) -> {
+                    softly.assertThat(dictionary.find(value)).isEqualTo(id);
+                    softly.assertThat(dictionary.get(id)).isEqualTo(value);
+                });
+    }
+}